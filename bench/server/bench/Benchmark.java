@@ -0,0 +1,125 @@
+package server.bench;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * A very small harness for timing a piece of work on the calling thread. The
+ * work is ran a number of times to let the JIT settle down, then ran again
+ * while the time taken, the bytes allocated and the amount of garbage
+ * collections are measured.
+ * 
+ * <p>
+ * Benchmarks are compiled straight against the server sources and ran from
+ * the root of the project, for example:
+ * </p>
+ * 
+ * <pre>
+ * javac -cp libs/gson-2.2.4.jar -sourcepath src:bench -d bin bench/server/bench/RegionIndexBenchmark.java
+ * java -cp bin:libs/gson-2.2.4.jar server.bench.RegionIndexBenchmark
+ * </pre>
+ * 
+ * @author lare96
+ */
+public abstract class Benchmark {
+
+    /** The name printed with the results of this benchmark. */
+    private final String name;
+
+    /** Used to keep the results of the work from being optimized away. */
+    private static long sink;
+
+    /**
+     * Create a new {@link Benchmark}.
+     * 
+     * @param name
+     *        the name printed with the results of this benchmark.
+     */
+    public Benchmark(String name) {
+        this.name = name;
+    }
+
+    /**
+     * The work being measured, ran once per operation.
+     * 
+     * @return any value that depends on the work done, so it can't be
+     *         optimized away.
+     * @throws Exception
+     *         if any errors occur while doing the work.
+     */
+    public abstract long run() throws Exception;
+
+    /**
+     * Runs the work for the specified amount of warmup operations, then
+     * measures it over the specified amount of operations and prints the
+     * results.
+     * 
+     * @param warmup
+     *        the amount of operations to warm up with.
+     * @param operations
+     *        the amount of operations to measure.
+     * @return the average time taken per operation in nanoseconds.
+     * @throws Exception
+     *         if any errors occur while doing the work.
+     */
+    public final double measure(int warmup, int operations) throws Exception {
+        for (int i = 0; i < warmup; i++) {
+            sink += run();
+        }
+
+        long bytes = allocatedBytes();
+        long collections = collections();
+        long start = System.nanoTime();
+
+        for (int i = 0; i < operations; i++) {
+            sink += run();
+        }
+
+        long elapsed = System.nanoTime() - start;
+        bytes = allocatedBytes() - bytes;
+        collections = collections() - collections;
+
+        double nanos = (double) elapsed / operations;
+        System.out.println(String.format("%-40s %12.1f us/op %12d bytes/op %6d gcs", name, nanos / 1000, bytes / operations, collections));
+        return nanos;
+    }
+
+    /**
+     * Gets the total amount of bytes allocated by the calling thread, if the
+     * virtual machine can tell us.
+     * 
+     * @return the amount of bytes allocated, or 0 if it isn't supported.
+     */
+    public static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    /**
+     * Gets the total amount of garbage collections done by every collector.
+     * 
+     * @return the amount of garbage collections.
+     */
+    public static long collections() {
+        long total = 0;
+
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(bean.getCollectionCount(), 0);
+        }
+        return total;
+    }
+
+    /**
+     * Gets the value the results of every operation were added to.
+     * 
+     * @return the sink value.
+     */
+    public static long getSink() {
+        return sink;
+    }
+}
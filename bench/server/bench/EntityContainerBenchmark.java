@@ -0,0 +1,104 @@
+package server.bench;
+
+import server.world.entity.EntityContainer;
+import server.world.entity.player.Player;
+
+/**
+ * Compares iterating, counting and finding a free slot in a container by
+ * scanning every slot, like the container used to, against the tracked
+ * occupied slots, size and free slots. Containers are measured at sparse and
+ * dense occupancy.
+ * 
+ * @author lare96
+ */
+public final class EntityContainerBenchmark {
+
+    /** The capacity of the container, the same as the world's players. */
+    private static final int CAPACITY = 2000;
+
+    /** So this class cannot be instantiated. */
+    private EntityContainerBenchmark() {
+
+    }
+
+    /**
+     * Runs the benchmark.
+     * 
+     * @param args
+     *        the runtime arguments, none are used.
+     * @throws Exception
+     *         if any errors occur while benchmarking.
+     */
+    public static void main(String[] args) throws Exception {
+        for (int amount : new int[] { CAPACITY / 20, CAPACITY - CAPACITY / 20 }) {
+            final EntityContainer<Player> players = new EntityContainer<Player>(CAPACITY);
+            String occupancy = amount + "/" + CAPACITY;
+
+            for (int i = 0; i < amount; i++) {
+                players.add(new Player(null));
+            }
+
+            double scanLoop = new Benchmark("slot scan iterate, " + occupancy) {
+                @Override
+                public long run() {
+                    long total = 0;
+
+                    for (int i = 0; i < players.getCapacity(); i++) {
+                        Player player = players.get(i);
+
+                        if (player != null) {
+                            total += player.getSlot();
+                        }
+                    }
+                    return total;
+                }
+            }.measure(20000, 50000);
+
+            double denseLoop = new Benchmark("tracked iterate, " + occupancy) {
+                @Override
+                public long run() {
+                    long total = 0;
+
+                    for (Player player : players) {
+                        total += player.getSlot();
+                    }
+                    return total;
+                }
+            }.measure(20000, 50000);
+
+            System.out.println(String.format("%-40s %12.1fx", "speedup", scanLoop / denseLoop));
+
+            double scanSlots = new Benchmark("slot scan size and slot, " + occupancy) {
+                @Override
+                public long run() {
+                    int size = 0;
+                    int free = -1;
+
+                    for (int i = 0; i < players.getCapacity(); i++) {
+                        if (players.get(i) != null) {
+                            size++;
+                        }
+                    }
+
+                    for (int slot = 1; slot < players.getCapacity(); slot++) {
+                        if (players.isSlotFree(slot)) {
+                            free = slot;
+                            break;
+                        }
+                    }
+                    return size + free;
+                }
+            }.measure(20000, 50000);
+
+            double denseSlots = new Benchmark("tracked size and slot, " + occupancy) {
+                @Override
+                public long run() {
+                    return players.getSize() + players.getFreeSlot();
+                }
+            }.measure(20000, 50000);
+
+            System.out.println(String.format("%-40s %12.1fx", "speedup", scanSlots / denseSlots));
+            System.out.println();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package server.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import server.util.Misc;
+import server.world.item.Item;
+import server.world.item.ItemDefinition;
+import server.world.item.ItemTable;
+
+/**
+ * Compares recalculating the equipment bonuses of {@link #PLAYERS} players by
+ * going through every item's definition, like bonuses used to be calculated,
+ * against adding them up from the packed item table.
+ * 
+ * @author lare96
+ */
+public final class ItemTableBenchmark {
+
+    /** The amount of players having their bonuses recalculated. */
+    private static final int PLAYERS = 1000;
+
+    /** The amount of equipment slots. */
+    private static final int SLOTS = 14;
+
+    /** So this class cannot be instantiated. */
+    private ItemTableBenchmark() {
+
+    }
+
+    /**
+     * Runs the benchmark.
+     * 
+     * @param args
+     *        the runtime arguments, none are used.
+     * @throws Exception
+     *         if any errors occur while benchmarking.
+     */
+    public static void main(String[] args) throws Exception {
+        Misc.loadItemDefinitions();
+        ItemTable.load();
+
+        final Item[][] equipment = equip(new Random(0));
+        final int[] bonuses = new int[ItemTable.BONUS_COUNT];
+
+        double definitions = new Benchmark("definitions, " + PLAYERS + " players") {
+            @Override
+            public long run() {
+                long total = 0;
+
+                for (Item[] items : equipment) {
+                    for (int i = 0; i < bonuses.length; i++) {
+                        bonuses[i] = 0;
+                    }
+
+                    for (Item item : items) {
+                        if (item == null || item.getId() < 1 || item.getAmount() < 1) {
+                            continue;
+                        }
+
+                        for (int i = 0; i < bonuses.length; i++) {
+                            bonuses[i] += item.getDefinition().getBonus()[i];
+                        }
+                    }
+                    total += bonuses[0];
+                }
+                return total;
+            }
+        }.measure(2000, 5000);
+
+        double table = new Benchmark("item table, " + PLAYERS + " players") {
+            @Override
+            public long run() {
+                ItemTable table = ItemTable.getTable();
+                long total = 0;
+
+                for (Item[] items : equipment) {
+                    for (int i = 0; i < bonuses.length; i++) {
+                        bonuses[i] = 0;
+                    }
+
+                    for (Item item : items) {
+                        if (item == null || item.getId() < 1 || item.getAmount() < 1) {
+                            continue;
+                        }
+
+                        table.addBonuses(item.getId(), bonuses);
+                    }
+                    total += bonuses[0];
+                }
+                return total;
+            }
+        }.measure(2000, 5000);
+
+        System.out.println(String.format("%-40s %12.1fx", "speedup", definitions / table));
+    }
+
+    /**
+     * Gives every player a random piece of equipment in every slot that has
+     * any equipment for it.
+     * 
+     * @param random
+     *        the random number generator.
+     * @return the equipment of every player.
+     */
+    private static Item[][] equip(Random random) {
+        List<List<Integer>> slots = new ArrayList<List<Integer>>();
+
+        for (int i = 0; i < SLOTS; i++) {
+            slots.add(new ArrayList<Integer>());
+        }
+
+        for (ItemDefinition def : ItemDefinition.getDefinitions()) {
+            if (def != null && !def.isNoted() && def.getEquipmentSlot() >= 0 && def.getEquipmentSlot() < SLOTS) {
+                slots.get(def.getEquipmentSlot()).add(def.getItemId());
+            }
+        }
+
+        Item[][] equipment = new Item[PLAYERS][SLOTS];
+
+        for (Item[] items : equipment) {
+            for (int i = 0; i < SLOTS; i++) {
+                List<Integer> ids = slots.get(i);
+
+                if (!ids.isEmpty()) {
+                    items[i] = new Item(ids.get(random.nextInt(ids.size())));
+                }
+            }
+        }
+        return equipment;
+    }
+}
@@ -0,0 +1,95 @@
+package server.bench;
+
+import java.util.Random;
+
+import server.util.Misc;
+import server.world.entity.EntityContainer;
+import server.world.entity.npc.Npc;
+import server.world.map.Position;
+
+/**
+ * Measures the time and garbage of the movement phase of a tick with
+ * {@link #WANDERERS} npcs random walking and {@link #WALKERS} entities walking
+ * paths the length of a player's clicks, half of them running. Each operation
+ * is one tick of movement for every entity.
+ * 
+ * <p>
+ * Players send interface packets as they move, so they can't be moved here
+ * without a connection. The walkers are npcs given the same paths a player
+ * would walk instead. The entities are indexed in a container of their own
+ * and their region index is updated after moving, the same way moving updates
+ * the world's.
+ * </p>
+ * 
+ * @author lare96
+ */
+public final class MovementBenchmark {
+
+    /** The amount of random walking npcs. */
+    private static final int WANDERERS = 4000;
+
+    /** The amount of entities walking paths. */
+    private static final int WALKERS = 1000;
+
+    /** The furthest a walker will click away from where it's standing. */
+    private static final int CLICK_DISTANCE = 14;
+
+    /** So this class cannot be instantiated. */
+    private MovementBenchmark() {
+
+    }
+
+    /**
+     * Runs the benchmark.
+     * 
+     * @param args
+     *        the runtime arguments, none are used.
+     * @throws Exception
+     *         if any errors occur while benchmarking.
+     */
+    public static void main(String[] args) throws Exception {
+        Misc.loadNpcDefinitions();
+
+        final EntityContainer<Npc> entities = new EntityContainer<Npc>(WANDERERS + WALKERS + 1);
+        final Npc[] walkers = new Npc[WALKERS];
+        final Random random = new Random(0);
+
+        for (int i = 0; i < WANDERERS; i++) {
+            Npc npc = new Npc(1, new Position(2816 + random.nextInt(640), 3136 + random.nextInt(640)));
+            npc.getMovementCoordinator().setCoordinate(true);
+            npc.getMovementCoordinator().setRadius(5);
+            entities.add(npc);
+        }
+
+        for (int i = 0; i < WALKERS; i++) {
+            walkers[i] = new Npc(1, new Position(3072 + random.nextInt(256), 3328 + random.nextInt(256)));
+            walkers[i].getMovementQueue().setRunToggled(i % 2 == 0);
+            entities.add(walkers[i]);
+        }
+
+        new Benchmark("movement, " + WANDERERS + " + " + WALKERS + " entities") {
+            @Override
+            public long run() throws Exception {
+                long moved = 0;
+
+                /** Walkers click somewhere new once they reach their last click. */
+                for (Npc walker : walkers) {
+                    if (walker.getMovementQueue().isMovementDone()) {
+                        walker.getMovementQueue().walk(random.nextInt(CLICK_DISTANCE * 2 + 1) - CLICK_DISTANCE, random.nextInt(CLICK_DISTANCE * 2 + 1) - CLICK_DISTANCE);
+                    }
+                }
+
+                for (Npc npc : entities) {
+                    int x = npc.getPosition().getX();
+                    npc.pulse();
+                    entities.getRegionIndex().update(npc);
+
+                    if (npc.getPosition().getX() != x) {
+                        moved++;
+                    }
+                }
+                return moved;
+            }
+        }.measure(2000, 5000);
+    }
+}
@@ -0,0 +1,87 @@
+package server.bench;
+
+import java.util.Random;
+
+import server.world.entity.player.Player;
+import server.world.map.CollisionMap;
+import server.world.map.PathFinder;
+import server.world.map.Position;
+
+/**
+ * Measures how many paths the {@link PathFinder} can find every second and
+ * how much garbage each search makes, for targets a chasing distance away, a
+ * long click away and outside of the scene altogether. Targets outside the
+ * scene can't be reached, so the whole scene is searched before walking as
+ * close as possible.
+ * 
+ * <p>
+ * The clipping file is used if there is one, otherwise every tile is
+ * walkable.
+ * </p>
+ * 
+ * @author lare96
+ */
+public final class PathFinderBenchmark {
+
+    /** The position paths are found from. */
+    private static final Position START = new Position(3222, 3218);
+
+    /** So this class cannot be instantiated. */
+    private PathFinderBenchmark() {
+
+    }
+
+    /**
+     * Runs the benchmark.
+     * 
+     * @param args
+     *        the runtime arguments, none are used.
+     * @throws Exception
+     *         if any errors occur while benchmarking.
+     */
+    public static void main(String[] args) throws Exception {
+        CollisionMap.getMap().load();
+
+        search("chasing, 5 tiles", 5, 20000, 100000);
+        search("clicking, 30 tiles", 30, 5000, 20000);
+        search("outside of the scene", PathFinder.SCENE_SIZE, 2000, 5000);
+    }
+
+    /**
+     * Measures finding paths to random targets around the start position.
+     * 
+     * @param name
+     *        the name printed with the results.
+     * @param distance
+     *        the distance of the targets from the start position.
+     * @param warmup
+     *        the amount of searches to warm up with.
+     * @param searches
+     *        the amount of searches to measure.
+     * @throws Exception
+     *         if any errors occur while benchmarking.
+     */
+    private static void search(String name, final int distance, int warmup, int searches) throws Exception {
+        final Player player = new Player(null);
+        final Position[] targets = new Position[1024];
+        Random random = new Random(distance);
+
+        for (int i = 0; i < targets.length; i++) {
+            int x = random.nextBoolean() ? distance : -distance;
+            int y = random.nextInt(distance * 2 + 1) - distance;
+            targets[i] = random.nextBoolean() ? new Position(START.getX() + x, START.getY() + y) : new Position(START.getX() + y, START.getY() + x);
+        }
+
+        double nanos = new Benchmark(name) {
+            private int next;
+
+            @Override
+            public long run() {
+                player.getPosition().setAs(START);
+                return PathFinder.getPathFinder().findRoute(player, targets[next++ & (targets.length - 1)], true) ? 1 : 0;
+            }
+        }.measure(warmup, searches);
+
+        System.out.println(String.format("%-40s %12.0f paths/s", name, 1000000000 / nanos));
+    }
+}
@@ -0,0 +1,172 @@
+package server.bench;
+
+import java.util.Random;
+
+import server.world.entity.player.Player;
+import server.world.entity.player.file.BinaryPlayerCodec;
+import server.world.entity.player.file.PlayerSnapshot;
+import server.world.entity.player.file.ReadPlayerFileEvent;
+import server.world.entity.player.file.WritePlayerFileEvent;
+import server.world.entity.player.skill.Skill;
+import server.world.item.Item;
+import server.world.map.Position;
+
+/**
+ * Compares encoding and decoding {@link #ACCOUNTS} synthetic accounts as
+ * legacy JSON character files against the compact binary format, along with
+ * the total size of the files. Each operation is a single account.
+ * 
+ * @author lare96
+ */
+public final class PlayerCodecBenchmark {
+
+    /** The amount of synthetic accounts. */
+    private static final int ACCOUNTS = 10000;
+
+    /** The amount of slots in the bank. */
+    private static final int BANK_SIZE = 250;
+
+    /** So this class cannot be instantiated. */
+    private PlayerCodecBenchmark() {
+
+    }
+
+    /**
+     * Runs the benchmark.
+     * 
+     * @param args
+     *        the runtime arguments, none are used.
+     * @throws Exception
+     *         if any errors occur while benchmarking.
+     */
+    public static void main(String[] args) throws Exception {
+        final PlayerSnapshot[] snapshots = new PlayerSnapshot[ACCOUNTS];
+        final byte[][] json = new byte[ACCOUNTS][];
+        final byte[][] binary = new byte[ACCOUNTS][];
+        Random random = new Random(0);
+        long jsonSize = 0;
+        long binarySize = 0;
+
+        for (int i = 0; i < ACCOUNTS; i++) {
+            snapshots[i] = new PlayerSnapshot(account(i, random));
+            json[i] = WritePlayerFileEvent.encodeJson(snapshots[i]);
+            binary[i] = BinaryPlayerCodec.encode(snapshots[i]);
+            jsonSize += json[i].length;
+            binarySize += binary[i].length;
+        }
+
+        System.out.println(String.format("%-40s %12d bytes %12d bytes/account", "json, " + ACCOUNTS + " accounts", jsonSize, jsonSize / ACCOUNTS));
+        System.out.println(String.format("%-40s %12d bytes %12d bytes/account", "binary, " + ACCOUNTS + " accounts", binarySize, binarySize / ACCOUNTS));
+        System.out.println(String.format("%-40s %12.1fx", "smaller", (double) jsonSize / binarySize));
+        System.out.println();
+
+        double jsonEncode = new Benchmark("json encode") {
+            private int next;
+
+            @Override
+            public long run() {
+                return WritePlayerFileEvent.encodeJson(snapshots[next++ % ACCOUNTS]).length;
+            }
+        }.measure(ACCOUNTS, ACCOUNTS);
+
+        double binaryEncode = new Benchmark("binary encode") {
+            private int next;
+
+            @Override
+            public long run() {
+                return BinaryPlayerCodec.encode(snapshots[next++ % ACCOUNTS]).length;
+            }
+        }.measure(ACCOUNTS, ACCOUNTS);
+
+        System.out.println(String.format("%-40s %12.1fx", "speedup", jsonEncode / binaryEncode));
+        System.out.println();
+
+        double jsonDecode = new Benchmark("json decode") {
+            private int next;
+
+            @Override
+            public long run() {
+                int account = next++ % ACCOUNTS;
+                return ReadPlayerFileEvent.decodeJson(json[account], target(snapshots[account]));
+            }
+        }.measure(ACCOUNTS, ACCOUNTS);
+
+        double binaryDecode = new Benchmark("binary decode") {
+            private int next;
+
+            @Override
+            public long run() {
+                int account = next++ % ACCOUNTS;
+                return BinaryPlayerCodec.decode(binary[account], target(snapshots[account]));
+            }
+        }.measure(ACCOUNTS, ACCOUNTS);
+
+        System.out.println(String.format("%-40s %12.1fx", "speedup", jsonDecode / binaryDecode));
+    }
+
+    /**
+     * Creates a synthetic account with trained skills, a partly filled
+     * inventory, worn equipment, friends and a bank filled to a random amount.
+     * 
+     * @param index
+     *        the index of the account.
+     * @param random
+     *        the random number generator.
+     * @return the synthetic account.
+     */
+    private static Player account(int index, Random random) {
+        Player player = new Player(null);
+        player.setUsername("account" + index);
+        player.setPassword("password" + index);
+        player.getPosition().setAs(new Position(3200 + random.nextInt(100), 3200 + random.nextInt(100)));
+
+        for (int i = 0; i < player.getSkills().length; i++) {
+            Skill skill = new Skill();
+            skill.setExperience(random.nextInt(13034431));
+            skill.setLevel(skill.getLevelForExperience());
+            player.getSkills()[i] = skill;
+        }
+
+        player.getInventory().getContainer().setItems(items(28, random.nextInt(29), random));
+        player.getEquipment().getContainer().setItems(items(14, random.nextInt(15), random));
+        player.getBank().getContainer().setItems(items(BANK_SIZE, random.nextInt(BANK_SIZE + 1), random));
+
+        for (int i = random.nextInt(50); i > 0; i--) {
+            player.getFriends().add(random.nextLong() & Long.MAX_VALUE);
+        }
+        return player;
+    }
+
+    /**
+     * Creates an item container with random items in the first slots.
+     * 
+     * @param capacity
+     *        the capacity of the container.
+     * @param amount
+     *        the amount of slots to fill.
+     * @param random
+     *        the random number generator.
+     * @return the items in the container.
+     */
+    private static Item[] items(int capacity, int amount, Random random) {
+        Item[] items = new Item[capacity];
+
+        for (int i = 0; i < amount; i++) {
+            items[i] = new Item(1 + random.nextInt(7000), 1 + random.nextInt(random.nextBoolean() ? 10 : 100000));
+        }
+        return items;
+    }
+
+    /**
+     * Creates a fresh player to decode an account onto, as logging in does.
+     * 
+     * @param snapshot
+     *        the account being decoded.
+     * @return the player to decode onto.
+     */
+    private static Player target(PlayerSnapshot snapshot) {
+        Player player = new Player(null);
+        player.setPassword(snapshot.getPassword());
+        return player;
+    }
+}
@@ -0,0 +1,123 @@
+package server.bench;
+
+import java.util.Random;
+
+import server.util.Misc;
+import server.world.entity.player.Player;
+import server.world.map.Location;
+import server.world.map.Position;
+
+/**
+ * Compares the garbage made by the visibility and wilderness checks updating
+ * does for every player each tick when they allocate a {@link Position} for
+ * every check, like they used to, against the allocation free checks. Each
+ * operation is one tick of checks for {@link #PLAYERS} players.
+ * 
+ * <p>
+ * In a loop this small the JIT can often prove the old positions never
+ * escape and remove them, which the real call sites deep inside updating
+ * rarely got. Run with <code>-XX:-DoEscapeAnalysis</code> to see the garbage
+ * the old checks made.
+ * </p>
+ * 
+ * @author lare96
+ */
+public final class PositionBenchmark {
+
+    /** The amount of players being checked every tick. */
+    private static final int PLAYERS = 1000;
+
+    /** The amount of entities each player checks every tick. */
+    private static final int NEIGHBORS = 64;
+
+    /** The wilderness, as it's checked by the location utilities. */
+    private static final Location WILDERNESS = new Location(new Position(2941, 3518), new Position(3392, 3966));
+
+    /** So this class cannot be instantiated. */
+    private PositionBenchmark() {
+
+    }
+
+    /**
+     * Runs the benchmark.
+     * 
+     * @param args
+     *        the runtime arguments, none are used.
+     * @throws Exception
+     *         if any errors occur while benchmarking.
+     */
+    public static void main(String[] args) throws Exception {
+        final Player[] players = new Player[PLAYERS];
+        Random random = new Random(0);
+
+        for (int i = 0; i < PLAYERS; i++) {
+            players[i] = new Player(null);
+            players[i].getPosition().setAs(new Position(3072 + random.nextInt(96), 3520 + random.nextInt(96)));
+        }
+
+        double allocating = new Benchmark("allocating, " + PLAYERS + " players") {
+            @Override
+            public long run() {
+                long total = 0;
+
+                for (int i = 0; i < PLAYERS; i++) {
+                    Position position = players[i].getPosition();
+
+                    if (WILDERNESS.inLocation(new Position(position.getX(), position.getY()))) {
+                        total++;
+                    }
+
+                    for (int j = 1; j <= NEIGHBORS; j++) {
+                        if (viewable(players[(i + j) % PLAYERS].getPosition(), position)) {
+                            total++;
+                        }
+                    }
+                }
+                return total;
+            }
+        }.measure(500, 1000);
+
+        double free = new Benchmark("allocation free, " + PLAYERS + " players") {
+            @Override
+            public long run() {
+                long total = 0;
+
+                for (int i = 0; i < PLAYERS; i++) {
+                    Position position = players[i].getPosition();
+
+                    if (Location.inWilderness(players[i])) {
+                        total++;
+                    }
+
+                    for (int j = 1; j <= NEIGHBORS; j++) {
+                        if (players[(i + j) % PLAYERS].getPosition().isViewableFrom(position)) {
+                            total++;
+                        }
+                    }
+                }
+                return total;
+            }
+        }.measure(500, 1000);
+
+        System.out.println(String.format("%-40s %12.1fx", "speedup", allocating / free));
+    }
+
+    /**
+     * Checks if a position is viewable from another position the way it used
+     * to be checked, by allocating the delta between them.
+     * 
+     * @param position
+     *        the position being looked at.
+     * @param other
+     *        the position being looked from.
+     * @return true if the position is viewable.
+     */
+    private static boolean viewable(Position position, Position other) {
+        if (position.getZ() != other.getZ()) {
+            return false;
+        }
+
+        Position delta = Misc.delta(position, other);
+        return delta.getX() <= 14 && delta.getX() >= -15 && delta.getY() <= 14 && delta.getY() >= -15;
+    }
+}
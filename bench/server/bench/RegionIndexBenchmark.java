@@ -0,0 +1,105 @@
+package server.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import server.world.entity.EntityContainer;
+import server.world.entity.player.Player;
+import server.world.map.Position;
+
+/**
+ * Compares the cost of finding the players each player can see by scanning
+ * every slot in the player container, like updating used to, against looking
+ * through the 3x3 neighborhood of buckets in the region index.
+ * 
+ * @author lare96
+ */
+public final class RegionIndexBenchmark {
+
+    /** The amount of slots in the world's player container. */
+    private static final int CAPACITY = 2000;
+
+    /** The size of the square of the map players are scattered across. */
+    private static final int AREA = 384;
+
+    /** So this class cannot be instantiated. */
+    private RegionIndexBenchmark() {
+
+    }
+
+    /**
+     * Runs the benchmark at 500, 1000 and 2000 players.
+     * 
+     * @param args
+     *        the runtime arguments, none are used.
+     * @throws Exception
+     *         if any errors occur while benchmarking.
+     */
+    public static void main(String[] args) throws Exception {
+        for (int amount : new int[] { 500, 1000, 2000 }) {
+            final EntityContainer<Player> players = populate(amount);
+
+            double scan = new Benchmark("slot scan, " + amount + " players") {
+                @Override
+                public long run() {
+                    long found = 0;
+
+                    for (Player player : players) {
+                        for (int i = 0; i < players.getCapacity(); i++) {
+                            Player other = players.get(i);
+
+                            if (other != null && other != player && other.getPosition().isViewableFrom(player.getPosition())) {
+                                found++;
+                            }
+                        }
+                    }
+                    return found;
+                }
+            }.measure(20, 50);
+
+            double index = new Benchmark("region index, " + amount + " players") {
+                private final List<Player> surrounding = new ArrayList<Player>();
+
+                @Override
+                public long run() {
+                    long found = 0;
+
+                    for (Player player : players) {
+                        for (Player other : players.getRegionIndex().getSurrounding(player.getPosition(), surrounding)) {
+                            if (other != player && other.getPosition().isViewableFrom(player.getPosition())) {
+                                found++;
+                            }
+                        }
+                    }
+                    return found;
+                }
+            }.measure(20, 50);
+
+            System.out.println(String.format("%-40s %12.1fx", "speedup", scan / index));
+            System.out.println();
+        }
+    }
+
+    /**
+     * Creates a container with the specified amount of players scattered
+     * randomly around Varrock and Lumbridge.
+     * 
+     * @param amount
+     *        the amount of players to create.
+     * @return the container holding the players.
+     */
+    private static EntityContainer<Player> populate(int amount) {
+
+        /** One extra slot because slot 0 is never used. */
+        EntityContainer<Player> players = new EntityContainer<Player>(Math.max(amount + 1, CAPACITY));
+        Random random = new Random(amount);
+
+        for (int i = 0; i < amount; i++) {
+            Player player = new Player(null);
+            player.getPosition().setAs(new Position(3072 + random.nextInt(AREA), 3072 + random.nextInt(AREA)));
+            players.add(player);
+        }
+        return players;
+    }
+}
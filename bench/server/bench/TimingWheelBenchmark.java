@@ -0,0 +1,185 @@
+package server.bench;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Random;
+
+import server.core.worker.TaskFactory;
+import server.core.worker.WorkRate;
+import server.core.worker.Worker;
+
+/**
+ * Compares processing {@link #WORKERS} mostly idle workers with the timing
+ * wheel against looping over all of them every tick, like the task factory
+ * used to. Finding the workers attached to a key is compared the same way.
+ * 
+ * @author lare96
+ */
+public final class TimingWheelBenchmark {
+
+    /** The amount of workers registered. */
+    private static final int WORKERS = 100000;
+
+    /** The amount of keys the workers are attached to. */
+    private static final int KEYS = 20000;
+
+    /** The amount of workers that fire often. */
+    private static final int BUSY_WORKERS = WORKERS / 20;
+
+    /** The keys the workers are attached to. */
+    private static final Object[] keys = new Object[KEYS];
+
+    /** The amount of times a worker has fired. */
+    private static long fired;
+
+    /** So this class cannot be instantiated. */
+    private TimingWheelBenchmark() {
+
+    }
+
+    /**
+     * Runs the benchmark.
+     * 
+     * @param args
+     *        the runtime arguments, none are used.
+     * @throws Exception
+     *         if any errors occur while benchmarking.
+     */
+    public static void main(String[] args) throws Exception {
+        final LinkedList<ScannedWorker> scanned = new LinkedList<ScannedWorker>();
+        Random random = new Random(0);
+
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = new Object();
+        }
+
+        for (int i = 0; i < WORKERS; i++) {
+            int delay = delay(i, random);
+            Object key = keys[i % KEYS];
+
+            scanned.add(new ScannedWorker(delay, key));
+            TaskFactory.getFactory().submit(new Worker(delay, false) {
+                @Override
+                public void fire() {
+                    fired++;
+                }
+            }.attach(key));
+        }
+
+        double scan = new Benchmark("linked list, " + WORKERS + " workers") {
+            @Override
+            public long run() {
+                for (Iterator<ScannedWorker> it = scanned.iterator(); it.hasNext();) {
+                    it.next().process();
+                }
+                return fired;
+            }
+        }.measure(2000, 5000);
+
+        double wheel = new Benchmark("timing wheel, " + WORKERS + " workers") {
+            @Override
+            public long run() {
+                TaskFactory.getFactory().tick();
+                return fired;
+            }
+        }.measure(2000, 5000);
+
+        System.out.println(String.format("%-40s %12.1fx", "speedup", scan / wheel));
+        System.out.println();
+
+        double scanKey = new Benchmark("linked list, workers by key") {
+            private int next;
+
+            @Override
+            public long run() {
+                Object key = keys[next++ % KEYS];
+                long found = 0;
+
+                for (ScannedWorker worker : scanned) {
+                    if (worker.key == key) {
+                        found++;
+                    }
+                }
+                return found;
+            }
+        }.measure(200, 500);
+
+        double wheelKey = new Benchmark("key index, workers by key") {
+            private int next;
+
+            @Override
+            public long run() {
+                return TaskFactory.getFactory().retrieveWorkers(keys[next++ % KEYS]).size();
+            }
+        }.measure(200, 500);
+
+        System.out.println(String.format("%-40s %12.1fx", "speedup", scanKey / wheelKey));
+    }
+
+    /**
+     * Picks the delay of a worker. Most workers are like ground items, hourly
+     * and daily events that are idle for thousands of ticks, and only a few
+     * fire every couple of ticks like prayer and restore workers do.
+     * 
+     * @param index
+     *        the index of the worker.
+     * @param random
+     *        the random number generator.
+     * @return the delay for the worker.
+     */
+    private static int delay(int index, Random random) {
+        if (index < BUSY_WORKERS) {
+            return 1 + random.nextInt(10);
+        }
+
+        switch (random.nextInt(4)) {
+        case 0:
+            return WorkRate.EXACT_HOUR.getTickRate();
+        case 1:
+            return WorkRate.EXACT_DAY.getTickRate();
+        default:
+            return 100 + random.nextInt(WorkRate.EXACT_HOUR.getTickRate());
+        }
+    }
+
+    /**
+     * A worker processed the way the task factory used to, by counting up to
+     * its delay every single tick.
+     * 
+     * @author lare96
+     */
+    private static final class ScannedWorker {
+
+        /** The delay of this worker. */
+        private final int delay;
+
+        /** The key this worker is attached to. */
+        private final Object key;
+
+        /** The amount of ticks counted since this worker last fired. */
+        private int currentDelay;
+
+        /**
+         * Create a new {@link ScannedWorker}.
+         * 
+         * @param delay
+         *        the delay of this worker.
+         * @param key
+         *        the key this worker is attached to.
+         */
+        public ScannedWorker(int delay, Object key) {
+            this.delay = delay;
+            this.key = key;
+        }
+
+        /**
+         * Counts this tick and fires the worker if it's due.
+         */
+        public void process() {
+            if (++currentDelay == delay) {
+                fired++;
+                currentDelay = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package server.bench;
+
+import server.core.net.packet.PacketBuffer;
+import server.core.net.packet.PacketBuffer.WriteBuffer;
+
+/**
+ * Compares the garbage made by the buffers player and npc updating use every
+ * tick when they're allocated fresh, like updating used to, against when
+ * they're acquired from the pool. Each operation is one tick of updating for
+ * {@link #PLAYERS} players.
+ * 
+ * @author lare96
+ */
+public final class WriteBufferPoolBenchmark {
+
+    /** The amount of players being updated every tick. */
+    private static final int PLAYERS = 1000;
+
+    /** So this class cannot be instantiated. */
+    private WriteBufferPoolBenchmark() {
+
+    }
+
+    /**
+     * Runs the benchmark.
+     * 
+     * @param args
+     *        the runtime arguments, none are used.
+     * @throws Exception
+     *         if any errors occur while benchmarking.
+     */
+    public static void main(String[] args) throws Exception {
+        double fresh = new Benchmark("fresh buffers, " + PLAYERS + " players") {
+            @Override
+            public long run() {
+                long written = 0;
+
+                for (int i = 0; i < PLAYERS; i++) {
+                    written += update(PacketBuffer.newWriteBuffer(16384), PacketBuffer.newWriteBuffer(8192), 81);
+                    written += update(PacketBuffer.newWriteBuffer(2048), PacketBuffer.newWriteBuffer(1024), 65);
+                }
+                return written;
+            }
+        }.measure(100, 200);
+
+        double pooled = new Benchmark("pooled buffers, " + PLAYERS + " players") {
+            @Override
+            public long run() {
+                long written = 0;
+
+                for (int i = 0; i < PLAYERS; i++) {
+                    WriteBuffer out = PacketBuffer.acquireWriteBuffer(16384);
+                    WriteBuffer block = PacketBuffer.acquireWriteBuffer(8192);
+
+                    try {
+                        written += update(out, block, 81);
+                    } finally {
+                        out.release();
+                        block.release();
+                    }
+
+                    out = PacketBuffer.acquireWriteBuffer(2048);
+                    block = PacketBuffer.acquireWriteBuffer(1024);
+
+                    try {
+                        written += update(out, block, 65);
+                    } finally {
+                        out.release();
+                        block.release();
+                    }
+                }
+                return written;
+            }
+        }.measure(100, 200);
+
+        System.out.println(String.format("%-40s %12.1fx", "speedup", fresh / pooled));
+    }
+
+    /**
+     * Writes a small update packet, roughly the size of one sent to a player
+     * with a few other entities around them.
+     * 
+     * @param out
+     *        the buffer the packet is written to.
+     * @param block
+     *        the buffer the update blocks are written to.
+     * @param opcode
+     *        the opcode of the packet.
+     * @return the amount of bytes written.
+     */
+    private static int update(WriteBuffer out, WriteBuffer block, int opcode) {
+        out.writeVariableShortPacketHeader(opcode);
+        out.setAccessType(PacketBuffer.AccessType.BIT_ACCESS);
+
+        for (int i = 0; i < 20; i++) {
+            out.writeBit(true);
+            out.writeBits(2, 1);
+            out.writeBits(3, i & 7);
+            block.writeByte(i);
+            block.writeShort(i * 31);
+        }
+
+        out.writeBits(11, 2047);
+        out.setAccessType(PacketBuffer.AccessType.BYTE_ACCESS);
+        out.writeBytes(block.getBuffer());
+        out.finishVariableShortPacketHeader();
+        return out.getBuffer().position();
+    }
+}
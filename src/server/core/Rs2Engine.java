@@ -1,11 +1,14 @@
 package server.core;
 
+import java.lang.management.ManagementFactory;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
+import javax.management.ObjectName;
+
 import server.core.net.EventSelector;
 import server.core.task.Task;
 import server.core.task.TaskFuture;
@@ -39,12 +42,18 @@ public final class Rs2Engine implements Runnable {
      */
     public static final boolean INITIALLY_IDLE = true;
 
+    /** The rate in milliseconds that game logic is ticked at. */
+    public static final int TICK_RATE = 600;
+
     /**
      * An extremely high priority {@link ScheduledExecutorService} that ticks
      * game logic at 600 millisecond intervals.
      */
     private static ScheduledExecutorService gameExecutor;
 
+    /** The phase of the game tick currently being carried out. */
+    private static volatile TickPhase currentPhase;
+
     /** So this class cannot be instantiated. */
     private Rs2Engine() {
     }
@@ -65,8 +74,11 @@ public final class Rs2Engine implements Runnable {
         /** Create the game executor. */
         gameExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadProvider(Rs2Engine.class.getName(), Thread.MAX_PRIORITY, false, false));
 
+        /** Expose the tick timings through JMX. */
+        ManagementFactory.getPlatformMBeanServer().registerMBean(TickProfiler.getProfiler(), new ObjectName("server.core:type=TickProfiler"));
+
         /** Start ticking the game executor */
-        gameExecutor.scheduleAtFixedRate(new Rs2Engine(), 0, 600, TimeUnit.MILLISECONDS);
+        gameExecutor.scheduleAtFixedRate(new Rs2Engine(), 0, TICK_RATE, TimeUnit.MILLISECONDS);
     }
 
     /**
@@ -100,13 +112,62 @@ public final class Rs2Engine implements Runnable {
             // XXX: Please do not add multiple task systems... Asteria already
             // comes with one! trying to keep as little overhead as possible.
 
-            TaskFactory.getFactory().tick();
-            EventSelector.tick();
-            World.tick();
+            TickProfiler profiler = TickProfiler.getProfiler();
+            profiler.startTick();
+
+            for (TickPhase phase : TickPhase.values()) {
+                currentPhase = phase;
+                profiler.startPhase();
+                runPhase(phase);
+                profiler.endPhase(phase);
+            }
+
+            profiler.endTick();
         } catch (Exception e) {
 
             /** Nothing we can do, print error and continue processing. */
             e.printStackTrace();
+        } finally {
+            currentPhase = null;
         }
     }
+
+    /**
+     * Carries out the work for a single phase of the game tick.
+     * 
+     * @param phase
+     *        the phase to carry out.
+     */
+    private static void runPhase(TickPhase phase) {
+        switch (phase) {
+        case INPUT:
+            EventSelector.tick();
+            break;
+        case LOGIC:
+            TaskFactory.getFactory().tick();
+            break;
+        case MOVEMENT:
+            World.pulse();
+            break;
+        case UPDATE:
+            World.update();
+            break;
+        case FLUSH:
+            EventSelector.flush();
+            break;
+        case RESET:
+            World.reset();
+            break;
+        }
+    }
+
+    /**
+     * Gets the phase of the game tick currently being carried out.
+     * 
+     * @return the current phase, or <code>null</code> if a tick isn't being
+     *         carried out.
+     */
+    public static TickPhase getCurrentPhase() {
+        return currentPhase;
+    }
 }
@@ -0,0 +1,49 @@
+package server.core;
+
+/**
+ * The phases that every game tick is split into, in the order they are carried
+ * out by the {@link Rs2Engine}. Each phase documents the state it is allowed
+ * to mutate, so work can be moved between threads without per-entity locking.
+ * 
+ * @author lare96
+ */
+public enum TickPhase {
+
+    /**
+     * Reads and decodes incoming packets on the game thread. May mutate any
+     * state belonging to the player the packet was sent by, and the world
+     * containers when sessions log in or out.
+     */
+    INPUT,
+
+    /**
+     * Fires due workers on the game thread. May mutate any game state.
+     */
+    LOGIC,
+
+    /**
+     * Pulses every entity on the game thread. May mutate entity positions,
+     * movement queues, and the spatial index of the world containers.
+     */
+    MOVEMENT,
+
+    /**
+     * Builds update blocks on the game thread and then encodes the update
+     * packets for every player in parallel. Each parallel unit of work may only
+     * mutate the local entity lists and outgoing data of the player it is
+     * updating, everything else is read only until the phase completes.
+     */
+    UPDATE,
+
+    /**
+     * Writes the outgoing data queued during the tick to the sockets. May only
+     * mutate session buffers.
+     */
+    FLUSH,
+
+    /**
+     * Resets the update state of every entity on the game thread for the next
+     * tick. May only mutate update flags, directions, and cached update blocks.
+     */
+    RESET
+}
@@ -0,0 +1,326 @@
+package server.core;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import server.util.TimingHistogram;
+
+/**
+ * Records how long every phase of the game tick takes, how often ticks run over
+ * the tick rate, and decides when non-critical work should be shed so the
+ * engine can catch back up.
+ * 
+ * @author lare96
+ */
+public final class TickProfiler implements TickProfilerMBean {
+
+    /**
+     * If non-critical work like npc random walking and ground item respawns
+     * should be shed by default when ticks run over the tick rate. This can be
+     * changed at runtime through JMX or the <code>::shedwork</code> command.
+     */
+    public static final boolean ADAPTIVE_SHEDDING = false;
+
+    /**
+     * The amount of milliseconds a tick can start later than it was scheduled
+     * before it's considered a catch up tick.
+     */
+    private static final long CATCH_UP_TOLERANCE = 50;
+
+    /** The singleton instance. */
+    private static TickProfiler singleton = new TickProfiler();
+
+    /** The timings for every phase of the tick. */
+    private final Map<TickPhase, TimingHistogram> phases = new EnumMap<TickPhase, TimingHistogram>(TickPhase.class);
+
+    /** The timings for entire ticks. */
+    private final TimingHistogram ticks = new TimingHistogram();
+
+    /** The amount of ticks that took longer than the tick rate. */
+    private volatile long overruns;
+
+    /** The amount of ticks that started late. */
+    private volatile long catchUpTicks;
+
+    /** The amount of ticks where non-critical work was shed. */
+    private volatile long shedTicks;
+
+    /** The amount of packets queued for players during the last tick. */
+    private volatile int packetsLastTick;
+
+    /** The amount of bytes queued for players during the last tick. */
+    private volatile int bytesLastTick;
+
+    /** The amount of socket writes made for players during the last tick. */
+    private volatile int writesLastTick;
+
+    /** The amount of npcs that were pulsed during the last tick. */
+    private volatile int activeNpcs;
+
+    /** The amount of npcs that were asleep during the last tick. */
+    private volatile int sleepingNpcs;
+
+    /** If non-critical work is shed when ticks overrun. */
+    private volatile boolean adaptiveShedding = ADAPTIVE_SHEDDING;
+
+    /** If non-critical work is being shed this tick. */
+    private volatile boolean shedding;
+
+    /** The time the first tick was started at, in nanoseconds. */
+    private long firstTickStart;
+
+    /** The amount of ticks started since the first tick. */
+    private long ticksStarted;
+
+    /** The time the current tick was started at, in nanoseconds. */
+    private long tickStart;
+
+    /** The time the current phase was started at, in nanoseconds. */
+    private long phaseStart;
+
+    /**
+     * Create a new {@link TickProfiler}.
+     */
+    private TickProfiler() {
+        for (TickPhase phase : TickPhase.values()) {
+            phases.put(phase, new TimingHistogram());
+        }
+    }
+
+    /**
+     * Starts profiling a new tick. Should only be called from the game thread.
+     */
+    protected void startTick() {
+        long now = System.nanoTime();
+
+        /**
+         * Ticks are scheduled at a fixed rate, so a tick starting late means
+         * the executor is running it back to back to catch up. The monotonic
+         * clock is used so changes to the wall clock can't make every tick
+         * look late.
+         */
+        if (ticksStarted == 0) {
+            firstTickStart = now;
+        } else if (now - (firstTickStart + TimeUnit.MILLISECONDS.toNanos(ticksStarted * Rs2Engine.TICK_RATE)) > TimeUnit.MILLISECONDS.toNanos(CATCH_UP_TOLERANCE)) {
+            catchUpTicks++;
+        }
+
+        ticksStarted++;
+        tickStart = now;
+
+        if (shedding) {
+            shedTicks++;
+        }
+    }
+
+    /**
+     * Starts profiling a phase of the current tick. Should only be called from
+     * the game thread.
+     */
+    protected void startPhase() {
+        phaseStart = System.nanoTime();
+    }
+
+    /**
+     * Finishes profiling a phase of the current tick. Should only be called
+     * from the game thread.
+     * 
+     * @param phase
+     *        the phase that was carried out.
+     */
+    protected void endPhase(TickPhase phase) {
+        phases.get(phase).record(System.nanoTime() - phaseStart);
+    }
+
+    /**
+     * Finishes profiling the current tick and decides if work should be shed
+     * during the next one. Should only be called from the game thread.
+     */
+    protected void endTick() {
+        long elapsed = System.nanoTime() - tickStart;
+        boolean overrun = elapsed > TimeUnit.MILLISECONDS.toNanos(Rs2Engine.TICK_RATE);
+        ticks.record(elapsed);
+
+        if (overrun) {
+            overruns++;
+        }
+
+        /** Keep shedding work until a tick comes in under the tick rate. */
+        shedding = adaptiveShedding && overrun;
+    }
+
+    /**
+     * Records the outgoing traffic of every player during the current tick.
+     * Should only be called from the game thread.
+     * 
+     * @param packets
+     *        the amount of packets queued.
+     * @param bytes
+     *        the amount of bytes queued.
+     * @param writes
+     *        the amount of socket writes made.
+     */
+    public void recordTraffic(int packets, int bytes, int writes) {
+        packetsLastTick = packets;
+        bytesLastTick = bytes;
+        writesLastTick = writes;
+    }
+
+    /**
+     * Records how many npcs were pulsed and how many were asleep during the
+     * current tick. Should only be called from the game thread.
+     * 
+     * @param active
+     *        the amount of npcs that were pulsed.
+     * @param sleeping
+     *        the amount of npcs that were asleep.
+     */
+    public void recordNpcs(int active, int sleeping) {
+        activeNpcs = active;
+        sleepingNpcs = sleeping;
+    }
+
+    /**
+     * Gets if non-critical work should be skipped this tick because the
+     * previous tick ran over the tick rate.
+     * 
+     * @return true if non-critical work should be skipped.
+     */
+    public boolean isShedding() {
+        return shedding;
+    }
+
+    @Override
+    public long getTicks() {
+        return ticks.getTotalCount();
+    }
+
+    @Override
+    public long getOverruns() {
+        return overruns;
+    }
+
+    @Override
+    public long getCatchUpTicks() {
+        return catchUpTicks;
+    }
+
+    @Override
+    public long getShedTicks() {
+        return shedTicks;
+    }
+
+    @Override
+    public int getPacketsLastTick() {
+        return packetsLastTick;
+    }
+
+    @Override
+    public int getBytesLastTick() {
+        return bytesLastTick;
+    }
+
+    @Override
+    public int getWritesLastTick() {
+        return writesLastTick;
+    }
+
+    @Override
+    public int getActiveNpcs() {
+        return activeNpcs;
+    }
+
+    @Override
+    public int getSleepingNpcs() {
+        return sleepingNpcs;
+    }
+
+    @Override
+    public double getTickP50Millis() {
+        return toMillis(ticks.getPercentile(50));
+    }
+
+    @Override
+    public double getTickP99Millis() {
+        return toMillis(ticks.getPercentile(99));
+    }
+
+    @Override
+    public double getTickMaxMillis() {
+        return toMillis(ticks.getMaximum());
+    }
+
+    @Override
+    public String[] getPhaseTimings() {
+        List<String> timings = new ArrayList<String>();
+
+        for (TickPhase phase : TickPhase.values()) {
+            timings.add(describe(phase.name().toLowerCase(), phases.get(phase)));
+        }
+
+        timings.add(describe("total", ticks));
+        return timings.toArray(new String[timings.size()]);
+    }
+
+    @Override
+    public boolean isAdaptiveShedding() {
+        return adaptiveShedding;
+    }
+
+    @Override
+    public void setAdaptiveShedding(boolean adaptiveShedding) {
+        this.adaptiveShedding = adaptiveShedding;
+
+        if (!adaptiveShedding) {
+            shedding = false;
+        }
+    }
+
+    @Override
+    public void reset() {
+        for (TimingHistogram histogram : phases.values()) {
+            histogram.reset();
+        }
+
+        ticks.reset();
+        overruns = 0;
+        catchUpTicks = 0;
+        shedTicks = 0;
+    }
+
+    /**
+     * Describes the timings recorded in a histogram on a single line.
+     * 
+     * @param name
+     *        the name of the timings.
+     * @param histogram
+     *        the histogram to describe.
+     * @return the description of the timings.
+     */
+    private static String describe(String name, TimingHistogram histogram) {
+        return name + ": p50=" + toMillis(histogram.getPercentile(50)) + "ms, p99=" + toMillis(histogram.getPercentile(99)) + "ms, max=" + toMillis(histogram.getMaximum()) + "ms";
+    }
+
+    /**
+     * Converts nanoseconds to milliseconds rounded to two decimal places.
+     * 
+     * @param nanos
+     *        the nanoseconds to convert.
+     * @return the amount of milliseconds.
+     */
+    private static double toMillis(long nanos) {
+        return Math.round(nanos / 10000.0) / 100.0;
+    }
+
+    /**
+     * Gets the singleton instance.
+     * 
+     * @return the singleton instance.
+     */
+    public static TickProfiler getProfiler() {
+        return singleton;
+    }
+}
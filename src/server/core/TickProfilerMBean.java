@@ -0,0 +1,121 @@
+package server.core;
+
+/**
+ * The management interface that exposes the {@link TickProfiler} through JMX.
+ * 
+ * @author lare96
+ */
+public interface TickProfilerMBean {
+
+    /**
+     * Gets the amount of ticks that have been profiled.
+     * 
+     * @return the amount of profiled ticks.
+     */
+    public long getTicks();
+
+    /**
+     * Gets the amount of ticks that took longer than the tick rate.
+     * 
+     * @return the amount of overrunning ticks.
+     */
+    public long getOverruns();
+
+    /**
+     * Gets the amount of ticks that started late in order to catch up after an
+     * overrunning tick.
+     * 
+     * @return the amount of catch up ticks.
+     */
+    public long getCatchUpTicks();
+
+    /**
+     * Gets the amount of ticks where non-critical work was shed.
+     * 
+     * @return the amount of ticks where work was shed.
+     */
+    public long getShedTicks();
+
+    /**
+     * Gets the amount of packets queued for players during the last tick.
+     * 
+     * @return the amount of packets queued.
+     */
+    public int getPacketsLastTick();
+
+    /**
+     * Gets the amount of bytes queued for players during the last tick.
+     * 
+     * @return the amount of bytes queued.
+     */
+    public int getBytesLastTick();
+
+    /**
+     * Gets the amount of socket writes made for players during the last tick.
+     * 
+     * @return the amount of socket writes made.
+     */
+    public int getWritesLastTick();
+
+    /**
+     * Gets the amount of npcs that were pulsed during the last tick.
+     * 
+     * @return the amount of active npcs.
+     */
+    public int getActiveNpcs();
+
+    /**
+     * Gets the amount of npcs that were asleep during the last tick.
+     * 
+     * @return the amount of sleeping npcs.
+     */
+    public int getSleepingNpcs();
+
+    /**
+     * Gets the median duration of an entire tick.
+     * 
+     * @return the median tick duration in milliseconds.
+     */
+    public double getTickP50Millis();
+
+    /**
+     * Gets the 99th percentile duration of an entire tick.
+     * 
+     * @return the 99th percentile tick duration in milliseconds.
+     */
+    public double getTickP99Millis();
+
+    /**
+     * Gets the longest duration of an entire tick.
+     * 
+     * @return the longest tick duration in milliseconds.
+     */
+    public double getTickMaxMillis();
+
+    /**
+     * Gets a line of timings for every phase of the tick.
+     * 
+     * @return the phase timings.
+     */
+    public String[] getPhaseTimings();
+
+    /**
+     * Gets if non-critical work is shed when ticks overrun.
+     * 
+     * @return true if adaptive shedding is enabled.
+     */
+    public boolean isAdaptiveShedding();
+
+    /**
+     * Sets if non-critical work should be shed when ticks overrun.
+     * 
+     * @param adaptiveShedding
+     *        true if adaptive shedding should be enabled.
+     */
+    public void setAdaptiveShedding(boolean adaptiveShedding);
+
+    /**
+     * Clears every timing and counter that has been recorded.
+     */
+    public void reset();
+}
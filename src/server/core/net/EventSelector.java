@@ -2,19 +2,32 @@ package server.core.net;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.nio.channels.CancelledKeyException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.logging.Logger;
 
 import server.Main;
 import server.core.Rs2Engine;
+import server.core.ThreadProvider;
+import server.core.TickProfiler;
 import server.core.net.Session.Stage;
+import server.core.net.packet.InboundPacket;
 import server.core.net.packet.PacketBuffer;
 import server.core.net.packet.PacketDecoder;
 import server.core.task.impl.BuildSessionTask;
 import server.util.Misc;
+import server.world.World;
+import server.world.entity.player.Player;
 
 /**
  * A reactor that uses a selector to determine when connected client sessions
@@ -25,6 +38,40 @@ import server.util.Misc;
  */
 public final class EventSelector {
 
+    /**
+     * If the selector should run on its own dedicated network thread instead
+     * of the game thread. When this is enabled, sockets are read and packets
+     * are framed continuously as data arrives and queued up for each player,
+     * and the game thread only has to decode the queued packets every tick.
+     */
+    public static final boolean DEDICATED_NETWORK_THREAD = false;
+
+    /**
+     * The maximum amount of time in milliseconds the network thread will block
+     * waiting for network events. This also bounds how long it takes for write
+     * interest registered on the game thread to be picked up.
+     */
+    private static final int SELECT_TIMEOUT = 5;
+
+    /**
+     * The maximum amount of queued packets that will be decoded for a single
+     * player every tick when using a dedicated network thread.
+     */
+    public static final int MAXIMUM_PACKETS_PER_TICK = 15;
+
+    /**
+     * The maximum amount of packets that can be queued for a single player
+     * before they are disconnected for flooding.
+     */
+    public static final int MAXIMUM_QUEUED_PACKETS = 150;
+
+    /**
+     * The maximum amount of players that will be admitted into the world every
+     * tick once their saved data has been loaded. Anyone else stays queued
+     * until the next tick, so a flood of logins is spread out over a few ticks.
+     */
+    public static final int MAXIMUM_LOGINS_PER_TICK = 25;
+
     /** A logger for printing information. */
     private static Logger logger;
 
@@ -34,6 +81,30 @@ public final class EventSelector {
     /** A server socket channel that will accept incoming connections. */
     private static ServerSocketChannel server;
 
+    /** Sessions that have data queued and are waiting to be flushed. */
+    private static Queue<Session> pendingFlush = new ConcurrentLinkedQueue<Session>();
+
+    /**
+     * Sessions handed from the network thread to the game thread because they
+     * are logging in or need to be disconnected.
+     */
+    private static Queue<Session> pendingSessions = new ConcurrentLinkedQueue<Session>();
+
+    /** Sessions that have loaded their saved data and are waiting to login. */
+    private static Queue<Session> pendingLogins = new ConcurrentLinkedQueue<Session>();
+
+    /** The username hashes of the players that are currently loading. */
+    private static Set<Long> loadingLogins = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+
+    /**
+     * Changes to the interest of keys made on the game thread, waiting to be
+     * applied on the network thread so they don't race with its own changes.
+     */
+    private static Queue<InterestChange> interestChanges = new ConcurrentLinkedQueue<InterestChange>();
+
+    /** The executor running the dedicated network thread. */
+    private static ExecutorService networkExecutor;
+
     /** So this class cannot be instantiated. */
     private EventSelector() {
 
@@ -63,6 +134,25 @@ public final class EventSelector {
         server.configureBlocking(false);
         server.socket().bind(new InetSocketAddress("127.0.0.1", Main.PORT));
         server.register(selector, SelectionKey.OP_ACCEPT);
+
+        /** Start the network thread if we need to. */
+        if (DEDICATED_NETWORK_THREAD && networkExecutor == null) {
+            networkExecutor = Executors.newSingleThreadExecutor(new ThreadProvider("NetworkThread", Thread.MAX_PRIORITY, true, false));
+            networkExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    while (true) {
+                        try {
+                            applyInterestChanges();
+                            select(SELECT_TIMEOUT);
+                            selectNetworkThread();
+                        } catch (Exception e) {
+                            e.printStackTrace();
+                        }
+                    }
+                }
+            });
+        }
     }
 
     /**
@@ -70,12 +160,85 @@ public final class EventSelector {
      * those events straight away for them. Accept events are pushed to the
      * engine and read/write events are handled right on the game thread as soon
      * as they are recieved.
+     * <p>
+     * When using a dedicated network thread, this instead handles the sessions
+     * handed over by the network thread and decodes the packets that have been
+     * queued for every player.
      */
     public static void tick() {
+        if (DEDICATED_NETWORK_THREAD) {
+            handlePendingSessions();
+            admitPendingLogins();
+            decodeQueuedPackets();
+            return;
+        }
+
+        select(0);
+        admitPendingLogins();
+
+        for (Iterator<SelectionKey> iterator = getSelector().selectedKeys().iterator(); iterator.hasNext();) {
+            SelectionKey key = iterator.next();
+
+            /** Remove the key if its invalid. */
+            if (!key.isValid()) {
+                iterator.remove();
+
+                /** Accept the key concurrently if needed. */
+            } else if (key.isAcceptable()) {
+                try {
+                    Rs2Engine.pushTask(new BuildSessionTask());
+                } finally {
+                    iterator.remove();
+                }
+                /** Decode packets for the key if needed. */
+            } else if (key.isReadable()) {
+                Session session = (Session) key.attachment();
+
+                /** Check if the session is valid. */
+                if (session == null) {
+                    continue;
+                }
+
+                try {
+                    if (!read(session, false)) {
+                        session.disconnect();
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    session.disconnect();
+                } finally {
+                    iterator.remove();
+                }
+
+                /** Send any queued data if needed. */
+            } else if (key.isWritable()) {
+                Session session = (Session) key.attachment();
 
-        /** Selects the keys ready for network events. */
+                try {
+                    if (session != null) {
+                        session.flush();
+                    }
+                } finally {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Selects the keys ready for network events, restarting the selector if
+     * anything goes wrong.
+     * 
+     * @param timeout
+     *        the amount of milliseconds to block for, or 0 to not block at all.
+     */
+    private static void select(int timeout) {
         try {
-            selector.selectNow();
+            if (timeout > 0) {
+                selector.select(timeout);
+            } else {
+                selector.selectNow();
+            }
         } catch (IOException io) {
             io.printStackTrace();
 
@@ -98,162 +261,441 @@ public final class EventSelector {
                 throw new IllegalStateException("Unable to restart reactor after shutdown!");
             }
         }
+    }
 
+    /**
+     * Handles the selected keys on the dedicated network thread. Connections
+     * are accepted right away, and packets from logged in sessions are framed
+     * and queued for the game thread. Logging in sessions are handed over to
+     * the game thread completely until their login has been handled.
+     */
+    private static void selectNetworkThread() {
         for (Iterator<SelectionKey> iterator = getSelector().selectedKeys().iterator(); iterator.hasNext();) {
             SelectionKey key = iterator.next();
+            iterator.remove();
 
-            /** Remove the key if its invalid. */
+            /** Ignore the key if its invalid. */
             if (!key.isValid()) {
-                iterator.remove();
+                continue;
+            }
+
+            /** Accept the connection right on this thread. */
+            if (key.isAcceptable()) {
+                new BuildSessionTask().run();
+                continue;
+            }
+
+            Session session = (Session) key.attachment();
+
+            /** Check if the session is valid. */
+            if (session == null) {
+                continue;
+            }
+
+            /** Hand the flushing back to the game thread. */
+            if (key.isWritable()) {
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+                queueFlush(session);
+            }
+
+            if (key.isReadable()) {
+
+                /** Logins are handled on the game thread. */
+                if (session.getStage() != Stage.LOGGED_IN) {
+                    key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+                    pendingSessions.add(session);
+                    continue;
+                }
 
-                /** Accept the key concurrently if needed. */
-            } else if (key.isAcceptable()) {
                 try {
-                    Rs2Engine.pushTask(new BuildSessionTask());
-                } finally {
-                    iterator.remove();
+                    if (!read(session, true)) {
+                        session.setDisconnectRequested(true);
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    session.setDisconnectRequested(true);
                 }
-                /** Decode packets for the key if needed. */
-            } else if (key.isReadable()) {
-                Session session = (Session) key.attachment();
 
-                /** Check if the session is valid. */
-                if (session == null) {
+                /** Stop reading and let the game thread disconnect them. */
+                if (session.isDisconnectRequested()) {
+                    key.interestOps(0);
+                    pendingSessions.add(session);
+                }
+            }
+        }
+    }
+
+    /**
+     * Handles all of the sessions handed over from the network thread, either
+     * disconnecting them or handling their login and then giving them back to
+     * the network thread.
+     */
+    private static void handlePendingSessions() {
+        Session session;
+
+        while ((session = pendingSessions.poll()) != null) {
+            if (session.getStage() == Stage.LOGGED_OUT) {
+                continue;
+            }
+
+            if (session.isDisconnectRequested()) {
+                session.disconnect();
+                continue;
+            }
+
+            try {
+                if (!read(session, false)) {
+                    session.disconnect();
                     continue;
                 }
+            } catch (Exception e) {
+                e.printStackTrace();
+                session.disconnect();
+                continue;
+            }
 
-                try {
+            /** Give the session back to the network thread. */
+            changeInterest(session.getKey(), SelectionKey.OP_READ, true);
+        }
+    }
 
-                    /** Read the incoming data. */
-                    if (session.getSocketChannel().read(session.getInData()) == -1) {
-                        session.disconnect();
-                        continue;
-                    }
+    /**
+     * Adds or removes interest in a network event for a key. When using a
+     * dedicated network thread the change is queued and made on the network
+     * thread instead, which is woken up so it picks up the change straight
+     * away.
+     * 
+     * @param key
+     *        the key to change the interest of.
+     * @param ops
+     *        the network events to add or remove interest in.
+     * @param interested
+     *        true to add interest, false to remove it.
+     */
+    protected static void changeInterest(SelectionKey key, int ops, boolean interested) {
+        if (!DEDICATED_NETWORK_THREAD) {
+            applyInterest(key, ops, interested);
+            return;
+        }
 
-                    /** Handle the received data. */
-                    session.getInData().flip();
+        interestChanges.add(new InterestChange(key, ops, interested));
 
-                    while (session.getInData().hasRemaining()) {
+        /** Removing interest can wait until the next select. */
+        if (interested) {
+            selector.wakeup();
+        }
+    }
 
-                        /** Handle login if we need to. */
-                        if (session.getStage() != Stage.LOGGED_IN) {
-                            session.handleLogin();
-                            break;
-                        }
+    /**
+     * Applies the interest changes queued by the game thread. This should only
+     * be called on the network thread.
+     */
+    private static void applyInterestChanges() {
+        InterestChange change;
 
-                        /** Decode the packet opcode. */
-                        if (session.getPacketOpcode() == -1) {
-                            session.setPacketOpcode(session.getInData().get() & 0xff);
-                            session.setPacketOpcode(session.getPacketOpcode() - session.getDecryptor().getKey() & 0xff);
-                        }
+        while ((change = interestChanges.poll()) != null) {
+            applyInterest(change.key, change.ops, change.interested);
+        }
+    }
 
-                        /** Decode the packet length. */
-                        if (session.getPacketLength() == -1) {
-                            session.setPacketLength(Misc.packetLengths[session.getPacketOpcode()]);
+    /**
+     * Adds or removes interest in a network event for a key right away.
+     * 
+     * @param key
+     *        the key to change the interest of.
+     * @param ops
+     *        the network events to add or remove interest in.
+     * @param interested
+     *        true to add interest, false to remove it.
+     */
+    private static void applyInterest(SelectionKey key, int ops, boolean interested) {
+        if (!key.isValid()) {
+            return;
+        }
 
-                            if (session.getPacketLength() == -1) {
-                                if (!session.getInData().hasRemaining()) {
-                                    session.getInData().flip();
-                                    session.getInData().compact();
-                                    break;
-                                }
+        try {
+            key.interestOps(interested ? key.interestOps() | ops : key.interestOps() & ~ops);
+        } catch (CancelledKeyException e) {
 
-                                session.setPacketLength(session.getInData().get() & 0xff);
-                            }
-                        }
+            /** The session was disconnected in the meantime, nothing to do. */
+        }
+    }
 
-                        /** Decode the packet payload. */
-                        if (session.getInData().remaining() >= session.getPacketLength()) {
-
-                            /**
-                             * Gets the buffer's position before this packet is
-                             * read.
-                             */
-                            int positionBefore = session.getInData().position();
-
-                            /**
-                             * Creates a new buffer for reading packets backed
-                             * by the set data.
-                             */
-                            PacketBuffer.ReadBuffer in = PacketBuffer.newReadBuffer(session.getInData());
-
-                            /**
-                             * Decode and handle the packet with the previously
-                             * created buffer.
-                             */
-                            try {
-                                if (PacketDecoder.getPackets()[session.getPacketOpcode()] != null) {
-                                    PacketDecoder.getPackets()[session.getPacketOpcode()].decode(session.getPlayer(), in);
-                                } else {
-                                    logger.info(session.getPlayer() + " unhandled packet " + session.getPacketOpcode());
-                                }
-
-                                /**
-                                 * Take care of any errors that may have
-                                 * occurred.
-                                 */
-                            } catch (Exception ex) {
-                                ex.printStackTrace();
-
-                                /**
-                                 * Make sure we have finished reading all of
-                                 * this packet.
-                                 */
-                            } finally {
-                                int read = session.getInData().position() - positionBefore;
-
-                                for (int i = read; i < session.getPacketLength(); i++) {
-                                    session.getInData().get();
-                                }
-                            }
+    /**
+     * Finishes the logins of sessions that have loaded their saved data,
+     * admitting no more than {@link #MAXIMUM_LOGINS_PER_TICK} players.
+     */
+    private static void admitPendingLogins() {
+        Session session;
+        int admitted = 0;
+
+        while (admitted < MAXIMUM_LOGINS_PER_TICK && (session = pendingLogins.poll()) != null) {
+            try {
+                session.finishLogin();
+            } catch (Exception e) {
+                e.printStackTrace();
+                session.disconnect();
+            }
+            admitted++;
+        }
+    }
+
+    /**
+     * Decodes the packets queued by the network thread for every player,
+     * decoding no more than {@link #MAXIMUM_PACKETS_PER_TICK} each.
+     */
+    private static void decodeQueuedPackets() {
+        for (Player player : World.getPlayers()) {
+            if (player == null) {
+                continue;
+            }
 
-                            /** Reset for the next packet. */
-                            session.setPacketOpcode(-1);
-                            session.setPacketLength(-1);
-                        } else {
+            Session session = player.getSession();
+            InboundPacket packet;
+            int decoded = 0;
+
+            while (decoded < MAXIMUM_PACKETS_PER_TICK && (packet = session.pollInboundPacket()) != null) {
+                decode(session, packet.getOpcode(), packet.getLength(), PacketBuffer.newReadBuffer(packet.getPayload()));
+                decoded++;
+            }
+        }
+    }
+
+    /**
+     * Reads incoming data for a session and frames it into packets. Sessions
+     * that aren't logged in yet will have their login handled instead.
+     * 
+     * @param session
+     *        the session to read data for.
+     * @param queue
+     *        if framed packets should be queued for the game thread instead of
+     *        being decoded straight away.
+     * @return false if the end of the stream has been reached.
+     * @throws Exception
+     *         if any errors occur while reading.
+     */
+    private static boolean read(Session session, boolean queue) throws Exception {
+
+        /** Read the incoming data. */
+        if (session.getSocketChannel().read(session.getInData()) == -1) {
+            return false;
+        }
+
+        /** Handle the received data. */
+        session.getInData().flip();
+
+        try {
+            while (session.getInData().hasRemaining()) {
+
+                /** Handle login if we need to. */
+                if (session.getStage() != Stage.LOGGED_IN) {
+                    session.handleLogin();
+                    break;
+                }
+
+                /** Decode the packet opcode. */
+                if (session.getFrameOpcode() == -1) {
+                    session.setFrameOpcode(session.getInData().get() & 0xff);
+                    session.setFrameOpcode(session.getFrameOpcode() - session.getDecryptor().getKey() & 0xff);
+                }
+
+                /** Decode the packet length. */
+                if (session.getFrameLength() == -1) {
+                    session.setFrameLength(Misc.packetLengths[session.getFrameOpcode()]);
+
+                    if (session.getFrameLength() == -1) {
+                        if (!session.getInData().hasRemaining()) {
                             session.getInData().flip();
                             session.getInData().compact();
                             break;
                         }
+
+                        session.setFrameLength(session.getInData().get() & 0xff);
                     }
+                }
 
-                    /** Clear everything for the next read. */
-                    session.getInData().clear();
-                } catch (Exception e) {
-                    e.printStackTrace();
-                    session.disconnect();
-                } finally {
-                    iterator.remove();
+                /** Decode the packet payload. */
+                if (session.getInData().remaining() >= session.getFrameLength()) {
+
+                    /** Either queue the packet or decode it right away. */
+                    if (queue) {
+                        byte[] payload = new byte[session.getFrameLength()];
+                        session.getInData().get(payload);
+
+                        if (!session.queueInboundPacket(new InboundPacket(session.getFrameOpcode(), payload))) {
+                            logger.info(session + " has too many packets queued, disconnecting!");
+                            return false;
+                        }
+                    } else {
+
+                        /**
+                         * Gets the buffer's position before this packet is
+                         * read.
+                         */
+                        int positionBefore = session.getInData().position();
+
+                        /**
+                         * Creates a new buffer for reading packets backed by
+                         * the set data.
+                         */
+                        PacketBuffer.ReadBuffer in = PacketBuffer.newReadBuffer(session.getInData());
+
+                        /**
+                         * Decode and handle the packet with the previously
+                         * created buffer, making sure we have finished reading
+                         * all of this packet afterwards.
+                         */
+                        try {
+                            decode(session, session.getFrameOpcode(), session.getFrameLength(), in);
+                        } finally {
+                            int read = session.getInData().position() - positionBefore;
+
+                            for (int i = read; i < session.getFrameLength(); i++) {
+                                session.getInData().get();
+                            }
+                        }
+                    }
+
+                    /** Reset for the next packet. */
+                    session.setFrameOpcode(-1);
+                    session.setFrameLength(-1);
+                } else {
+                    session.getInData().flip();
+                    session.getInData().compact();
+                    break;
                 }
+            }
+        } finally {
 
-                /** Send any queued data if needed. */
-            } else if (key.isWritable()) {
-                Session session = (Session) key.attachment();
+            /** Clear everything for the next read. */
+            session.getInData().clear();
+        }
+        return true;
+    }
 
-                try {
-                    /** Prepare the buffer. */
-                    session.getOutData().flip();
+    /**
+     * Decodes and handles a single packet for a session.
+     * 
+     * @param session
+     *        the session to decode the packet for.
+     * @param opcode
+     *        the opcode of the packet.
+     * @param length
+     *        the length of the packet.
+     * @param in
+     *        the buffer for reading the packet.
+     */
+    private static void decode(Session session, int opcode, int length, PacketBuffer.ReadBuffer in) {
+        session.setPacketOpcode(opcode);
+        session.setPacketLength(length);
 
-                    /** Write the data. */
-                    session.getSocketChannel().write(session.getOutData());
+        try {
+            if (PacketDecoder.getPackets()[opcode] != null) {
+                PacketDecoder.getPackets()[opcode].decode(session.getPlayer(), in);
+            } else {
+                logger.info(session.getPlayer() + " unhandled packet " + opcode);
+            }
 
-                    /** Check if all the data was sent. */
-                    if (!session.getOutData().hasRemaining()) {
+            /** Take care of any errors that may have occurred. */
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+    }
 
-                        /** And clear the buffer. */
-                        session.getOutData().clear();
-                    } else {
-                        /** Not all data was sent - compact it! */
-                        session.getOutData().compact();
-                    }
-                } catch (IOException e) {
-                    e.printStackTrace();
+    /**
+     * Flushes every session that has had data queued since the last flush,
+     * this should be called once at the end of every tick so all of the
+     * packets for a session are written with as few socket writes as
+     * possible.
+     */
+    public static void flush() {
+        Session session;
+
+        while ((session = pendingFlush.poll()) != null) {
+
+            /** Disconnect anyone flagged while packets were being sent. */
+            if (session.isDisconnectPending()) {
+                if (session.getStage() != Stage.LOGGED_OUT) {
                     session.disconnect();
-                } finally {
-                    iterator.remove();
                 }
+                continue;
+            }
+
+            /** Sessions queued by the network thread aren't flagged. */
+            if (!session.isFlushPending()) {
+                session.flush();
+                continue;
             }
+
+            session.setFlushPending(false);
+            session.flush();
         }
+
+        /** Roll the traffic counters over for every player, even idle ones. */
+        int packets = 0;
+        int bytes = 0;
+        int writes = 0;
+
+        for (Player player : World.getPlayers()) {
+            if (player == null) {
+                continue;
+            }
+
+            session = player.getSession();
+            session.rollCounters();
+            packets += session.getPacketsLastTick();
+            bytes += session.getBytesLastTick();
+            writes += session.getWritesLastTick();
+        }
+
+        TickProfiler.getProfiler().recordTraffic(packets, bytes, writes);
+    }
+
+    /**
+     * Queues a session to be flushed at the end of the tick.
+     * 
+     * @param session
+     *        the session to flush.
+     */
+    public static void queueFlush(Session session) {
+        pendingFlush.add(session);
+    }
+
+    /**
+     * Queues a session that has finished loading its saved data to be admitted
+     * into the world on the game thread.
+     * 
+     * @param session
+     *        the session that has finished loading.
+     * @param response
+     *        the login response determined while loading.
+     */
+    public static void queueLogin(Session session, int response) {
+        session.setLoginResponse(response);
+        pendingLogins.add(session);
+    }
+
+    /**
+     * Reserves a username for a session that is about to start loading, so the
+     * same account can't be loaded twice at the same time.
+     * 
+     * @param usernameHash
+     *        the username hash to reserve.
+     * @return true if the username was reserved, false if it's already
+     *         loading.
+     */
+    protected static boolean reserveLogin(long usernameHash) {
+        return loadingLogins.add(usernameHash);
+    }
+
+    /**
+     * Releases a username that was reserved while loading.
+     * 
+     * @param usernameHash
+     *        the username hash to release.
+     */
+    protected static void releaseLogin(long usernameHash) {
+        loadingLogins.remove(usernameHash);
     }
 
     /**
@@ -273,4 +715,38 @@ public final class EventSelector {
     public static ServerSocketChannel getServer() {
         return EventSelector.server;
     }
+
+    /**
+     * A change to the interest of a key waiting to be applied on the network
+     * thread.
+     * 
+     * @author lare96
+     */
+    private static class InterestChange {
+
+        /** The key to change the interest of. */
+        private final SelectionKey key;
+
+        /** The network events to add or remove interest in. */
+        private final int ops;
+
+        /** If interest is being added or removed. */
+        private final boolean interested;
+
+        /**
+         * Create a new {@link InterestChange}.
+         * 
+         * @param key
+         *        the key to change the interest of.
+         * @param ops
+         *        the network events to add or remove interest in.
+         * @param interested
+         *        true to add interest, false to remove it.
+         */
+        public InterestChange(SelectionKey key, int ops, boolean interested) {
+            this.key = key;
+            this.ops = ops;
+            this.interested = interested;
+        }
+    }
 }
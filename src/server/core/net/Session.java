@@ -5,12 +5,20 @@ import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
 import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
+import server.core.Rs2Engine;
+import server.core.net.packet.InboundPacket;
 import server.core.net.packet.PacketBuffer;
 import server.core.net.packet.PacketBuffer.ReadBuffer;
 import server.core.net.packet.PacketBuffer.WriteBuffer;
 import server.core.net.packet.PacketEncoder;
+import server.core.task.impl.PlayerLoadTask;
 import server.core.worker.TaskFactory;
 import server.util.Misc;
 import server.world.World;
@@ -23,7 +31,6 @@ import server.world.entity.player.content.AssignWeaponAnimation;
 import server.world.entity.player.content.AssignWeaponInterface;
 import server.world.entity.player.content.RestoreEnergyWorker;
 import server.world.entity.player.content.RestoreStatWorker;
-import server.world.entity.player.file.ReadPlayerFileEvent;
 import server.world.entity.player.minigame.Minigame;
 import server.world.entity.player.minigame.MinigameFactory;
 import server.world.entity.player.skill.SkillEvent;
@@ -54,6 +61,13 @@ public final class Session {
     private static final BigInteger RSA_MODULUS = new BigInteger("95938610921572746524650133814858151901913076652480429598183870656291246099349831798849348614985734300731049329237933048794504022897746723376579898629175025215880393800715209863314290417958725518169765091231358927530763716352174212961746574137578805287960782611757859202906381434888168466423570348398899194541"),
             RSA_EXPONENT = new BigInteger("5378312350669976818157141639620196989298085716789189287634886259536048921510158872529601703029702119732149400119324443005798370082950416736889917871791338756888938417005708590957237003926710452309501641625737520695929480769820807041774825159548922857357239208866414166598649761006651610675718558204518453657");
 
+    /**
+     * The maximum amount of bytes that can be waiting to be written to the
+     * socket before this session is disconnected. Clients that don't read
+     * their data fast enough will hit this limit.
+     */
+    private static final int MAXIMUM_PENDING_BYTES = 262144;
+
     /** A {@link Logger} for printing debugging info. */
     private static Logger logger = Logger.getLogger(Session.class.getSimpleName());
 
@@ -63,21 +77,90 @@ public final class Session {
     /** The buffer for reading data. */
     private final ByteBuffer inData;
 
-    /** The buffer for writing data. */
+    /**
+     * The buffer that outgoing packets are appended to until they are flushed
+     * at the end of the tick.
+     */
     private final ByteBuffer outData;
 
+    /**
+     * Packets that didn't fit in the outgoing buffer, waiting to be written
+     * after it in order.
+     */
+    private final Deque<ByteBuffer> outOverflow = new ArrayDeque<ByteBuffer>();
+
+    /** The amount of bytes waiting in the overflow queue. */
+    private int overflowBytes;
+
+    /** If this session is waiting to be flushed. */
+    private boolean flushPending;
+
+    /** If write interest was last registered for this session's key. */
+    private boolean writeInterest;
+
+    /** The amount of packets queued this tick. */
+    private int packetsQueued;
+
+    /** The amount of bytes queued this tick. */
+    private int bytesQueued;
+
+    /** The amount of socket writes made this tick. */
+    private int socketWrites;
+
+    /** The amount of packets queued last tick. */
+    private int packetsLastTick;
+
+    /** The amount of bytes queued last tick. */
+    private int bytesLastTick;
+
+    /** The amount of socket writes made last tick. */
+    private int writesLastTick;
+
     /** The socket channel for this session. */
     private SocketChannel socketChannel;
 
     /** The login stage this session is currently in. */
-    private Stage stage;
+    private volatile Stage stage;
 
-    /** The packet opcode for this session. */
+    /** The opcode of the packet currently being decoded. */
     private int packetOpcode = -1;
 
-    /** The packet length for this session. */
+    /** The length of the packet currently being decoded. */
     private int packetLength = -1;
 
+    /** The opcode of the packet currently being framed. */
+    private int frameOpcode = -1;
+
+    /** The length of the packet currently being framed. */
+    private int frameLength = -1;
+
+    /** Packets framed by the network thread waiting to be decoded. */
+    private final Queue<InboundPacket> inQueue = new ConcurrentLinkedQueue<InboundPacket>();
+
+    /** The amount of packets waiting to be decoded. */
+    private final AtomicInteger inQueueSize = new AtomicInteger();
+
+    /** If the network thread wants this session to be disconnected. */
+    private volatile boolean disconnectRequested;
+
+    /**
+     * If this session fell too far behind on reading its data and should be
+     * disconnected by the game thread.
+     */
+    private volatile boolean disconnectPending;
+
+    /** The login response determined while loading saved data. */
+    private volatile int loginResponse;
+
+    /** If saved data is being loaded for this session. */
+    private volatile boolean loading;
+
+    /**
+     * If the connection was closed while saved data was being loaded, and
+     * should be finished disconnecting once loading is done.
+     */
+    private volatile boolean loadCancelled;
+
     /** The packet encryptor for this session. */
     private ISAACCipher encryptor;
 
@@ -102,7 +185,7 @@ public final class Session {
      * @author blakeman8192
      */
     public enum Stage {
-        CONNECTED, LOGGING_IN, LOGGED_IN, LOGGED_OUT
+        CONNECTED, LOGGING_IN, LOADING, LOGGED_IN, LOGGED_OUT
     }
 
     /**
@@ -115,7 +198,7 @@ public final class Session {
         this.key = key;
         stage = Stage.CONNECTED;
         inData = ByteBuffer.allocateDirect(512);
-        outData = ByteBuffer.allocateDirect(8192);
+        outData = ByteBuffer.allocateDirect(16384);
 
         if (key != null) {
             socketChannel = (SocketChannel) key.channel();
@@ -129,8 +212,22 @@ public final class Session {
      * Disconnects the player from this session.
      */
     public void disconnect() {
-        try {
-            if (player != null) {
+
+        /**
+         * The load task is still filling in the player, so the disconnect is
+         * finished on the game thread once it's done.
+         */
+        if (loading) {
+            if (!loadCancelled) {
+                loadCancelled = true;
+                EventSelector.changeInterest(key, SelectionKey.OP_READ, false);
+            }
+            return;
+        }
+
+        /** Only players that made it into the world have to be logged out. */
+        if (stage == Stage.LOGGED_IN && player != null) {
+            try {
                 for (Minigame minigame : MinigameFactory.getMinigames().values()) {
                     if (minigame.inMinigame(player)) {
                         minigame.fireOnForcedLogout(player);
@@ -149,11 +246,28 @@ public final class Session {
                 if (World.getPlayers().contains(player)) {
                     World.getPlayers().remove(player);
                 }
+            } catch (Exception ex) {
+                ex.printStackTrace();
+            }
+        }
+
+        close();
+    }
+
+    /**
+     * Closes the connection of this session.
+     */
+    private void close() {
+        try {
+
+            /** Try to write anything still queued, like login responses. */
+            if (stage != Stage.LOGGED_OUT) {
+                stage = Stage.LOGGED_OUT;
+                flush();
             }
 
             key.attach(null);
             key.cancel();
-            stage = Stage.LOGGED_OUT;
             socketChannel.close();
             HostGateway.exit(host);
 
@@ -168,36 +282,151 @@ public final class Session {
     }
 
     /**
-     * Sends a buffer to the socket.
+     * Queues a buffer to be written to the socket when this session is next
+     * flushed. Packets for a session are only ever queued by one thread at a
+     * time, so no locking is needed here.
      * 
      * @param buffer
      *        the buffer to send.
      */
     public void send(ByteBuffer buffer) {
-        if (!socketChannel.isOpen())
+        if (socketChannel == null || !socketChannel.isOpen() || disconnectPending)
             return;
 
         /** Prepare the buffer for writing. */
         buffer.flip();
+        int length = buffer.remaining();
+
+        /**
+         * Append it to the outgoing buffer, or the overflow queue if there's
+         * no room left (or older data is already waiting there).
+         */
+        if (outOverflow.isEmpty() && outData.remaining() >= length) {
+            outData.put(buffer);
+        } else {
+            /**
+             * Packets are sent while players are being updated in parallel, so
+             * the disconnect is left to the game thread.
+             */
+            if (overflowBytes + length > MAXIMUM_PENDING_BYTES) {
+                logger.info(this + " has too much data pending, disconnecting!");
+                disconnectPending = true;
+                return;
+            }
+
+            ByteBuffer copy = ByteBuffer.allocate(length);
+            copy.put(buffer);
+            copy.flip();
+            outOverflow.add(copy);
+            overflowBytes += length;
+        }
+
+        packetsQueued++;
+        bytesQueued += length;
+
+        /** Flag this session to be flushed at the end of the tick. */
+        if (!flushPending) {
+            flushPending = true;
+            EventSelector.queueFlush(this);
+        }
+    }
+
+    /**
+     * Writes as much of the queued data as possible to the socket using a
+     * single gathering write. If the socket can't take all of it, write
+     * interest is registered so the rest can be written as soon as the socket
+     * is ready again.
+     */
+    public void flush() {
+        if (socketChannel == null || !socketChannel.isOpen()) {
+            return;
+        }
+
+        if (outData.position() == 0 && outOverflow.isEmpty()) {
+            return;
+        }
 
         try {
+
+            /** Gather the outgoing buffer and the overflow queue. */
+            ByteBuffer[] buffers = new ByteBuffer[outOverflow.size() + 1];
+            outData.flip();
+            buffers[0] = outData;
+            int index = 1;
+
+            for (ByteBuffer overflow : outOverflow) {
+                buffers[index++] = overflow;
+            }
+
             /** ...and write it! */
-            socketChannel.write(buffer);
+            socketChannel.write(buffers);
+            socketWrites++;
 
-            /** If not all the data was sent. */
-            if (buffer.hasRemaining()) {
+            /** Drop everything that was fully written. */
+            outData.compact();
 
-                /** Queue it. */
-                synchronized (outData) {
-                    outData.put(buffer);
-                }
+            while (!outOverflow.isEmpty() && !outOverflow.peek().hasRemaining()) {
+                overflowBytes -= outOverflow.poll().limit();
+            }
+
+            /** Move what we can from the overflow back into the buffer. */
+            while (!outOverflow.isEmpty() && outData.remaining() >= outOverflow.peek().remaining()) {
+                ByteBuffer overflow = outOverflow.poll();
+                overflowBytes -= overflow.limit();
+                outData.put(overflow);
+            }
+
+            /**
+             * Wait for the socket to become writable if there is more, only
+             * removing write interest if it was registered before.
+             */
+            if (outData.position() > 0 || !outOverflow.isEmpty()) {
+                writeInterest = true;
+                EventSelector.changeInterest(key, SelectionKey.OP_WRITE, true);
+            } else if (writeInterest) {
+                writeInterest = false;
+                EventSelector.changeInterest(key, SelectionKey.OP_WRITE, false);
             }
         } catch (Exception ex) {
             ex.printStackTrace();
-            disconnect();
+
+            if (stage != Stage.LOGGED_OUT) {
+                disconnect();
+            }
         }
     }
 
+    /**
+     * Gets if this session is waiting to be flushed.
+     * 
+     * @return true if this session is waiting to be flushed.
+     */
+    protected boolean isFlushPending() {
+        return flushPending;
+    }
+
+    /**
+     * Sets if this session is waiting to be flushed.
+     * 
+     * @param flushPending
+     *        true if this session is waiting to be flushed.
+     */
+    protected void setFlushPending(boolean flushPending) {
+        this.flushPending = flushPending;
+    }
+
+    /**
+     * Rolls the outgoing traffic counters over for the next tick.
+     */
+    public void rollCounters() {
+        packetsLastTick = packetsQueued;
+        bytesLastTick = bytesQueued;
+        writesLastTick = socketWrites;
+        packetsQueued = 0;
+        bytesQueued = 0;
+        socketWrites = 0;
+    }
+
     /**
      * Encodes and sends a packet to the socket.
      * 
@@ -389,12 +618,10 @@ public final class Session {
                 }
 
                 /** Make sure the account credentials are valid. */
-                boolean invalidCredentials = false;
-
                 if (username.isEmpty() || password.isEmpty()) {
-                    username = "invalid";
-                    password = "invalid";
-                    invalidCredentials = true;
+                    sendLoginResponse(Misc.LOGIN_RESPONSE_INVALID_CREDENTIALS);
+                    disconnect();
+                    return;
                 }
 
                 /** Lowercase the username for accurate compare results. */
@@ -406,160 +633,201 @@ public final class Session {
                 player.setPassword(password);
                 player.setUsernameHash(Misc.nameToLong(username));
 
-                int response = Misc.LOGIN_RESPONSE_OK;
-
-                /** Check if the player is already logged in. */
-                if (World.getPlayer(player.getUsernameHash()) != null) {
-                    response = Misc.LOGIN_RESPONSE_ACCOUNT_ONLINE;
+                /**
+                 * Check if the player is already logged in, or is already in
+                 * the middle of logging in from another session.
+                 */
+                if (World.getPlayer(player.getUsernameHash()) != null || !EventSelector.reserveLogin(player.getUsernameHash())) {
+                    sendLoginResponse(Misc.LOGIN_RESPONSE_ACCOUNT_ONLINE);
+                    disconnect();
+                    return;
                 }
 
-                /** Load saved data. */
-                if (response == 2) {
-                    ReadPlayerFileEvent read = new ReadPlayerFileEvent(player);
-                    read.run();
-                    response = read.getReturnCode();
-                }
+                /**
+                 * Load saved data off of the game thread, the rest of the login
+                 * is finished once the load is done and the player is admitted
+                 * into the world.
+                 */
+                stage = Stage.LOADING;
+                loading = true;
+                Rs2Engine.pushTask(new PlayerLoadTask(this));
+                break;
+            case LOADING:
 
-                if (player.isBanned()) {
-                    response = Misc.LOGIN_RESPONSE_ACCOUNT_DISABLED;
-                }
+                /** Ignore anything sent while the player is loading. */
+                break;
+            case LOGGED_OUT:
+                disconnect();
+                break;
+            case LOGGED_IN:
+                disconnect();
+                break;
+        }
+    }
 
-                /** Load player rights and the client response code. */
-                PacketBuffer.WriteBuffer resp = PacketBuffer.newWriteBuffer(3);
-                resp.writeByte(invalidCredentials ? Misc.LOGIN_RESPONSE_INVALID_CREDENTIALS : response);
+    /**
+     * Finishes logging in after saved data has been loaded, admitting the
+     * player into the world if the login was successful. This should only be
+     * called on the game thread.
+     */
+    protected void finishLogin() {
+        int response = loginResponse;
+        loading = false;
+        EventSelector.releaseLogin(player.getUsernameHash());
 
-                if (player.getStaffRights() == 3) {
-                    resp.writeByte(2);
-                } else {
-                    resp.writeByte(player.getStaffRights());
-                }
+        /** Don't bother if the connection was closed while loading. */
+        if (stage != Stage.LOADING) {
+            return;
+        }
 
-                resp.writeByte(0);
-                send(resp.getBuffer());
+        /** Finish disconnecting now that the player is no longer loading. */
+        if (loadCancelled) {
+            close();
+            return;
+        }
 
-                if (response != 2) {
-                    disconnect();
-                    return;
-                }
+        if (player.isBanned()) {
+            response = Misc.LOGIN_RESPONSE_ACCOUNT_DISABLED;
+        }
 
-                /** Register this player for processing. */
-                World.getPlayers().add(player);
-
-                /** Update their appearance. */
-                packetBuilder.sendMapRegion();
-                packetBuilder.sendDetails();
-                player.getFlags().flag(Flag.APPEARANCE);
-
-                /** Load sidebar interfaces. */
-                packetBuilder.sendSidebarInterface(1, 3917);
-                packetBuilder.sendSidebarInterface(2, 638);
-                packetBuilder.sendSidebarInterface(3, 3213);
-                packetBuilder.sendSidebarInterface(4, 1644);
-                packetBuilder.sendSidebarInterface(5, 5608);
-                packetBuilder.sendSidebarInterface(6, player.getSpellbook().getSidebarInterface());
-                packetBuilder.sendSidebarInterface(8, 5065);
-                packetBuilder.sendSidebarInterface(9, 5715);
-                packetBuilder.sendSidebarInterface(10, 2449);
-                packetBuilder.sendSidebarInterface(11, 904);
-                packetBuilder.sendSidebarInterface(12, 147);
-                packetBuilder.sendSidebarInterface(13, 962);
-                packetBuilder.sendSidebarInterface(0, 2423);
-
-                /** Teleport the player to the saved position. */
-                if (SOCKET_FLOOD) {
-                    if (player.getStaffRights() > 0) {
-                        player.move(player.getPosition());
-                    } else {
-                        player.move(player.getPosition().move(Misc.random(200), Misc.random(200)));
-                    }
-                } else if (!SOCKET_FLOOD) {
-                    player.move(player.getPosition());
-                }
+        /** Load player rights and the client response code. */
+        sendLoginResponse(response);
 
-                /** Refresh skills. */
-                SkillManager.refreshAll(player);
+        if (response != Misc.LOGIN_RESPONSE_OK) {
+            disconnect();
+            return;
+        }
 
-                /** Refresh equipment. */
-                player.getEquipment().refresh();
+        /** Register this player for processing. */
+        World.getPlayers().add(player);
+        stage = Stage.LOGGED_IN;
+
+        /** Update their appearance. */
+        packetBuilder.sendMapRegion();
+        packetBuilder.sendDetails();
+        player.getFlags().flag(Flag.APPEARANCE);
+
+        /** Load sidebar interfaces. */
+        packetBuilder.sendSidebarInterface(1, 3917);
+        packetBuilder.sendSidebarInterface(2, 638);
+        packetBuilder.sendSidebarInterface(3, 3213);
+        packetBuilder.sendSidebarInterface(4, 1644);
+        packetBuilder.sendSidebarInterface(5, 5608);
+        packetBuilder.sendSidebarInterface(6, player.getSpellbook().getSidebarInterface());
+        packetBuilder.sendSidebarInterface(8, 5065);
+        packetBuilder.sendSidebarInterface(9, 5715);
+        packetBuilder.sendSidebarInterface(10, 2449);
+        packetBuilder.sendSidebarInterface(11, 904);
+        packetBuilder.sendSidebarInterface(12, 147);
+        packetBuilder.sendSidebarInterface(13, 962);
+        packetBuilder.sendSidebarInterface(0, 2423);
+
+        /** Teleport the player to the saved position. */
+        if (SOCKET_FLOOD) {
+            if (player.getStaffRights() > 0) {
+                player.move(player.getPosition());
+            } else {
+                player.move(player.getPosition().move(Misc.random(200), Misc.random(200)));
+            }
+        } else if (!SOCKET_FLOOD) {
+            player.move(player.getPosition());
+        }
 
-                /** Refresh inventory. */
-                player.getInventory().refresh();
+        /** Refresh skills. */
+        SkillManager.refreshAll(player);
 
-                /** Send the bonuses. */
-                player.writeBonus();
+        /** Refresh equipment. */
+        player.getEquipment().refresh();
 
-                /** Send skills to the client. */
-                for (int i = 0; i < player.getSkills().length; i++) {
-                    packetBuilder.sendSkill(i, player.getSkills()[i].getLevel(), player.getSkills()[i].getExperience());
-                }
+        /** Refresh inventory. */
+        player.getInventory().refresh();
 
-                /** Update private messages on login. */
-                player.getPrivateMessage().sendPrivateMessageOnLogin();
+        /** Send the bonuses. */
+        player.writeBonus();
 
-                /** Update interface text. */
-                player.loadText();
+        /** Send skills to the client. */
+        for (int i = 0; i < player.getSkills().length; i++) {
+            packetBuilder.sendSkill(i, player.getSkills()[i].getLevel(), player.getSkills()[i].getExperience());
+        }
 
-                /** Update context menus. */
-                packetBuilder.sendPlayerMenu("Trade with", 4);
-                packetBuilder.sendPlayerMenu("Follow", 5);
+        /** Update private messages on login. */
+        player.getPrivateMessage().sendPrivateMessageOnLogin();
 
-                /** Starter package and makeover mage. */
-                if (player.isNewPlayer()) {
-                    player.getInventory().addItemSet(Player.STARTER_PACKAGE);
-                    player.getPacketBuilder().sendInterface(3559);
-                    player.setNewPlayer(false);
-                }
+        /** Update interface text. */
+        player.loadText();
 
-                /** Schedule various workers. */
-                TaskFactory.getFactory().submit(new RestoreEnergyWorker(player));
-                TaskFactory.getFactory().submit(new RestoreStatWorker(player));
+        /** Update context menus. */
+        packetBuilder.sendPlayerMenu("Trade with", 4);
+        packetBuilder.sendPlayerMenu("Follow", 5);
 
-                if (player.getPoisonHits() > 0) {
-                    TaskFactory.getFactory().submit(new CombatPoisonTask(player));
-                }
+        /** Starter package and makeover mage. */
+        if (player.isNewPlayer()) {
+            player.getInventory().addItemSet(Player.STARTER_PACKAGE);
+            player.getPacketBuilder().sendInterface(3559);
+            player.setNewPlayer(false);
+        }
 
-                /** Send the welcome message. */
-                packetBuilder.sendMessage(Player.WELCOME_MESSAGE);
+        /** Schedule various workers. */
+        TaskFactory.getFactory().submit(new RestoreEnergyWorker(player));
+        TaskFactory.getFactory().submit(new RestoreStatWorker(player));
 
-                /** Do minigame stuff. */
-                for (Minigame minigame : MinigameFactory.getMinigames().values()) {
-                    if (minigame.inMinigame(player)) {
-                        minigame.fireOnLogin(player);
-                    }
-                }
+        if (player.getPoisonHits() > 0) {
+            TaskFactory.getFactory().submit(new CombatPoisonTask(player));
+        }
 
-                /** Send the weapon interface. */
-                AssignWeaponInterface.reset(player);
-                AssignWeaponInterface.assignInterface(player, player.getEquipment().getContainer().getItem(Misc.EQUIPMENT_SLOT_WEAPON));
+        /** Send the welcome message. */
+        packetBuilder.sendMessage(Player.WELCOME_MESSAGE);
 
-                /** Assign the new animation based on the weapon. */
-                AssignWeaponAnimation.assignAnimation(player, player.getEquipment().getContainer().getItem(Misc.EQUIPMENT_SLOT_WEAPON));
+        /** Do minigame stuff. */
+        for (Minigame minigame : MinigameFactory.getMinigames().values()) {
+            if (minigame.inMinigame(player)) {
+                minigame.fireOnLogin(player);
+            }
+        }
 
-                /** Check if the player is skulled. */
-                if (player.getSkullTimer() > 0) {
-                    player.setSkullIcon(0);
-                    player.getFlags().flag(Flag.APPEARANCE);
-                    TaskFactory.getFactory().submit(new CombatSkullTask(player));
-                }
+        /** Send the weapon interface. */
+        AssignWeaponInterface.reset(player);
+        AssignWeaponInterface.assignInterface(player, player.getEquipment().getContainer().getItem(Misc.EQUIPMENT_SLOT_WEAPON));
 
-                /** Check if the player is teleblocked. */
-                if (player.getTeleblockTimer() > 0) {
-                    TaskFactory.getFactory().submit(new CombatTeleblockTask(player));
-                }
+        /** Assign the new animation based on the weapon. */
+        AssignWeaponAnimation.assignAnimation(player, player.getEquipment().getContainer().getItem(Misc.EQUIPMENT_SLOT_WEAPON));
 
-                /** Load the configs. */
-                player.loadConfigs();
+        /** Check if the player is skulled. */
+        if (player.getSkullTimer() > 0) {
+            player.setSkullIcon(0);
+            player.getFlags().flag(Flag.APPEARANCE);
+            TaskFactory.getFactory().submit(new CombatSkullTask(player));
+        }
 
-                logger.info(player + " has logged in.");
-                stage = Stage.LOGGED_IN;
-                break;
-            case LOGGED_OUT:
-                disconnect();
-                break;
-            case LOGGED_IN:
-                disconnect();
-                break;
+        /** Check if the player is teleblocked. */
+        if (player.getTeleblockTimer() > 0) {
+            TaskFactory.getFactory().submit(new CombatTeleblockTask(player));
         }
+
+        /** Load the configs. */
+        player.loadConfigs();
+
+        logger.info(player + " has logged in.");
+    }
+
+    /**
+     * Writes the login response to the client.
+     * 
+     * @param response
+     *        the login response to write.
+     */
+    private void sendLoginResponse(int response) {
+        PacketBuffer.WriteBuffer resp = PacketBuffer.newWriteBuffer(3);
+        resp.writeByte(response);
+
+        if (player.getStaffRights() == 3) {
+            resp.writeByte(2);
+        } else {
+            resp.writeByte(player.getStaffRights());
+        }
+
+        resp.writeByte(0);
+        send(resp.getBuffer());
     }
 
     @Override
@@ -659,6 +927,124 @@ public final class Session {
         this.packetLength = packetLength;
     }
 
+    /**
+     * Gets the opcode for the packet currently being framed.
+     * 
+     * @return the frame opcode.
+     */
+    public int getFrameOpcode() {
+        return frameOpcode;
+    }
+
+    /**
+     * Sets the opcode for the packet currently being framed.
+     * 
+     * @param frameOpcode
+     *        the frame opcode to set.
+     */
+    public void setFrameOpcode(int frameOpcode) {
+        this.frameOpcode = frameOpcode;
+    }
+
+    /**
+     * Gets the length for the packet currently being framed.
+     * 
+     * @return the frame length.
+     */
+    public int getFrameLength() {
+        return frameLength;
+    }
+
+    /**
+     * Sets the length for the packet currently being framed.
+     * 
+     * @param frameLength
+     *        the frame length to set.
+     */
+    public void setFrameLength(int frameLength) {
+        this.frameLength = frameLength;
+    }
+
+    /**
+     * Queues a packet framed by the network thread to be decoded on the game
+     * thread.
+     * 
+     * @param packet
+     *        the packet to queue.
+     * @return false if too many packets are already queued.
+     */
+    public boolean queueInboundPacket(InboundPacket packet) {
+        if (inQueueSize.incrementAndGet() > EventSelector.MAXIMUM_QUEUED_PACKETS) {
+            inQueueSize.decrementAndGet();
+            return false;
+        }
+
+        inQueue.add(packet);
+        return true;
+    }
+
+    /**
+     * Retrieves and removes the next packet waiting to be decoded.
+     * 
+     * @return the next packet, or <code>null</code> if there are none.
+     */
+    public InboundPacket pollInboundPacket() {
+        InboundPacket packet = inQueue.poll();
+
+        if (packet != null) {
+            inQueueSize.decrementAndGet();
+        }
+        return packet;
+    }
+
+    /**
+     * Sets the login response determined while loading saved data.
+     * 
+     * @param loginResponse
+     *        the login response to set.
+     */
+    protected void setLoginResponse(int loginResponse) {
+        this.loginResponse = loginResponse;
+    }
+
+    /**
+     * Gets if the connection was closed while saved data was being loaded.
+     * 
+     * @return true if loading was cancelled.
+     */
+    public boolean isLoadCancelled() {
+        return loadCancelled;
+    }
+
+    /**
+     * Gets if the network thread wants this session to be disconnected.
+     * 
+     * @return true if a disconnect was requested.
+     */
+    public boolean isDisconnectRequested() {
+        return disconnectRequested;
+    }
+
+    /**
+     * Sets if the network thread wants this session to be disconnected.
+     * 
+     * @param disconnectRequested
+     *        true if a disconnect was requested.
+     */
+    public void setDisconnectRequested(boolean disconnectRequested) {
+        this.disconnectRequested = disconnectRequested;
+    }
+
+    /**
+     * Gets if this session fell too far behind on reading its data and should
+     * be disconnected by the game thread.
+     * 
+     * @return true if a disconnect is pending.
+     */
+    public boolean isDisconnectPending() {
+        return disconnectPending;
+    }
+
     /**
      * Gets the {@link ByteBuffer} for reading data.
      * 
@@ -677,6 +1063,33 @@ public final class Session {
         return outData;
     }
 
+    /**
+     * Gets the amount of packets queued for this session last tick.
+     * 
+     * @return the amount of packets queued last tick.
+     */
+    public int getPacketsLastTick() {
+        return packetsLastTick;
+    }
+
+    /**
+     * Gets the amount of bytes queued for this session last tick.
+     * 
+     * @return the amount of bytes queued last tick.
+     */
+    public int getBytesLastTick() {
+        return bytesLastTick;
+    }
+
+    /**
+     * Gets the amount of socket writes made for this session last tick.
+     * 
+     * @return the amount of socket writes made last tick.
+     */
+    public int getWritesLastTick() {
+        return writesLastTick;
+    }
+
     /**
      * Gets the packet builder
      * 
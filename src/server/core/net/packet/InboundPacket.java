@@ -0,0 +1,58 @@
+package server.core.net.packet;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A packet that has been framed by the network thread and is waiting to be
+ * decoded on the game thread.
+ * 
+ * @author lare96
+ */
+public final class InboundPacket {
+
+    /** The opcode of this packet. */
+    private final int opcode;
+
+    /** The payload of this packet. */
+    private final byte[] payload;
+
+    /**
+     * Create a new {@link InboundPacket}.
+     * 
+     * @param opcode
+     *        the opcode of this packet.
+     * @param payload
+     *        the payload of this packet.
+     */
+    public InboundPacket(int opcode, byte[] payload) {
+        this.opcode = opcode;
+        this.payload = payload;
+    }
+
+    /**
+     * Gets the opcode of this packet.
+     * 
+     * @return the opcode.
+     */
+    public int getOpcode() {
+        return opcode;
+    }
+
+    /**
+     * Gets the length of this packet.
+     * 
+     * @return the length.
+     */
+    public int getLength() {
+        return payload.length;
+    }
+
+    /**
+     * Gets a buffer wrapping the payload of this packet.
+     * 
+     * @return the payload.
+     */
+    public ByteBuffer getPayload() {
+        return ByteBuffer.wrap(payload);
+    }
+}
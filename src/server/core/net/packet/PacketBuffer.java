@@ -1,6 +1,9 @@
 package server.core.net.packet;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
 
 /**
  * An abstract parent class for two buffer type objects, one for reading data
@@ -49,6 +52,24 @@ public abstract class PacketBuffer {
     /** The bit masks. */
     public static final int[] BIT_MASK = { 0, 0x1, 0x3, 0x7, 0xf, 0x1f, 0x3f, 0x7f, 0xff, 0x1ff, 0x3ff, 0x7ff, 0xfff, 0x1fff, 0x3fff, 0x7fff, 0xffff, 0x1ffff, 0x3ffff, 0x7ffff, 0xfffff, 0x1fffff, 0x3fffff, 0x7fffff, 0xffffff, 0x1ffffff, 0x3ffffff, 0x7ffffff, 0xfffffff, 0x1fffffff, 0x3fffffff, 0x7fffffff, -1 };
 
+    /**
+     * The maximum amount of released {@link WriteBuffer}s each thread will
+     * hold on to for reuse.
+     */
+    private static final int POOL_SIZE = 8;
+
+    /**
+     * The released {@link WriteBuffer}s waiting to be reused, one pool per
+     * thread so buffers can be acquired and released from the concurrent
+     * update threads without any locking.
+     */
+    private static final ThreadLocal<Deque<WriteBuffer>> writeBufferPool = new ThreadLocal<Deque<WriteBuffer>>() {
+        @Override
+        protected Deque<WriteBuffer> initialValue() {
+            return new ArrayDeque<WriteBuffer>(POOL_SIZE);
+        }
+    };
+
     /** The current AccessType of the buffer. */
     private AccessType accessType = AccessType.BYTE_ACCESS;
 
@@ -108,6 +129,46 @@ public abstract class PacketBuffer {
         return new WriteBuffer(ByteBuffer.allocate(16));
     }
 
+    /**
+     * Acquires a cleared {@link WriteBuffer} with at least the specified
+     * capacity from the calling thread's pool, creating a new one if the pool
+     * is empty. The buffer should be given back with
+     * {@link WriteBuffer#release()} once it's no longer being used, and must
+     * not be used after that.
+     * 
+     * @param size
+     *        the minimum capacity of the buffer.
+     * @return the acquired buffer.
+     */
+    public static final WriteBuffer acquireWriteBuffer(int size) {
+        Deque<WriteBuffer> pool = writeBufferPool.get();
+        WriteBuffer acquired = null;
+
+        /** Look for a buffer that is already big enough. */
+        for (Iterator<WriteBuffer> iterator = pool.iterator(); iterator.hasNext();) {
+            WriteBuffer buffer = iterator.next();
+
+            if (buffer.getBuffer().capacity() >= size) {
+                iterator.remove();
+                acquired = buffer;
+                break;
+            }
+        }
+
+        /** Otherwise grow one, or create a new one if there are none. */
+        if (acquired == null) {
+            acquired = pool.isEmpty() ? new WriteBuffer(ByteBuffer.allocate(size)) : pool.poll();
+
+            if (acquired.getBuffer().capacity() < size) {
+                acquired.buffer = ByteBuffer.allocate(size);
+            }
+        }
+
+        acquired.reset();
+        acquired.pooled = true;
+        return acquired;
+    }
+
     /**
      * Handles the internal switching of the access type.
      * 
@@ -647,6 +708,9 @@ public abstract class PacketBuffer {
         /** The position of the packet length in the packet header. */
         private int lengthPosition = 0;
 
+        /** If this buffer was acquired from a pool. */
+        private boolean pooled;
+
         /**
          * Creates a new OutBuffer.
          * 
@@ -657,6 +721,33 @@ public abstract class PacketBuffer {
             this.buffer = buffer;
         }
 
+        /**
+         * Gives this buffer back to the calling thread's pool so it can be
+         * reused. Buffers that weren't acquired from a pool are ignored.
+         */
+        public void release() {
+            if (!pooled) {
+                return;
+            }
+
+            pooled = false;
+            Deque<WriteBuffer> pool = writeBufferPool.get();
+
+            if (pool.size() < POOL_SIZE) {
+                pool.push(this);
+            }
+        }
+
+        /**
+         * Clears this buffer so it can be written to from the beginning.
+         */
+        private void reset() {
+            buffer.clear();
+            lengthPosition = 0;
+            setBitPosition(0);
+            setAccessType(AccessType.BYTE_ACCESS);
+        }
+
         @Override
         void switchAccessType(AccessType type) {
             switch (type) {
@@ -815,7 +906,9 @@ public abstract class PacketBuffer {
                 tmp |= value & BIT_MASK[bitOffset];
                 buffer.put(bytePos, tmp);
             } else {
-                byte tmp = buffer.get(bytePos);
+
+                /** Don't keep stale bits from a reused buffer around. */
+                byte tmp = bitOffset == 8 ? 0 : buffer.get(bytePos);
                 tmp &= ~(BIT_MASK[amount] << (bitOffset - amount));
                 tmp |= (value & BIT_MASK[amount]) << (bitOffset - amount);
                 buffer.put(bytePos, tmp);
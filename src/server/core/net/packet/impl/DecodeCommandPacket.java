@@ -7,10 +7,12 @@ import java.awt.datatransfer.Transferable;
 import java.awt.event.KeyEvent;
 import java.awt.image.RenderedImage;
 import java.io.File;
+import java.util.concurrent.TimeUnit;
 
 import javax.imageio.ImageIO;
 
 import server.core.Rs2Engine;
+import server.core.TickProfiler;
 import server.core.net.packet.PacketBuffer;
 import server.core.net.packet.PacketDecoder;
 import server.core.net.packet.PacketOpcodeHeader;
@@ -19,6 +21,7 @@ import server.core.worker.TaskFactory;
 import server.core.worker.WorkRate;
 import server.core.worker.Worker;
 import server.util.Misc;
+import server.util.TimingHistogram;
 import server.world.World;
 import server.world.entity.Animation;
 import server.world.entity.Gfx;
@@ -26,6 +29,7 @@ import server.world.entity.npc.Npc;
 import server.world.entity.player.Player;
 import server.world.entity.player.bot.Bot;
 import server.world.entity.player.bot.BotTask;
+import server.world.entity.player.file.PlayerSaveService;
 import server.world.entity.player.skill.SkillManager;
 import server.world.item.Item;
 import server.world.item.ItemDefinition;
@@ -80,6 +84,15 @@ public class DecodeCommandPacket extends PacketDecoder {
                     World.getNpcs().add(attackNpc);
                     npc.getCombatBuilder().attack(attackNpc);
                 }
+            } else if (cmd[0].equals("teleto")) {
+                Player target = World.getPlayer(command.substring(cmd[0].length()).trim());
+
+                if (target == null) {
+                    player.getPacketBuilder().sendMessage("That player is not online.");
+                    return;
+                }
+
+                player.move(target.getPosition().clone());
             } else if (cmd[0].equals("tele")) {
                 final int x = Integer.parseInt(cmd[1]);
                 final int y = Integer.parseInt(cmd[2]);
@@ -198,9 +211,36 @@ public class DecodeCommandPacket extends PacketDecoder {
             } else if (cmd[0].equals("gfx")) {
                 int gfx = Integer.parseInt(cmd[1]);
                 player.gfx(new Gfx(gfx));
+            } else if (cmd[0].equals("tickstats")) {
+                TickProfiler profiler = TickProfiler.getProfiler();
+
+                if (cmd.length > 1 && cmd[1].equals("reset")) {
+                    profiler.reset();
+                    player.getPacketBuilder().sendMessage("Tick timings have been reset.");
+                    return;
+                }
+
+                for (String timing : profiler.getPhaseTimings()) {
+                    player.getPacketBuilder().sendMessage(timing);
+                }
+
+                player.getPacketBuilder().sendMessage("ticks: " + profiler.getTicks() + ", overruns: " + profiler.getOverruns() + ", catch up: " + profiler.getCatchUpTicks() + ", shed: " + profiler.getShedTicks());
+                player.getPacketBuilder().sendMessage("traffic: " + profiler.getPacketsLastTick() + " packets, " + profiler.getBytesLastTick() + " bytes, " + profiler.getWritesLastTick() + " writes");
+                player.getPacketBuilder().sendMessage("you: " + player.getSession().getPacketsLastTick() + " packets, " + player.getSession().getBytesLastTick() + " bytes, " + player.getSession().getWritesLastTick() + " writes");
+                player.getPacketBuilder().sendMessage("npcs: " + profiler.getActiveNpcs() + " active, " + profiler.getSleepingNpcs() + " sleeping");
+            } else if (cmd[0].equals("savestats")) {
+                PlayerSaveService service = PlayerSaveService.getService();
+                TimingHistogram latency = service.getLatency();
+
+                player.getPacketBuilder().sendMessage("queued: " + service.getQueueDepth() + ", written: " + service.getWritten() + ", coalesced: " + service.getCoalesced() + ", failed: " + service.getFailed());
+                player.getPacketBuilder().sendMessage("latency: p50=" + TimeUnit.NANOSECONDS.toMillis(latency.getPercentile(50)) + "ms, p99=" + TimeUnit.NANOSECONDS.toMillis(latency.getPercentile(99)) + "ms, max=" + TimeUnit.NANOSECONDS.toMillis(latency.getMaximum()) + "ms");
+            } else if (cmd[0].equals("shedwork")) {
+                TickProfiler profiler = TickProfiler.getProfiler();
+                profiler.setAdaptiveShedding(!profiler.isAdaptiveShedding());
+                player.getPacketBuilder().sendMessage("Adaptive work shedding is now " + (profiler.isAdaptiveShedding() ? "enabled." : "disabled."));
             } else if (cmd[0].equals("object")) {
                 int id = Integer.parseInt(cmd[1]);
-                World.getObjects().register(new WorldObject(id, player.getPosition(), Rotation.SOUTH, 10));
+                World.getObjects().register(new WorldObject(id, player.getPosition().clone(), Rotation.SOUTH, 10));
             }
         }
     }
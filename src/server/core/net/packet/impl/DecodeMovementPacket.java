@@ -6,6 +6,7 @@ import server.core.net.packet.PacketOpcodeHeader;
 import server.world.entity.npc.NpcDialogue;
 import server.world.entity.player.Player;
 import server.world.entity.player.skill.SkillEvent;
+import server.world.map.PathFinder;
 import server.world.map.Position;
 
 /**
@@ -66,16 +67,24 @@ public class DecodeMovementPacket extends PacketDecoder {
         }
         int firstStepY = in.readShort(PacketBuffer.ByteOrder.LITTLE);
 
-        player.getMovementQueue().reset();
-        player.getMovementQueue().setRunPath(in.readByte(PacketBuffer.ValueType.C) == 1);
-        player.getMovementQueue().addToPath(new Position(firstStepX, firstStepY));
+        boolean runPath = in.readByte(PacketBuffer.ValueType.C) == 1;
+        int destinationX = steps > 0 ? path[steps - 1][0] + firstStepX : firstStepX;
+        int destinationY = steps > 0 ? path[steps - 1][1] + firstStepY : firstStepY;
 
-        for (int i = 0; i < steps; i++) {
-            path[i][0] += firstStepX;
-            path[i][1] += firstStepY;
-            player.getMovementQueue().addToPath(new Position(path[i][0], path[i][1]));
+        /**
+         * Find our own path to where the player clicked, only falling back on
+         * the path the client sent if there's no way to get closer.
+         */
+        if (!PathFinder.getPathFinder().findRoute(player, new Position(destinationX, destinationY, player.getPosition().getZ()), true)) {
+            player.getMovementQueue().reset();
+            player.getMovementQueue().addToPath(firstStepX, firstStepY);
+
+            for (int i = 0; i < steps; i++) {
+                player.getMovementQueue().addToPath(path[i][0] + firstStepX, path[i][1] + firstStepY);
+            }
+            player.getMovementQueue().finish();
         }
-        player.getMovementQueue().finish();
+        player.getMovementQueue().setRunPath(runPath);
         player.getPacketBuilder().sendMessage(player.getPosition().getRegionId() + " - walking");
     }
 }
@@ -13,8 +13,6 @@ import server.core.net.packet.PacketBuffer;
 import server.core.net.packet.PacketBuffer.ReadBuffer;
 import server.core.net.packet.PacketBuffer.WriteBuffer;
 import server.core.task.SequentialTask;
-import server.util.Misc;
-import server.world.World;
 import server.world.entity.player.bot.Bot;
 import server.world.entity.player.bot.BotLoginException;
 
@@ -116,14 +114,11 @@ public class BotLoginTask extends SequentialTask {
                 throw new BotLoginException(bot, "login rejected from server, opcode: " + opcode);
             }
 
-            /** Set the player instance. */
-            bot.setPlayer(World.getPlayer(Misc.nameToLong(bot.getUsername())));
-            bot.getPlayer().move(bot.getPosition());
-
-            /** Start the queued task if we have any. */
-            if (bot.getQueuedTask() != null) {
-                bot.assignTask(bot.getQueuedTask());
-            }
+            /**
+             * The player can only be looked up on the game thread, so the rest
+             * of the login is finished there.
+             */
+            Bot.queueLogin(bot);
         } catch (IOException e) {
 
             /** Print the error and discard connection if it fails. */
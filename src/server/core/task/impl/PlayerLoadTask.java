@@ -0,0 +1,60 @@
+package server.core.task.impl;
+
+import server.core.net.EventSelector;
+import server.core.net.Session;
+import server.core.task.ConcurrentTask;
+import server.util.Misc;
+import server.world.entity.player.file.PlayerSaveService;
+import server.world.entity.player.file.ReadPlayerFileEvent;
+
+/**
+ * An asynchronous task that loads the saved data of a player that is logging
+ * in. This has to be done on another thread because reading and parsing
+ * character files would otherwise hold up the entire game tick. Once loaded
+ * the session is handed back to the game thread to finish logging in.
+ * 
+ * @author lare96
+ */
+public class PlayerLoadTask extends ConcurrentTask {
+
+    /** The session of the player being loaded. */
+    private Session session;
+
+    /**
+     * Create a new {@link PlayerLoadTask}.
+     * 
+     * @param session
+     *        the session of the player being loaded.
+     */
+    public PlayerLoadTask(Session session) {
+        this.session = session;
+    }
+
+    @Override
+    public void run() {
+        int response = Misc.LOGIN_RESPONSE_COULD_NOT_COMPLETE_LOGIN;
+
+        try {
+
+            /** Don't bother loading if the connection was already closed. */
+            if (!session.isLoadCancelled()) {
+
+                /** Make sure we don't read a file that's about to be saved over. */
+                PlayerSaveService.getService().awaitSave(session.getPlayer().getUsername());
+
+                ReadPlayerFileEvent read = new ReadPlayerFileEvent(session.getPlayer());
+                read.run();
+                response = read.getReturnCode();
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+
+            /**
+             * Always hand the session back, so the game thread can either
+             * finish the login or finish disconnecting it.
+             */
+            EventSelector.queueLogin(session, response);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package server.core.task.impl;
+
+import java.util.Queue;
+import java.util.concurrent.RecursiveAction;
+
+import server.world.entity.npc.NpcUpdate;
+import server.world.entity.player.Player;
+import server.world.entity.player.PlayerUpdate;
+
+/**
+ * A fork/join action that performs updating on a range of {@link Player}s,
+ * splitting itself in half until the range is small enough to update directly.
+ * Idle threads in the pool steal the split halves, so the work is balanced
+ * across every core without having to lock on the players being updated.
+ * 
+ * @author lare96
+ */
+public class PlayerUpdateAction extends RecursiveAction {
+
+    /** The amount of players small enough to be updated without splitting. */
+    private static final int THRESHOLD = 16;
+
+    /** The players to perform updating on. */
+    private final Player[] players;
+
+    /** The first index in the range, inclusive. */
+    private final int start;
+
+    /** The last index in the range, exclusive. */
+    private final int end;
+
+    /** The players that couldn't be updated and need to be disconnected. */
+    private final Queue<Player> failed;
+
+    /**
+     * Create a new {@link PlayerUpdateAction}.
+     * 
+     * @param players
+     *        the players to perform updating on.
+     * @param start
+     *        the first index in the range, inclusive.
+     * @param end
+     *        the last index in the range, exclusive.
+     * @param failed
+     *        the queue that players which couldn't be updated are added to.
+     */
+    public PlayerUpdateAction(Player[] players, int start, int end, Queue<Player> failed) {
+        this.players = players;
+        this.start = start;
+        this.end = end;
+        this.failed = failed;
+    }
+
+    @Override
+    protected void compute() {
+
+        /** Split the range in half if it's too big. */
+        if (end - start > THRESHOLD) {
+            int middle = (start + end) >>> 1;
+            invokeAll(new PlayerUpdateAction(players, start, middle, failed), new PlayerUpdateAction(players, middle, end, failed));
+            return;
+        }
+
+        /** Otherwise update the players directly. */
+        for (int i = start; i < end; i++) {
+            Player player = players[i];
+
+            try {
+                PlayerUpdate.update(player);
+                NpcUpdate.update(player);
+
+                /**
+                 * Handle any errors with the player, they'll be disconnected on
+                 * the game thread once updating is done.
+                 */
+            } catch (Exception ex) {
+                ex.printStackTrace();
+                failed.add(player);
+            }
+        }
+    }
+
+    /** The generated serial version UID. */
+    private static final long serialVersionUID = -3816229502671154287L;
+}
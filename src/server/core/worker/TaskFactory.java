@@ -1,11 +1,15 @@
 package server.core.worker;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Iterator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
+import java.util.Set;
 
 /**
  * Contains utility methods to manage stored pending and active workers.
@@ -20,47 +24,76 @@ public final class TaskFactory {
     /** A queue of pending {@link Worker}s waiting to be registered. */
     private static Queue<Worker> pendingWorkers = new LinkedList<Worker>();
 
-    /** A list of already registered {@link Worker}s being processed. */
-    // XXX: We use a linked list instead of an arraylist because we only need
-    // assertion and iterator removal which linkedlist has O(1) time
-    // complexities for, unlike arraylist which has to resize and has a time
-    // complexity of O(n) for iterator removal. Lengthy amounts of workers
-    // should process a lot faster as a result.
-    private static LinkedList<Worker> workers = new LinkedList<Worker>();
+    /**
+     * The timing wheel that holds registered {@link Worker}s by the tick they
+     * are due to fire on, so only due workers are touched every tick.
+     */
+    private static TimingWheel wheel = new TimingWheel();
+
+    /** The submitted {@link Worker}s mapped to the key attached to them. */
+    private static Map<Object, Set<Worker>> keyedWorkers = new HashMap<Object, Set<Worker>>();
+
+    /** The workers due on the tick currently being processed. */
+    private static List<Worker> dueWorkers = new ArrayList<Worker>();
 
     /**
-     * Adds new pending workers, fires registered workers awaiting execution,
-     * and removes workers that have been canceled. This also ticks workers that
-     * don't need to be fired or removed yet.
+     * Registers new pending workers and fires the registered workers due on
+     * this tick. Workers that aren't due yet aren't touched at all.
      */
     public void tick() {
+        long tick = wheel.getTick();
 
-        /** Add pending workers to the active list. */
+        /** Add pending workers to the timing wheel. */
         Worker worker;
 
         while ((worker = pendingWorkers.poll()) != null) {
 
             /** Add workers only if they are still running! */
             if (worker.isRunning()) {
-                workers.add(worker);
+                worker.calculateDeadline(tick);
+                wheel.schedule(worker);
+            } else {
+                unregister(worker);
             }
         }
 
-        /** Iterate and process all of the active services. */
-        for (Iterator<Worker> it = workers.iterator(); it.hasNext();) {
-            worker = it.next();
+        /** Fire all of the workers due on this tick. */
+        wheel.advance(dueWorkers);
 
-            if (worker == null) {
-                continue;
-            }
+        try {
+            for (Worker due : dueWorkers) {
 
-            if (!worker.isRunning()) {
-                it.remove();
-                continue;
-            }
+                /** Skip workers canceled or rescheduled by other workers. */
+                if (!due.isRunning()) {
+                    unregister(due);
+                    continue;
+                } else if (due.wheelLevel != -1) {
+                    continue;
+                } else if (due.applyPause(tick)) {
+                    wheel.schedule(due);
+                    continue;
+                }
+
+                try {
+
+                    /** Execute the logic within the worker. */
+                    due.fire();
+                } catch (Exception e) {
 
-            /** Process each worker individually. */
-            worker.process(it);
+                    /** Print any errors we may come across. */
+                    e.printStackTrace();
+                }
+
+                /** Schedule the worker again or remove it if needed. */
+                if (!due.isRunning()) {
+                    unregister(due);
+                } else if (due.wheelLevel == -1) {
+                    due.calculateDeadline(tick + 1);
+                    wheel.schedule(due);
+                }
+            }
+        } finally {
+            dueWorkers.clear();
         }
     }
 
@@ -72,6 +105,13 @@ public final class TaskFactory {
      *        the new worker to submit to the queue.
      */
     public void submit(Worker worker) {
+        if (worker.registered) {
+            throw new IllegalStateException("This worker has already been submitted!");
+        }
+
+        worker.registered = true;
+        index(worker, worker.getKey());
+
         if (worker.isInitialRun()) {
             worker.fire();
         }
@@ -83,11 +123,7 @@ public final class TaskFactory {
      * Cancels all of the currently registered {@link Worker}s.
      */
     public void cancelAllWorkers() {
-        for (Worker c : workers) {
-            if (c == null) {
-                continue;
-            }
-
+        for (Worker c : retrieveRegisteredWorkers()) {
             c.cancel();
         }
     }
@@ -99,14 +135,8 @@ public final class TaskFactory {
      *        the key to stop all workers with.
      */
     public void cancelWorkers(Object key) {
-        for (Worker c : workers) {
-            if (c == null || c.getKey() == null) {
-                continue;
-            }
-
-            if (c.getKey().equals(key)) {
-                c.cancel();
-            }
+        for (Worker c : retrieveWorkers(key)) {
+            c.cancel();
         }
     }
 
@@ -119,14 +149,13 @@ public final class TaskFactory {
      */
     public LinkedList<Worker> retrieveWorkers(Object key) {
         LinkedList<Worker> tasks = new LinkedList<Worker>();
+        Set<Worker> keyed = key == null ? null : keyedWorkers.get(key);
 
-        for (Worker c : workers) {
-            if (c == null || c.getKey() == null) {
-                continue;
-            }
-
-            if (c.getKey().equals(key)) {
-                tasks.add(c);
+        if (keyed != null) {
+            for (Worker c : keyed) {
+                if (c.isRunning()) {
+                    tasks.add(c);
+                }
             }
         }
 
@@ -139,6 +168,8 @@ public final class TaskFactory {
      * @return an unmodifiable list of all of the registered workers.
      */
     public List<Worker> retrieveRegisteredWorkers() {
+        List<Worker> workers = new ArrayList<Worker>(wheel.getSize());
+        wheel.collect(workers);
         return Collections.unmodifiableList(workers);
     }
 
@@ -153,6 +184,114 @@ public final class TaskFactory {
         return Collections.unmodifiableCollection(pendingWorkers);
     }
 
+    /**
+     * Gets the tick that will be processed next.
+     * 
+     * @return the next tick.
+     */
+    public long getTick() {
+        return wheel.getTick();
+    }
+
+    /**
+     * Moves a registered {@link Worker} to the slot for its deadline after it
+     * has been paused or had its delay changed. Workers that aren't in the
+     * timing wheel pick up the change when they're scheduled next.
+     * 
+     * @param worker
+     *        the worker to move.
+     */
+    protected void reschedule(Worker worker) {
+        if (worker.wheelLevel == -1) {
+            return;
+        }
+
+        wheel.unschedule(worker);
+        worker.applyPause(wheel.getTick());
+        wheel.schedule(worker);
+    }
+
+    /**
+     * Removes a {@link Worker} from the timing wheel and the key index.
+     * 
+     * @param worker
+     *        the worker to remove.
+     */
+    protected void unregister(Worker worker) {
+        wheel.unschedule(worker);
+
+        if (worker.registered) {
+            worker.registered = false;
+            unindex(worker, worker.getKey());
+        }
+    }
+
+    /**
+     * Moves a submitted {@link Worker} in the key index when a new key is
+     * attached to it.
+     * 
+     * @param worker
+     *        the worker being attached to.
+     * @param oldKey
+     *        the key previously attached to the worker.
+     * @param newKey
+     *        the key being attached to the worker.
+     */
+    protected void rekey(Worker worker, Object oldKey, Object newKey) {
+        if (worker.registered) {
+            unindex(worker, oldKey);
+            index(worker, newKey);
+        }
+    }
+
+    /**
+     * Adds a {@link Worker} to the key index.
+     * 
+     * @param worker
+     *        the worker to add.
+     * @param key
+     *        the key to add the worker under.
+     */
+    private static void index(Worker worker, Object key) {
+        if (key == null) {
+            return;
+        }
+
+        Set<Worker> keyed = keyedWorkers.get(key);
+
+        if (keyed == null) {
+            keyed = new LinkedHashSet<Worker>();
+            keyedWorkers.put(key, keyed);
+        }
+
+        keyed.add(worker);
+    }
+
+    /**
+     * Removes a {@link Worker} from the key index.
+     * 
+     * @param worker
+     *        the worker to remove.
+     * @param key
+     *        the key the worker was added under.
+     */
+    private static void unindex(Worker worker, Object key) {
+        if (key == null) {
+            return;
+        }
+
+        Set<Worker> keyed = keyedWorkers.get(key);
+
+        if (keyed != null) {
+            keyed.remove(worker);
+
+            /** Don't keep empty sets around. */
+            if (keyed.isEmpty()) {
+                keyedWorkers.remove(key);
+            }
+        }
+    }
+
     /**
      * Gets the singleton instance.
      * 
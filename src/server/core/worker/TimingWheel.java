@@ -0,0 +1,200 @@
+package server.core.worker;
+
+import java.util.List;
+
+/**
+ * A hierarchical timing wheel that holds every registered {@link Worker} by the
+ * tick it is due to fire on. The first level has a slot for each of the next
+ * 256 ticks, and every level after that has 64 slots that each cover an entire
+ * rotation of the level below it. Workers are moved down a level whenever the
+ * level below them wraps around, so every tick only the workers due in that
+ * tick are touched no matter how many are registered or how far away they are.
+ * 
+ * @author lare96
+ */
+final class TimingWheel {
+
+    /** The amount of bits used for the slots in the first level. */
+    private static final int ROOT_BITS = 8;
+
+    /** The amount of bits used for the slots in every level after the first. */
+    private static final int LEVEL_BITS = 6;
+
+    /** The amount of levels in this wheel. */
+    private static final int LEVELS = 4;
+
+    /** The furthest amount of ticks away a worker can be placed at. */
+    private static final long MAXIMUM_DELTA = (1L << (ROOT_BITS + ((LEVELS - 1) * LEVEL_BITS))) - 1;
+
+    /** The heads of the lists of workers in every slot of every level. */
+    private final Worker[][] slots = new Worker[LEVELS][];
+
+    /** The tick that will be processed next. */
+    private long tick;
+
+    /** The amount of workers in this wheel. */
+    private int size;
+
+    /**
+     * Create a new {@link TimingWheel}.
+     */
+    public TimingWheel() {
+        slots[0] = new Worker[1 << ROOT_BITS];
+
+        for (int i = 1; i < LEVELS; i++) {
+            slots[i] = new Worker[1 << LEVEL_BITS];
+        }
+    }
+
+    /**
+     * Places a worker in the slot for the tick it is due to fire on. Workers
+     * that are already overdue are placed in the slot for the next tick.
+     * 
+     * @param worker
+     *        the worker to place in this wheel.
+     */
+    public void schedule(Worker worker) {
+        if (worker.wheelLevel != -1) {
+            throw new IllegalStateException("Worker has already been scheduled!");
+        }
+
+        long delta = worker.deadline - tick;
+        long deadline = delta < 0 ? tick : delta > MAXIMUM_DELTA ? tick + MAXIMUM_DELTA : worker.deadline;
+        int level = 0;
+        int shift = ROOT_BITS;
+
+        /** Find the lowest level with a rotation that covers the deadline. */
+        while (level < LEVELS - 1 && (deadline - tick) >= (1L << shift)) {
+            level++;
+            shift += LEVEL_BITS;
+        }
+
+        int slot = (int) ((deadline >> (shift - (level == 0 ? ROOT_BITS : LEVEL_BITS))) & (slots[level].length - 1));
+        Worker head = slots[level][slot];
+
+        worker.wheelLevel = level;
+        worker.wheelSlot = slot;
+        worker.wheelPrevious = null;
+        worker.wheelNext = head;
+
+        if (head != null) {
+            head.wheelPrevious = worker;
+        }
+
+        slots[level][slot] = worker;
+        size++;
+    }
+
+    /**
+     * Removes a worker from the slot it was placed in. Workers that aren't in
+     * this wheel are ignored.
+     * 
+     * @param worker
+     *        the worker to remove from this wheel.
+     */
+    public void unschedule(Worker worker) {
+        if (worker.wheelLevel == -1) {
+            return;
+        }
+
+        if (worker.wheelPrevious != null) {
+            worker.wheelPrevious.wheelNext = worker.wheelNext;
+        } else {
+            slots[worker.wheelLevel][worker.wheelSlot] = worker.wheelNext;
+        }
+
+        if (worker.wheelNext != null) {
+            worker.wheelNext.wheelPrevious = worker.wheelPrevious;
+        }
+
+        worker.wheelLevel = -1;
+        worker.wheelNext = null;
+        worker.wheelPrevious = null;
+        size--;
+    }
+
+    /**
+     * Moves the workers from higher levels down if the first level has wrapped
+     * around, then removes every worker due on the current tick and advances
+     * to the next tick.
+     * 
+     * @param due
+     *        the list to add the workers due on the current tick to.
+     */
+    public void advance(List<Worker> due) {
+        int index = (int) (tick & ((1 << ROOT_BITS) - 1));
+
+        /** Cascade each level down while the level below has wrapped around. */
+        if (index == 0) {
+            for (int level = 1, shift = ROOT_BITS; level < LEVELS; level++, shift += LEVEL_BITS) {
+                int slot = (int) ((tick >> shift) & ((1 << LEVEL_BITS) - 1));
+                cascade(level, slot);
+
+                if (slot != 0) {
+                    break;
+                }
+            }
+        }
+
+        Worker worker;
+
+        while ((worker = slots[0][index]) != null) {
+            unschedule(worker);
+            due.add(worker);
+        }
+
+        tick++;
+    }
+
+    /**
+     * Removes every worker in a slot and places them in this wheel again
+     * relative to the current tick.
+     * 
+     * @param level
+     *        the level of the slot.
+     * @param slot
+     *        the slot to cascade.
+     */
+    private void cascade(int level, int slot) {
+        Worker worker;
+
+        while ((worker = slots[level][slot]) != null) {
+            unschedule(worker);
+            schedule(worker);
+        }
+    }
+
+    /**
+     * Adds every worker in this wheel to a list.
+     * 
+     * @param workers
+     *        the list to add the workers to.
+     */
+    public void collect(List<Worker> workers) {
+        for (Worker[] level : slots) {
+            for (Worker worker : level) {
+                for (; worker != null; worker = worker.wheelNext) {
+                    workers.add(worker);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the tick that will be processed next.
+     * 
+     * @return the next tick.
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    /**
+     * Gets the amount of workers in this wheel.
+     * 
+     * @return the amount of workers.
+     */
+    public int getSize() {
+        return size;
+    }
+}
@@ -1,7 +1,5 @@
 package server.core.worker;
 
-import java.util.Iterator;
-
 /**
  * A flexible dynamic worker created to carry out general game logic on the game
  * thread. These workers can be paused, stopped, and have their delays
@@ -14,12 +12,15 @@ public abstract class Worker {
     /** The delay for this worker (in ticks). */
     private int delay;
 
-    /** The amount of ticks this worker has accumulated. */
-    private int currentDelay;
-
-    /** The amount of ticks this worker is paused for. */
+    /**
+     * The amount of ticks this worker has been paused for that haven't been
+     * added to its deadline yet.
+     */
     private int pauseDelay;
 
+    /** The tick this worker is paused until. */
+    private long pausedUntil;
+
     /** If this worker should be ran initially before being scheduled. */
     private boolean initialRun;
 
@@ -32,6 +33,24 @@ public abstract class Worker {
     /** If this worker is currently running. */
     private boolean running;
 
+    /** If this worker has been submitted and hasn't been unregistered yet. */
+    boolean registered;
+
+    /** The tick this worker is due to fire on. */
+    long deadline;
+
+    /** The level of the timing wheel this worker is in, -1 if it isn't in one. */
+    int wheelLevel = -1;
+
+    /** The slot of the timing wheel level this worker is in. */
+    int wheelSlot;
+
+    /** The next worker in the same timing wheel slot. */
+    Worker wheelNext;
+
+    /** The previous worker in the same timing wheel slot. */
+    Worker wheelPrevious;
+
     /**
      * Create a new {@link Worker} with a default <code>workRate</code> of
      * ticks.
@@ -76,63 +95,19 @@ public abstract class Worker {
 
     }
 
-    /**
-     * Fired every single tick for all active workers, and is used to determine
-     * when workers should be fired. This method should never be called directly
-     * or workers will fire a lot faster than they are supposed to!
-     * 
-     * @param it
-     *        the iterator being used to process this worker.
-     */
-    protected void process(Iterator<Worker> it) {
-
-        /** First we check if the worker is paused. */
-        if (isPaused()) {
-
-            /** The worker is paused, decrement the delay and return. */
-            pauseDelay--;
-            return;
-        }
-
-        /** Increment the current delay holder. */
-        currentDelay++;
-
-        /** Check if this worker is ready to execute. */
-        if (currentDelay == delay) {
-
-            try {
-
-                /** Execute the logic within the worker. */
-                this.fire();
-            } catch (Exception e) {
-
-                /** Print any errors we may come across. */
-                e.printStackTrace();
-            }
-
-            /** Reset the delay for the worker. */
-            currentDelay = 0;
-
-            /** Remove the task if needed. */
-            if (!running) {
-                it.remove();
-            }
-        }
-    }
-
     /**
      * Determines if this worker is paused or not.
      * 
      * @return true if this worker is paused.
      */
     public boolean isPaused() {
-        return pauseDelay > 0;
+        return pauseDelay > 0 || pausedUntil > TaskFactory.getFactory().getTick();
     }
 
     /**
-     * Pauses this worker by preventing its <code>currentDelay</code> value from
-     * increasing. If a worker is paused while also being ready to fire, the
-     * worker will not fire until the pause delay is over. <br>
+     * Pauses this worker by pushing back the tick it is due to fire on. If a
+     * worker is paused while also being ready to fire, the worker will not
+     * fire until the pause delay is over. <br>
      * <br>
      * Please note that the <code>workRate</code> still applies!
      * 
@@ -140,11 +115,12 @@ public abstract class Worker {
      *        the delay to pause this worker for.
      */
     public void pause(int pauseDelay) {
-        if (pauseDelay > 0) {
+        if (isPaused()) {
             throw new IllegalStateException("This worker has already been paused!");
         }
 
         this.pauseDelay = pauseDelay * workRate.getTickRate();
+        TaskFactory.getFactory().reschedule(this);
     }
 
     /**
@@ -154,6 +130,7 @@ public abstract class Worker {
     public void cancel() {
         if (running) {
             this.running = false;
+            TaskFactory.getFactory().unregister(this);
             fireOnCancel();
         }
     }
@@ -168,6 +145,7 @@ public abstract class Worker {
      * @return this worker for chaining.
      */
     public Worker attach(Object key) {
+        TaskFactory.getFactory().rekey(this, this.key, key);
         this.key = key;
         return this;
     }
@@ -178,7 +156,10 @@ public abstract class Worker {
      * @return the approximate time left until this worker executes.
      */
     public int delayTimeLeft() {
-        return (delay - currentDelay);
+        if (wheelLevel == -1) {
+            return delay;
+        }
+        return (int) (deadline - TaskFactory.getFactory().getTick()) + 1;
     }
 
     /**
@@ -211,7 +192,14 @@ public abstract class Worker {
      *        the new delay to set for this task.
      */
     public void setDelay(int delay) {
+        int previous = this.delay;
         this.delay = delay * workRate.getTickRate();
+
+        /** Move the deadline of a scheduled worker by the difference. */
+        if (wheelLevel != -1) {
+            deadline += this.delay - previous;
+            TaskFactory.getFactory().reschedule(this);
+        }
     }
 
     /**
@@ -248,6 +236,36 @@ public abstract class Worker {
      * @return the current delay.
      */
     public int getCurrentDelay() {
-        return currentDelay;
+        return delay - delayTimeLeft();
+    }
+
+    /**
+     * Calculates the tick this worker is next due to fire on, relative to the
+     * specified tick, and adds any pending pause delay to it. Delays lower
+     * than one tick are treated as one tick.
+     * 
+     * @param tick
+     *        the tick to calculate the deadline from.
+     */
+    void calculateDeadline(long tick) {
+        deadline = tick + Math.max(delay, 1) - 1;
+        applyPause(tick);
+    }
+
+    /**
+     * Adds any pending pause delay to the deadline of this worker.
+     * 
+     * @param tick
+     *        the tick the pause is starting on.
+     * @return true if a pending pause delay was added.
+     */
+    boolean applyPause(long tick) {
+        if (pauseDelay > 0) {
+            deadline += pauseDelay;
+            pausedUntil = tick + pauseDelay;
+            pauseDelay = 0;
+            return true;
+        }
+        return false;
     }
 }
\ No newline at end of file
@@ -0,0 +1,352 @@
+package server.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Utility methods for compact binary packs compiled from json definition
+ * files. A pack starts with a header holding its format version and the
+ * checksum of the json file it was compiled from, followed by every field of
+ * the definitions stored column by column. Packs are memory mapped when read,
+ * and are ignored whenever the json file has been changed since they were
+ * compiled so they never have to be rebuilt by hand.
+ * 
+ * @author lare96
+ */
+public final class DefinitionPack {
+
+    /** The magic number every pack starts with. */
+    private static final int MAGIC = 0x41535044;
+
+    /** The size of the header of every pack in bytes. */
+    private static final int HEADER_SIZE = 16;
+
+    /** A {@link Logger} for printing debugging info. */
+    private static Logger logger = Logger.getLogger(DefinitionPack.class.getSimpleName());
+
+    /** So this class cannot be instantiated. */
+    private DefinitionPack() {
+    }
+
+    /**
+     * Calculates the checksum of a json definition file.
+     * 
+     * @param source
+     *        the json file to calculate the checksum of.
+     * @return the checksum of the file.
+     * @throws IOException
+     *         if any errors occur while reading the file.
+     */
+    public static long checksum(Path source) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(Files.readAllBytes(source));
+        return crc.getValue();
+    }
+
+    /**
+     * Gets the pack compiled from a json definition file.
+     * 
+     * @param source
+     *        the json file the pack was compiled from.
+     * @return the path of the pack.
+     */
+    public static Path packFor(Path source) {
+        String name = source.getFileName().toString().replace(".json", ".pack");
+        return source.resolveSibling(Paths.get(name));
+    }
+
+    /**
+     * Memory maps a pack if it exists and is up to date.
+     * 
+     * @param pack
+     *        the pack to open.
+     * @param version
+     *        the format version the pack must have.
+     * @param checksum
+     *        the checksum of the json file the pack must have been compiled
+     *        from.
+     * @return the contents of the pack after the header, or <code>null</code>
+     *         if the pack doesn't exist or is out of date.
+     * @throws IOException
+     *         if any errors occur while mapping the pack.
+     */
+    public static ByteBuffer open(Path pack, int version, long checksum) throws IOException {
+        if (!Files.exists(pack)) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(pack, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                return null;
+            }
+
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.getInt() != MAGIC || buffer.getInt() != version || buffer.getLong() != checksum) {
+                logger.info(pack + " is out of date, recompiling...");
+                return null;
+            }
+            return buffer;
+        }
+    }
+
+    /**
+     * Writes a pack, replacing any existing one.
+     * 
+     * @param pack
+     *        the pack to write.
+     * @param version
+     *        the format version of the pack.
+     * @param checksum
+     *        the checksum of the json file the pack was compiled from.
+     * @param body
+     *        the contents of the pack after the header.
+     * @throws IOException
+     *         if any errors occur while writing the pack.
+     */
+    public static void write(Path pack, int version, long checksum, byte[] body) throws IOException {
+        Path temp = pack.resolveSibling(pack.getFileName() + ".tmp");
+
+        try {
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                DataOutputStream data = new DataOutputStream(out);
+                data.writeInt(MAGIC);
+                data.writeInt(version);
+                data.writeLong(checksum);
+                data.write(body);
+                data.flush();
+            }
+
+            try {
+                Files.move(temp, pack, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, pack, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+
+            /** Don't leave a half written pack behind. */
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Creates a new stream for writing the body of a pack.
+     * 
+     * @return the new stream.
+     */
+    public static Body newBody() {
+        return new Body();
+    }
+
+    /**
+     * Reads a column of ints.
+     * 
+     * @param buffer
+     *        the buffer to read from.
+     * @param count
+     *        the amount of ints in the column.
+     * @return the column of ints.
+     */
+    public static int[] getInts(ByteBuffer buffer, int count) {
+        int[] column = new int[count];
+        buffer.asIntBuffer().get(column);
+        buffer.position(buffer.position() + (count * 4));
+        return column;
+    }
+
+    /**
+     * Reads a column of doubles.
+     * 
+     * @param buffer
+     *        the buffer to read from.
+     * @param count
+     *        the amount of doubles in the column.
+     * @return the column of doubles.
+     */
+    public static double[] getDoubles(ByteBuffer buffer, int count) {
+        double[] column = new double[count];
+        buffer.asDoubleBuffer().get(column);
+        buffer.position(buffer.position() + (count * 8));
+        return column;
+    }
+
+    /**
+     * Reads a column of bytes.
+     * 
+     * @param buffer
+     *        the buffer to read from.
+     * @param count
+     *        the amount of bytes in the column.
+     * @return the column of bytes.
+     */
+    public static byte[] getBytes(ByteBuffer buffer, int count) {
+        byte[] column = new byte[count];
+        buffer.get(column);
+        return column;
+    }
+
+    /**
+     * Reads a column of strings, written as a column of lengths followed by
+     * all of the characters.
+     * 
+     * @param buffer
+     *        the buffer to read from.
+     * @param count
+     *        the amount of strings in the column.
+     * @return the column of strings.
+     */
+    public static String[] getStrings(ByteBuffer buffer, int count) {
+        int[] lengths = getInts(buffer, count);
+        String[] column = new String[count];
+
+        for (int i = 0; i < count; i++) {
+            if (lengths[i] == -1) {
+                continue;
+            }
+
+            byte[] bytes = new byte[lengths[i]];
+            buffer.get(bytes);
+            column[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return column;
+    }
+
+    /**
+     * A stream that the body of a pack is written to column by column.
+     * 
+     * @author lare96
+     */
+    public static final class Body {
+
+        /** The bytes written to this body. */
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        /** The stream used to write primitives to this body. */
+        private final DataOutputStream out = new DataOutputStream(bytes);
+
+        /** So this class can only be created through the pack. */
+        private Body() {
+        }
+
+        /**
+         * Writes a single int.
+         * 
+         * @param value
+         *        the int to write.
+         * @return this body for chaining.
+         * @throws IOException
+         *         if any errors occur while writing.
+         */
+        public Body putInt(int value) throws IOException {
+            out.writeInt(value);
+            return this;
+        }
+
+        /**
+         * Writes a column of ints.
+         * 
+         * @param column
+         *        the ints to write.
+         * @return this body for chaining.
+         * @throws IOException
+         *         if any errors occur while writing.
+         */
+        public Body putInts(int[] column) throws IOException {
+            for (int value : column) {
+                out.writeInt(value);
+            }
+            return this;
+        }
+
+        /**
+         * Writes a column of doubles.
+         * 
+         * @param column
+         *        the doubles to write.
+         * @return this body for chaining.
+         * @throws IOException
+         *         if any errors occur while writing.
+         */
+        public Body putDoubles(double[] column) throws IOException {
+            for (double value : column) {
+                out.writeDouble(value);
+            }
+            return this;
+        }
+
+        /**
+         * Writes a column of bytes.
+         * 
+         * @param column
+         *        the bytes to write.
+         * @return this body for chaining.
+         * @throws IOException
+         *         if any errors occur while writing.
+         */
+        public Body putBytes(byte[] column) throws IOException {
+            out.write(column);
+            return this;
+        }
+
+        /**
+         * Writes a column of strings as a column of lengths followed by all of
+         * the characters.
+         * 
+         * @param column
+         *        the strings to write, which may contain <code>null</code>.
+         * @return this body for chaining.
+         * @throws IOException
+         *         if any errors occur while writing.
+         */
+        public Body putStrings(String[] column) throws IOException {
+            byte[][] encoded = new byte[column.length][];
+
+            for (int i = 0; i < column.length; i++) {
+                if (column[i] == null) {
+                    out.writeInt(-1);
+                    continue;
+                }
+
+                encoded[i] = column[i].getBytes(StandardCharsets.UTF_8);
+                out.writeInt(encoded[i].length);
+            }
+
+            for (byte[] string : encoded) {
+                if (string != null) {
+                    out.write(string);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Gets everything written to this body.
+         * 
+         * @return the written bytes.
+         * @throws IOException
+         *         if any errors occur while flushing.
+         */
+        public byte[] toByteArray() throws IOException {
+            out.flush();
+            return bytes.toByteArray();
+        }
+    }
+}
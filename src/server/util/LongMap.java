@@ -0,0 +1,198 @@
+package server.util;
+
+import java.util.Arrays;
+
+/**
+ * A hash map with primitive <code>long</code> keys that uses open addressing
+ * with linear probing, so looking up a key never boxes it or chases a chain of
+ * entries.
+ * 
+ * @author lare96
+ * @param <V>
+ *        the type of value held in this map.
+ */
+public class LongMap<V> {
+
+    /** The keys of this map. */
+    private long[] keys;
+
+    /** The values of this map, a <code>null</code> value marks a free slot. */
+    private Object[] values;
+
+    /** The amount of entries in this map. */
+    private int size;
+
+    /**
+     * Create a new {@link LongMap} that can hold the specified amount of
+     * entries without growing.
+     * 
+     * @param expectedSize
+     *        the amount of entries this map is expected to hold.
+     */
+    public LongMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 2) * 2 - 1) << 1;
+        this.keys = new long[capacity];
+        this.values = new Object[capacity];
+    }
+
+    /**
+     * Maps a value to a key, replacing any value already mapped to the key.
+     * 
+     * @param key
+     *        the key to map the value to.
+     * @param value
+     *        the value to map, which cannot be <code>null</code>.
+     * @return the value previously mapped to the key, or <code>null</code> if
+     *         there wasn't one.
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Cannot map a null value!");
+        }
+
+        int slot = find(key);
+
+        if (values[slot] != null) {
+            V previous = (V) values[slot];
+            values[slot] = value;
+            return previous;
+        }
+
+        keys[slot] = key;
+        values[slot] = value;
+
+        /** Keep the load factor at or below a half. */
+        if (++size * 2 > keys.length) {
+            grow();
+        }
+        return null;
+    }
+
+    /**
+     * Gets the value mapped to a key.
+     * 
+     * @param key
+     *        the key to get the value for.
+     * @return the value, or <code>null</code> if there isn't one.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        return (V) values[find(key)];
+    }
+
+    /**
+     * Determines if a value is mapped to a key.
+     * 
+     * @param key
+     *        the key to check.
+     * @return true if a value is mapped to the key.
+     */
+    public boolean containsKey(long key) {
+        return values[find(key)] != null;
+    }
+
+    /**
+     * Removes the value mapped to a key.
+     * 
+     * @param key
+     *        the key to remove the value for.
+     * @return the removed value, or <code>null</code> if there wasn't one.
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int slot = find(key);
+        V removed = (V) values[slot];
+
+        if (removed == null) {
+            return null;
+        }
+
+        values[slot] = null;
+        size--;
+
+        /**
+         * Shift back the entries after the removed one that would no longer be
+         * reachable, instead of leaving a tombstone behind.
+         */
+        int mask = keys.length - 1;
+        int free = slot;
+
+        for (int next = (slot + 1) & mask; values[next] != null; next = (next + 1) & mask) {
+            int home = hash(keys[next]) & mask;
+
+            if (((next - home) & mask) >= ((next - free) & mask)) {
+                keys[free] = keys[next];
+                values[free] = values[next];
+                values[next] = null;
+                free = next;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Removes every entry from this map.
+     */
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * Gets the amount of entries in this map.
+     * 
+     * @return the amount of entries.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Finds the slot a key is in, or the free slot it would be placed in.
+     * 
+     * @param key
+     *        the key to find the slot for.
+     * @return the slot.
+     */
+    private int find(long key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+
+        while (values[slot] != null && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Doubles the capacity of this map.
+     */
+    private void grow() {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new Object[oldValues.length * 2];
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) {
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * Spreads the bits of a key so keys that only differ in their high bits
+     * don't all end up in the same slot.
+     * 
+     * @param key
+     *        the key to hash.
+     * @return the hash of the key.
+     */
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,225 @@
+package server.util;
+
+import java.util.Arrays;
+
+/**
+ * A set of primitive <code>long</code>s that remembers the order they were
+ * added in. Membership is checked through an open addressing hash table, so
+ * checking if a value is in the set never boxes it or scans the values.
+ * 
+ * @author lare96
+ */
+public class LongSet {
+
+    /**
+     * The values in the order they were added, only the first {@link #size}
+     * are valid.
+     */
+    private long[] values;
+
+    /** The hash table of values. */
+    private long[] table;
+
+    /** Flags which slots of the hash table are in use. */
+    private boolean[] used;
+
+    /** The amount of values in this set. */
+    private int size;
+
+    /**
+     * Create a new {@link LongSet} that can hold the specified amount of
+     * values without growing.
+     * 
+     * @param expectedSize
+     *        the amount of values this set is expected to hold.
+     */
+    public LongSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 2) * 2 - 1) << 1;
+        this.values = new long[Math.max(expectedSize, 2)];
+        this.table = new long[capacity];
+        this.used = new boolean[capacity];
+    }
+
+    /**
+     * Adds a value to this set.
+     * 
+     * @param value
+     *        the value to add.
+     * @return true if the value was added, false if it was already in this
+     *         set.
+     */
+    public boolean add(long value) {
+        int slot = find(value);
+
+        if (used[slot]) {
+            return false;
+        }
+
+        table[slot] = value;
+        used[slot] = true;
+
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+
+        values[size++] = value;
+
+        /** Keep the load factor at or below a half. */
+        if (size * 2 > table.length) {
+            rehash(table.length * 2);
+        }
+        return true;
+    }
+
+    /**
+     * Removes a value from this set.
+     * 
+     * @param value
+     *        the value to remove.
+     * @return true if the value was removed, false if it wasn't in this set.
+     */
+    public boolean remove(long value) {
+        int slot = find(value);
+
+        if (!used[slot]) {
+            return false;
+        }
+
+        used[slot] = false;
+
+        /**
+         * Shift back the values after the removed one that would no longer be
+         * reachable, instead of leaving a tombstone behind.
+         */
+        int mask = table.length - 1;
+        int free = slot;
+
+        for (int next = (slot + 1) & mask; used[next]; next = (next + 1) & mask) {
+            int home = hash(table[next]) & mask;
+
+            if (((next - home) & mask) >= ((next - free) & mask)) {
+                table[free] = table[next];
+                used[free] = true;
+                used[next] = false;
+                free = next;
+            }
+        }
+
+        /** Remove the value from the ordered values. */
+        for (int i = 0; i < size; i++) {
+            if (values[i] == value) {
+                System.arraycopy(values, i + 1, values, i, size - i - 1);
+                size--;
+                break;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Determines if a value is in this set.
+     * 
+     * @param value
+     *        the value to check.
+     * @return true if the value is in this set.
+     */
+    public boolean contains(long value) {
+        return used[find(value)];
+    }
+
+    /**
+     * Gets the value at an index, in the order the values were added.
+     * 
+     * @param index
+     *        the index of the value.
+     * @return the value.
+     */
+    public long get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return values[index];
+    }
+
+    /**
+     * Removes every value from this set.
+     */
+    public void clear() {
+        Arrays.fill(used, false);
+        size = 0;
+    }
+
+    /**
+     * Gets the amount of values in this set.
+     * 
+     * @return the amount of values.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Determines if this set has no values.
+     * 
+     * @return true if this set is empty.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Copies the values in this set, in the order they were added.
+     * 
+     * @return the copied values.
+     */
+    public long[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    /**
+     * Finds the slot a value is in, or the free slot it would be placed in.
+     * 
+     * @param value
+     *        the value to find the slot for.
+     * @return the slot.
+     */
+    private int find(long value) {
+        int mask = table.length - 1;
+        int slot = hash(value) & mask;
+
+        while (used[slot] && table[slot] != value) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Rebuilds the hash table with a new capacity.
+     * 
+     * @param capacity
+     *        the new capacity of the hash table.
+     */
+    private void rehash(int capacity) {
+        table = new long[capacity];
+        used = new boolean[capacity];
+
+        for (int i = 0; i < size; i++) {
+            int slot = find(values[i]);
+            table[slot] = values[i];
+            used[slot] = true;
+        }
+    }
+
+    /**
+     * Spreads the bits of a value so values that only differ in their high
+     * bits don't all end up in the same slot.
+     * 
+     * @param value
+     *        the value to hash.
+     * @return the hash of the value.
+     */
+    private static int hash(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -2,22 +2,26 @@ package server.util;
 
 import java.io.DataInputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 import java.util.Scanner;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Logger;
 
 import server.core.net.HostGateway;
 import server.core.net.packet.PacketDecoder;
 import server.world.World;
 import server.world.entity.npc.Npc;
 import server.world.entity.npc.NpcDefinition;
+import server.world.entity.npc.NpcDefinitionPack;
 import server.world.entity.npc.NpcDialogue;
 import server.world.entity.npc.NpcDropTable;
 import server.world.entity.npc.NpcDropTable.NpcDrop;
@@ -27,7 +31,9 @@ import server.world.entity.player.minigame.MinigameFactory;
 import server.world.entity.player.skill.SkillEvent;
 import server.world.item.Item;
 import server.world.item.ItemDefinition;
+import server.world.item.ItemDefinitionPack;
 import server.world.item.ground.StaticGroundItem;
+import server.world.map.CollisionMap;
 import server.world.map.Position;
 import server.world.object.WorldObject;
 import server.world.object.WorldObject.Rotation;
@@ -37,10 +43,8 @@ import server.world.shop.Shop;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonArray;
-import com.google.gson.JsonIOException;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
-import com.google.gson.JsonSyntaxException;
 
 /**
  * A collection of miscellaneous utility methods and constants.
@@ -51,6 +55,9 @@ import com.google.gson.JsonSyntaxException;
 @SuppressWarnings("unused")
 public final class Misc {
 
+    /** A {@link Logger} for printing debugging info. */
+    private static Logger logger = Logger.getLogger(Misc.class.getSimpleName());
+
     /** Difference in X coordinates for directions array. */
     public static final byte[] DIRECTION_DELTA_X = new byte[] { -1, 0, 1, -1, 1, -1, 0, 1 };
 
@@ -111,15 +118,6 @@ public final class Misc {
     /** Items that are not allowed to be in a shop. */
     public static final int[] NO_SHOP_ITEMS = { 995 };
 
-    /** Items that are platebodies. */
-    private static boolean[] isPlatebody = new boolean[7956];
-
-    /** Items that are full helms. */
-    private static boolean[] isFullHelm = new boolean[7956];
-
-    /** Items that are two handed. */
-    private static boolean[] is2H = new boolean[7956];
-
     /** The bonus names. */
     public static final String[] BONUS_NAMES = { "Stab", "Slash", "Crush", "Magic", "Range", "Stab", "Slash", "Crush", "Magic", "Range", "Strength", "Prayer" };
 
@@ -149,7 +147,7 @@ public final class Misc {
      * @return true if the player is allowed to click the object.
      */
     public static boolean canClickObject(Position playerPosition, Position objectPosition, int size) {
-        return playerPosition.withinDistance(objectPosition, size);
+        return playerPosition.withinDistance(objectPosition, size) && CollisionMap.getMap().hasLineOfSight(playerPosition, objectPosition);
     }
 
     /**
@@ -354,10 +352,26 @@ public final class Misc {
      *         if any errors occur while parsing this file.
      */
     public static void loadNpcDefinitions() throws Exception {
+        Path source = Paths.get("./data/json/npcs/npc_definitions.json");
+        Path pack = DefinitionPack.packFor(source);
+        long checksum = DefinitionPack.checksum(source);
+
+        /** Use the compiled pack if it's up to date. */
+        try {
+            ByteBuffer buffer = DefinitionPack.open(pack, NpcDefinitionPack.VERSION, checksum);
+
+            if (buffer != null) {
+                NpcDefinition.setNpcDefinition(NpcDefinitionPack.decode(buffer));
+                return;
+            }
+        } catch (Exception e) {
+            logger.warning("Unable to read " + pack + ", recompiling...");
+        }
+
         NpcDefinition.setNpcDefinition(new NpcDefinition[6102]);
 
         JsonParser parser = new JsonParser();
-        JsonArray array = (JsonArray) parser.parse(new FileReader(new File("./data/json/npcs/npc_definitions.json")));
+        JsonArray array = (JsonArray) parser.parse(new FileReader(source.toFile()));
         int parsed = 0;
 
         for (int i = 0; i < array.size(); i++) {
@@ -388,6 +402,17 @@ public final class Misc {
             NpcDefinition.getNpcDefinition()[index].setDefenceMage(reader.get("defenceMage").getAsInt());
             parsed++;
         }
+
+        /**
+         * Compile the pack so the json doesn't have to be parsed next time.
+         * The definitions are already loaded, so not being able to write the
+         * pack shouldn't stop the server from starting.
+         */
+        try {
+            DefinitionPack.write(pack, NpcDefinitionPack.VERSION, checksum, NpcDefinitionPack.encode(NpcDefinition.getNpcDefinition()));
+        } catch (IOException e) {
+            logger.warning("Unable to write " + pack + ": " + e.getMessage());
+        }
     }
 
     /**
@@ -396,11 +421,27 @@ public final class Misc {
      * @throws Exception
      *         if any errors occur while parsing this file.
      */
-    public static void loadItemDefinitions() throws JsonIOException, JsonSyntaxException, FileNotFoundException {
+    public static void loadItemDefinitions() throws Exception {
+        Path source = Paths.get("./data/json/items/item_definitions.json");
+        Path pack = DefinitionPack.packFor(source);
+        long checksum = DefinitionPack.checksum(source);
+
+        /** Use the compiled pack if it's up to date. */
+        try {
+            ByteBuffer buffer = DefinitionPack.open(pack, ItemDefinitionPack.VERSION, checksum);
+
+            if (buffer != null) {
+                ItemDefinition.setDefinitions(ItemDefinitionPack.decode(buffer));
+                return;
+            }
+        } catch (Exception e) {
+            logger.warning("Unable to read " + pack + ", recompiling...");
+        }
+
         ItemDefinition.setDefinitions(new ItemDefinition[7956]);
 
         JsonParser parser = new JsonParser();
-        JsonArray array = (JsonArray) parser.parse(new FileReader(new File("./data/json/items/item_definitions.json")));
+        JsonArray array = (JsonArray) parser.parse(new FileReader(source.toFile()));
         final Gson builder = new GsonBuilder().create();
         int parsed = 0;
 
@@ -428,6 +469,17 @@ public final class Misc {
             ItemDefinition.getDefinitions()[index].setBonus(builder.fromJson(reader.get("bonuses").getAsJsonArray(), int[].class));
             parsed++;
         }
+
+        /**
+         * Compile the pack so the json doesn't have to be parsed next time.
+         * The definitions are already loaded, so not being able to write the
+         * pack shouldn't stop the server from starting.
+         */
+        try {
+            DefinitionPack.write(pack, ItemDefinitionPack.VERSION, checksum, ItemDefinitionPack.encode(ItemDefinition.getDefinitions()));
+        } catch (IOException e) {
+            logger.warning("Unable to write " + pack + ": " + e.getMessage());
+        }
     }
 
     /**
@@ -473,7 +525,7 @@ public final class Misc {
 
             int type = reader.get("type").getAsInt();
 
-            World.getObjects().getObjectSet().add(new WorldObject(id, new Position(x, y, z), face, type));
+            World.getObjects().add(new WorldObject(id, new Position(x, y, z), face, type));
             parsed++;
         }
     }
@@ -535,43 +587,6 @@ public final class Misc {
         return new String(ac, 12 - i, i);
     }
 
-    /**
-     * Loads all equipment properties.
-     * 
-     * @throws Exception
-     *         if any errors occur while scanningthis file.
-     */
-    public static void codeEquipment() throws Exception {
-        isPlatebody = new boolean[7956];
-        isFullHelm = new boolean[7956];
-        is2H = new boolean[7956];
-
-        Scanner scanner = new Scanner(new File("./data/equipment_coder.txt"));
-        int parsed = 0;
-
-        try {
-            while (scanner.hasNextLine()) {
-                String keyword = scanner.next();
-                int value = scanner.nextInt();
-
-                if (keyword.equals("#2h")) {
-                    is2H[value] = true;
-                    parsed++;
-                } else if (keyword.equals("#full_helm")) {
-                    isFullHelm[value] = true;
-                    parsed++;
-                } else if (keyword.equals("#platebody")) {
-                    isPlatebody[value] = true;
-                    parsed++;
-                }
-            }
-        } finally {
-            scanner.close();
-        }
-
-        // logger.info("Coded " + parsed + " equipment utilities!");
-    }
-
     /**
      * Constants used for probability operations.
      * 
@@ -1093,31 +1108,4 @@ public final class Misc {
 
         return RANDOM.nextFloat() * range;
     }
-
-    /**
-     * Gets the array of platebodies.
-     * 
-     * @return the array of platebodies.
-     */
-    public static boolean[] getIsPlatebody() {
-        return isPlatebody;
-    }
-
-    /**
-     * Gets the array of full helms.
-     * 
-     * @return the array of full helms.
-     */
-    public static boolean[] getIsFullHelm() {
-        return isFullHelm;
-    }
-
-    /**
-     * Gets the array of two handed swords.
-     * 
-     * @return the array of two handed swords.
-     */
-    public static boolean[] getIs2H() {
-        return is2H;
-    }
 }
@@ -0,0 +1,153 @@
+package server.util;
+
+/**
+ * A log-linear histogram of nanosecond timings in the style of an HDR
+ * histogram. Values are split into power of two ranges that are each divided
+ * into a fixed amount of linear sub-buckets, so any recorded value can be
+ * reported back within roughly 6% of its real value while only using a small
+ * fixed amount of memory no matter how many values are recorded.
+ * 
+ * @author lare96
+ */
+public class TimingHistogram {
+
+    /** The amount of bits used for the linear sub-buckets. */
+    private static final int SUB_BUCKET_BITS = 5;
+
+    /** The amount of linear sub-buckets in the first range. */
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    /** The amount of linear sub-buckets in every range after the first. */
+    private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT >> 1;
+
+    /** The recorded counts for every bucket. */
+    private final long[] counts = new long[SUB_BUCKET_COUNT + ((64 - SUB_BUCKET_BITS) * SUB_BUCKET_HALF_COUNT)];
+
+    /** The amount of values recorded. */
+    private long totalCount;
+
+    /** The highest value recorded. */
+    private long maximum;
+
+    /** The sum of every value recorded. */
+    private long sum;
+
+    /**
+     * Records a single timing in this histogram.
+     * 
+     * @param nanos
+     *        the timing to record, negative values are recorded as zero.
+     */
+    public synchronized void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+
+        counts[index(nanos)]++;
+        totalCount++;
+        sum += nanos;
+
+        if (nanos > maximum) {
+            maximum = nanos;
+        }
+    }
+
+    /**
+     * Gets the value at the specified percentile of every value recorded.
+     * 
+     * @param percentile
+     *        the percentile to get the value for, between 0 and 100.
+     * @return the value at the percentile, or 0 if nothing has been recorded.
+     */
+    public synchronized long getPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+
+        long target = Math.max(1, (long) Math.ceil((percentile / 100.0) * totalCount));
+        long cumulative = 0;
+
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+
+            if (cumulative >= target) {
+                return Math.min(highestEquivalentValue(i), maximum);
+            }
+        }
+        return maximum;
+    }
+
+    /**
+     * Gets the highest value recorded.
+     * 
+     * @return the highest value recorded.
+     */
+    public synchronized long getMaximum() {
+        return maximum;
+    }
+
+    /**
+     * Gets the mean of every value recorded.
+     * 
+     * @return the mean, or 0 if nothing has been recorded.
+     */
+    public synchronized long getMean() {
+        return totalCount == 0 ? 0 : sum / totalCount;
+    }
+
+    /**
+     * Gets the amount of values recorded.
+     * 
+     * @return the amount of values recorded.
+     */
+    public synchronized long getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * Clears every value recorded in this histogram.
+     */
+    public synchronized void reset() {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = 0;
+        }
+
+        totalCount = 0;
+        maximum = 0;
+        sum = 0;
+    }
+
+    /**
+     * Gets the bucket index that a value is recorded in.
+     * 
+     * @param value
+     *        the value to get the index for.
+     * @return the bucket index.
+     */
+    private static int index(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+
+        int shift = (63 - Long.numberOfLeadingZeros(value)) - (SUB_BUCKET_BITS - 1);
+        int subBucket = (int) (value >>> shift) - SUB_BUCKET_HALF_COUNT;
+        return SUB_BUCKET_COUNT + ((shift - 1) * SUB_BUCKET_HALF_COUNT) + subBucket;
+    }
+
+    /**
+     * Gets the highest value that would be recorded in a bucket.
+     * 
+     * @param index
+     *        the bucket index.
+     * @return the highest value for the bucket.
+     */
+    private static long highestEquivalentValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+
+        int shift = ((index - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF_COUNT) + 1;
+        long subBucket = ((index - SUB_BUCKET_COUNT) % SUB_BUCKET_HALF_COUNT) + SUB_BUCKET_HALF_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,208 @@
+package server.world;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import server.core.Rs2Engine;
+import server.core.task.ConcurrentFutureTask;
+import server.util.Misc;
+import server.world.item.ItemTable;
+import server.world.map.CollisionMap;
+
+/**
+ * All of the files that are loaded when the server starts up. Loaders that
+ * don't depend on each other are ran concurrently, and loaders are only ran
+ * once everything they depend on has finished loading.
+ * 
+ * @author lare96
+ */
+public enum StartupLoader {
+
+    /** Codes the file utilities. */
+    FILES {
+        @Override
+        protected void load() throws Exception {
+            Misc.codeFiles();
+        }
+    },
+
+    /** Codes the host gateway. */
+    HOSTS {
+        @Override
+        protected void load() throws Exception {
+            Misc.codeHosts();
+        }
+    },
+
+    /** Loads the world objects. */
+    WORLD_OBJECTS {
+        @Override
+        protected void load() throws Exception {
+            Misc.loadWorldObjects();
+        }
+    },
+
+    /** Reads which regions the clipping file contains. */
+    CLIPPING {
+        @Override
+        protected void load() throws Exception {
+            CollisionMap.getMap().load();
+        }
+    },
+
+    /** Loads the item definitions. */
+    ITEM_DEFINITIONS {
+        @Override
+        protected void load() throws Exception {
+            Misc.loadItemDefinitions();
+        }
+    },
+
+    /** Builds the item table from the item definitions. */
+    ITEM_TABLE(ITEM_DEFINITIONS) {
+        @Override
+        protected void load() throws Exception {
+            ItemTable.load();
+        }
+    },
+
+    /** Loads the npc definitions. */
+    NPC_DEFINITIONS {
+        @Override
+        protected void load() throws Exception {
+            Misc.loadNpcDefinitions();
+        }
+    },
+
+    /** Loads the npc drop tables. */
+    NPC_DROPS {
+        @Override
+        protected void load() throws Exception {
+            Misc.loadNpcDrops();
+        }
+    },
+
+    /** Loads the shops. */
+    SHOPS(ITEM_DEFINITIONS) {
+        @Override
+        protected void load() throws Exception {
+            Misc.loadShops();
+        }
+    },
+
+    /** Loads and registers the static world items. */
+    WORLD_ITEMS(ITEM_DEFINITIONS) {
+        @Override
+        protected void load() throws Exception {
+            Misc.loadWorldItems();
+        }
+    },
+
+    /** Loads and spawns the world npcs. */
+    WORLD_NPCS(NPC_DEFINITIONS) {
+        @Override
+        protected void load() throws Exception {
+            Misc.loadWorldNpcs();
+        }
+    };
+
+    /** The loaders that have to finish before this loader can run. */
+    private final StartupLoader[] dependencies;
+
+    /**
+     * Create a new {@link StartupLoader}.
+     * 
+     * @param dependencies
+     *        the loaders that have to finish before this loader can run.
+     */
+    private StartupLoader(StartupLoader... dependencies) {
+        this.dependencies = dependencies;
+    }
+
+    /**
+     * Loads the files for this loader.
+     * 
+     * @throws Exception
+     *         if any errors occur while loading.
+     */
+    protected abstract void load() throws Exception;
+
+    /**
+     * Runs every loader, running as many of them concurrently as their
+     * dependencies allow, and blocks until they have all finished.
+     * 
+     * @throws Exception
+     *         if any of the loaders fail.
+     */
+    public static void loadAll() throws Exception {
+        Set<StartupLoader> loaded = EnumSet.noneOf(StartupLoader.class);
+        Set<StartupLoader> remaining = EnumSet.allOf(StartupLoader.class);
+
+        while (!remaining.isEmpty()) {
+            List<StartupLoader> ready = new ArrayList<StartupLoader>();
+            List<Future<Void>> running = new ArrayList<Future<Void>>();
+
+            /** Start every loader whose dependencies have been loaded. */
+            for (StartupLoader loader : remaining) {
+                if (loader.isReady(loaded)) {
+                    ready.add(loader);
+                    running.add(Rs2Engine.pushTask(loader.task()));
+                }
+            }
+
+            if (ready.isEmpty()) {
+                throw new IllegalStateException("Startup loaders have circular dependencies: " + remaining);
+            }
+
+            /** Wait for them to finish before starting the next ones. */
+            for (Future<Void> future : running) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof Exception) {
+                        throw (Exception) e.getCause();
+                    }
+                    throw e;
+                }
+            }
+
+            loaded.addAll(ready);
+            remaining.removeAll(ready);
+        }
+    }
+
+    /**
+     * Determines if every dependency of this loader has been loaded.
+     * 
+     * @param loaded
+     *        the loaders that have been loaded.
+     * @return true if this loader can be ran.
+     */
+    private boolean isReady(Set<StartupLoader> loaded) {
+        for (StartupLoader dependency : dependencies) {
+            if (!loaded.contains(dependency)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Creates a task that runs this loader concurrently.
+     * 
+     * @return the task that runs this loader.
+     */
+    private ConcurrentFutureTask<Void> task() {
+        return new ConcurrentFutureTask<Void>() {
+            @Override
+            public Void call() throws Exception {
+                load();
+                return null;
+            }
+        };
+    }
+}
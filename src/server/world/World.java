@@ -1,23 +1,32 @@
 package server.world;
 
-import java.util.concurrent.Phaser;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.Logger;
 
-import server.core.Rs2Engine;
+import server.core.TickProfiler;
 import server.core.net.Session.Stage;
-import server.core.task.SequentialTask;
-import server.core.task.impl.PlayerParallelUpdateTask;
-import server.util.Misc;
+import server.core.task.impl.PlayerUpdateAction;
+import server.core.worker.TaskFactory;
 import server.util.Misc.Stopwatch;
 import server.world.entity.EntityContainer;
 import server.world.entity.npc.Npc;
+import server.world.entity.npc.NpcAggression;
+import server.world.entity.npc.NpcUpdate;
 import server.world.entity.player.Player;
+import server.world.entity.player.PlayerContainer;
+import server.world.entity.player.PlayerUpdate;
+import server.world.entity.player.bot.Bot;
 import server.world.entity.player.content.AssignSkillRequirement;
-import server.world.entity.player.content.AssignWeaponAnimation;
-import server.world.entity.player.content.AssignWeaponInterface;
-import server.world.entity.player.file.WritePlayerFileEvent;
+import server.world.entity.player.content.PresenceService;
+import server.world.entity.player.file.PlayerRepository;
+import server.world.entity.player.file.PlayerSaveService;
 import server.world.entity.player.minigame.MinigameFactory;
 import server.world.item.ground.RegisterableGroundItem;
+import server.world.map.CollisionMap;
 import server.world.object.RegisterableWorldObject;
 
 /**
@@ -31,11 +40,14 @@ public final class World {
     private static Logger logger = Logger.getLogger(World.class.getSimpleName());
 
     /** All registered players. */
-    private static EntityContainer<Player> players = new EntityContainer<Player>(2000);
+    private static PlayerContainer players = new PlayerContainer(2000);
 
     /** All registered NPCs. */
     private static EntityContainer<Npc> npcs = new EntityContainer<Npc>(4000);
 
+    /** The work stealing pool that players are updated in parallel with. */
+    private static ForkJoinPool updatePool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
     /** A stopwatch to track the total time this server has been online. */
     private static Stopwatch totalOnlineTime = new Stopwatch().reset();
 
@@ -45,6 +57,9 @@ public final class World {
     /** The registerable container for objects. */
     private static RegisterableWorldObject registerableObjects;
 
+    /** The list the npcs around each player are copied into when pulsing. */
+    private static List<Npc> surroundingNpcs = new ArrayList<Npc>();
+
     /**
      * Initialize the utilities of the {@link World}.
      * 
@@ -53,110 +68,174 @@ public final class World {
      */
     public static void init() {
         try {
-            Misc.codeFiles();
-            Misc.codeHosts();
-            Misc.codeEquipment();
-            Misc.loadWorldObjects();
-            Misc.loadItemDefinitions();
-            Misc.loadNpcDefinitions();
-            Misc.loadShops();
-            Misc.loadWorldItems();
-            Misc.loadWorldNpcs();
-            AssignWeaponAnimation.class.newInstance();
-            AssignWeaponInterface.class.newInstance();
+            StartupLoader.loadAll();
             AssignSkillRequirement.class.newInstance();
-            Misc.loadNpcDrops();
             MinigameFactory.fireDynamicTasks();
+            PlayerRepository.init();
+            PlayerSaveService.getService().start();
+            PresenceService.getService().start();
+            getGroundItems().start();
+            CollisionMap.getMap().start();
+            NpcAggression.getAggression().start();
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
     /**
-     * Ticks logic for the actual game - general logic sequentially and updating
-     * logic in parallel.
+     * Pulses every entity in the world, carrying out movement and any other
+     * general logic sequentially. Npcs that no player has been able to see for
+     * a while are put to sleep and skipped until a player comes near them.
      */
-    public static void tick() {
-        try {
+    public static void pulse() {
+        long tick = TaskFactory.getFactory().getTick();
 
-            /** Perform any general logic processing for entities. */
-            for (Player player : players) {
-                if (player == null) {
-                    continue;
-                }
-
-                try {
-                    player.pulse();
-                } catch (Exception ex) {
-                    ex.printStackTrace();
-                    logger.warning(player + " error while firing game logic!");
-                    player.getSession().disconnect();
-                }
+        /** Finish logging in any bots the server has accepted. */
+        Bot.finishLogins();
+
+        for (Player player : players) {
+            if (player == null) {
+                continue;
             }
 
-            for (Npc npc : npcs) {
-                if (npc == null) {
-                    continue;
-                }
-
-                try {
-                    npc.pulse();
-                } catch (Exception ex) {
-                    ex.printStackTrace();
-                    logger.warning(npc + " error while firing game logic!");
-                    npcs.remove(npc);
-                }
+            try {
+                player.pulse();
+            } catch (Exception ex) {
+                ex.printStackTrace();
+                logger.warning(player + " error while firing game logic!");
+                player.getSession().disconnect();
             }
+        }
 
-            /** Perform updating for entities in parallel. */
-            final Phaser phaser = new Phaser(1);
+        /** Wake up the npcs in the regions around every player. */
+        for (Player player : players) {
+            if (player == null) {
+                continue;
+            }
 
-            phaser.bulkRegister(players.getSize());
+            for (Npc npc : npcs.getRegionIndex().getSurrounding(player.getPosition(), surroundingNpcs)) {
+                npc.observe(tick);
+            }
+        }
 
-            for (Player player : players) {
-                if (player == null) {
-                    continue;
-                }
+        int active = 0;
+        int sleeping = 0;
 
-                Rs2Engine.pushTask(new PlayerParallelUpdateTask(player, phaser));
+        for (Npc npc : npcs) {
+            if (npc == null) {
+                continue;
             }
 
-            phaser.arriveAndAwaitAdvance();
-
-            /**
-             * Reset all of the entities after updating and prepare for a new
-             * cycle.
-             */
-            for (Player player : players) {
-                if (player == null) {
-                    continue;
-                }
-
-                try {
-                    player.reset();
-                    player.setCachedUpdateBlock(null);
-                } catch (Exception ex) {
-                    ex.printStackTrace();
-                    logger.warning(player + " error while resetting for the next game tick!");
-                    player.getSession().disconnect();
-                }
+            if (npc.sleep(tick)) {
+                sleeping++;
+                continue;
             }
 
-            for (Npc npc : npcs) {
-                if (npc == null) {
-                    continue;
-                }
-
-                try {
-                    npc.reset();
-                } catch (Exception ex) {
-                    ex.printStackTrace();
-                    logger.warning(npc + " error while resetting for the next game tick!");
-                    World.getNpcs().remove(npc);
-                }
+            active++;
+
+            try {
+                npc.pulse();
+            } catch (Exception ex) {
+                ex.printStackTrace();
+                logger.warning(npc + " error while firing game logic!");
+                npcs.remove(npc);
+            }
+        }
+
+        TickProfiler.getProfiler().recordNpcs(active, sleeping);
+    }
+
+    /**
+     * Builds the update blocks for every entity sequentially and then updates
+     * every player in parallel.
+     */
+    public static void update() {
+
+        /**
+         * Build the update blocks for entities before updating, so each block
+         * is only built once no matter how many players see it.
+         */
+        List<Player> updating = new ArrayList<Player>(players.getCapacity());
+
+        for (Player player : players) {
+            if (player == null) {
+                continue;
+            }
+
+            try {
+                PlayerUpdate.prepare(player);
+                updating.add(player);
+            } catch (Exception ex) {
+                ex.printStackTrace();
+                logger.warning(player + " error while building update blocks!");
+                player.getSession().disconnect();
+            }
+        }
+
+        for (Npc npc : npcs) {
+            if (npc == null || npc.isSleeping()) {
+                continue;
+            }
+
+            try {
+                NpcUpdate.prepare(npc);
+            } catch (Exception ex) {
+                ex.printStackTrace();
+                logger.warning(npc + " error while building update blocks!");
+                npcs.remove(npc);
+            }
+        }
+
+        /** Perform updating for players in parallel. */
+        Queue<Player> failed = new ConcurrentLinkedQueue<Player>();
+        Player[] array = updating.toArray(new Player[updating.size()]);
+        updatePool.invoke(new PlayerUpdateAction(array, 0, array.length, failed));
+
+        /** Disconnect anyone who couldn't be updated. */
+        for (Player player : failed) {
+            logger.warning(player + " error while updating!");
+            player.getSession().disconnect();
+        }
+
+        /** Disconnect anyone who fell too far behind on reading their data. */
+        for (Player player : updating) {
+            if (player.getSession().isDisconnectPending() && player.getSession().getStage() != Stage.LOGGED_OUT) {
+                player.getSession().disconnect();
+            }
+        }
+    }
+
+    /**
+     * Resets all of the entities after updating and prepares them for a new
+     * tick.
+     */
+    public static void reset() {
+        for (Player player : players) {
+            if (player == null) {
+                continue;
+            }
+
+            try {
+                player.reset();
+            } catch (Exception ex) {
+                ex.printStackTrace();
+                logger.warning(player + " error while resetting for the next game tick!");
+                player.getSession().disconnect();
+            }
+        }
+
+        for (Npc npc : npcs) {
+            if (npc == null || npc.isSleeping()) {
+                continue;
+            }
+
+            try {
+                npc.reset();
+            } catch (Exception ex) {
+                ex.printStackTrace();
+                logger.warning(npc + " error while resetting for the next game tick!");
+                World.getNpcs().remove(npc);
             }
-        } catch (Exception ex) {
-            ex.printStackTrace();
         }
     }
 
@@ -170,16 +249,20 @@ public final class World {
      *         {@code null} if no such player exists.
      */
     public static Player getPlayer(long username) {
-        for (Player player : players) {
-            if (player == null) {
-                continue;
-            }
+        return players.getByUsernameHash(username);
+    }
 
-            if (player.getUsernameHash() == username) {
-                return player;
-            }
-        }
-        return null;
+    /**
+     * Returns an instance of a {@link Player} object for the specified display
+     * name, ignoring case.
+     * 
+     * @param name
+     *        The display name.
+     * @return The <code>Player</code> object representing the player or
+     *         {@code null} if no such player exists.
+     */
+    public static Player getPlayer(String name) {
+        return players.getByName(name);
     }
 
     /**
@@ -199,7 +282,9 @@ public final class World {
     }
 
     /**
-     * Saves the game for all players that are currently registered.
+     * Saves the game for all players that are currently registered. Players
+     * are already saved periodically by the {@link PlayerSaveService}, so this
+     * should only be needed when everyone has to be saved right away.
      */
     public static void savePlayers() {
         for (Player player : players) {
@@ -224,17 +309,8 @@ public final class World {
             return;
         }
 
-        /** Add the pending logout until the saving is done. */
-        Rs2Engine.pushTask(new SequentialTask() {
-            @Override
-            public void run() {
-                synchronized (player) {
-                    WritePlayerFileEvent save = new WritePlayerFileEvent(player);
-                    save.run();
-                    logger.info(player + " game successfully saved!");
-                }
-            }
-        });
+        /** Queue a snapshot to be written by the save service. */
+        PlayerSaveService.getService().save(player);
     }
 
     /**
@@ -251,7 +327,7 @@ public final class World {
      * 
      * @return the container of players.
      */
-    public static EntityContainer<Player> getPlayers() {
+    public static PlayerContainer getPlayers() {
         return players;
     }
 
@@ -4,6 +4,7 @@ import server.core.worker.TaskFactory;
 import server.core.worker.Worker;
 import server.util.Misc;
 import server.util.Misc.Stopwatch;
+import server.world.World;
 import server.world.entity.UpdateFlags.Flag;
 import server.world.entity.combat.CombatBuilder;
 import server.world.entity.combat.magic.CombatSpell;
@@ -57,6 +58,9 @@ public abstract class Entity {
     /** Update flags for this entity. */
     private UpdateFlags flags = new UpdateFlags();
 
+    /** The update blocks built for this entity this tick. */
+    private UpdateBlockCache updateBlockCache = new UpdateBlockCache();
+
     /** The primary direction of the entity. */
     private int primaryDirection = -1;
 
@@ -102,6 +106,9 @@ public abstract class Entity {
     /** The current region of the entity. */
     private Position currentRegion = new Position(0, 0, 0);
 
+    /** The key of the region index bucket this entity is in. */
+    private int regionIndexKey = RegionIndex.NO_BUCKET;
+
     /** If the player is following. */
     private boolean following;
 
@@ -166,10 +173,23 @@ public abstract class Entity {
         setPrimaryDirection(-1);
         setSecondaryDirection(-1);
         flags.reset();
+        updateBlockCache.clear();
         setResetMovementQueue(false);
         setNeedsPlacement(false);
     }
 
+    /**
+     * Updates the spatial index this entity is registered in to reflect its
+     * current position. This should be called whenever the entity moves.
+     */
+    public void refreshRegionIndex() {
+        if (type() == EntityType.PLAYER) {
+            World.getPlayers().getRegionIndex().update((Player) this);
+        } else if (type() == EntityType.NPC) {
+            World.getNpcs().getRegionIndex().update((Npc) this);
+        }
+    }
+
     /**
      * Play an animation for this entity.
      * 
@@ -473,6 +493,25 @@ public abstract class Entity {
         return currentRegion;
     }
 
+    /**
+     * Gets the key of the region index bucket this entity is in.
+     * 
+     * @return the region index key.
+     */
+    public int getRegionIndexKey() {
+        return regionIndexKey;
+    }
+
+    /**
+     * Sets the key of the region index bucket this entity is in.
+     * 
+     * @param regionIndexKey
+     *        the region index key to set.
+     */
+    public void setRegionIndexKey(int regionIndexKey) {
+        this.regionIndexKey = regionIndexKey;
+    }
+
     /**
      * Gets the update flags.
      * 
@@ -482,6 +521,15 @@ public abstract class Entity {
         return flags;
     }
 
+    /**
+     * Gets the update blocks built for this entity this tick.
+     * 
+     * @return the update block cache.
+     */
+    public UpdateBlockCache getUpdateBlockCache() {
+        return updateBlockCache;
+    }
+
     /**
      * Gets the forced text.
      * 
@@ -1,13 +1,19 @@
 package server.world.entity;
 
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 import server.util.Misc.GenericAction;
 import server.world.WorldFullException;
 
 /**
- * A container for holding and managing entities.
+ * A container for holding and managing entities. Entities keep the same slot
+ * for as long as they're in the container, but the occupied slots are also
+ * kept in a dense sorted array so iterating only visits live entities, and the
+ * free slots are kept in a bit set so finding one doesn't scan the entities.
  * 
  * @author lare96
  * @param <T>
@@ -18,6 +24,21 @@ public class EntityContainer<T extends Entity> implements Iterable<T> {
     /** The backing array for this container. */
     private T[] backingArray;
 
+    /** The spatial index of the entities in this container. */
+    private RegionIndex<T> regionIndex = new RegionIndex<T>();
+
+    /**
+     * The occupied slots in ascending order, only the first {@link #size} are
+     * valid.
+     */
+    private int[] activeSlots;
+
+    /** The amount of entities in this container. */
+    private int size;
+
+    /** The slots that are free. */
+    private BitSet freeSlots;
+
     /**
      * Create a new {@link EntityContainer} with the specified capacity.
      * 
@@ -27,6 +48,9 @@ public class EntityContainer<T extends Entity> implements Iterable<T> {
     @SuppressWarnings("unchecked")
     public EntityContainer(int capacity) {
         this.backingArray = (T[]) new Entity[capacity];
+        this.activeSlots = new int[capacity];
+        this.freeSlots = new BitSet(capacity);
+        this.freeSlots.set(1, Math.max(capacity, 1));
     }
 
     /**
@@ -92,9 +116,27 @@ public class EntityContainer<T extends Entity> implements Iterable<T> {
             throw new IllegalArgumentException("Invalid entry slot requested!");
         }
 
+        /**
+         * Properly remove any other entity already on this slot, so it doesn't
+         * get left behind in the region index.
+         */
+        if (backingArray[slot] != null && backingArray[slot] != entity) {
+            removeSlot(slot);
+        }
+
+        /** Mark the slot as occupied if it wasn't already. */
+        if (backingArray[slot] == null) {
+            int index = -(Arrays.binarySearch(activeSlots, 0, size, slot) + 1);
+            System.arraycopy(activeSlots, index, activeSlots, index + 1, size - index);
+            activeSlots[index] = slot;
+            size++;
+            freeSlots.clear(slot);
+        }
+
         /** Add the entity and set utility values. */
         backingArray[slot] = entity;
         backingArray[slot].setSlot(slot);
+        regionIndex.add(entity);
     }
 
     /**
@@ -135,8 +177,15 @@ public class EntityContainer<T extends Entity> implements Iterable<T> {
         }
 
         /** Otherwise remove the entity from the slot and set utility values. */
+        regionIndex.remove(backingArray[slot]);
         backingArray[slot].setUnregistered(true);
         backingArray[slot] = null;
+
+        /** Mark the slot as free. */
+        int index = Arrays.binarySearch(activeSlots, 0, size, slot);
+        System.arraycopy(activeSlots, index + 1, activeSlots, index, size - index - 1);
+        size--;
+        freeSlots.set(slot);
     }
 
     /**
@@ -146,11 +195,7 @@ public class EntityContainer<T extends Entity> implements Iterable<T> {
      *        the action to perform.
      */
     public void loopTask(GenericAction<T> task) {
-        for (T entity : backingArray) {
-            if (entity == null) {
-                continue;
-            }
-
+        for (T entity : this) {
             task.fireAction(entity);
         }
     }
@@ -192,6 +237,15 @@ public class EntityContainer<T extends Entity> implements Iterable<T> {
         return backingArray[slot];
     }
 
+    /**
+     * Gets the spatial index of the entities in this container.
+     * 
+     * @return the spatial index.
+     */
+    public RegionIndex<T> getRegionIndex() {
+        return regionIndex;
+    }
+
     /**
      * Gets the maximum amount of entities this container can hold.
      * 
@@ -207,15 +261,6 @@ public class EntityContainer<T extends Entity> implements Iterable<T> {
      * @return the amount of non-malformed entities.
      */
     public int getSize() {
-        int size = 0;
-
-        for (T element : backingArray) {
-            if (element == null) {
-                continue;
-            }
-
-            size++;
-        }
         return size;
     }
 
@@ -225,12 +270,8 @@ public class EntityContainer<T extends Entity> implements Iterable<T> {
      * @return the free slot or -1 if there are none left.
      */
     public int getFreeSlot() {
-        for (int slot = 1; slot < backingArray.length; slot++) {
-            if (backingArray[slot] == null) {
-                return slot;
-            }
-        }
-        return -1;
+        int slot = freeSlots.nextSetBit(1);
+        return slot >= backingArray.length ? -1 : slot;
     }
 
     /**
@@ -242,41 +283,66 @@ public class EntityContainer<T extends Entity> implements Iterable<T> {
         return backingArray.length - getSize();
     }
 
+    /**
+     * {@inheritDoc}
+     * 
+     * <p>
+     * Only live entities are returned, in ascending slot order. Entities can
+     * be added or removed while iterating; every entity that stays in this
+     * container during the iteration is returned exactly once.
+     * </p>
+     */
     @Override
     public Iterator<T> iterator() {
         return new Iterator<T>() {
 
-            /** The current index we are iterating on. */
+            /** The index in the occupied slots we are iterating on. */
             private int currentIndex;
 
-            /** The last index we iterated over. */
-            private int lastElementIndex = -1;
+            /** The last slot we iterated over. */
+            private int lastSlot;
+
+            /** If the last slot we iterated over can be removed. */
+            private boolean removable;
 
             @Override
             public boolean hasNext() {
-                return !(currentIndex + 1 > backingArray.length);
+                synchronize();
+                return currentIndex < size;
             }
 
             @Override
             public T next() {
-                if (currentIndex >= backingArray.length) {
-                    throw new ArrayIndexOutOfBoundsException("Can only call 'next()' in amount to 'backingArray.length'.");
+                synchronize();
+
+                if (currentIndex >= size) {
+                    throw new NoSuchElementException();
                 }
 
-                int i = currentIndex;
-                currentIndex++;
-                return backingArray[lastElementIndex = i];
+                lastSlot = activeSlots[currentIndex++];
+                removable = true;
+                return backingArray[lastSlot];
             }
 
             @Override
             public void remove() {
-                if (lastElementIndex < 0) {
+                if (!removable) {
                     throw new IllegalStateException("Can only call 'remove()' once in call to 'next()'.");
                 }
 
-                removeSlot(lastElementIndex);
-                currentIndex = lastElementIndex;
-                lastElementIndex = -1;
+                removeSlot(lastSlot);
+                removable = false;
+            }
+
+            /**
+             * Moves the current index to the first slot after the last slot we
+             * iterated over, if the occupied slots have shifted since then.
+             */
+            private void synchronize() {
+                if (currentIndex > 0 && (currentIndex > size || activeSlots[currentIndex - 1] != lastSlot)) {
+                    int index = Arrays.binarySearch(activeSlots, 0, size, lastSlot);
+                    currentIndex = index >= 0 ? index + 1 : -(index + 1);
+                }
             }
         };
     }
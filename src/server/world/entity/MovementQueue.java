@@ -1,8 +1,5 @@
 package server.world.entity;
 
-import java.util.Deque;
-import java.util.LinkedList;
-
 import server.core.worker.TaskFactory;
 import server.core.worker.WorkRate;
 import server.core.worker.Worker;
@@ -10,6 +7,8 @@ import server.util.Misc;
 import server.world.entity.UpdateFlags.Flag;
 import server.world.entity.npc.Npc;
 import server.world.entity.player.Player;
+import server.world.map.CollisionMap;
+import server.world.map.PathFinder;
 import server.world.map.Position;
 
 /**
@@ -23,8 +22,27 @@ public class MovementQueue {
     /** The entity trying to move. */
     private final Entity entity;
 
-    /** Queue of waypoints for the entity. */
-    private Deque<Point> waypoints = new LinkedList<Point>();
+    /**
+     * The capacity of the waypoint queue, a power of two large enough to hold
+     * the base point and the most steps a path can have.
+     */
+    private static final int CAPACITY = 128;
+
+    /** The most waypoints that can be queued at once. */
+    private static final int MAXIMUM_SIZE = 100;
+
+    /**
+     * A ring buffer of waypoints for the entity, each packed into a single
+     * <code>int</code> by {@link #pack(int, int, int)} so queueing a step
+     * never allocates.
+     */
+    private final int[] waypoints = new int[CAPACITY];
+
+    /** The index of the first waypoint in the ring buffer. */
+    private int head;
+
+    /** The amount of queued waypoints. */
+    private int size;
 
     /** If your run is toggled. */
     private boolean runToggled = false;
@@ -35,6 +53,18 @@ public class MovementQueue {
     /** If this entity's movement is locked. */
     private boolean lockMovement;
 
+    /**
+     * If a step of the current path was blocked, in which case the rest of
+     * the path is ignored.
+     */
+    private boolean blocked;
+
+    /**
+     * The packed position the current path was found to by the
+     * {@link PathFinder}, or -1 if the current path wasn't found by it.
+     */
+    private int pathTarget = -1;
+
     /**
      * Creates a new {@link MovementQueue}.
      * 
@@ -54,36 +84,37 @@ public class MovementQueue {
             return;
         }
 
-        Point walkPoint = null;
-        Point runPoint = null;
+        int walkDirection = -1;
+        int runDirection = -1;
+        boolean runPoint = false;
 
         /** Handle the movement. */
-        walkPoint = waypoints.poll();
-        if (isRunToggled()) {
-            runPoint = waypoints.poll();
+        if (size > 0) {
+            walkDirection = direction(poll());
+        }
+        if (isRunToggled() && size > 0) {
+            runDirection = direction(poll());
+            runPoint = true;
         }
 
         /** Decide if this is a run path or not. */
-        if (runPoint != null) {
-            this.setRunPath(true);
-        } else {
-            this.setRunPath(false);
-        }
+        this.setRunPath(runPoint);
 
         /** Walk if this is a walk point. */
-        if (walkPoint != null && walkPoint.getDirection() != -1) {
-            int x = Misc.DIRECTION_DELTA_X[walkPoint.getDirection()];
-            int y = Misc.DIRECTION_DELTA_Y[walkPoint.getDirection()];
+        if (walkDirection != -1) {
+            int x = Misc.DIRECTION_DELTA_X[walkDirection];
+            int y = Misc.DIRECTION_DELTA_Y[walkDirection];
 
             if (entity.isFollowing() && entity.getFollowingEntity() != null) {
-                if (entity.getPosition().clone().move(x, y).equals(entity.getFollowingEntity().getPosition())) {
+                if (entity.getFollowingEntity().getPosition().equals(entity.getPosition().getX() + x, entity.getPosition().getY() + y, entity.getPosition().getZ())) {
                     return;
                 }
             }
 
             entity.getPosition().move(x, y);
-            entity.setPrimaryDirection(walkPoint.getDirection());
-            entity.setLastDirection(walkPoint.getDirection());
+            entity.refreshRegionIndex();
+            entity.setPrimaryDirection(walkDirection);
+            entity.setLastDirection(walkDirection);
 
             if (entity instanceof Player) {
                 Player player = (Player) entity;
@@ -92,12 +123,12 @@ public class MovementQueue {
         }
 
         /** Run if this is a run point. */
-        if (runPoint != null && runPoint.getDirection() != -1) {
-            int x = Misc.DIRECTION_DELTA_X[runPoint.getDirection()];
-            int y = Misc.DIRECTION_DELTA_Y[runPoint.getDirection()];
+        if (runDirection != -1) {
+            int x = Misc.DIRECTION_DELTA_X[runDirection];
+            int y = Misc.DIRECTION_DELTA_Y[runDirection];
 
             if (entity.isFollowing() && entity.getFollowingEntity() != null) {
-                if (entity.getPosition().clone().move(x, y).equals(entity.getFollowingEntity().getPosition())) {
+                if (entity.getFollowingEntity().getPosition().equals(entity.getPosition().getX() + x, entity.getPosition().getY() + y, entity.getPosition().getZ())) {
                     return;
                 }
             }
@@ -114,8 +145,9 @@ public class MovementQueue {
             }
 
             entity.getPosition().move(x, y);
-            entity.setSecondaryDirection(runPoint.getDirection());
-            entity.setLastDirection(runPoint.getDirection());
+            entity.refreshRegionIndex();
+            entity.setSecondaryDirection(runDirection);
+            entity.setLastDirection(runDirection);
         }
 
         /** Check for region changes. */
@@ -164,47 +196,97 @@ public class MovementQueue {
         }
     }
 
+    /**
+     * Allow the entity to walk to a certain position point along a path found
+     * around anything in the way. The path is only searched for again once the
+     * position has changed or the entity has finished walking the last path,
+     * so this can be called every tick to chase a moving target.
+     * 
+     * @param position
+     *        the position the entity is moving too.
+     * @param moveNear
+     *        if the entity should walk as close as it can when the position
+     *        can't be reached.
+     */
+    public void walkPath(Position position, boolean moveNear) {
+        int target = position.pack();
+
+        if (target == pathTarget && !isMovementDone()) {
+            return;
+        }
+
+        if (PathFinder.getPathFinder().findRoute(entity, position, moveNear)) {
+            pathTarget = target;
+
+            if (entity instanceof Npc) {
+                ((Npc) entity).getFlags().flag(Flag.APPEARANCE);
+            }
+        }
+    }
+
     /**
      * Resets the walking queue.
      */
     public void reset() {
         setRunPath(false);
-        waypoints.clear();
+        blocked = false;
+        pathTarget = -1;
+        head = 0;
+        size = 0;
 
         /** Set the base point as this position. */
         Position p = entity.getPosition();
-        waypoints.add(new Point(p.getX(), p.getY(), -1));
+        add(pack(p.getX(), p.getY(), -1));
     }
 
     /**
      * Finishes the current path.
      */
     public void finish() {
-        waypoints.removeFirst();
+        if (size > 0) {
+            poll();
+        }
     }
 
     /**
      * Returns if the walking queue is finished or not.
      */
     public boolean isMovementDone() {
-        return waypoints.size() == 0;
+        return size == 0;
     }
 
     /**
-     * Adds a position to the path.
+     * Adds a position to the path. The path stops short of the position if
+     * anything blocks the way.
      * 
      * @param position
      *        the position.
      */
     public void addToPath(Position position) {
-        if (waypoints.size() == 0) {
+        addToPath(position.getX(), position.getY());
+    }
+
+    /**
+     * Adds a position to the path. The path stops short of the position if
+     * anything blocks the way.
+     * 
+     * @param x
+     *        the X coordinate of the position.
+     * @param y
+     *        the Y coordinate of the position.
+     */
+    public void addToPath(int x, int y) {
+        if (size == 0) {
             reset();
         }
-        Point last = waypoints.peekLast();
-        int deltaX = position.getX() - last.getX();
-        int deltaY = position.getY() - last.getY();
+        if (blocked) {
+            return;
+        }
+        int last = peekLast();
+        int deltaX = x - Position.unpackX(last);
+        int deltaY = y - Position.unpackY(last);
         int max = Math.max(Math.abs(deltaX), Math.abs(deltaY));
-        for (int i = 0; i < max; i++) {
+        for (int i = 0; i < max && !blocked; i++) {
             if (deltaX < 0) {
                 deltaX++;
             } else if (deltaX > 0) {
@@ -215,7 +297,7 @@ public class MovementQueue {
             } else if (deltaY > 0) {
                 deltaY--;
             }
-            addStep(position.getX() - deltaX, position.getY() - deltaY);
+            addStep(x - deltaX, y - deltaY);
         }
     }
 
@@ -228,18 +310,84 @@ public class MovementQueue {
      *        the Y coordinate
      */
     private void addStep(int x, int y) {
-        if (waypoints.size() >= 100) {
+        if (size >= MAXIMUM_SIZE) {
             return;
         }
-        Point last = waypoints.peekLast();
-        int deltaX = x - last.getX();
-        int deltaY = y - last.getY();
+        int last = peekLast();
+        int deltaX = x - Position.unpackX(last);
+        int deltaY = y - Position.unpackY(last);
         int direction = Misc.direction(deltaX, deltaY);
         if (direction > -1) {
-            waypoints.add(new Point(x, y, direction));
+            if (!CollisionMap.getMap().canMove(Position.unpackX(last), Position.unpackY(last), entity.getPosition().getZ(), deltaX, deltaY)) {
+                blocked = true;
+                return;
+            }
+            add(pack(x, y, direction));
         }
     }
 
+    /**
+     * Adds a waypoint to the back of the queue.
+     * 
+     * @param waypoint
+     *        the packed waypoint.
+     */
+    private void add(int waypoint) {
+        waypoints[(head + size) & (CAPACITY - 1)] = waypoint;
+        size++;
+    }
+
+    /**
+     * Removes the waypoint at the front of the queue, the queue must not be
+     * empty.
+     * 
+     * @return the packed waypoint.
+     */
+    private int poll() {
+        int waypoint = waypoints[head];
+        head = (head + 1) & (CAPACITY - 1);
+        size--;
+        return waypoint;
+    }
+
+    /**
+     * Gets the waypoint at the back of the queue, the queue must not be
+     * empty.
+     * 
+     * @return the packed waypoint.
+     */
+    private int peekLast() {
+        return waypoints[(head + size - 1) & (CAPACITY - 1)];
+    }
+
+    /**
+     * Packs a waypoint into a single <code>int</code>. The coordinates are
+     * packed the same way as {@link Position#pack(int, int, int)}, with the
+     * direction in place of the height level.
+     * 
+     * @param x
+     *        the X coordinate.
+     * @param y
+     *        the Y coordinate.
+     * @param direction
+     *        the direction to the waypoint, or -1 for no direction.
+     * @return the packed waypoint.
+     */
+    private static int pack(int x, int y, int direction) {
+        return ((direction + 1) << 28) | ((x & 0x3fff) << 14) | (y & 0x3fff);
+    }
+
+    /**
+     * Gets the direction from a packed waypoint.
+     * 
+     * @param waypoint
+     *        the packed waypoint.
+     * @return the direction, or -1 for no direction.
+     */
+    private static int direction(int waypoint) {
+        return (waypoint >>> 28) - 1;
+    }
+
     /**
      * Locks this entity's movement for the desired time.
      * 
@@ -310,7 +458,7 @@ public class MovementQueue {
                         return;
                     }
 
-                    if (entity.getPosition().equals(leader.getPosition().clone())) {
+                    if (entity.getPosition().equals(leader.getPosition())) {
                         entity.getMovementQueue().reset();
 
                         int x = entity.getPosition().getX();
@@ -359,11 +507,7 @@ public class MovementQueue {
                             return;
                         }
 
-                        int x = leader.getPosition().getX();
-                        int y = leader.getPosition().getY();
-                        // ClippedPathFinder.getPathFinder().findRoute(player,
-                        // x, y, true, 0, 0);
-                        player.getMovementQueue().walk(new Position(x, y, player.getPosition().getZ()));
+                        player.getMovementQueue().walkPath(leader.getPosition(), true);
 
                     } else if (entity.type() == EntityType.NPC) {
                         Npc npc = (Npc) entity;
@@ -376,11 +520,7 @@ public class MovementQueue {
                             return;
                         }
 
-                        int x = leader.getPosition().getX();
-                        int y = leader.getPosition().getY();
-                        // ClippedPathFinder.getDumbPathFinder().findRoute(player,
-                        // x, y, true, 0, 0);
-                        npc.getMovementQueue().walk(new Position(x, y, npc.getPosition().getZ()));
+                        npc.getMovementQueue().walkPath(leader.getPosition(), true);
                     }
                 }
             });
@@ -445,49 +585,4 @@ public class MovementQueue {
     public void setLockMovement(boolean lockMovement) {
         this.lockMovement = lockMovement;
     }
-
-    /**
-     * An internal Position type class with support for direction.
-     * 
-     * @author blakeman8192
-     */
-    private class Point extends Position {
-
-        /** The direction. */
-        private int direction;
-
-        /**
-         * Creates a new Point.
-         * 
-         * @param x
-         *        the X coordinate.
-         * @param y
-         *        the Y coordinate.
-         * @param direction
-         *        the direction to this point.
-         */
-        public Point(int x, int y, int direction) {
-            super(x, y);
-            setDirection(direction);
-        }
-
-        /**
-         * Sets the direction.
-         * 
-         * @param direction
-         *        the direction.
-         */
-        public void setDirection(int direction) {
-            this.direction = direction;
-        }
-
-        /**
-         * Gets the direction.
-         * 
-         * @return the direction.
-         */
-        public int getDirection() {
-            return direction;
-        }
-    }
 }
@@ -0,0 +1,191 @@
+package server.world.entity;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import server.util.LongMap;
+import server.world.map.Position;
+
+/**
+ * A spatial index that buckets entities by the square of the map they are
+ * standing in. Instead of scanning every slot in an {@link EntityContainer} to
+ * find entities around a position, only the 3x3 neighborhood of buckets
+ * surrounding that position has to be looked at.
+ * 
+ * @author lare96
+ * @param <T>
+ *        the type of entity held in this index.
+ */
+public class RegionIndex<T extends Entity> {
+
+    /**
+     * The amount of bits to shift a coordinate by to get the bucket it belongs
+     * to. Buckets are 16x16 tiles so the 3x3 neighborhood around any position
+     * will always cover the client's viewing distance of 15 tiles.
+     */
+    public static final int BUCKET_SHIFT = 4;
+
+    /** The value used to flag an entity as not being in the index. */
+    public static final int NO_BUCKET = -1;
+
+    /**
+     * The buckets of entities, mapped to their packed bucket keys. A map with
+     * primitive keys is used so looking up the neighborhood of a position
+     * doesn't box a key for every bucket.
+     */
+    private LongMap<Set<T>> buckets = new LongMap<Set<T>>(256);
+
+    /**
+     * Adds an entity to the bucket of the position it is currently standing
+     * on.
+     * 
+     * @param entity
+     *        the entity to add to this index.
+     */
+    public void add(T entity) {
+        if (entity.getRegionIndexKey() != NO_BUCKET) {
+            remove(entity);
+        }
+
+        int key = key(entity.getPosition());
+        bucket(key, true).add(entity);
+        entity.setRegionIndexKey(key);
+    }
+
+    /**
+     * Removes an entity from the bucket it was last placed in.
+     * 
+     * @param entity
+     *        the entity to remove from this index.
+     */
+    public void remove(T entity) {
+        int key = entity.getRegionIndexKey();
+
+        if (key == NO_BUCKET) {
+            return;
+        }
+
+        Set<T> bucket = bucket(key, false);
+
+        if (bucket != null) {
+            bucket.remove(entity);
+
+            /** Don't keep empty buckets around. */
+            if (bucket.isEmpty()) {
+                buckets.remove(key);
+            }
+        }
+
+        entity.setRegionIndexKey(NO_BUCKET);
+    }
+
+    /**
+     * Moves an entity into a new bucket if its position has changed buckets
+     * since it was last indexed. Entities that are not in this index are
+     * ignored.
+     * 
+     * @param entity
+     *        the entity to update in this index.
+     */
+    public void update(T entity) {
+        int key = entity.getRegionIndexKey();
+
+        if (key == NO_BUCKET || key == key(entity.getPosition())) {
+            return;
+        }
+
+        remove(entity);
+        add(entity);
+    }
+
+    /**
+     * Gets every entity in the 3x3 neighborhood of buckets surrounding the
+     * specified position on the same height level. The entities are copied
+     * into a list supplied by the caller so it can be reused instead of
+     * allocating a new list for every lookup, and so the index can be
+     * modified while the entities are being looked through.
+     * 
+     * @param position
+     *        the position to get the surrounding entities for.
+     * @param surrounding
+     *        the list to clear and then fill with the surrounding entities.
+     * @return the list of the surrounding entities.
+     */
+    public List<T> getSurrounding(Position position, List<T> surrounding) {
+        surrounding.clear();
+        int bucketX = position.getX() >> BUCKET_SHIFT;
+        int bucketY = position.getY() >> BUCKET_SHIFT;
+
+        for (int x = bucketX - 1; x <= bucketX + 1; x++) {
+            for (int y = bucketY - 1; y <= bucketY + 1; y++) {
+                Set<T> bucket = bucket(key(x, y, position.getZ()), false);
+
+                if (bucket == null) {
+                    continue;
+                }
+
+                /** Not addAll, which would copy the bucket into an array. */
+                for (T entity : bucket) {
+                    surrounding.add(entity);
+                }
+            }
+        }
+        return surrounding;
+    }
+
+    /**
+     * Gets the amount of non-empty buckets in this index.
+     * 
+     * @return the amount of non-empty buckets.
+     */
+    public int getBucketCount() {
+        return buckets.size();
+    }
+
+    /**
+     * Gets the bucket for the specified key.
+     * 
+     * @param key
+     *        the packed key of the bucket.
+     * @param create
+     *        if the bucket should be created if it doesn't exist.
+     * @return the bucket, or <code>null</code> if it doesn't exist and wasn't
+     *         created.
+     */
+    private Set<T> bucket(int key, boolean create) {
+        Set<T> bucket = buckets.get(key);
+
+        if (bucket == null && create) {
+            bucket = new LinkedHashSet<T>();
+            buckets.put(key, bucket);
+        }
+        return bucket;
+    }
+
+    /**
+     * Packs the bucket coordinates of a position into a single key.
+     * 
+     * @param position
+     *        the position to get the key for.
+     * @return the packed key.
+     */
+    private static int key(Position position) {
+        return key(position.getX() >> BUCKET_SHIFT, position.getY() >> BUCKET_SHIFT, position.getZ());
+    }
+
+    /**
+     * Packs bucket coordinates into a single key.
+     * 
+     * @param bucketX
+     *        the bucket X coordinate.
+     * @param bucketY
+     *        the bucket Y coordinate.
+     * @param z
+     *        the height level.
+     * @return the packed key.
+     */
+    private static int key(int bucketX, int bucketY, int z) {
+        return Position.pack(bucketX, bucketY, z);
+    }
+}
@@ -0,0 +1,78 @@
+package server.world.entity;
+
+import java.util.Arrays;
+
+/**
+ * Holds the update blocks built for an {@link Entity} during a single tick so
+ * each block only has to be encoded once, no matter how many entities it is
+ * being sent to. Blocks are keyed by the update flag mask they were built for
+ * and the variant of the block.
+ * 
+ * @author lare96
+ */
+public class UpdateBlockCache {
+
+    /**
+     * The different variants of an update block.
+     * 
+     * @author lare96
+     */
+    public enum Variant {
+
+        /** The block sent to the entity itself, without chat. */
+        SELF,
+
+        /** The block sent to other entities. */
+        OTHER,
+
+        /** The block sent to entities adding this entity to their view. */
+        FORCED_APPEARANCE
+    }
+
+    /** The cached blocks, indexed by the ordinal of their variant. */
+    private final byte[][] blocks = new byte[Variant.values().length][];
+
+    /** The update flag mask the cached blocks were built for. */
+    private int mask = -1;
+
+    /**
+     * Caches an update block.
+     * 
+     * @param mask
+     *        the update flag mask the block was built for.
+     * @param variant
+     *        the variant of the block.
+     * @param block
+     *        the block to cache.
+     */
+    public void cache(int mask, Variant variant, byte[] block) {
+        if (this.mask != mask) {
+            clear();
+            this.mask = mask;
+        }
+
+        blocks[variant.ordinal()] = block;
+    }
+
+    /**
+     * Gets a cached update block.
+     * 
+     * @param mask
+     *        the current update flag mask.
+     * @param variant
+     *        the variant of the block.
+     * @return the cached block, or <code>null</code> if there is no block
+     *         cached for the mask and variant.
+     */
+    public byte[] get(int mask, Variant variant) {
+        return this.mask == mask ? blocks[variant.ordinal()] : null;
+    }
+
+    /**
+     * Clears all of the cached blocks.
+     */
+    public void clear() {
+        Arrays.fill(blocks, null);
+        mask = -1;
+    }
+}
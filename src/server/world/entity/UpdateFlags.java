@@ -42,6 +42,20 @@ public class UpdateFlags {
         return !bits.isEmpty();
     }
 
+    /**
+     * Gets the update flags packed into a single mask.
+     * 
+     * @return the mask of flagged update flags.
+     */
+    public int getMask() {
+        int mask = 0;
+
+        for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+            mask |= 1 << i;
+        }
+        return mask;
+    }
+
     /**
      * Resets the update flags.
      */
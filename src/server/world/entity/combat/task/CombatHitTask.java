@@ -273,7 +273,7 @@ public class CombatHitTask extends Worker {
                                             continue;
                                         }
 
-                                        if (!plr.getUsername().equals(victim.getUsername()) && plr.getPosition().withinDistance(target.getPosition().clone(), 5)) {
+                                        if (!plr.getUsername().equals(victim.getUsername()) && plr.getPosition().withinDistance(target.getPosition(), 5)) {
                                             plr.dealDamage(new Hit(Misc.random(15)));
                                         }
                                     }
@@ -12,6 +12,7 @@ import server.world.entity.combat.CombatType;
 import server.world.entity.combat.prayer.CombatPrayer;
 import server.world.entity.npc.Npc;
 import server.world.entity.player.Player;
+import server.world.map.CollisionMap;
 import server.world.map.Location;
 import server.world.map.Position;
 
@@ -213,8 +214,8 @@ public class CombatHookTask extends Worker {
         if (builder.getAttackTimer() == 0) {
 
             /** Check if the attacker is close enough to attack. */
-            Position attackerPosition = builder.getEntity().getPosition().clone();
-            Position victimPosition = builder.getCurrentTarget().getPosition().clone();
+            Position attackerPosition = builder.getEntity().getPosition();
+            Position victimPosition = builder.getCurrentTarget().getPosition();
 
             if (!builder.getEntity().getMovementQueue().isLockMovement()) {
                 if (!builder.getEntity().getMovementQueue().isRunToggled() && !attackerPosition.withinDistance(victimPosition, builder.getCurrentStrategy().getDistance(builder.getEntity())) || builder.getEntity().getMovementQueue().isRunToggled() && !attackerPosition.withinDistance(victimPosition, (builder.getCurrentStrategy().getDistance(builder.getEntity()) + 3))) {
@@ -226,6 +227,11 @@ public class CombatHookTask extends Worker {
                 }
             }
 
+            /** Check if anything is blocking the attack. */
+            if (!CollisionMap.getMap().hasLineOfSight(attackerPosition, victimPosition)) {
+                return;
+            }
+
             /** Check if the attack can be made on this hook. */
             if (!builder.getCurrentStrategy().prepareAttack(builder.getEntity())) {
                 return;
@@ -22,6 +22,12 @@ import server.world.map.Position;
  */
 public class Npc extends Entity {
 
+    /**
+     * The amount of ticks an npc stays awake for after the last time a player
+     * was close enough to see it.
+     */
+    public static final int SLEEP_DELAY = 10;
+
     /** The npc ID. */
     private int npcId;
 
@@ -56,6 +62,12 @@ public class Npc extends Entity {
     /** The respawn ticks. */
     private int respawnTicks;
 
+    /** If this npc is asleep and isn't being pulsed or updated. */
+    private boolean sleeping;
+
+    /** The tick a player was last close enough to see this npc on. */
+    private long lastObserved;
+
     /**
      * Creates a new {@link Npc}.
      * 
@@ -83,6 +95,47 @@ public class Npc extends Entity {
         getMovementQueue().execute();
     }
 
+    /**
+     * Flags this npc as seen by a player on this tick, waking it up if it was
+     * asleep. Npcs that were random walking are put back on their original
+     * position as they wake up, so they're always in the same place no matter
+     * how long they slept for. This happens before the npc is next updated, so
+     * no player ever sees it jump.
+     * 
+     * @param tick
+     *        the current tick.
+     */
+    public void observe(long tick) {
+        lastObserved = tick;
+
+        if (sleeping) {
+            sleeping = false;
+            movementCoordinator.snapHome();
+        }
+    }
+
+    /**
+     * Puts this npc to sleep if no player has been close enough to see it for
+     * {@link #SLEEP_DELAY} ticks and it isn't busy doing anything.
+     * 
+     * @param tick
+     *        the current tick.
+     * @return true if this npc is asleep.
+     */
+    public boolean sleep(long tick) {
+        if (sleeping) {
+            return true;
+        }
+
+        if (tick - lastObserved <= SLEEP_DELAY || isHasDied() || isFollowing() || getCombatBuilder().isAttacking() || getCombatBuilder().isBeingAttacked()) {
+            return false;
+        }
+
+        reset();
+        sleeping = true;
+        return true;
+    }
+
     @Override
     public Worker death() throws Exception {
         return new Worker(1, false) {
@@ -131,6 +184,7 @@ public class Npc extends Entity {
     public void move(Position position) {
         getMovementQueue().reset();
         getPosition().setAs(position);
+        refreshRegionIndex();
         getFlags().flag(Flag.APPEARANCE);
         World.getNpcs().remove(this);
     }
@@ -356,6 +410,15 @@ public class Npc extends Entity {
         return movementCoordinator;
     }
 
+    /**
+     * Gets if this npc is asleep.
+     * 
+     * @return true if this npc is asleep.
+     */
+    public boolean isSleeping() {
+        return sleeping;
+    }
+
     /**
      * @return the statsWeakened
      */
@@ -0,0 +1,181 @@
+package server.world.entity.npc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import server.core.worker.TaskFactory;
+import server.core.worker.WorkRate;
+import server.core.worker.Worker;
+import server.world.World;
+import server.world.entity.combat.CombatFactory;
+import server.world.entity.player.Player;
+import server.world.map.CollisionMap;
+import server.world.map.Location;
+
+/**
+ * Makes aggressive npcs attack the players that come near them. Instead of
+ * every aggressive npc looking through every online player, the npcs around
+ * each player are found through the region index, so aggressive npcs that
+ * have no players near them cost nothing at all.
+ * 
+ * <p>
+ * Every npc only looks for a target once every {@link #SCAN_INTERVAL} ticks,
+ * and the ticks npcs look on are spread out by their slot so the work is
+ * split evenly across ticks. Players that stay in the same region for long
+ * enough become tolerated by the npcs there, and are no longer attacked.
+ * </p>
+ * 
+ * @author lare96
+ */
+public final class NpcAggression {
+
+    /** The amount of ticks between each time an npc looks for a target. */
+    public static final int SCAN_INTERVAL = 4;
+
+    /** The distance in tiles an npc will notice players from. */
+    public static final int AGGRESSION_RADIUS = 4;
+
+    /**
+     * The amount of ticks a player has to stay in a region for before the
+     * npcs in it stop being aggressive towards them.
+     */
+    public static final int TOLERANCE_TICKS = WorkRate.EXACT_MINUTE.getTickRate() * 10;
+
+    /** The singleton instance. */
+    private static NpcAggression singleton = new NpcAggression();
+
+    /** The npcs that have already looked for a target this tick. */
+    private final Set<Npc> scanned = Collections.newSetFromMap(new IdentityHashMap<Npc, Boolean>());
+
+    /** The list the npcs around each player are copied into. */
+    private final List<Npc> surroundingNpcs = new ArrayList<Npc>();
+
+    /** The list the players around each npc are copied into. */
+    private final List<Player> surroundingPlayers = new ArrayList<Player>();
+
+    /** So this class cannot be instantiated. */
+    private NpcAggression() {
+
+    }
+
+    /**
+     * Starts looking for targets for aggressive npcs every tick.
+     */
+    public void start() {
+        TaskFactory.getFactory().submit(new Worker(1, false) {
+            @Override
+            public void fire() {
+                scan(TaskFactory.getFactory().getTick());
+            }
+        });
+    }
+
+    /**
+     * Makes the aggressive npcs around every player that are due to look for
+     * a target this tick do so.
+     * 
+     * @param tick
+     *        the current tick.
+     */
+    private void scan(long tick) {
+        scanned.clear();
+
+        for (Player player : World.getPlayers()) {
+            if (player == null) {
+                continue;
+            }
+
+            /** Restart the tolerance timer when the player changes regions. */
+            int region = player.getPosition().getRegionId();
+
+            if (player.getToleranceRegion() != region) {
+                player.setToleranceRegion(region);
+                player.setToleranceTick(tick);
+            }
+
+            for (Npc npc : World.getNpcs().getRegionIndex().getSurrounding(player.getPosition(), surroundingNpcs)) {
+                if ((tick + npc.getSlot()) % SCAN_INTERVAL != 0 || !npc.getDefinition().isAggressive() || !scanned.add(npc)) {
+                    continue;
+                }
+
+                target(npc, tick);
+            }
+        }
+    }
+
+    /**
+     * Makes an npc attack the first player around it that it can be
+     * aggressive towards.
+     * 
+     * @param npc
+     *        the npc looking for a target.
+     * @param tick
+     *        the current tick.
+     */
+    private void target(Npc npc, long tick) {
+        if (npc.isHasDied() || !npc.isVisible() || npc.isFollowing() || npc.getCombatBuilder().isAttacking() || npc.getCombatBuilder().isBeingAttacked()) {
+            return;
+        }
+
+        int combatLevel = npc.getDefinition().getCombatLevel();
+
+        for (Player player : World.getPlayers().getRegionIndex().getSurrounding(npc.getPosition(), surroundingPlayers)) {
+            if (canTarget(npc, combatLevel, player, tick)) {
+                npc.getCombatBuilder().attack(player);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Determines if an npc can be aggressive towards a player.
+     * 
+     * @param npc
+     *        the npc looking for a target.
+     * @param combatLevel
+     *        the combat level of the npc.
+     * @param player
+     *        the player being looked at.
+     * @param tick
+     *        the current tick.
+     * @return true if the npc can attack the player.
+     */
+    private boolean canTarget(Npc npc, int combatLevel, Player player, long tick) {
+        if (player.isHasDied() || !npc.getPosition().withinDistance(player.getPosition(), AGGRESSION_RADIUS)) {
+            return false;
+        }
+
+        /** Players that have been in this region long enough are tolerated. */
+        if (tick - player.getToleranceTick() >= TOLERANCE_TICKS) {
+            return false;
+        }
+
+        /**
+         * Outside of the wilderness npcs leave alone players with more than
+         * double their combat level.
+         */
+        int playerLevel = player.getCombatLevel();
+
+        if (!Location.inWilderness(player) && playerLevel > combatLevel && CombatFactory.calculateCombatDifference(playerLevel, combatLevel) > combatLevel) {
+            return false;
+        }
+
+        /** Don't pile onto players already in combat outside of multi. */
+        if (!Location.inMultiCombat(player) && player.getCombatBuilder().isBeingAttacked()) {
+            return false;
+        }
+        return CollisionMap.getMap().hasLineOfSight(npc.getPosition(), player.getPosition());
+    }
+
+    /**
+     * Gets the singleton instance.
+     * 
+     * @return the singleton instance.
+     */
+    public static NpcAggression getAggression() {
+        return singleton;
+    }
+}
@@ -0,0 +1,152 @@
+package server.world.entity.npc;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import server.util.DefinitionPack;
+
+/**
+ * Encodes and decodes the {@link NpcDefinition}s stored in a binary
+ * {@link DefinitionPack}. Every field is stored as its own column so the
+ * primitive fields can be read in bulk straight out of the mapped pack.
+ * 
+ * @author lare96
+ */
+public final class NpcDefinitionPack {
+
+    /** The format version, this should be bumped whenever the layout changes. */
+    public static final int VERSION = 1;
+
+    /** The flag for a definition existing. */
+    private static final int PRESENT = 1;
+
+    /** The flag for an attackable npc. */
+    private static final int ATTACKABLE = 1 << 1;
+
+    /** The flag for an aggressive npc. */
+    private static final int AGGRESSIVE = 1 << 2;
+
+    /** The flag for an npc that retreats. */
+    private static final int RETREATS = 1 << 3;
+
+    /** The flag for a poisonous npc. */
+    private static final int POISONOUS = 1 << 4;
+
+    /** So this class cannot be instantiated. */
+    private NpcDefinitionPack() {
+    }
+
+    /**
+     * Encodes definitions into the body of a pack.
+     * 
+     * @param definitions
+     *        the definitions to encode, which may contain <code>null</code>.
+     * @return the encoded body.
+     * @throws IOException
+     *         if any errors occur while encoding.
+     */
+    public static byte[] encode(NpcDefinition[] definitions) throws IOException {
+        int count = definitions.length;
+        byte[] flags = new byte[count];
+        String[] names = new String[count];
+        String[] examines = new String[count];
+        int[] combatLevels = new int[count];
+        int[] sizes = new int[count];
+        int[] respawnTimes = new int[count];
+        int[] maxHits = new int[count];
+        int[] hitpoints = new int[count];
+        int[] attackSpeeds = new int[count];
+        int[] attackAnimations = new int[count];
+        int[] defenceAnimations = new int[count];
+        int[] deathAnimations = new int[count];
+        int[] attackBonuses = new int[count];
+        int[] defenceMelee = new int[count];
+        int[] defenceRange = new int[count];
+        int[] defenceMage = new int[count];
+
+        for (int i = 0; i < count; i++) {
+            NpcDefinition def = definitions[i];
+
+            if (def == null) {
+                continue;
+            }
+
+            flags[i] = (byte) (PRESENT | (def.isAttackable() ? ATTACKABLE : 0) | (def.isAggressive() ? AGGRESSIVE : 0) | (def.isRetreats() ? RETREATS : 0) | (def.isPoisonous() ? POISONOUS : 0));
+            names[i] = def.getName();
+            examines[i] = def.getExamine();
+            combatLevels[i] = def.getCombatLevel();
+            sizes[i] = def.getNpcSize();
+            respawnTimes[i] = def.getRespawnTime();
+            maxHits[i] = def.getMaxHit();
+            hitpoints[i] = def.getHitpoints();
+            attackSpeeds[i] = def.getAttackSpeed();
+            attackAnimations[i] = def.getAttackAnimation();
+            defenceAnimations[i] = def.getDefenceAnimation();
+            deathAnimations[i] = def.getDeathAnimation();
+            attackBonuses[i] = def.getAttackBonus();
+            defenceMelee[i] = def.getDefenceMelee();
+            defenceRange[i] = def.getDefenceRange();
+            defenceMage[i] = def.getDefenceMage();
+        }
+
+        return DefinitionPack.newBody().putInt(count).putBytes(flags).putStrings(names).putStrings(examines).putInts(combatLevels).putInts(sizes).putInts(respawnTimes).putInts(maxHits).putInts(hitpoints).putInts(attackSpeeds).putInts(attackAnimations).putInts(defenceAnimations).putInts(deathAnimations).putInts(attackBonuses).putInts(defenceMelee).putInts(defenceRange).putInts(defenceMage).toByteArray();
+    }
+
+    /**
+     * Decodes definitions from the body of a pack.
+     * 
+     * @param buffer
+     *        the body of the pack.
+     * @return the decoded definitions.
+     */
+    public static NpcDefinition[] decode(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        byte[] flags = DefinitionPack.getBytes(buffer, count);
+        String[] names = DefinitionPack.getStrings(buffer, count);
+        String[] examines = DefinitionPack.getStrings(buffer, count);
+        int[] combatLevels = DefinitionPack.getInts(buffer, count);
+        int[] sizes = DefinitionPack.getInts(buffer, count);
+        int[] respawnTimes = DefinitionPack.getInts(buffer, count);
+        int[] maxHits = DefinitionPack.getInts(buffer, count);
+        int[] hitpoints = DefinitionPack.getInts(buffer, count);
+        int[] attackSpeeds = DefinitionPack.getInts(buffer, count);
+        int[] attackAnimations = DefinitionPack.getInts(buffer, count);
+        int[] defenceAnimations = DefinitionPack.getInts(buffer, count);
+        int[] deathAnimations = DefinitionPack.getInts(buffer, count);
+        int[] attackBonuses = DefinitionPack.getInts(buffer, count);
+        int[] defenceMelee = DefinitionPack.getInts(buffer, count);
+        int[] defenceRange = DefinitionPack.getInts(buffer, count);
+        int[] defenceMage = DefinitionPack.getInts(buffer, count);
+        NpcDefinition[] definitions = new NpcDefinition[count];
+
+        for (int i = 0; i < count; i++) {
+            if ((flags[i] & PRESENT) == 0) {
+                continue;
+            }
+
+            NpcDefinition def = new NpcDefinition();
+            def.setId(i);
+            def.setName(names[i]);
+            def.setExamine(examines[i]);
+            def.setCombatLevel(combatLevels[i]);
+            def.setNpcSize(sizes[i]);
+            def.setAttackable((flags[i] & ATTACKABLE) != 0);
+            def.setAggressive((flags[i] & AGGRESSIVE) != 0);
+            def.setRetreats((flags[i] & RETREATS) != 0);
+            def.setPoisonous((flags[i] & POISONOUS) != 0);
+            def.setRespawnTime(respawnTimes[i]);
+            def.setMaxHit(maxHits[i]);
+            def.setHitpoints(hitpoints[i]);
+            def.setAttackSpeed(attackSpeeds[i]);
+            def.setAttackAnimation(attackAnimations[i]);
+            def.setDefenceAnimation(defenceAnimations[i]);
+            def.setDeathAnimation(deathAnimations[i]);
+            def.setAttackBonus(attackBonuses[i]);
+            def.setDefenceMelee(defenceMelee[i]);
+            def.setDefenceRange(defenceRange[i]);
+            def.setDefenceMage(defenceMage[i]);
+            definitions[i] = def;
+        }
+        return definitions;
+    }
+}
@@ -1,6 +1,8 @@
 package server.world.entity.npc;
 
+import server.core.TickProfiler;
 import server.util.Misc;
+import server.world.map.CollisionMap;
 import server.world.map.Position;
 
 /**
@@ -10,6 +12,9 @@ import server.world.map.Position;
  */
 public class NpcMovementCoordinator {
 
+    /** The amount of random positions tried before the npc stays put. */
+    private static final int GENERATE_ATTEMPTS = 8;
+
     /** The npc we are coordinating movement for. */
     private Npc npc;
 
@@ -58,6 +63,11 @@ public class NpcMovementCoordinator {
             return;
         }
 
+        /** Random walking can wait if the server is struggling to keep up. */
+        if (TickProfiler.getProfiler().isShedding()) {
+            return;
+        }
+
         /** Periodic coordinate effect. */
         if (Misc.random(13) == 5) {
             switch (coordinateState) {
@@ -82,13 +92,47 @@ public class NpcMovementCoordinator {
     }
 
     /**
-     * Generates a local position to this npc within the given radius.
+     * Puts the npc straight back on its original position if it's random
+     * walking, so it's always in the same place after waking up.
+     */
+    public void snapHome() {
+        if (!coordinator.isCoordinate()) {
+            return;
+        }
+
+        npc.getMovementQueue().reset();
+        npc.getPosition().setAs(npc.getOriginalPosition());
+        npc.refreshRegionIndex();
+        coordinateState = CoordinateState.HOME;
+    }
+
+    /**
+     * Generates a local position to this npc within the given radius that the
+     * npc can stand on. If one can't be found the npc stays where it is.
      * 
      * @param radius
      *        the radius to generate the local position within.
      * @return the generated local position.
      */
     private Position generateLocalPosition(int radius) {
+        for (int i = 0; i < GENERATE_ATTEMPTS; i++) {
+            Position position = randomLocalPosition(radius);
+
+            if (!CollisionMap.getMap().isBlocked(position)) {
+                return position;
+            }
+        }
+        return npc.getPosition().clone();
+    }
+
+    /**
+     * Picks a random local position to this npc within the given radius.
+     * 
+     * @param radius
+     *        the radius to pick the local position within.
+     * @return the picked local position.
+     */
+    private Position randomLocalPosition(int radius) {
         switch (Misc.random(3)) {
 
             /** Northwest, north, and west directions. */
@@ -1,16 +1,18 @@
 package server.world.entity.npc;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 
 import server.core.net.packet.PacketBuffer;
 import server.core.net.packet.PacketBuffer.ByteOrder;
 import server.core.net.packet.PacketBuffer.ValueType;
 import server.core.worker.TaskFactory;
-import server.util.Misc;
 import server.world.World;
+import server.world.entity.UpdateBlockCache.Variant;
 import server.world.entity.UpdateFlags.Flag;
 import server.world.entity.player.Player;
-import server.world.map.Position;
 
 /**
  * Provides static utility methods for updating NPCs.
@@ -20,6 +22,17 @@ import server.world.map.Position;
  */
 public class NpcUpdate {
 
+    /**
+     * The lists the npcs surrounding the player being updated are copied into,
+     * one list per thread since players are updated concurrently.
+     */
+    private static final ThreadLocal<List<Npc>> surrounding = new ThreadLocal<List<Npc>>() {
+        @Override
+        protected List<Npc> initialValue() {
+            return new ArrayList<Npc>();
+        }
+    };
+
     /**
      * Updates all NPCs for the argued Player.
      * 
@@ -28,8 +41,28 @@ public class NpcUpdate {
      */
     public static void update(Player player) {
         // XXX: The buffer sizes may need to be tuned.
-        PacketBuffer.WriteBuffer out = PacketBuffer.newWriteBuffer(2048);
-        PacketBuffer.WriteBuffer block = PacketBuffer.newWriteBuffer(1024);
+        PacketBuffer.WriteBuffer out = PacketBuffer.acquireWriteBuffer(2048);
+        PacketBuffer.WriteBuffer block = PacketBuffer.acquireWriteBuffer(1024);
+
+        try {
+            update(player, out, block);
+        } finally {
+            out.release();
+            block.release();
+        }
+    }
+
+    /**
+     * Updates all NPCs for the argued Player using the specified buffers.
+     * 
+     * @param player
+     *        the argued player.
+     * @param out
+     *        the buffer for the update packet.
+     * @param block
+     *        the buffer for the update blocks.
+     */
+    private static void update(Player player, PacketBuffer.WriteBuffer out, PacketBuffer.WriteBuffer block) {
 
         /** Initialize the update packet. */
         out.writeVariableShortPacketHeader(65);
@@ -52,24 +85,26 @@ public class NpcUpdate {
             }
         }
 
-        /** Update the local NPC list itself. */
+        /**
+         * Update the local NPC list itself, only looking at the npcs
+         * surrounding this player instead of the entire world.
+         */
         // XXX: Check for limits.
-        for (Npc npc : World.getNpcs()) {
-            if (npc == null || player.getNpcs().contains(npc) || !npc.isVisible()) {
+        for (Npc npc : World.getNpcs().getRegionIndex().getSurrounding(player.getPosition(), surrounding.get())) {
+            if (player.getNpcs().contains(npc) || !npc.isVisible()) {
                 continue;
             }
 
             if (npc.getPosition().isViewableFrom(player.getPosition())) {
-                /** Runesource npc updating fix here! - lare96 */
-                npc.getFlags().flag(Flag.APPEARANCE);
                 player.getNpcs().add(npc);
-                /** Runesource npc updating fix here! - lare96 */
 
+                /**
+                 * Runesource npc updating fix here! - lare96 (an update block
+                 * is always sent for added npcs, without flagging the npc
+                 * itself since other players are being updated concurrently).
+                 */
                 addNpc(out, player, npc);
-
-                if (npc.getFlags().isUpdateRequired()) {
-                    NpcUpdate.updateState(block, npc);
-                }
+                NpcUpdate.updateState(block, npc);
             }
         }
 
@@ -99,10 +134,9 @@ public class NpcUpdate {
      */
     private static void addNpc(PacketBuffer.WriteBuffer out, Player player, Npc npc) {
         out.writeBits(14, npc.getSlot());
-        Position delta = Misc.delta(player.getPosition(), npc.getPosition());
-        out.writeBits(5, delta.getY());
-        out.writeBits(5, delta.getX());
-        out.writeBit(npc.getFlags().isUpdateRequired());
+        out.writeBits(5, player.getPosition().getDeltaY(npc.getPosition()));
+        out.writeBits(5, player.getPosition().getDeltaX(npc.getPosition()));
+        out.writeBit(true);
         out.writeBits(12, npc.getNpcId());
         out.writeBit(true);
     }
@@ -136,6 +170,30 @@ public class NpcUpdate {
         }
     }
 
+    /**
+     * Builds and caches the update block for a NPC before updating takes
+     * place, so the block is only encoded once per tick regardless of how many
+     * players it is sent to. This must be called on the game thread before the
+     * parallel update phase.
+     * 
+     * @param npc
+     *        the NPC to build the update block for.
+     */
+    public static void prepare(Npc npc) {
+        if (!npc.getFlags().isUpdateRequired()) {
+            return;
+        }
+
+        PacketBuffer.WriteBuffer buffer = PacketBuffer.acquireWriteBuffer(64);
+
+        try {
+            appendState(buffer, npc);
+            npc.getUpdateBlockCache().cache(npc.getFlags().getMask(), Variant.OTHER, Arrays.copyOf(buffer.getBuffer().array(), buffer.getBuffer().position()));
+        } finally {
+            buffer.release();
+        }
+    }
+
     /**
      * Updates the state of the NPC to the given update block.
      * 
@@ -145,6 +203,28 @@ public class NpcUpdate {
      *        The NPC to update.
      */
     private static void updateState(PacketBuffer.WriteBuffer block, Npc npc) {
+
+        /** Send the cached update block if we are able to. */
+        byte[] cached = npc.getUpdateBlockCache().get(npc.getFlags().getMask(), Variant.OTHER);
+
+        if (cached != null) {
+            block.writeBytes(cached, cached.length);
+            return;
+        }
+
+        /** Otherwise build it straight into the update block. */
+        appendState(block, npc);
+    }
+
+    /**
+     * Appends the state of the NPC to the given buffer.
+     * 
+     * @param block
+     *        The buffer to append to.
+     * @param npc
+     *        The NPC to update.
+     */
+    private static void appendState(PacketBuffer.WriteBuffer block, Npc npc) {
         int mask = 0x0;
 
         /** NPC update masks. */
@@ -1,13 +1,11 @@
 package server.world.entity.player;
 
-import java.nio.ByteBuffer;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
-import java.util.List;
 import java.util.Set;
 import java.util.logging.Logger;
 
@@ -16,6 +14,7 @@ import server.core.net.Session;
 import server.core.net.packet.PacketEncoder;
 import server.core.worker.TaskFactory;
 import server.core.worker.Worker;
+import server.util.LongSet;
 import server.util.Misc;
 import server.util.Misc.Stopwatch;
 import server.world.World;
@@ -47,6 +46,7 @@ import server.world.entity.player.skill.SkillEvent;
 import server.world.entity.player.skill.SkillManager;
 import server.world.entity.player.skill.SkillManager.SkillConstant;
 import server.world.item.Item;
+import server.world.item.ItemTable;
 import server.world.item.container.BankContainer;
 import server.world.item.container.EquipmentContainer;
 import server.world.item.container.InventoryContainer;
@@ -54,6 +54,7 @@ import server.world.item.ground.GroundItem;
 import server.world.item.ground.StaticGroundItem;
 import server.world.map.Location;
 import server.world.map.Position;
+import server.world.object.WorldObject;
 
 /**
  * Represents a logged-in player that is able to receive and send packets and
@@ -207,6 +208,18 @@ public class Player extends Entity {
     /** A list of local npcs. */
     private final Set<Npc> npcs = new LinkedHashSet<Npc>();
 
+    /** The ground items that have been sent to this player. */
+    private final Set<GroundItem> groundItems = Collections.newSetFromMap(new IdentityHashMap<GroundItem, Boolean>());
+
+    /** The registered objects that have been sent to this player. */
+    private final Set<WorldObject> objects = Collections.newSetFromMap(new IdentityHashMap<WorldObject, Boolean>());
+
+    /** The region aggressive npcs are becoming tolerant of this player in. */
+    private int toleranceRegion = -1;
+
+    /** The tick this player entered the region they're tolerated in. */
+    private long toleranceTick;
+
     /** The players rights. */
     private int staffRights = 2;
 
@@ -229,10 +242,10 @@ public class Player extends Entity {
     private int[] playerBonus = new int[12];
 
     /** The friends list. */
-    private List<Long> friends = new ArrayList<Long>(200);
+    private LongSet friends = new LongSet(200);
 
     /** The ignores list. */
-    private List<Long> ignores = new ArrayList<Long>(100);
+    private LongSet ignores = new LongSet(100);
 
     /** Flag that determines if this player has entered an incorrect password. */
     private boolean incorrectPassword;
@@ -255,9 +268,6 @@ public class Player extends Entity {
     /** Private messaging for this player. */
     private PrivateMessage privateMessage = new PrivateMessage(this);
 
-    /** The cached update block. */
-    private ByteBuffer cachedUpdateBlock;
-
     /** The player's username hash. */
     private long usernameHash;
 
@@ -528,6 +538,7 @@ public class Player extends Entity {
         getMovementQueue().reset();
         getPacketBuilder().closeWindows();
         getPosition().setAs(position);
+        refreshRegionIndex();
         setResetMovementQueue(true);
         setNeedsPlacement(true);
         getPacketBuilder().sendMapRegion();
@@ -774,14 +785,14 @@ public class Player extends Entity {
             playerBonus[i] = 0;
         }
 
+        ItemTable table = ItemTable.getTable();
+
         for (Item item : this.getEquipment().getContainer().toArray()) {
             if (item == null || item.getId() < 1 || item.getAmount() < 1) {
                 continue;
             }
 
-            for (int i = 0; i < playerBonus.length; i++) {
-                playerBonus[i] += item.getDefinition().getBonus()[i];
-            }
+            table.addBonuses(item.getId(), playerBonus);
         }
 
         int offset = 0;
@@ -855,6 +866,44 @@ public class Player extends Entity {
         return npcs;
     }
 
+    public Set<GroundItem> getGroundItems() {
+        return groundItems;
+    }
+
+    public Set<WorldObject> getObjects() {
+        return objects;
+    }
+
+    /**
+     * @return the toleranceRegion
+     */
+    public int getToleranceRegion() {
+        return toleranceRegion;
+    }
+
+    /**
+     * @param toleranceRegion
+     *        the toleranceRegion to set
+     */
+    public void setToleranceRegion(int toleranceRegion) {
+        this.toleranceRegion = toleranceRegion;
+    }
+
+    /**
+     * @return the toleranceTick
+     */
+    public long getToleranceTick() {
+        return toleranceTick;
+    }
+
+    /**
+     * @param toleranceTick
+     *        the toleranceTick to set
+     */
+    public void setToleranceTick(long toleranceTick) {
+        this.toleranceTick = toleranceTick;
+    }
+
     public void setNpcAppearanceId(int npcAppearanceId) {
         this.npcAppearanceId = npcAppearanceId;
     }
@@ -945,7 +994,7 @@ public class Player extends Entity {
     /**
      * @return the friends
      */
-    public List<Long> getFriends() {
+    public LongSet getFriends() {
         return friends;
     }
 
@@ -953,14 +1002,14 @@ public class Player extends Entity {
      * @param friends
      *        the friends to set
      */
-    public void setFriends(List<Long> friends) {
+    public void setFriends(LongSet friends) {
         this.friends = friends;
     }
 
     /**
      * @return the ignores
      */
-    public List<Long> getIgnores() {
+    public LongSet getIgnores() {
         return ignores;
     }
 
@@ -968,7 +1017,7 @@ public class Player extends Entity {
      * @param ignores
      *        the ignores to set
      */
-    public void setIgnores(List<Long> ignores) {
+    public void setIgnores(LongSet ignores) {
         this.ignores = ignores;
     }
 
@@ -1565,25 +1614,6 @@ public class Player extends Entity {
         this.rangedAmmo = rangedAmmo;
     }
 
-    /**
-     * Gets the cached update block.
-     * 
-     * @return the cached update block.
-     */
-    public ByteBuffer getCachedUpdateBlock() {
-        return cachedUpdateBlock;
-    }
-
-    /**
-     * Sets the cached update block.
-     * 
-     * @param cachedUpdateBlock
-     *        the cached update block.
-     */
-    public void setCachedUpdateBlock(ByteBuffer cachedUpdateBlock) {
-        this.cachedUpdateBlock = cachedUpdateBlock;
-    }
-
     /**
      * @return the usernameHash
      */
@@ -0,0 +1,73 @@
+package server.world.entity.player;
+
+import server.util.LongMap;
+import server.util.Misc;
+import server.world.entity.EntityContainer;
+
+/**
+ * An {@link EntityContainer} for players that also keeps an index of every
+ * player by their username hash, so players can be looked up by username
+ * without scanning every slot. The index is only modified on the game
+ * thread, alongside the container itself.
+ * 
+ * @author lare96
+ */
+public class PlayerContainer extends EntityContainer<Player> {
+
+    /** The players in this container, mapped to their username hashes. */
+    private final LongMap<Player> usernames;
+
+    /**
+     * Create a new {@link PlayerContainer} with the specified capacity.
+     * 
+     * @param capacity
+     *        the maximum amount of players this container is allowed to hold.
+     */
+    public PlayerContainer(int capacity) {
+        super(capacity);
+        this.usernames = new LongMap<Player>(capacity);
+    }
+
+    @Override
+    public void addSlot(int slot, Player entity) {
+        super.addSlot(slot, entity);
+        usernames.put(entity.getUsernameHash(), entity);
+    }
+
+    @Override
+    public void removeSlot(int slot) {
+        Player player = isSlotFree(slot) ? null : get(slot);
+        super.removeSlot(slot);
+
+        /** Only unmap the player if they haven't been replaced already. */
+        if (player != null && usernames.get(player.getUsernameHash()) == player) {
+            usernames.remove(player.getUsernameHash());
+        }
+    }
+
+    /**
+     * Gets the player with the specified username hash.
+     * 
+     * @param usernameHash
+     *        the username hash of the player.
+     * @return the player, or <code>null</code> if they aren't in this
+     *         container.
+     */
+    public Player getByUsernameHash(long usernameHash) {
+        return usernames.get(usernameHash);
+    }
+
+    /**
+     * Gets the player with the specified display name. Names are compared
+     * the same way as usernames, so the lookup ignores case and treats
+     * underscores the same as spaces.
+     * 
+     * @param name
+     *        the display name of the player.
+     * @return the player, or <code>null</code> if they aren't in this
+     *         container.
+     */
+    public Player getByName(String name) {
+        return usernames.get(Misc.nameToLong(name.trim()));
+    }
+}
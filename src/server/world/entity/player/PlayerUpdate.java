@@ -1,6 +1,9 @@
 package server.world.entity.player;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 
 import server.core.net.Session;
 import server.core.net.packet.PacketBuffer;
@@ -10,10 +13,12 @@ import server.core.net.packet.PacketBuffer.WriteBuffer;
 import server.core.worker.TaskFactory;
 import server.util.Misc;
 import server.world.World;
+import server.world.item.ItemTable;
+import server.world.entity.UpdateBlockCache;
+import server.world.entity.UpdateBlockCache.Variant;
 import server.world.entity.UpdateFlags.Flag;
 import server.world.entity.player.skill.SkillManager;
 import server.world.entity.player.skill.SkillManager.SkillConstant;
-import server.world.map.Position;
 
 /**
  * Provides static utility methods for updating Players.
@@ -23,6 +28,17 @@ import server.world.map.Position;
  */
 public final class PlayerUpdate {
 
+    /**
+     * The lists the players surrounding the player being updated are copied
+     * into, one list per thread since players are updated concurrently.
+     */
+    private static final ThreadLocal<List<Player>> surrounding = new ThreadLocal<List<Player>>() {
+        @Override
+        protected List<Player> initialValue() {
+            return new ArrayList<Player>();
+        }
+    };
+
     /**
      * Updates the player.
      * 
@@ -30,8 +46,28 @@ public final class PlayerUpdate {
      *        the player to update.
      */
     public static void update(Player player) {
-        PacketBuffer.WriteBuffer out = PacketBuffer.newWriteBuffer(16384);
-        PacketBuffer.WriteBuffer block = PacketBuffer.newWriteBuffer(8192);
+        PacketBuffer.WriteBuffer out = PacketBuffer.acquireWriteBuffer(16384);
+        PacketBuffer.WriteBuffer block = PacketBuffer.acquireWriteBuffer(8192);
+
+        try {
+            update(player, out, block);
+        } finally {
+            out.release();
+            block.release();
+        }
+    }
+
+    /**
+     * Updates the player using the specified buffers.
+     * 
+     * @param player
+     *        the player to update.
+     * @param out
+     *        the buffer for the update packet.
+     * @param block
+     *        the buffer for the update blocks.
+     */
+    private static void update(Player player, PacketBuffer.WriteBuffer out, PacketBuffer.WriteBuffer block) {
 
         /** Initialize the update packet. */
         out.writeVariableShortPacketHeader(81);
@@ -62,15 +98,17 @@ public final class PlayerUpdate {
 
         int added = 0;
 
-        /** Update the local player list. */
-        for (int i = 0; i < World.getPlayers().getCapacity(); i++) {
+        /**
+         * Update the local player list, only looking at the players surrounding
+         * this player instead of the entire world.
+         */
+        for (Player other : World.getPlayers().getRegionIndex().getSurrounding(player.getPosition(), surrounding.get())) {
             if (added == 10 || player.getPlayers().size() >= 255) {
 
                 /** Player limit has been reached. */
                 break;
             }
-            Player other = World.getPlayers().get(i);
-            if (other == null || other == player || other.getSession().getStage() != Session.Stage.LOGGED_IN || !other.isVisible()) {
+            if (other == player || other.getSession().getStage() != Session.Stage.LOGGED_IN || !other.isVisible()) {
                 continue;
             }
             if (!player.getPlayers().contains(other) && other.getPosition().isViewableFrom(player.getPosition())) {
@@ -119,7 +157,27 @@ public final class PlayerUpdate {
      *        the buffer.
      */
     public static void appendAppearance(Player player, PacketBuffer.WriteBuffer out) {
-        PacketBuffer.WriteBuffer block = PacketBuffer.newWriteBuffer(128);
+        PacketBuffer.WriteBuffer block = PacketBuffer.acquireWriteBuffer(128);
+
+        try {
+            appendAppearance(player, out, block);
+        } finally {
+            block.release();
+        }
+    }
+
+    /**
+     * Appends the state of a player's appearance to a buffer using the
+     * specified buffer to build the appearance block.
+     * 
+     * @param player
+     *        the player.
+     * @param out
+     *        the buffer.
+     * @param block
+     *        the buffer to build the appearance block in.
+     */
+    private static void appendAppearance(Player player, PacketBuffer.WriteBuffer out, PacketBuffer.WriteBuffer block) {
 
         /** Gender. */
         block.writeByte(player.getGender()); // Gender
@@ -175,7 +233,7 @@ public final class PlayerUpdate {
             /** Arms. */
             if (player.getEquipment().getContainer().getItemId(Misc.EQUIPMENT_SLOT_CHEST) > 1) {
 
-                if (!Misc.getIsPlatebody()[player.getEquipment().getContainer().getItemId(Misc.EQUIPMENT_SLOT_CHEST)]) {
+                if (!ItemTable.getTable().isPlatebody(player.getEquipment().getContainer().getItemId(Misc.EQUIPMENT_SLOT_CHEST))) {
                     block.writeShort(0x100 + player.getAppearance()[Misc.APPEARANCE_SLOT_ARMS]);
                 } else {
                     block.writeByte(0);
@@ -192,7 +250,7 @@ public final class PlayerUpdate {
             }
 
             /** Head. */
-            if (player.getEquipment().getContainer().getItemId(Misc.EQUIPMENT_SLOT_HEAD) > 1 && Misc.getIsFullHelm()[player.getEquipment().getContainer().getItemId(Misc.EQUIPMENT_SLOT_HEAD)]) {
+            if (player.getEquipment().getContainer().getItemId(Misc.EQUIPMENT_SLOT_HEAD) > 1 && ItemTable.getTable().isFullHelm(player.getEquipment().getContainer().getItemId(Misc.EQUIPMENT_SLOT_HEAD))) {
                 block.writeByte(0);
             } else {
                 block.writeShort(0x100 + player.getAppearance()[Misc.APPEARANCE_SLOT_HEAD]);
@@ -214,7 +272,7 @@ public final class PlayerUpdate {
 
             /** Beard. */
             if (player.getGender() == Misc.GENDER_MALE) {
-                if (player.getEquipment().getContainer().getItemId(Misc.EQUIPMENT_SLOT_HEAD) > 1 && !Misc.getIsFullHelm()[player.getEquipment().getContainer().getItemId(Misc.EQUIPMENT_SLOT_HEAD)] || player.getEquipment().getContainer().isSlotFree(Misc.EQUIPMENT_SLOT_HEAD)) {
+                if (player.getEquipment().getContainer().getItemId(Misc.EQUIPMENT_SLOT_HEAD) > 1 && !ItemTable.getTable().isFullHelm(player.getEquipment().getContainer().getItemId(Misc.EQUIPMENT_SLOT_HEAD)) || player.getEquipment().getContainer().isSlotFree(Misc.EQUIPMENT_SLOT_HEAD)) {
                     block.writeShort(0x100 + player.getAppearance()[Misc.APPEARANCE_SLOT_BEARD]);
                 } else {
                     block.writeByte(0);
@@ -268,9 +326,8 @@ public final class PlayerUpdate {
         out.writeBit(true); // Discard walking queue(?)
 
         // Write the relative position.
-        Position delta = Misc.delta(player.getPosition(), other.getPosition());
-        out.writeBits(5, delta.getY());
-        out.writeBits(5, delta.getX());
+        out.writeBits(5, player.getPosition().getDeltaY(other.getPosition()));
+        out.writeBits(5, player.getPosition().getDeltaX(other.getPosition()));
     }
 
     /**
@@ -344,6 +401,81 @@ public final class PlayerUpdate {
         }
     }
 
+    /**
+     * Builds and caches the update blocks for a player before updating takes
+     * place, so every block is only encoded once per tick regardless of how
+     * many players it is sent to. This must be called on the game thread
+     * before the parallel update phase.
+     * 
+     * <p>
+     * The block with the appearance forced is only needed by players adding
+     * this player to their view, so it isn't built here. It's built the first
+     * time it's needed on this tick instead, see
+     * {@link #forcedAppearanceState(Player)}.
+     * </p>
+     * 
+     * @param player
+     *        the player to build the update blocks for.
+     */
+    public static void prepare(Player player) {
+        int mask = player.getFlags().getMask();
+
+        /** Drop the blocks built on the last tick. */
+        player.getUpdateBlockCache().clear();
+
+        if (player.getFlags().isUpdateRequired()) {
+            player.getUpdateBlockCache().cache(mask, Variant.SELF, buildState(player, false, true));
+            player.getUpdateBlockCache().cache(mask, Variant.OTHER, buildState(player, false, false));
+        }
+    }
+
+    /**
+     * Gets the update block with the appearance forced for a player, building
+     * and caching it if this is the first time it's needed on this tick. This
+     * is called from the parallel update phase, so the block is built under
+     * the lock of the player's cache and only ever built once per tick.
+     * 
+     * @param player
+     *        the player to get the update block for.
+     * @return the update block with the appearance forced.
+     */
+    private static byte[] forcedAppearanceState(Player player) {
+        UpdateBlockCache cache = player.getUpdateBlockCache();
+        int mask = player.getFlags().getMask();
+
+        synchronized (cache) {
+            byte[] block = cache.get(mask, Variant.FORCED_APPEARANCE);
+
+            if (block == null) {
+                block = buildState(player, true, false);
+                cache.cache(mask, Variant.FORCED_APPEARANCE, block);
+            }
+            return block;
+        }
+    }
+
+    /**
+     * Builds a single variant of a player's update block.
+     * 
+     * @param player
+     *        the player to build the update block for.
+     * @param forceAppearance
+     *        if the appearance block should be forced.
+     * @param noChat
+     *        if the chat block should be left out.
+     * @return the built update block.
+     */
+    private static byte[] buildState(Player player, boolean forceAppearance, boolean noChat) {
+        WriteBuffer buffer = PacketBuffer.acquireWriteBuffer(256);
+
+        try {
+            appendState(player, buffer, forceAppearance, noChat);
+            return Arrays.copyOf(buffer.getBuffer().array(), buffer.getBuffer().position());
+        } finally {
+            buffer.release();
+        }
+    }
+
     /**
      * Updates the state of a player.
      * 
@@ -361,14 +493,46 @@ public final class PlayerUpdate {
             return;
         }
 
+        /** Determine which variant of the block we need. */
+        Variant variant = null;
+
+        if (player == thisPlayer && noChat && !forceAppearance) {
+            variant = Variant.SELF;
+        } else if (player != thisPlayer && !noChat) {
+            variant = forceAppearance ? Variant.FORCED_APPEARANCE : Variant.OTHER;
+        }
+
         /** Send the cached update block if we are able to. */
-        if (player.getCachedUpdateBlock() != null && player != thisPlayer && !forceAppearance && !noChat) {
-            block.getBuffer().put(player.getCachedUpdateBlock().array());
+        byte[] cached = null;
+
+        if (variant == Variant.FORCED_APPEARANCE) {
+            cached = forcedAppearanceState(player);
+        } else if (variant != null) {
+            cached = player.getUpdateBlockCache().get(player.getFlags().getMask(), variant);
+        }
+
+        if (cached != null) {
+            block.writeBytes(cached, cached.length);
             return;
         }
 
-        /** Create the buffer we are going to cache. */
-        WriteBuffer cachedBuffer = PacketBuffer.newWriteBuffer();
+        /** Otherwise build it straight into the update block. */
+        appendState(player, block, forceAppearance, noChat);
+    }
+
+    /**
+     * Appends the state of a player to a buffer.
+     * 
+     * @param player
+     *        the player being constructed.
+     * @param out
+     *        the buffer to append the state to.
+     * @param forceAppearance
+     *        if the appearance block should be forced.
+     * @param noChat
+     *        if the chat block should be left out.
+     */
+    private static void appendState(Player player, WriteBuffer out, boolean forceAppearance, boolean noChat) {
 
         /** First we build the update mask. */
         int mask = 0x0;
@@ -404,57 +568,48 @@ public final class PlayerUpdate {
         /** Then we write the built mask. */
         if (mask >= 0x100) {
             mask |= 0x40;
-            cachedBuffer.writeShort(mask, PacketBuffer.ByteOrder.LITTLE);
+            out.writeShort(mask, PacketBuffer.ByteOrder.LITTLE);
         } else {
-            cachedBuffer.writeByte(mask);
+            out.writeByte(mask);
         }
 
         /** Then we add the attribute data to the block. */
         // Graphics
         if (player.getFlags().get(Flag.GRAPHICS)) {
-            appendGfx(player, cachedBuffer);
+            appendGfx(player, out);
         }
         // Animation
         if (player.getFlags().get(Flag.ANIMATION)) {
-            appendAnimation(player, cachedBuffer);
+            appendAnimation(player, out);
         }
         // Forced chat
         if (player.getFlags().get(Flag.FORCED_CHAT)) {
-            appendForcedChat(player, cachedBuffer);
+            appendForcedChat(player, out);
         }
         // Regular chat
         if (player.getFlags().get(Flag.CHAT) && !noChat) {
-            appendChat(player, cachedBuffer);
+            appendChat(player, out);
         }
         // Face entity
         if (player.getFlags().get(Flag.FACE_ENTITY)) {
-            appendFaceEntity(player, cachedBuffer);
+            appendFaceEntity(player, out);
         }
         // Appearance
         if (player.getFlags().get(Flag.APPEARANCE) || forceAppearance) {
-            appendAppearance(player, cachedBuffer);
+            appendAppearance(player, out);
         }
         // Face coordinates
         if (player.getFlags().get(Flag.FACE_COORDINATE)) {
-            appendFaceCoordinate(player, cachedBuffer);
+            appendFaceCoordinate(player, out);
         }
         // Primary hit
         if (player.getFlags().get(Flag.HIT)) {
-            appendPrimaryHit(player, cachedBuffer);
+            appendPrimaryHit(player, out);
         }
         // Secondary hit
         if (player.getFlags().get(Flag.HIT_2)) {
-            appendSecondaryHit(player, cachedBuffer);
+            appendSecondaryHit(player, out);
         }
-
-        /** Cache the block if possible. */
-        if (player != thisPlayer && !forceAppearance && !noChat) {
-            player.setCachedUpdateBlock(cachedBuffer.getBuffer());
-
-        }
-
-        /** Add the cached block to the update block. */
-        block.writeBytes(cachedBuffer.getBuffer());
     }
 
     /**
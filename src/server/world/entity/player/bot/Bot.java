@@ -1,10 +1,13 @@
 package server.world.entity.player.bot;
 
 import java.net.Socket;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import server.core.ThreadProvider;
 import server.core.task.impl.BotLoginTask;
 import server.core.worker.Worker;
+import server.util.Misc;
 import server.world.World;
 import server.world.entity.player.Player;
 import server.world.map.Position;
@@ -21,6 +24,9 @@ public class Bot {
     /** Provides threads that will login bots. */
     private static ThreadProvider provider = new ThreadProvider("BotThread", Thread.MIN_PRIORITY, true, false);
 
+    /** Bots accepted by the server, waiting to finish logging in. */
+    private static Queue<Bot> pendingLogins = new ConcurrentLinkedQueue<Bot>();
+
     /** The username of this bot. */
     private String username;
 
@@ -146,6 +152,43 @@ public class Bot {
         return this;
     }
 
+    /**
+     * Queues a bot that has been accepted by the server to finish logging in
+     * on the game thread.
+     * 
+     * @param bot
+     *        the bot that was accepted.
+     */
+    public static void queueLogin(Bot bot) {
+        pendingLogins.add(bot);
+    }
+
+    /**
+     * Finishes logging in every bot that has been accepted by the server. This
+     * should only be called on the game thread.
+     */
+    public static void finishLogins() {
+        Bot bot;
+
+        while ((bot = pendingLogins.poll()) != null) {
+
+            /** Set the player instance. */
+            bot.player = World.getPlayer(Misc.nameToLong(bot.username));
+
+            /** The bot was disconnected before it could finish. */
+            if (bot.player == null) {
+                continue;
+            }
+
+            bot.player.move(bot.position);
+
+            /** Start the queued task if we have any. */
+            if (bot.queuedTask != null) {
+                bot.assignTask(bot.queuedTask);
+            }
+        }
+    }
+
     /**
      * Disposes of the bot by closing its socket.
      * 
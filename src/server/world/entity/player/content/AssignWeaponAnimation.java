@@ -4,6 +4,7 @@ import server.util.Misc;
 import server.world.entity.player.Player;
 import server.world.item.Item;
 import server.world.item.ItemDefinition;
+import server.world.item.ItemTable;
 
 /**
  * Changes the appearance animation for the player whenever a new weapon is
@@ -13,47 +14,51 @@ import server.world.item.ItemDefinition;
  */
 public class AssignWeaponAnimation {
 
-    /** A map of items and the appearance animations. */
-    private static WeaponAnimationIndex[] weaponAnimation = new WeaponAnimationIndex[7956];
-
-    /** Loads all of the items and appearance animations. */
-    static {
-
-        /** Iterate through the item database. */
-        for (ItemDefinition def : ItemDefinition.getDefinitions()) {
-
-            /** Filter items. */
-            if (def == null || def.isNoted() || def.getEquipmentSlot() != Misc.EQUIPMENT_SLOT_WEAPON) {
-                continue;
-            }
-
-            /** Load the map with the correct data. */
-            if (def.getItemName().endsWith("2h sword")) {
-                weaponAnimation[def.getItemId()] = new WeaponAnimationIndex(2561, 2064, 2563);
-            } else if (def.getItemName().equalsIgnoreCase("granite maul")) {
-                weaponAnimation[def.getItemId()] = new WeaponAnimationIndex(1662, 1663, 1664);
-            } else if (def.getItemName().equalsIgnoreCase("boxing gloves")) {
-                weaponAnimation[def.getItemId()] = new WeaponAnimationIndex(3677, 3680, -1);
-            } else if (def.getItemName().endsWith("whip")) {
-                weaponAnimation[def.getItemId()] = new WeaponAnimationIndex(1832, 1660, 1661);
-            } else if (def.getItemName().equalsIgnoreCase("fixed device")) {
-                weaponAnimation[def.getItemId()] = new WeaponAnimationIndex(2316, 2317, 2322);
-            } else if (def.getItemName().endsWith("halberd") || def.getItemName().contains("guthan")) {
-                weaponAnimation[def.getItemId()] = new WeaponAnimationIndex(809, 1146, 1210);
-            } else if (def.getItemName().startsWith("Dharoks")) {
-                weaponAnimation[def.getItemId()] = new WeaponAnimationIndex(2065, 1663, 1664);
-            } else if (def.getItemName().startsWith("Ahrims")) {
-                weaponAnimation[def.getItemId()] = new WeaponAnimationIndex(809, 1146, 1210);
-            } else if (def.getItemName().startsWith("Veracs")) {
-                weaponAnimation[def.getItemId()] = new WeaponAnimationIndex(1832, 1830, 1831);
-            } else if (def.getItemName().startsWith("Karils") || def.getItemName().equals("Crossbow")) {
-                weaponAnimation[def.getItemId()] = new WeaponAnimationIndex(2074, 2076, 2077);
-            } else if (def.getItemName().endsWith("shortbow") || def.getItemName().endsWith("longbow")) {
-                weaponAnimation[def.getItemId()] = new WeaponAnimationIndex(808, 819, 824);
-            } else if (def.getItemName().equalsIgnoreCase("dragon longsword")) {
-                weaponAnimation[def.getItemId()] = new WeaponAnimationIndex(809, -1, -1);
-            }
+    /**
+     * Determines the appearance animations used when the item with the
+     * specified definition is equipped. This is only used when the
+     * {@link ItemTable} is built, the result is looked up from there after
+     * that.
+     * 
+     * @param def
+     *        the definition of the item to determine the animations for.
+     * @return the animations for the item, or <code>null</code> if the item
+     *         doesn't change the appearance animations.
+     */
+    public static WeaponAnimationIndex forDefinition(ItemDefinition def) {
+
+        /** Filter items. */
+        if (def == null || def.isNoted() || def.getEquipmentSlot() != Misc.EQUIPMENT_SLOT_WEAPON) {
+            return null;
+        }
+
+        /** Determine the correct animations. */
+        if (def.getItemName().endsWith("2h sword")) {
+            return new WeaponAnimationIndex(2561, 2064, 2563);
+        } else if (def.getItemName().equalsIgnoreCase("granite maul")) {
+            return new WeaponAnimationIndex(1662, 1663, 1664);
+        } else if (def.getItemName().equalsIgnoreCase("boxing gloves")) {
+            return new WeaponAnimationIndex(3677, 3680, -1);
+        } else if (def.getItemName().endsWith("whip")) {
+            return new WeaponAnimationIndex(1832, 1660, 1661);
+        } else if (def.getItemName().equalsIgnoreCase("fixed device")) {
+            return new WeaponAnimationIndex(2316, 2317, 2322);
+        } else if (def.getItemName().endsWith("halberd") || def.getItemName().contains("guthan")) {
+            return new WeaponAnimationIndex(809, 1146, 1210);
+        } else if (def.getItemName().startsWith("Dharoks")) {
+            return new WeaponAnimationIndex(2065, 1663, 1664);
+        } else if (def.getItemName().startsWith("Ahrims")) {
+            return new WeaponAnimationIndex(809, 1146, 1210);
+        } else if (def.getItemName().startsWith("Veracs")) {
+            return new WeaponAnimationIndex(1832, 1830, 1831);
+        } else if (def.getItemName().startsWith("Karils") || def.getItemName().equals("Crossbow")) {
+            return new WeaponAnimationIndex(2074, 2076, 2077);
+        } else if (def.getItemName().endsWith("shortbow") || def.getItemName().endsWith("longbow")) {
+            return new WeaponAnimationIndex(808, 819, 824);
+        } else if (def.getItemName().equalsIgnoreCase("dragon longsword")) {
+            return new WeaponAnimationIndex(809, -1, -1);
         }
+        return null;
     }
 
     /**
@@ -74,16 +79,18 @@ public class AssignWeaponAnimation {
         /** Reset the animations. */
         player.getUpdateAnimation().reset();
 
-        /** Retrieve the animation container for the weapon from the map. */
-        WeaponAnimationIndex animation = weaponAnimation[item.getId()];
+        /** Retrieve the animations for the weapon from the item table. */
+        ItemTable table = ItemTable.getTable();
 
-        /** If this weapon is not in the map keep the default animation. */
-        if (animation == null) {
+        /** If this weapon has no animations keep the default animation. */
+        if (!table.hasAnimations(item.getId())) {
             return;
         }
 
         /** Otherwise update the animation. */
-        player.getUpdateAnimation().setAs(animation);
+        player.getUpdateAnimation().setStandingAnimation(table.getStandingAnimation(item.getId()));
+        player.getUpdateAnimation().setWalkingAnimation(table.getWalkingAnimation(item.getId()));
+        player.getUpdateAnimation().setRunningAnimation(table.getRunningAnimation(item.getId()));
     }
 
     /**
@@ -5,6 +5,7 @@ import server.world.entity.combat.special.CombatSpecial;
 import server.world.entity.player.Player;
 import server.world.item.Item;
 import server.world.item.ItemDefinition;
+import server.world.item.ItemTable;
 
 /**
  * Changes the interface in the first sidebar whenever a new weapon is equipped
@@ -15,79 +16,76 @@ import server.world.item.ItemDefinition;
 public class AssignWeaponInterface {
 
     /**
-     * A map of every weapon in the game and the corresponding data for the
-     * interface that will be displayed when the weapon is equipped.
-     */
-    private static WeaponInterface[] weaponInterface = new WeaponInterface[7956];
-
-    /**
-     * Whenever the class is created, every weapon in the game and the
-     * corresponding data for the interface will be loaded into a map.
+     * Determines which interface will be displayed when the item with the
+     * specified definition is equipped. This is only used when the
+     * {@link ItemTable} is built, the result is looked up from there after
+     * that.
+     * 
+     * @param def
+     *        the definition of the item to determine the interface for.
+     * @return the interface for the item, or <code>null</code> if the item
+     *         isn't a weapon.
      */
-    static {
+    public static WeaponInterface forDefinition(ItemDefinition def) {
 
-        /** Loop through all of the item definitions. */
-        for (ItemDefinition def : ItemDefinition.getDefinitions()) {
-
-            /** Filter out the weapons from non-weapons. */
-            if (def == null || def.isNoted() || def.getEquipmentSlot() != Misc.EQUIPMENT_SLOT_WEAPON) {
-                continue;
-            }
+        /** Filter out the weapons from non-weapons. */
+        if (def == null || def.isNoted() || def.getEquipmentSlot() != Misc.EQUIPMENT_SLOT_WEAPON) {
+            return null;
+        }
 
-            /** Add the weapons and the appropriate interfaces into the map. */
-            if (def.getItemName().startsWith("Staff") || def.getItemName().endsWith("staff") || def.getItemName().endsWith("wands")) {
-                weaponInterface[def.getItemId()] = WeaponInterface.STAFF;
-            } else if (def.getItemName().startsWith("Scythe")) {
-                weaponInterface[def.getItemId()] = WeaponInterface.SCYTHE;
-            } else if (def.getItemName().equals("Dharoks greataxe")) {
-                weaponInterface[def.getItemId()] = WeaponInterface.BATTLEAXE;
-            } else if (def.getItemName().equals("Torags hammers")) {
-                weaponInterface[def.getItemId()] = WeaponInterface.WARHAMMER;
-            } else if (def.getItemName().endsWith("warhammer") || def.getItemName().endsWith("maul") || def.getItemName().equals("Tzhaar-ket-om")) {
-                weaponInterface[def.getItemId()] = WeaponInterface.WARHAMMER;
-            } else if (def.getItemName().endsWith("battleaxe")) {
-                weaponInterface[def.getItemId()] = WeaponInterface.BATTLEAXE;
-            } else if (def.getItemName().equals("Crossbow") || def.getItemName().endsWith("crossbow")) {
-                weaponInterface[def.getItemId()] = WeaponInterface.CROSSBOW;
-            } else if (def.getItemName().endsWith("shortbow") || def.getItemName().startsWith("Crystal bow") || def.getItemName().endsWith("crystal bow")) {
-                weaponInterface[def.getItemId()] = WeaponInterface.SHORTBOW;
-            } else if (def.getItemName().endsWith("longbow")) {
-                weaponInterface[def.getItemId()] = WeaponInterface.LONGBOW;
-            } else if (def.getItemName().endsWith("dagger") || def.getItemName().endsWith("dagger(p)") || def.getItemName().endsWith("dagger(p+)") || def.getItemName().endsWith("dagger(p++)")) {
-                weaponInterface[def.getItemId()] = WeaponInterface.DAGGER;
-            } else if (def.getItemName().endsWith("longsword")) {
-                weaponInterface[def.getItemId()] = WeaponInterface.LONGSWORD;
-            } else if (def.getItemName().endsWith(" sword") && !def.getItemName().endsWith("2h sword")) {
-                weaponInterface[def.getItemId()] = WeaponInterface.SWORD;
-            } else if (def.getItemName().endsWith("scimitar")) {
-                weaponInterface[def.getItemId()] = WeaponInterface.SCIMITAR;
-            } else if (def.getItemName().endsWith("2h sword")) {
-                weaponInterface[def.getItemId()] = WeaponInterface.TWO_HANDED_SWORD;
-            } else if (def.getItemName().endsWith("mace")) {
-                weaponInterface[def.getItemId()] = WeaponInterface.MACE;
-            } else if (def.getItemName().endsWith("knife") || def.getItemName().endsWith("knife(p)") || def.getItemName().endsWith("knife(p+)") || def.getItemName().endsWith("knife(p++)") || def.getItemName().equals("Toktz-xil-ul")) {
-                weaponInterface[def.getItemId()] = WeaponInterface.KNIFE;
-            } else if (def.getItemName().endsWith("spear")) {
-                weaponInterface[def.getItemId()] = WeaponInterface.SPEAR;
-            } else if (def.getItemName().endsWith("pickaxe")) {
-                weaponInterface[def.getItemId()] = WeaponInterface.PICKAXE;
-            } else if (def.getItemName().endsWith("claws")) {
-                weaponInterface[def.getItemId()] = WeaponInterface.CLAWS;
-            } else if (def.getItemName().endsWith("halberd")) {
-                weaponInterface[def.getItemId()] = WeaponInterface.HALBERD;
-            } else if (def.getItemName().endsWith("whip") || def.getItemName().endsWith("flail")) {
-                weaponInterface[def.getItemId()] = WeaponInterface.WHIP;
-            } else if (def.getItemName().endsWith("thrownaxe")) {
-                weaponInterface[def.getItemId()] = WeaponInterface.THROWNAXE;
-            } else if (def.getItemName().endsWith("javelin") || def.getItemName().endsWith("javelin(p)") || def.getItemName().endsWith("javelin(p+)") || def.getItemName().endsWith("javelin(p++)")) {
-                weaponInterface[def.getItemId()] = WeaponInterface.JAVELIN;
-            } else if (def.getItemName().endsWith("dart") || def.getItemName().endsWith("dart(p)") || def.getItemName().endsWith("dart(p+)") || def.getItemName().endsWith("dart(p++)")) {
-                weaponInterface[def.getItemId()] = WeaponInterface.DART;
-            } else if (def.getItemName().endsWith("axe") && !def.getItemName().endsWith("pickaxe")) {
-                weaponInterface[def.getItemId()] = WeaponInterface.BATTLEAXE;
-            } else {
-                weaponInterface[def.getItemId()] = WeaponInterface.UNARMED;
-            }
+        /** Determine the appropriate interface for the weapon. */
+        if (def.getItemName().startsWith("Staff") || def.getItemName().endsWith("staff") || def.getItemName().endsWith("wands")) {
+            return WeaponInterface.STAFF;
+        } else if (def.getItemName().startsWith("Scythe")) {
+            return WeaponInterface.SCYTHE;
+        } else if (def.getItemName().equals("Dharoks greataxe")) {
+            return WeaponInterface.BATTLEAXE;
+        } else if (def.getItemName().equals("Torags hammers")) {
+            return WeaponInterface.WARHAMMER;
+        } else if (def.getItemName().endsWith("warhammer") || def.getItemName().endsWith("maul") || def.getItemName().equals("Tzhaar-ket-om")) {
+            return WeaponInterface.WARHAMMER;
+        } else if (def.getItemName().endsWith("battleaxe")) {
+            return WeaponInterface.BATTLEAXE;
+        } else if (def.getItemName().equals("Crossbow") || def.getItemName().endsWith("crossbow")) {
+            return WeaponInterface.CROSSBOW;
+        } else if (def.getItemName().endsWith("shortbow") || def.getItemName().startsWith("Crystal bow") || def.getItemName().endsWith("crystal bow")) {
+            return WeaponInterface.SHORTBOW;
+        } else if (def.getItemName().endsWith("longbow")) {
+            return WeaponInterface.LONGBOW;
+        } else if (def.getItemName().endsWith("dagger") || def.getItemName().endsWith("dagger(p)") || def.getItemName().endsWith("dagger(p+)") || def.getItemName().endsWith("dagger(p++)")) {
+            return WeaponInterface.DAGGER;
+        } else if (def.getItemName().endsWith("longsword")) {
+            return WeaponInterface.LONGSWORD;
+        } else if (def.getItemName().endsWith(" sword") && !def.getItemName().endsWith("2h sword")) {
+            return WeaponInterface.SWORD;
+        } else if (def.getItemName().endsWith("scimitar")) {
+            return WeaponInterface.SCIMITAR;
+        } else if (def.getItemName().endsWith("2h sword")) {
+            return WeaponInterface.TWO_HANDED_SWORD;
+        } else if (def.getItemName().endsWith("mace")) {
+            return WeaponInterface.MACE;
+        } else if (def.getItemName().endsWith("knife") || def.getItemName().endsWith("knife(p)") || def.getItemName().endsWith("knife(p+)") || def.getItemName().endsWith("knife(p++)") || def.getItemName().equals("Toktz-xil-ul")) {
+            return WeaponInterface.KNIFE;
+        } else if (def.getItemName().endsWith("spear")) {
+            return WeaponInterface.SPEAR;
+        } else if (def.getItemName().endsWith("pickaxe")) {
+            return WeaponInterface.PICKAXE;
+        } else if (def.getItemName().endsWith("claws")) {
+            return WeaponInterface.CLAWS;
+        } else if (def.getItemName().endsWith("halberd")) {
+            return WeaponInterface.HALBERD;
+        } else if (def.getItemName().endsWith("whip") || def.getItemName().endsWith("flail")) {
+            return WeaponInterface.WHIP;
+        } else if (def.getItemName().endsWith("thrownaxe")) {
+            return WeaponInterface.THROWNAXE;
+        } else if (def.getItemName().endsWith("javelin") || def.getItemName().endsWith("javelin(p)") || def.getItemName().endsWith("javelin(p+)") || def.getItemName().endsWith("javelin(p++)")) {
+            return WeaponInterface.JAVELIN;
+        } else if (def.getItemName().endsWith("dart") || def.getItemName().endsWith("dart(p)") || def.getItemName().endsWith("dart(p+)") || def.getItemName().endsWith("dart(p++)")) {
+            return WeaponInterface.DART;
+        } else if (def.getItemName().endsWith("axe") && !def.getItemName().endsWith("pickaxe")) {
+            return WeaponInterface.BATTLEAXE;
+        } else {
+            return WeaponInterface.UNARMED;
         }
     }
 
@@ -482,8 +480,8 @@ public class AssignWeaponInterface {
             return;
         }
 
-        /** Retrieve the interface for the weapon from the map. */
-        WeaponInterface weapon = weaponInterface[item.getId()];
+        /** Retrieve the interface for the weapon from the item table. */
+        WeaponInterface weapon = ItemTable.getTable().getWeaponInterface(item.getId());
 
         /** Write the interface to the sidebar. */
         if (weapon == WeaponInterface.UNARMED) {
@@ -0,0 +1,156 @@
+package server.world.entity.player.content;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import server.core.worker.TaskFactory;
+import server.core.worker.Worker;
+import server.util.LongMap;
+import server.util.LongSet;
+import server.world.World;
+import server.world.entity.player.Player;
+
+/**
+ * Keeps track of which online players have who on their friends list, so
+ * friends can be told when someone logs in or out without looping through
+ * every online player. Changes in presence are queued and sent out once per
+ * tick, so a player that logs in and back out within the same tick only
+ * causes a single update.
+ * 
+ * @author lare96
+ */
+public final class PresenceService {
+
+    /** The singleton instance. */
+    private static PresenceService singleton = new PresenceService();
+
+    /**
+     * The online players that have a username hash on their friends list,
+     * mapped to that username hash.
+     */
+    private final LongMap<Set<Player>> watchers = new LongMap<Set<Player>>(2048);
+
+    /** The username hashes whose presence has changed since the last tick. */
+    private final LongSet changed = new LongSet(64);
+
+    /** So this class cannot be instantiated. */
+    private PresenceService() {
+
+    }
+
+    /**
+     * Starts sending out the queued presence changes every tick.
+     */
+    public void start() {
+        TaskFactory.getFactory().submit(new Worker(1, false) {
+            @Override
+            public void fire() {
+                flush();
+            }
+        });
+    }
+
+    /**
+     * Registers a player that has just logged in. Everyone on their friends
+     * list is indexed, and the player's friends are queued to be told that
+     * they're online.
+     * 
+     * @param player
+     *        the player that logged in.
+     */
+    public void login(Player player) {
+        LongSet friends = player.getFriends();
+
+        for (int i = 0; i < friends.size(); i++) {
+            watch(player, friends.get(i));
+        }
+
+        changed.add(player.getUsernameHash());
+    }
+
+    /**
+     * Unregisters a player that is logging out. The player is removed from
+     * the index, and the player's friends are queued to be told that they're
+     * offline.
+     * 
+     * @param player
+     *        the player that is logging out.
+     */
+    public void logout(Player player) {
+        LongSet friends = player.getFriends();
+
+        for (int i = 0; i < friends.size(); i++) {
+            unwatch(player, friends.get(i));
+        }
+
+        changed.add(player.getUsernameHash());
+    }
+
+    /**
+     * Indexes a player as having a username hash on their friends list.
+     * 
+     * @param player
+     *        the player who has the friend.
+     * @param friend
+     *        the username hash of the friend.
+     */
+    public void watch(Player player, long friend) {
+        Set<Player> set = watchers.get(friend);
+
+        if (set == null) {
+            set = new HashSet<Player>();
+            watchers.put(friend, set);
+        }
+
+        set.add(player);
+    }
+
+    /**
+     * Removes a player from the index of a username hash on their friends
+     * list.
+     * 
+     * @param player
+     *        the player who had the friend.
+     * @param friend
+     *        the username hash of the friend.
+     */
+    public void unwatch(Player player, long friend) {
+        Set<Player> set = watchers.get(friend);
+
+        if (set != null && set.remove(player) && set.isEmpty()) {
+            watchers.remove(friend);
+        }
+    }
+
+    /**
+     * Tells everyone watching a username hash whose presence has changed if
+     * that player is now online or offline.
+     */
+    private void flush() {
+        for (int i = 0; i < changed.size(); i++) {
+            long name = changed.get(i);
+            Set<Player> set = watchers.get(name);
+
+            if (set == null) {
+                continue;
+            }
+
+            int world = World.getPlayer(name) == null ? 0 : 1;
+
+            for (Player player : set) {
+                player.getPacketBuilder().loadPrivateMessage(name, world);
+            }
+        }
+
+        changed.clear();
+    }
+
+    /**
+     * Gets the singleton instance.
+     * 
+     * @return the singleton instance.
+     */
+    public static PresenceService getService() {
+        return singleton;
+    }
+}
@@ -38,7 +38,9 @@ public class PrivateMessage {
         player.getPacketBuilder().sendPrivateMessagingList(2);
 
         /** Updates the list with all your friends. */
-        for (long name : player.getFriends()) {
+        for (int i = 0; i < player.getFriends().size(); i++) {
+            long name = player.getFriends().get(i);
+
             if (name == 0) {
                 continue;
             }
@@ -48,14 +50,8 @@ public class PrivateMessage {
             player.getPacketBuilder().loadPrivateMessage(name, load == null ? 0 : 1);
         }
 
-        for (Player players : World.getPlayers()) {
-            if (players == null)
-                continue;
-
-            if (players.getFriends().contains(player.getUsernameHash())) {
-                players.getPacketBuilder().loadPrivateMessage(player.getUsernameHash(), 1);
-            }
-        }
+        /** Queue the players that have added you to be told you're online. */
+        PresenceService.getService().login(player);
     }
 
     /**
@@ -63,14 +59,8 @@ public class PrivateMessage {
      */
     public void sendPrivateMessageOnLogout() {
 
-        for (Player players : World.getPlayers()) {
-            if (players == null)
-                continue;
-
-            if (players.getFriends().contains(player.getUsernameHash())) {
-                players.getPacketBuilder().loadPrivateMessage(player.getUsernameHash(), 0);
-            }
-        }
+        /** Queue the players that have added you to be told you're offline. */
+        PresenceService.getService().logout(player);
     }
 
     /**
@@ -98,6 +88,7 @@ public class PrivateMessage {
 
         /** Add the name to your friends list. */
         player.getFriends().add(name);
+        PresenceService.getService().watch(player, name);
 
         /** Update the friends list with online/offline. */
         Player load = World.getPlayer(name);
@@ -140,6 +131,7 @@ public class PrivateMessage {
     public void removeFriend(long name) {
         if (player.getFriends().contains(name)) {
             player.getFriends().remove(name);
+            PresenceService.getService().unwatch(player, name);
         } else {
             player.getPacketBuilder().sendMessage("" + Misc.longToName(name) + " is not even on your friends list...");
         }
@@ -0,0 +1,448 @@
+package server.world.entity.player.file;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import server.util.Misc;
+import server.world.entity.combat.task.CombatPoisonTask.CombatPoison;
+import server.world.entity.player.Player;
+import server.world.entity.player.content.AssignWeaponInterface.FightType;
+import server.world.entity.player.content.Spellbook;
+import server.world.entity.player.skill.Skill;
+import server.world.item.Item;
+import server.world.map.Position;
+
+/**
+ * Encodes and decodes character files in the compact binary format. Every
+ * integer is written as a variable length quantity so small values only take
+ * a single byte, and item containers are written as only their occupied
+ * slots instead of a value for every slot.
+ * 
+ * <p>
+ * The file starts with a magic number and the version of the layout it was
+ * written with. Whenever the layout changes the version must be incremented
+ * and {@link #decode(byte[], Player)} must still be able to read every older
+ * version.
+ * </p>
+ * 
+ * @author lare96
+ */
+public final class BinaryPlayerCodec {
+
+    /** The magic number at the start of every binary character file. */
+    private static final int MAGIC = 0x41535046;
+
+    /** The current version of the layout. */
+    public static final int VERSION = 1;
+
+    /** The flag for run being toggled. */
+    private static final int RUN_TOGGLED = 1;
+
+    /** The flag for new players. */
+    private static final int NEW_PLAYER = 1 << 1;
+
+    /** The flag for banned players. */
+    private static final int BANNED = 1 << 2;
+
+    /** The flag for auto retaliate being enabled. */
+    private static final int AUTO_RETALIATE = 1 << 3;
+
+    /** The flag for accepting aid. */
+    private static final int ACCEPT_AID = 1 << 4;
+
+    /**
+     * This class cannot be instantiated.
+     */
+    private BinaryPlayerCodec() {
+        throw new UnsupportedOperationException("This class cannot be instantiated!");
+    }
+
+    /**
+     * Encodes a snapshot into the current version of the layout.
+     * 
+     * @param snapshot
+     *        the snapshot to encode.
+     * @return the encoded character file.
+     */
+    public static byte[] encode(PlayerSnapshot snapshot) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        int flags = 0;
+
+        if (snapshot.isRunToggled()) {
+            flags |= RUN_TOGGLED;
+        }
+        if (snapshot.isNewPlayer()) {
+            flags |= NEW_PLAYER;
+        }
+        if (snapshot.isBanned()) {
+            flags |= BANNED;
+        }
+        if (snapshot.isAutoRetaliate()) {
+            flags |= AUTO_RETALIATE;
+        }
+        if (snapshot.isAcceptAid()) {
+            flags |= ACCEPT_AID;
+        }
+
+        writeInt(out, MAGIC);
+        writeVarInt(out, VERSION);
+        writeString(out, snapshot.getUsername());
+        writeString(out, snapshot.getPassword());
+        writeVarInt(out, snapshot.getX());
+        writeVarInt(out, snapshot.getY());
+        writeVarInt(out, snapshot.getZ());
+        writeVarInt(out, snapshot.getStaffRights());
+        writeVarInt(out, snapshot.getGender());
+        writeInts(out, snapshot.getAppearance());
+        writeInts(out, snapshot.getColors());
+        writeVarInt(out, flags);
+        writeItems(out, snapshot.getInventory());
+        writeItems(out, snapshot.getBank());
+        writeItems(out, snapshot.getEquipment());
+        writeSkills(out, snapshot.getSkills());
+        writeLongs(out, snapshot.getFriends());
+        writeLongs(out, snapshot.getIgnores());
+        writeVarInt(out, snapshot.getRunEnergy());
+        writeString(out, snapshot.getSpellbook());
+        writeString(out, snapshot.getFightType());
+        writeVarInt(out, snapshot.getSkullTimer());
+        writeVarInt(out, snapshot.getPoisonHits());
+        writeString(out, snapshot.getPoisonStrength());
+        writeVarInt(out, snapshot.getTeleblockTimer());
+        writeVarInt(out, snapshot.getSpecialAmount());
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes a character file and loads it onto the player.
+     * 
+     * @param data
+     *        the encoded character file.
+     * @param player
+     *        the player to load the character file onto.
+     * @return the login response for the player.
+     */
+    public static int decode(byte[] data, Player player) {
+        ByteBuffer in = ByteBuffer.wrap(data);
+
+        if (in.getInt() != MAGIC) {
+            throw new IllegalStateException("Not a binary character file: " + player);
+        }
+
+        int version = readVarInt(in);
+
+        if (version < 1 || version > VERSION) {
+            throw new IllegalStateException("Unsupported character file version " + version + ": " + player);
+        }
+
+        String username = readString(in);
+        String password = readString(in);
+        int x = readVarInt(in);
+        int y = readVarInt(in);
+        int z = readVarInt(in);
+        int staffRights = readVarInt(in);
+        int gender = readVarInt(in);
+        int[] appearance = readInts(in);
+        int[] colors = readInts(in);
+        int flags = readVarInt(in);
+        Item[] inventory = readItems(in);
+        Item[] bank = readItems(in);
+        Item[] equipment = readItems(in);
+        Skill[] skills = readSkills(in);
+        long[] friends = readLongs(in);
+        long[] ignores = readLongs(in);
+        int runEnergy = readVarInt(in);
+        Spellbook book = Spellbook.valueOf(readString(in));
+        FightType fightType = FightType.valueOf(readString(in));
+        int skullTimer = readVarInt(in);
+        int poisonHits = readVarInt(in);
+        CombatPoison poisonStrength = CombatPoison.valueOf(readString(in));
+        int teleblockTimer = readVarInt(in);
+        int specialAmount = readVarInt(in);
+
+        player.setUsername(username);
+
+        if (!player.getPassword().equals(password)) {
+            player.setIncorrectPassword(true);
+            return Misc.LOGIN_RESPONSE_INVALID_CREDENTIALS;
+        }
+
+        player.setPassword(password);
+        player.getPosition().setAs(new Position(x, y, z));
+        player.setStaffRights(staffRights);
+        player.setGender(gender);
+        player.setAppearance(appearance);
+        player.setColors(colors);
+        player.getMovementQueue().setRunToggled((flags & RUN_TOGGLED) != 0);
+        player.setNewPlayer((flags & NEW_PLAYER) != 0);
+        player.getInventory().getContainer().setItems(inventory);
+        player.getBank().getContainer().setItems(bank);
+        player.getEquipment().getContainer().setItems(equipment);
+        player.setTrainable(skills);
+        player.setRunEnergy(runEnergy);
+        player.setBanned((flags & BANNED) != 0);
+        player.setAutoRetaliate((flags & AUTO_RETALIATE) != 0);
+        player.setFightType(fightType);
+        player.setSpellbook(book);
+        player.setSkullTimer(skullTimer);
+        player.setAcceptAid((flags & ACCEPT_AID) != 0);
+        player.setPoisonHits(poisonHits);
+        player.setPoisonStrength(poisonStrength);
+        player.setTeleblockTimer(teleblockTimer);
+        player.setSpecialPercentage(specialAmount);
+
+        for (long l : friends) {
+            player.getFriends().add(l);
+        }
+
+        for (long l : ignores) {
+            player.getIgnores().add(l);
+        }
+        return Misc.LOGIN_RESPONSE_OK;
+    }
+
+    /**
+     * Writes an item container as its capacity, the amount of occupied slots
+     * and then the slot, id and amount of every occupied slot. Slots are
+     * written as the distance from the previous occupied slot.
+     * 
+     * @param out
+     *        the stream to write to.
+     * @param items
+     *        the items to write.
+     */
+    private static void writeItems(ByteArrayOutputStream out, Item[] items) {
+        int count = 0;
+
+        for (Item item : items) {
+            if (item != null) {
+                count++;
+            }
+        }
+
+        writeVarInt(out, items.length);
+        writeVarInt(out, count);
+
+        int last = -1;
+
+        for (int i = 0; i < items.length; i++) {
+            if (items[i] == null) {
+                continue;
+            }
+
+            writeVarInt(out, i - last);
+            writeVarInt(out, items[i].getId());
+            writeVarInt(out, items[i].getAmount());
+            last = i;
+        }
+    }
+
+    /**
+     * Reads an item container written by
+     * {@link #writeItems(ByteArrayOutputStream, Item[])}.
+     * 
+     * @param in
+     *        the buffer to read from.
+     * @return the items that were read.
+     */
+    private static Item[] readItems(ByteBuffer in) {
+        Item[] items = new Item[readVarInt(in)];
+        int count = readVarInt(in);
+        int slot = -1;
+
+        for (int i = 0; i < count; i++) {
+            slot += readVarInt(in);
+            int id = readVarInt(in);
+            int amount = readVarInt(in);
+            items[slot] = new Item(id, amount);
+        }
+        return items;
+    }
+
+    /**
+     * Writes the level and experience of every skill.
+     * 
+     * @param out
+     *        the stream to write to.
+     * @param skills
+     *        the skills to write.
+     */
+    private static void writeSkills(ByteArrayOutputStream out, Skill[] skills) {
+        writeVarInt(out, skills.length);
+
+        for (Skill skill : skills) {
+            writeVarInt(out, skill == null ? 0 : skill.getLevel());
+            writeVarInt(out, skill == null ? 0 : skill.getExperience());
+        }
+    }
+
+    /**
+     * Reads the skills written by
+     * {@link #writeSkills(ByteArrayOutputStream, Skill[])}.
+     * 
+     * @param in
+     *        the buffer to read from.
+     * @return the skills that were read.
+     */
+    private static Skill[] readSkills(ByteBuffer in) {
+        Skill[] skills = new Skill[readVarInt(in)];
+
+        for (int i = 0; i < skills.length; i++) {
+            skills[i] = new Skill();
+            skills[i].setLevel(readVarInt(in));
+            skills[i].setExperience(readVarInt(in));
+        }
+        return skills;
+    }
+
+    /**
+     * Writes an array of integers prefixed with its length.
+     * 
+     * @param out
+     *        the stream to write to.
+     * @param values
+     *        the values to write.
+     */
+    private static void writeInts(ByteArrayOutputStream out, int[] values) {
+        writeVarInt(out, values.length);
+
+        for (int value : values) {
+            writeVarInt(out, value);
+        }
+    }
+
+    /**
+     * Reads an array of integers prefixed with its length.
+     * 
+     * @param in
+     *        the buffer to read from.
+     * @return the values that were read.
+     */
+    private static int[] readInts(ByteBuffer in) {
+        int[] values = new int[readVarInt(in)];
+
+        for (int i = 0; i < values.length; i++) {
+            values[i] = readVarInt(in);
+        }
+        return values;
+    }
+
+    /**
+     * Writes an array of name hashes prefixed with its length. Name hashes use
+     * most of their bits so they're written as fixed 8 byte values.
+     * 
+     * @param out
+     *        the stream to write to.
+     * @param values
+     *        the values to write.
+     */
+    private static void writeLongs(ByteArrayOutputStream out, long[] values) {
+        writeVarInt(out, values.length);
+
+        for (long value : values) {
+            writeInt(out, (int) (value >>> 32));
+            writeInt(out, (int) value);
+        }
+    }
+
+    /**
+     * Reads an array of name hashes prefixed with its length.
+     * 
+     * @param in
+     *        the buffer to read from.
+     * @return the values that were read.
+     */
+    private static long[] readLongs(ByteBuffer in) {
+        long[] values = new long[readVarInt(in)];
+
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.getLong();
+        }
+        return values;
+    }
+
+    /**
+     * Writes a UTF-8 string prefixed with its length.
+     * 
+     * @param out
+     *        the stream to write to.
+     * @param value
+     *        the value to write.
+     */
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Reads a UTF-8 string prefixed with its length.
+     * 
+     * @param in
+     *        the buffer to read from.
+     * @return the value that was read.
+     */
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes a big endian 4 byte integer.
+     * 
+     * @param out
+     *        the stream to write to.
+     * @param value
+     *        the value to write.
+     */
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    /**
+     * Writes an integer using 7 bits per byte, with the high bit of every byte
+     * flagging that another byte follows. Values are zigzag encoded first so
+     * that small negative values stay small.
+     * 
+     * @param out
+     *        the stream to write to.
+     * @param value
+     *        the value to write.
+     */
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        int zigzag = (value << 1) ^ (value >> 31);
+
+        while ((zigzag & ~0x7f) != 0) {
+            out.write((zigzag & 0x7f) | 0x80);
+            zigzag >>>= 7;
+        }
+        out.write(zigzag);
+    }
+
+    /**
+     * Reads an integer written by
+     * {@link #writeVarInt(ByteArrayOutputStream, int)}.
+     * 
+     * @param in
+     *        the buffer to read from.
+     * @return the value that was read.
+     */
+    private static int readVarInt(ByteBuffer in) {
+        int zigzag = 0;
+
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.get() & 0xff;
+            zigzag |= (b & 0x7f) << shift;
+
+            if ((b & 0x80) == 0) {
+                return (zigzag >>> 1) ^ -(zigzag & 1);
+            }
+        }
+        throw new IllegalStateException("Malformed variable length integer!");
+    }
+}
@@ -0,0 +1,70 @@
+package server.world.entity.player.file;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * A {@link PlayerRepository} that stores every character file as its own file
+ * in the players directory.
+ * 
+ * @author lare96
+ */
+public class FilePlayerRepository extends PlayerRepository {
+
+    @Override
+    public PlayerFile load(String username) throws IOException {
+        PlayerFileFormat format = PlayerFileFormat.SAVE_FORMAT;
+        Path path = format.getPath(username);
+
+        /** Fall back to the other format for files not migrated yet. */
+        if (!Files.exists(path)) {
+            format = format == PlayerFileFormat.BINARY ? PlayerFileFormat.JSON : PlayerFileFormat.BINARY;
+            path = format.getPath(username);
+        }
+
+        if (!Files.exists(path)) {
+            return null;
+        }
+        return new PlayerFile(format, Files.readAllBytes(path));
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * <p>
+     * The data is written to a temporary file first and then moved over the
+     * character file, so a crash halfway through a save can never leave a
+     * partially written file behind. Once written, the character file in any
+     * other format is deleted so old files are migrated the first time they're
+     * saved.
+     * </p>
+     */
+    @Override
+    public void save(String username, PlayerFile file) throws IOException {
+        Path path = file.getFormat().getPath(username);
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.createDirectories(path.getParent());
+        Files.write(temp, file.getData());
+
+        try {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        for (PlayerFileFormat other : PlayerFileFormat.values()) {
+            if (other != file.getFormat()) {
+                Files.deleteIfExists(other.getPath(username));
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+
+        /** Every save is moved into place as soon as it's written. */
+    }
+}
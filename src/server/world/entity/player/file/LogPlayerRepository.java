@@ -0,0 +1,462 @@
+package server.world.entity.player.file;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * A {@link PlayerRepository} that appends every save to a log split up into
+ * segments, instead of rewriting a file per player. An in-memory hash index
+ * maps every username to where its latest record is in the log, and is
+ * rebuilt by scanning the segments when the repository is opened.
+ * 
+ * <p>
+ * Every record is checksummed, so a record left half written by a crash is
+ * detected and cut off the end of the log when it's opened again. Saves are
+ * only forced to disk when {@link #flush()} is called, so a whole batch of
+ * saves shares a single fsync. Segments where most of the records have been
+ * replaced by newer ones are compacted by copying their live records to the
+ * end of the log and deleting them.
+ * </p>
+ * 
+ * @author lare96
+ */
+public class LogPlayerRepository extends PlayerRepository {
+
+    /** The size a segment can grow to before a new one is started. */
+    public static final long SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * Sealed segments with less than this fraction of their bytes still live
+     * are compacted.
+     */
+    public static final double COMPACTION_THRESHOLD = 0.5;
+
+    /** The size of the length and checksum in front of every record. */
+    private static final int HEADER_SIZE = 8;
+
+    /** The prefix of every segment file. */
+    private static final String PREFIX = "segment-";
+
+    /** The extension of every segment file. */
+    private static final String EXTENSION = ".log";
+
+    /** A {@link Logger} for printing debugging info. */
+    private static Logger logger = Logger.getLogger(LogPlayerRepository.class.getSimpleName());
+
+    /** The directory the segments are stored in. */
+    private final Path directory;
+
+    /** The segments, mapped to their ids in the order they were created. */
+    private final TreeMap<Integer, Segment> segments = new TreeMap<Integer, Segment>();
+
+    /** The location of the latest record for every username. */
+    private final Map<String, Location> index = new HashMap<String, Location>();
+
+    /** The segment records are currently appended to. */
+    private Segment active;
+
+    /** If records have been appended since the last flush. */
+    private boolean dirty;
+
+    /**
+     * Opens the log stored in a directory, creating it if it doesn't exist.
+     * 
+     * @param directory
+     *        the directory the segments are stored in.
+     * @throws IOException
+     *         if the log could not be opened.
+     */
+    public LogPlayerRepository(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + EXTENSION)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                int id = Integer.parseInt(name.substring(PREFIX.length(), name.length() - EXTENSION.length()));
+                segments.put(id, new Segment(id, path));
+            }
+        }
+
+        for (Segment segment : segments.values()) {
+            recover(segment);
+        }
+
+        active = segments.isEmpty() ? createSegment(0) : segments.lastEntry().getValue();
+        logger.info("Opened " + index.size() + " character files in " + segments.size() + " segments.");
+    }
+
+    @Override
+    public synchronized PlayerFile load(String username) throws IOException {
+        Location location = index.get(username);
+
+        if (location == null) {
+            return null;
+        }
+
+        ByteBuffer body = read(location);
+        readUsername(body);
+        PlayerFileFormat format = PlayerFileFormat.values()[body.get()];
+        byte[] data = new byte[body.remaining()];
+        body.get(data);
+        return new PlayerFile(format, data);
+    }
+
+    @Override
+    public synchronized void save(String username, PlayerFile file) throws IOException {
+        byte[] name = username.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer body = ByteBuffer.allocate(2 + name.length + 1 + file.getData().length);
+        body.putShort((short) name.length);
+        body.put(name);
+        body.put((byte) file.getFormat().ordinal());
+        body.put(file.getData());
+        body.flip();
+        append(username, body);
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        if (dirty) {
+            active.channel.force(false);
+            dirty = false;
+        }
+
+        compact();
+    }
+
+    /**
+     * Compacts every sealed segment that has fallen under the
+     * {@link #COMPACTION_THRESHOLD}. The live records are copied to the end of
+     * the log and forced to disk before the segment is deleted, so a crash
+     * during compaction can never lose a record.
+     * 
+     * @throws IOException
+     *         if any errors occur while compacting.
+     */
+    private void compact() throws IOException {
+        List<Segment> garbage = new ArrayList<Segment>();
+
+        for (Segment segment : segments.values()) {
+            if (segment != active && segment.live < segment.size * COMPACTION_THRESHOLD) {
+                garbage.add(segment);
+            }
+        }
+
+        if (garbage.isEmpty()) {
+            return;
+        }
+
+        int copied = 0;
+
+        for (Segment segment : garbage) {
+            List<String> usernames = new ArrayList<String>();
+
+            for (Entry<String, Location> entry : index.entrySet()) {
+                if (entry.getValue().segment == segment) {
+                    usernames.add(entry.getKey());
+                }
+            }
+
+            for (String username : usernames) {
+                append(username, read(index.get(username)));
+                copied++;
+            }
+        }
+
+        active.channel.force(false);
+        dirty = false;
+
+        for (Segment segment : garbage) {
+            segment.channel.close();
+            Files.delete(segment.path);
+            segments.remove(segment.id);
+        }
+
+        logger.info("Compacted " + garbage.size() + " segments, " + copied + " records copied.");
+    }
+
+    /**
+     * Appends a record to the active segment and points the index at it,
+     * starting a new segment first if the active one is full.
+     * 
+     * @param username
+     *        the username the record belongs to.
+     * @param body
+     *        the body of the record.
+     * @throws IOException
+     *         if any errors occur while appending.
+     */
+    private void append(String username, ByteBuffer body) throws IOException {
+        int length = HEADER_SIZE + body.remaining();
+
+        if (active.size > 0 && active.size + length > SEGMENT_SIZE) {
+            active.channel.force(false);
+            active = createSegment(active.id + 1);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(body.array(), body.arrayOffset() + body.position(), body.remaining());
+
+        ByteBuffer record = ByteBuffer.allocate(length);
+        record.putInt(body.remaining());
+        record.putInt((int) crc.getValue());
+        record.put(body);
+        record.flip();
+
+        long offset = active.size;
+
+        while (record.hasRemaining()) {
+            active.channel.write(record, offset + record.position());
+        }
+
+        active.size += length;
+        put(username, new Location(active, offset, length));
+        dirty = true;
+    }
+
+    /**
+     * Points the index at a record, updating how many bytes are live in the
+     * segments of the new and replaced records.
+     * 
+     * @param username
+     *        the username the record belongs to.
+     * @param location
+     *        the location of the record.
+     */
+    private void put(String username, Location location) {
+        Location replaced = index.put(username, location);
+
+        if (replaced != null) {
+            replaced.segment.live -= replaced.length;
+        }
+
+        location.segment.live += location.length;
+    }
+
+    /**
+     * Reads the body of the record at a location.
+     * 
+     * @param location
+     *        the location of the record.
+     * @return the body of the record.
+     * @throws IOException
+     *         if any errors occur while reading.
+     */
+    private ByteBuffer read(Location location) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(location.length);
+        FileChannel channel = location.segment.channel;
+
+        while (record.hasRemaining()) {
+            if (channel.read(record, location.offset + record.position()) < 0) {
+                throw new IOException("Unexpected end of segment " + location.segment.path);
+            }
+        }
+
+        record.position(HEADER_SIZE);
+        return record.slice();
+    }
+
+    /**
+     * Scans every record in a segment into the index. Anything after the last
+     * complete record with a valid checksum is cut off the segment.
+     * 
+     * @param segment
+     *        the segment to scan.
+     * @throws IOException
+     *         if any errors occur while scanning.
+     */
+    private void recover(Segment segment) throws IOException {
+        long fileSize = segment.channel.size();
+        long offset = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+
+        while (offset + HEADER_SIZE <= fileSize) {
+            header.clear();
+
+            while (header.hasRemaining() && segment.channel.read(header, offset + header.position()) >= 0) {
+                /** Keep reading until the header is full. */
+            }
+
+            header.flip();
+            int bodyLength = header.getInt();
+            int checksum = header.getInt();
+
+            if (bodyLength <= 0 || offset + HEADER_SIZE + bodyLength > fileSize) {
+                break;
+            }
+
+            ByteBuffer body = ByteBuffer.allocate(bodyLength);
+
+            while (body.hasRemaining() && segment.channel.read(body, offset + HEADER_SIZE + body.position()) >= 0) {
+                /** Keep reading until the body is full. */
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(body.array(), 0, bodyLength);
+
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+
+            body.flip();
+            put(readUsername(body), new Location(segment, offset, HEADER_SIZE + bodyLength));
+            offset += HEADER_SIZE + bodyLength;
+        }
+
+        if (offset < fileSize) {
+            logger.warning("Cutting " + (fileSize - offset) + " bytes of incomplete records off " + segment.path);
+            segment.channel.truncate(offset);
+            segment.channel.force(false);
+        }
+
+        segment.size = offset;
+    }
+
+    /**
+     * Creates a new, empty segment.
+     * 
+     * @param id
+     *        the id of the segment.
+     * @return the created segment.
+     * @throws IOException
+     *         if the segment could not be created.
+     */
+    private Segment createSegment(int id) throws IOException {
+        Segment segment = new Segment(id, directory.resolve(PREFIX + id + EXTENSION));
+        segments.put(id, segment);
+        return segment;
+    }
+
+    /**
+     * Reads the username from the front of a record body.
+     * 
+     * @param body
+     *        the body of the record.
+     * @return the username.
+     */
+    private static String readUsername(ByteBuffer body) {
+        byte[] name = new byte[body.getShort() & 0xffff];
+        body.get(name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Gets the amount of character files in this repository.
+     * 
+     * @return the amount of character files.
+     */
+    public synchronized int getSize() {
+        return index.size();
+    }
+
+    /**
+     * Gets the amount of segments in this repository.
+     * 
+     * @return the amount of segments.
+     */
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Closes every segment in this repository.
+     * 
+     * @throws IOException
+     *         if any errors occur while closing.
+     */
+    public synchronized void close() throws IOException {
+        flush();
+
+        for (Iterator<Segment> it = segments.values().iterator(); it.hasNext();) {
+            it.next().channel.close();
+            it.remove();
+        }
+    }
+
+    /**
+     * A single file of the log.
+     * 
+     * @author lare96
+     */
+    private static class Segment {
+
+        /** The id of this segment. */
+        private final int id;
+
+        /** The path of this segment. */
+        private final Path path;
+
+        /** The channel used to read and write this segment. */
+        private final FileChannel channel;
+
+        /** The amount of bytes of records in this segment. */
+        private long size;
+
+        /** The amount of bytes of records that haven't been replaced. */
+        private long live;
+
+        /**
+         * Opens a segment, creating it if it doesn't exist.
+         * 
+         * @param id
+         *        the id of this segment.
+         * @param path
+         *        the path of this segment.
+         * @throws IOException
+         *         if the segment could not be opened.
+         */
+        public Segment(int id, Path path) throws IOException {
+            this.id = id;
+            this.path = path;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+    }
+
+    /**
+     * Where a record is in the log.
+     * 
+     * @author lare96
+     */
+    private static class Location {
+
+        /** The segment the record is in. */
+        private final Segment segment;
+
+        /** The offset of the record in the segment. */
+        private final long offset;
+
+        /** The length of the record, including its header. */
+        private final int length;
+
+        /**
+         * Create a new {@link Location}.
+         * 
+         * @param segment
+         *        the segment the record is in.
+         * @param offset
+         *        the offset of the record in the segment.
+         * @param length
+         *        the length of the record, including its header.
+         */
+        public Location(Segment segment, long offset, int length) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package server.world.entity.player.file;
+
+/**
+ * The encoded contents of a character file along with the format it was
+ * encoded in.
+ * 
+ * @author lare96
+ */
+public final class PlayerFile {
+
+    /** The format the data was encoded in. */
+    private final PlayerFileFormat format;
+
+    /** The encoded data. */
+    private final byte[] data;
+
+    /**
+     * Create a new {@link PlayerFile}.
+     * 
+     * @param format
+     *        the format the data was encoded in.
+     * @param data
+     *        the encoded data.
+     */
+    public PlayerFile(PlayerFileFormat format, byte[] data) {
+        this.format = format;
+        this.data = data;
+    }
+
+    /**
+     * Gets the format the data was encoded in.
+     * 
+     * @return the format.
+     */
+    public PlayerFileFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Gets the encoded data.
+     * 
+     * @return the data.
+     */
+    public byte[] getData() {
+        return data;
+    }
+}
@@ -0,0 +1,64 @@
+package server.world.entity.player.file;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * The formats character files can be saved in. Character files are always
+ * saved in the format selected for this deployment, but can be read in any
+ * format so that existing files are migrated the next time they're saved.
+ * 
+ * @author lare96
+ */
+public enum PlayerFileFormat {
+
+    /** The legacy, human readable format. */
+    JSON(".json"),
+
+    /** The compact, versioned binary format written by {@link BinaryPlayerCodec}. */
+    BINARY(".bin");
+
+    /** A {@code String} representation of our players directory. */
+    public static final String DIR = "data/players";
+
+    /**
+     * The format character files are saved in. This can be changed for a
+     * deployment by starting the server with
+     * <code>-Dserver.player.format=json</code> or
+     * <code>-Dserver.player.format=binary</code>.
+     */
+    public static final PlayerFileFormat SAVE_FORMAT = PlayerFileFormat.valueOf(System.getProperty("server.player.format", "binary").toUpperCase());
+
+    /** The extension of character files saved in this format. */
+    private final String extension;
+
+    /**
+     * Create a new {@link PlayerFileFormat}.
+     * 
+     * @param extension
+     *        the extension of character files saved in this format.
+     */
+    private PlayerFileFormat(String extension) {
+        this.extension = extension;
+    }
+
+    /**
+     * Gets the path of the character file for a player in this format.
+     * 
+     * @param username
+     *        the username of the player.
+     * @return the path of the character file.
+     */
+    public Path getPath(String username) {
+        return Paths.get(DIR, username + extension);
+    }
+
+    /**
+     * Gets the extension of character files saved in this format.
+     * 
+     * @return the extension.
+     */
+    public String getExtension() {
+        return extension;
+    }
+}
@@ -0,0 +1,96 @@
+package server.world.entity.player.file;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.logging.Logger;
+
+/**
+ * Where character files are stored. The repository used is chosen for a
+ * deployment by starting the server with
+ * <code>-Dserver.player.repository=file</code> (one file per player, the
+ * default) or <code>-Dserver.player.repository=log</code> (a single
+ * append-only log, see {@link LogPlayerRepository}).
+ * 
+ * @author lare96
+ */
+public abstract class PlayerRepository {
+
+    /** The name of the repository used by this deployment. */
+    public static final String REPOSITORY = System.getProperty("server.player.repository", "file");
+
+    /** The directory the log repository is stored in. */
+    public static final String LOG_DIR = PlayerFileFormat.DIR + "/log";
+
+    /** A {@link Logger} for printing debugging info. */
+    private static Logger logger = Logger.getLogger(PlayerRepository.class.getSimpleName());
+
+    /** The repository used by the server. */
+    private static PlayerRepository repository;
+
+    /**
+     * Opens the repository selected for this deployment.
+     * 
+     * @throws IOException
+     *         if the repository could not be opened.
+     */
+    public static void init() throws IOException {
+
+        /** Check if we have already opened the repository. */
+        if (repository != null) {
+            throw new IllegalStateException("The player repository has already been opened!");
+        }
+
+        if (REPOSITORY.equalsIgnoreCase("log")) {
+            repository = new LogPlayerRepository(Paths.get(LOG_DIR));
+        } else if (REPOSITORY.equalsIgnoreCase("file")) {
+            repository = new FilePlayerRepository();
+        } else {
+            throw new IllegalStateException("Invalid player repository: " + REPOSITORY);
+        }
+
+        logger.info("Storing character files in the " + REPOSITORY.toLowerCase() + " repository.");
+    }
+
+    /**
+     * Loads the character file for a username.
+     * 
+     * @param username
+     *        the username to load the character file for.
+     * @return the character file, or <code>null</code> if there is no
+     *         character file for the username.
+     * @throws IOException
+     *         if any errors occur while loading.
+     */
+    public abstract PlayerFile load(String username) throws IOException;
+
+    /**
+     * Saves the character file for a username, replacing any existing one.
+     * Saves are not guaranteed to be durable until {@link #flush()} is called.
+     * 
+     * @param username
+     *        the username to save the character file for.
+     * @param file
+     *        the character file to save.
+     * @throws IOException
+     *         if any errors occur while saving.
+     */
+    public abstract void save(String username, PlayerFile file) throws IOException;
+
+    /**
+     * Makes every save so far durable. This is called once after every batch
+     * of saves rather than after every save.
+     * 
+     * @throws IOException
+     *         if any errors occur while flushing.
+     */
+    public abstract void flush() throws IOException;
+
+    /**
+     * Gets the repository used by the server.
+     * 
+     * @return the player repository.
+     */
+    public static PlayerRepository getRepository() {
+        return repository;
+    }
+}
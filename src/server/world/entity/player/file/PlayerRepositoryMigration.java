@@ -0,0 +1,59 @@
+package server.world.entity.player.file;
+
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * An offline tool that copies every character file in the players directory
+ * into a {@link LogPlayerRepository}. The server must not be running while
+ * this is ran. The original files are left untouched, so they can be deleted
+ * by hand once the server is running with
+ * <code>-Dserver.player.repository=log</code>.
+ * 
+ * @author lare96
+ */
+public final class PlayerRepositoryMigration {
+
+    /**
+     * Copies the character files into the log.
+     * 
+     * @param args
+     *        an array of the runtime arguments, optionally the players
+     *        directory followed by the directory of the log.
+     */
+    public static void main(String[] args) {
+        Path source = Paths.get(args.length > 0 ? args[0] : PlayerFileFormat.DIR);
+        Path target = Paths.get(args.length > 1 ? args[1] : PlayerRepository.LOG_DIR);
+
+        try {
+            LogPlayerRepository repository = new LogPlayerRepository(target);
+            int migrated = 0;
+
+            /**
+             * JSON files are copied first, so if a player has files in both
+             * formats the newer binary file wins.
+             */
+            for (PlayerFileFormat format : PlayerFileFormat.values()) {
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(source, "*" + format.getExtension())) {
+                    for (Path path : stream) {
+                        if (!Files.isRegularFile(path)) {
+                            continue;
+                        }
+
+                        String name = path.getFileName().toString();
+                        String username = name.substring(0, name.length() - format.getExtension().length());
+                        repository.save(username, new PlayerFile(format, Files.readAllBytes(path)));
+                        migrated++;
+                    }
+                }
+            }
+
+            repository.close();
+            System.out.println("Migrated " + migrated + " character files from " + source + " to " + target + ".");
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package server.world.entity.player.file;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import server.core.ThreadProvider;
+import server.core.worker.TaskFactory;
+import server.core.worker.Worker;
+import server.util.TimingHistogram;
+import server.world.World;
+import server.world.entity.player.Player;
+
+/**
+ * A service that writes character files in batches on its own thread. Players
+ * are copied into a {@link PlayerSnapshot} on the game thread, and if a player
+ * is saved again before their last snapshot has been written the older
+ * snapshot is simply replaced, so no matter how often a player is saved only
+ * their latest state is ever written.
+ * 
+ * @author lare96
+ */
+public final class PlayerSaveService {
+
+    /** The maximum amount of snapshots written in a single batch. */
+    public static final int BATCH_SIZE = 50;
+
+    /**
+     * The amount of ticks between automatic saves of a player (default 5
+     * minutes). Players are spread out over this interval by their slot, so
+     * only a few of them are saved every tick.
+     */
+    public static final int AUTOSAVE_INTERVAL = 500;
+
+    /**
+     * The maximum amount of seconds to wait for queued saves to be written
+     * when the server is shutting down.
+     */
+    private static final int SHUTDOWN_TIMEOUT = 30;
+
+    /** A {@link Logger} for printing debugging info. */
+    private static Logger logger = Logger.getLogger(PlayerSaveService.class.getSimpleName());
+
+    /** The singleton instance. */
+    private static PlayerSaveService singleton = new PlayerSaveService();
+
+    /** The lock guarding the queued and in progress snapshots. */
+    private final Object lock = new Object();
+
+    /** The snapshots waiting to be written, mapped to their usernames. */
+    private final Map<String, PlayerSnapshot> pending = new LinkedHashMap<String, PlayerSnapshot>();
+
+    /** The usernames of the snapshots currently being written. */
+    private final Set<String> writing = new HashSet<String>();
+
+    /** The time between a snapshot being taken and it being written. */
+    private final TimingHistogram latency = new TimingHistogram();
+
+    /** The amount of snapshots written. */
+    private volatile long written;
+
+    /** The amount of snapshots replaced by a newer snapshot before writing. */
+    private volatile long coalesced;
+
+    /** The amount of snapshots that couldn't be written. */
+    private volatile long failed;
+
+    /** The executor running the save thread. */
+    private ExecutorService saveExecutor;
+
+    /** So this class cannot be instantiated. */
+    private PlayerSaveService() {
+    }
+
+    /**
+     * Starts the save thread and the worker that spreads automatic saves over
+     * every tick.
+     */
+    public void start() {
+
+        /** Check if we have already started the service. */
+        if (saveExecutor != null) {
+            throw new IllegalStateException("The save service has already been started!");
+        }
+
+        saveExecutor = Executors.newSingleThreadExecutor(new ThreadProvider("SaveThread", Thread.NORM_PRIORITY, true, false));
+        saveExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                while (true) {
+                    try {
+                        writeBatch();
+                    } catch (InterruptedException e) {
+                        return;
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        });
+
+        /** Wait for queued saves to be written before shutting down. */
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+                try {
+                    if (!awaitIdle(TimeUnit.SECONDS.toMillis(SHUTDOWN_TIMEOUT))) {
+                        logger.warning(getQueueDepth() + " saves were still queued when shutting down!");
+                    }
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+
+        /** Save a slice of the players every tick. */
+        TaskFactory.getFactory().submit(new Worker(1, false) {
+            @Override
+            public void fire() {
+                int slice = (int) (TaskFactory.getFactory().getTick() % AUTOSAVE_INTERVAL);
+
+                for (int slot = slice; slot < World.getPlayers().getCapacity(); slot += AUTOSAVE_INTERVAL) {
+                    Player player = World.getPlayers().get(slot);
+
+                    if (player != null) {
+                        World.savePlayer(player);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Takes a snapshot of a player and queues it to be written. This should
+     * only be called on the game thread.
+     * 
+     * @param player
+     *        the player to save.
+     */
+    public void save(Player player) {
+
+        /** Never overwrite a file with a player that didn't log in properly. */
+        if (player.isIncorrectPassword()) {
+            return;
+        }
+
+        PlayerSnapshot snapshot = new PlayerSnapshot(player);
+
+        synchronized (lock) {
+            if (pending.put(snapshot.getUsername(), snapshot) != null) {
+                coalesced++;
+            }
+
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Blocks until there are no snapshots queued or being written for a
+     * username. This is used when loading a player so a file is never read
+     * while a newer save for it is still waiting.
+     * 
+     * @param username
+     *        the username to wait for.
+     * @throws InterruptedException
+     *         if the thread is interrupted while waiting.
+     */
+    public void awaitSave(String username) throws InterruptedException {
+        synchronized (lock) {
+            while (pending.containsKey(username) || writing.contains(username)) {
+                lock.wait();
+            }
+        }
+    }
+
+    /**
+     * Blocks until every queued snapshot has been written.
+     * 
+     * @param timeout
+     *        the maximum amount of milliseconds to wait for.
+     * @return true if every snapshot was written, false if the timeout ran
+     *         out first.
+     * @throws InterruptedException
+     *         if the thread is interrupted while waiting.
+     */
+    public boolean awaitIdle(long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+
+        synchronized (lock) {
+            while (!pending.isEmpty() || !writing.isEmpty()) {
+                long remaining = deadline - System.currentTimeMillis();
+
+                if (remaining <= 0) {
+                    return false;
+                }
+
+                lock.wait(remaining);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Waits for snapshots to be queued and writes up to {@link #BATCH_SIZE} of
+     * them.
+     * 
+     * @throws InterruptedException
+     *         if the thread is interrupted while waiting.
+     */
+    private void writeBatch() throws InterruptedException {
+        List<PlayerSnapshot> batch = new ArrayList<PlayerSnapshot>(BATCH_SIZE);
+
+        /** Take the oldest snapshots off of the queue. */
+        synchronized (lock) {
+            while (pending.isEmpty()) {
+                lock.wait();
+            }
+
+            for (Iterator<PlayerSnapshot> it = pending.values().iterator(); it.hasNext() && batch.size() < BATCH_SIZE;) {
+                PlayerSnapshot snapshot = it.next();
+                it.remove();
+                writing.add(snapshot.getUsername());
+                batch.add(snapshot);
+            }
+        }
+
+        /** Write them without holding the lock. */
+        try {
+            for (PlayerSnapshot snapshot : batch) {
+                try {
+                    WritePlayerFileEvent.write(snapshot);
+                    latency.record(System.nanoTime() - snapshot.getTimestamp());
+                    written++;
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    logger.warning("Error while writing data for " + snapshot.getUsername());
+                    failed++;
+                }
+            }
+
+            /** Make the whole batch durable at once. */
+            try {
+                PlayerRepository.getRepository().flush();
+            } catch (Exception e) {
+                e.printStackTrace();
+                logger.warning("Error while flushing the player repository!");
+            }
+        } finally {
+            synchronized (lock) {
+                for (PlayerSnapshot snapshot : batch) {
+                    writing.remove(snapshot.getUsername());
+                }
+
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Gets the amount of snapshots waiting to be written.
+     * 
+     * @return the queue depth.
+     */
+    public int getQueueDepth() {
+        synchronized (lock) {
+            return pending.size() + writing.size();
+        }
+    }
+
+    /**
+     * Gets the time between snapshots being taken and them being written.
+     * 
+     * @return the save latency.
+     */
+    public TimingHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * Gets the amount of snapshots written.
+     * 
+     * @return the amount written.
+     */
+    public long getWritten() {
+        return written;
+    }
+
+    /**
+     * Gets the amount of snapshots replaced by a newer snapshot before they
+     * were written.
+     * 
+     * @return the amount coalesced.
+     */
+    public long getCoalesced() {
+        return coalesced;
+    }
+
+    /**
+     * Gets the amount of snapshots that couldn't be written.
+     * 
+     * @return the amount failed.
+     */
+    public long getFailed() {
+        return failed;
+    }
+
+    /**
+     * Gets the singleton instance.
+     * 
+     * @return the singleton instance.
+     */
+    public static PlayerSaveService getService() {
+        return singleton;
+    }
+}
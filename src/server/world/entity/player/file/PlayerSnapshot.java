@@ -0,0 +1,439 @@
+package server.world.entity.player.file;
+
+import server.world.entity.player.Player;
+import server.world.entity.player.skill.Skill;
+import server.world.item.Item;
+
+/**
+ * An immutable copy of everything saved in a character file. Snapshots are
+ * taken on the game thread so they can be written out on another thread
+ * without ever touching the {@link Player} they were taken from.
+ * 
+ * @author lare96
+ */
+public final class PlayerSnapshot {
+
+    /** The time this snapshot was taken at, in nanoseconds. */
+    private final long timestamp = System.nanoTime();
+
+    /** The username of the player. */
+    private final String username;
+
+    /** The password of the player. */
+    private final String password;
+
+    /** The x coordinate of the player. */
+    private final int x;
+
+    /** The y coordinate of the player. */
+    private final int y;
+
+    /** The z coordinate of the player. */
+    private final int z;
+
+    /** The staff rights of the player. */
+    private final int staffRights;
+
+    /** The gender of the player. */
+    private final int gender;
+
+    /** The appearance of the player. */
+    private final int[] appearance;
+
+    /** The colors of the player. */
+    private final int[] colors;
+
+    /** If the player has run toggled. */
+    private final boolean runToggled;
+
+    /** If the player is new. */
+    private final boolean newPlayer;
+
+    /** The items in the inventory of the player. */
+    private final Item[] inventory;
+
+    /** The items in the bank of the player. */
+    private final Item[] bank;
+
+    /** The items equipped by the player. */
+    private final Item[] equipment;
+
+    /** The skills of the player. */
+    private final Skill[] skills;
+
+    /** The friends of the player. */
+    private final long[] friends;
+
+    /** The ignores of the player. */
+    private final long[] ignores;
+
+    /** The run energy of the player. */
+    private final int runEnergy;
+
+    /** The name of the spellbook of the player. */
+    private final String spellbook;
+
+    /** If the player is banned. */
+    private final boolean banned;
+
+    /** If the player has auto retaliate enabled. */
+    private final boolean autoRetaliate;
+
+    /** The name of the fight type of the player. */
+    private final String fightType;
+
+    /** The skull timer of the player. */
+    private final int skullTimer;
+
+    /** If the player accepts aid. */
+    private final boolean acceptAid;
+
+    /** The amount of poison hits left for the player. */
+    private final int poisonHits;
+
+    /** The name of the poison strength of the player. */
+    private final String poisonStrength;
+
+    /** The teleblock timer of the player. */
+    private final int teleblockTimer;
+
+    /** The special attack amount of the player. */
+    private final int specialAmount;
+
+    /**
+     * Create a new {@link PlayerSnapshot}. This should only be called on the
+     * game thread.
+     * 
+     * @param player
+     *        the player to take the snapshot of.
+     */
+    public PlayerSnapshot(Player player) {
+        this.username = player.getUsername().trim();
+        this.password = player.getPassword().trim();
+        this.x = player.getPosition().getX();
+        this.y = player.getPosition().getY();
+        this.z = player.getPosition().getZ();
+        this.staffRights = player.getStaffRights();
+        this.gender = player.getGender();
+        this.appearance = player.getAppearance().clone();
+        this.colors = player.getColors().clone();
+        this.runToggled = player.getMovementQueue().isRunToggled();
+        this.newPlayer = player.isNewPlayer();
+        this.inventory = copy(player.getInventory().getContainer().toArray());
+        this.bank = copy(player.getBank().getContainer().toArray());
+        this.equipment = copy(player.getEquipment().getContainer().toArray());
+        this.skills = copy(player.getSkills());
+        this.friends = player.getFriends().toArray();
+        this.ignores = player.getIgnores().toArray();
+        this.runEnergy = player.getRunEnergy();
+        this.spellbook = player.getSpellbook().name();
+        this.banned = player.isBanned();
+        this.autoRetaliate = player.isAutoRetaliate();
+        this.fightType = player.getFightType().name();
+        this.skullTimer = player.getSkullTimer();
+        this.acceptAid = player.isAcceptAid();
+        this.poisonHits = player.getPoisonHits();
+        this.poisonStrength = player.getPoisonStrength().name();
+        this.teleblockTimer = player.getTeleblockTimer();
+        this.specialAmount = player.getSpecialPercentage();
+    }
+
+    /**
+     * Copies an array of items so later changes to the items aren't seen.
+     * 
+     * @param items
+     *        the items to copy.
+     * @return the copied items.
+     */
+    private static Item[] copy(Item[] items) {
+        Item[] copy = new Item[items.length];
+
+        for (int i = 0; i < items.length; i++) {
+            if (items[i] != null) {
+                copy[i] = new Item(items[i].getId(), items[i].getAmount());
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Copies an array of skills so later changes to the skills aren't seen.
+     * 
+     * @param skills
+     *        the skills to copy.
+     * @return the copied skills.
+     */
+    private static Skill[] copy(Skill[] skills) {
+        Skill[] copy = new Skill[skills.length];
+
+        for (int i = 0; i < skills.length; i++) {
+            if (skills[i] != null) {
+                copy[i] = new Skill();
+                copy[i].setLevel(skills[i].getLevel());
+                copy[i].setExperience(skills[i].getExperience());
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Gets the time this snapshot was taken at.
+     * 
+     * @return the time in nanoseconds.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Gets the username of the player.
+     * 
+     * @return the username.
+     */
+    public String getUsername() {
+        return username;
+    }
+
+    /**
+     * Gets the password of the player.
+     * 
+     * @return the password.
+     */
+    public String getPassword() {
+        return password;
+    }
+
+    /**
+     * Gets the x coordinate of the player.
+     * 
+     * @return the x coordinate.
+     */
+    public int getX() {
+        return x;
+    }
+
+    /**
+     * Gets the y coordinate of the player.
+     * 
+     * @return the y coordinate.
+     */
+    public int getY() {
+        return y;
+    }
+
+    /**
+     * Gets the z coordinate of the player.
+     * 
+     * @return the z coordinate.
+     */
+    public int getZ() {
+        return z;
+    }
+
+    /**
+     * Gets the staff rights of the player.
+     * 
+     * @return the staff rights.
+     */
+    public int getStaffRights() {
+        return staffRights;
+    }
+
+    /**
+     * Gets the gender of the player.
+     * 
+     * @return the gender.
+     */
+    public int getGender() {
+        return gender;
+    }
+
+    /**
+     * Gets the appearance of the player.
+     * 
+     * @return the appearance.
+     */
+    public int[] getAppearance() {
+        return appearance.clone();
+    }
+
+    /**
+     * Gets the colors of the player.
+     * 
+     * @return the colors.
+     */
+    public int[] getColors() {
+        return colors.clone();
+    }
+
+    /**
+     * Gets if the player has run toggled.
+     * 
+     * @return true if run is toggled.
+     */
+    public boolean isRunToggled() {
+        return runToggled;
+    }
+
+    /**
+     * Gets if the player is new.
+     * 
+     * @return true if the player is new.
+     */
+    public boolean isNewPlayer() {
+        return newPlayer;
+    }
+
+    /**
+     * Gets the items in the inventory of the player.
+     * 
+     * @return the inventory items.
+     */
+    public Item[] getInventory() {
+        return copy(inventory);
+    }
+
+    /**
+     * Gets the items in the bank of the player.
+     * 
+     * @return the bank items.
+     */
+    public Item[] getBank() {
+        return copy(bank);
+    }
+
+    /**
+     * Gets the items equipped by the player.
+     * 
+     * @return the equipment items.
+     */
+    public Item[] getEquipment() {
+        return copy(equipment);
+    }
+
+    /**
+     * Gets the skills of the player.
+     * 
+     * @return the skills.
+     */
+    public Skill[] getSkills() {
+        return copy(skills);
+    }
+
+    /**
+     * Gets the friends of the player.
+     * 
+     * @return the friends.
+     */
+    public long[] getFriends() {
+        return friends.clone();
+    }
+
+    /**
+     * Gets the ignores of the player.
+     * 
+     * @return the ignores.
+     */
+    public long[] getIgnores() {
+        return ignores.clone();
+    }
+
+    /**
+     * Gets the run energy of the player.
+     * 
+     * @return the run energy.
+     */
+    public int getRunEnergy() {
+        return runEnergy;
+    }
+
+    /**
+     * Gets the name of the spellbook of the player.
+     * 
+     * @return the spellbook name.
+     */
+    public String getSpellbook() {
+        return spellbook;
+    }
+
+    /**
+     * Gets if the player is banned.
+     * 
+     * @return true if the player is banned.
+     */
+    public boolean isBanned() {
+        return banned;
+    }
+
+    /**
+     * Gets if the player has auto retaliate enabled.
+     * 
+     * @return true if auto retaliate is enabled.
+     */
+    public boolean isAutoRetaliate() {
+        return autoRetaliate;
+    }
+
+    /**
+     * Gets the name of the fight type of the player.
+     * 
+     * @return the fight type name.
+     */
+    public String getFightType() {
+        return fightType;
+    }
+
+    /**
+     * Gets the skull timer of the player.
+     * 
+     * @return the skull timer.
+     */
+    public int getSkullTimer() {
+        return skullTimer;
+    }
+
+    /**
+     * Gets if the player accepts aid.
+     * 
+     * @return true if the player accepts aid.
+     */
+    public boolean isAcceptAid() {
+        return acceptAid;
+    }
+
+    /**
+     * Gets the amount of poison hits left for the player.
+     * 
+     * @return the poison hits.
+     */
+    public int getPoisonHits() {
+        return poisonHits;
+    }
+
+    /**
+     * Gets the name of the poison strength of the player.
+     * 
+     * @return the poison strength name.
+     */
+    public String getPoisonStrength() {
+        return poisonStrength;
+    }
+
+    /**
+     * Gets the teleblock timer of the player.
+     * 
+     * @return the teleblock timer.
+     */
+    public int getTeleblockTimer() {
+        return teleblockTimer;
+    }
+
+    /**
+     * Gets the special attack amount of the player.
+     * 
+     * @return the special attack amount.
+     */
+    public int getSpecialAmount() {
+        return specialAmount;
+    }
+}
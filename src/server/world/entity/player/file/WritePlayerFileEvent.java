@@ -1,9 +1,7 @@
 package server.world.entity.player.file;
 
-import java.io.File;
-import java.io.FileWriter;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.logging.Logger;
 
 import server.world.entity.player.Player;
@@ -15,20 +13,20 @@ import com.google.gson.JsonObject;
 
 /**
  * A implementation of {@link PlayerFileEvent} that writes (saves) a character
- * file.
+ * file in the {@link PlayerFileFormat} selected for this deployment.
  * 
  * @author lare96
  */
 public class WritePlayerFileEvent extends PlayerFileEvent {
 
-    /** A {@code String} representation of our players directory. */
-    private static final String DIR = "data/players";
-
     /**
      * A {@link Logger} for printing debugging info.
      */
     private static Logger logger = Logger.getLogger(WritePlayerFileEvent.class.getSimpleName());
 
+    /** The builder used to serialize character files, safe to share. */
+    private static final Gson builder = new GsonBuilder().create();
+
     /**
      * Create a new {@link WritePlayerFileEvent}.
      * 
@@ -42,52 +40,8 @@ public class WritePlayerFileEvent extends PlayerFileEvent {
     @Override
     public void run() {
         try {
-            Path path = Paths.get(DIR, getPlayer().getUsername() + ".json");
-            File file = path.toFile();
-
-            if (!file.exists()) {
-                if (!file.createNewFile()) {
-                    logger.severe("Unable to create save file for player: " + getPlayer());
-                    return;
-                }
-            }
-
-            if (file.exists() && !getPlayer().isIncorrectPassword()) {
-                final Gson builder = new GsonBuilder().setPrettyPrinting().create();
-                final JsonObject object = new JsonObject();
-
-                object.addProperty("username", getPlayer().getUsername().trim());
-                object.addProperty("password", getPlayer().getPassword().trim());
-                object.addProperty("x", new Integer(getPlayer().getPosition().getX()));
-                object.addProperty("y", new Integer(getPlayer().getPosition().getY()));
-                object.addProperty("z", new Integer(getPlayer().getPosition().getZ()));
-                object.addProperty("staff-rights", new Integer(getPlayer().getStaffRights()));
-                object.addProperty("gender", new Integer(getPlayer().getGender()));
-                object.add("appearance", builder.toJsonTree(getPlayer().getAppearance()));
-                object.add("colors", builder.toJsonTree(getPlayer().getColors()));
-                object.addProperty("run-toggled", new Boolean(getPlayer().getMovementQueue().isRunToggled()));
-                object.addProperty("new-player", new Boolean(getPlayer().isNewPlayer()));
-                object.add("inventory", builder.toJsonTree(getPlayer().getInventory().getContainer().toArray()));
-                object.add("bank", builder.toJsonTree(getPlayer().getBank().getContainer().toArray()));
-                object.add("equipment", builder.toJsonTree(getPlayer().getEquipment().getContainer().toArray()));
-                object.add("skills", builder.toJsonTree(getPlayer().getSkills()));
-                object.add("friends", builder.toJsonTree(getPlayer().getFriends().toArray()));
-                object.add("ignores", builder.toJsonTree(getPlayer().getIgnores().toArray()));
-                object.addProperty("run-energy", new Integer(getPlayer().getRunEnergy()));
-                object.addProperty("spell-book", getPlayer().getSpellbook().name());
-                object.addProperty("is-banned", new Boolean(getPlayer().isBanned()));
-                object.addProperty("auto-retaliate", new Boolean(getPlayer().isAutoRetaliate()));
-                object.addProperty("fight-type", getPlayer().getFightType().name());
-                object.addProperty("skull-timer", new Integer(getPlayer().getSkullTimer()));
-                object.addProperty("accept-aid", new Boolean(getPlayer().isAcceptAid()));
-                object.addProperty("poison-hits", new Integer(getPlayer().getPoisonHits()));
-                object.addProperty("poison-strength", getPlayer().getPoisonStrength().name());
-                object.addProperty("teleblock-timer", new Integer(getPlayer().getTeleblockTimer()));
-                object.addProperty("special-amount", new Integer(getPlayer().getSpecialPercentage()));
-
-                FileWriter fileWriter = new FileWriter(file);
-                fileWriter.write(builder.toJson(object));
-                fileWriter.close();
+            if (!getPlayer().isIncorrectPassword()) {
+                write(new PlayerSnapshot(getPlayer()));
             }
         } catch (Exception e) {
             e.printStackTrace();
@@ -95,4 +49,60 @@ public class WritePlayerFileEvent extends PlayerFileEvent {
         }
     }
 
+    /**
+     * Encodes a snapshot in the format selected for this deployment and saves
+     * it to the {@link PlayerRepository}.
+     * 
+     * @param snapshot
+     *        the snapshot to write.
+     * @throws IOException
+     *         if any errors occur while writing.
+     */
+    public static void write(PlayerSnapshot snapshot) throws IOException {
+        PlayerFileFormat format = PlayerFileFormat.SAVE_FORMAT;
+        byte[] data = format == PlayerFileFormat.BINARY ? BinaryPlayerCodec.encode(snapshot) : encodeJson(snapshot);
+        PlayerRepository.getRepository().save(snapshot.getUsername(), new PlayerFile(format, data));
+    }
+
+    /**
+     * Encodes a snapshot as a legacy JSON character file.
+     * 
+     * @param snapshot
+     *        the snapshot to encode.
+     * @return the encoded character file.
+     */
+    public static byte[] encodeJson(PlayerSnapshot snapshot) {
+        final JsonObject object = new JsonObject();
+
+        object.addProperty("username", snapshot.getUsername());
+        object.addProperty("password", snapshot.getPassword());
+        object.addProperty("x", new Integer(snapshot.getX()));
+        object.addProperty("y", new Integer(snapshot.getY()));
+        object.addProperty("z", new Integer(snapshot.getZ()));
+        object.addProperty("staff-rights", new Integer(snapshot.getStaffRights()));
+        object.addProperty("gender", new Integer(snapshot.getGender()));
+        object.add("appearance", builder.toJsonTree(snapshot.getAppearance()));
+        object.add("colors", builder.toJsonTree(snapshot.getColors()));
+        object.addProperty("run-toggled", new Boolean(snapshot.isRunToggled()));
+        object.addProperty("new-player", new Boolean(snapshot.isNewPlayer()));
+        object.add("inventory", builder.toJsonTree(snapshot.getInventory()));
+        object.add("bank", builder.toJsonTree(snapshot.getBank()));
+        object.add("equipment", builder.toJsonTree(snapshot.getEquipment()));
+        object.add("skills", builder.toJsonTree(snapshot.getSkills()));
+        object.add("friends", builder.toJsonTree(snapshot.getFriends()));
+        object.add("ignores", builder.toJsonTree(snapshot.getIgnores()));
+        object.addProperty("run-energy", new Integer(snapshot.getRunEnergy()));
+        object.addProperty("spell-book", snapshot.getSpellbook());
+        object.addProperty("is-banned", new Boolean(snapshot.isBanned()));
+        object.addProperty("auto-retaliate", new Boolean(snapshot.isAutoRetaliate()));
+        object.addProperty("fight-type", snapshot.getFightType());
+        object.addProperty("skull-timer", new Integer(snapshot.getSkullTimer()));
+        object.addProperty("accept-aid", new Boolean(snapshot.isAcceptAid()));
+        object.addProperty("poison-hits", new Integer(snapshot.getPoisonHits()));
+        object.addProperty("poison-strength", snapshot.getPoisonStrength());
+        object.addProperty("teleblock-timer", new Integer(snapshot.getTeleblockTimer()));
+        object.addProperty("special-amount", new Integer(snapshot.getSpecialAmount()));
+
+        return builder.toJson(object).getBytes(StandardCharsets.UTF_8);
+    }
 }
@@ -1,7 +1,5 @@
 package server.world.item;
 
-import server.util.Misc;
-
 /**
  * A single entry in a table of important data used for {@link Item}s.
  * 
@@ -389,6 +387,6 @@ public class ItemDefinition {
      * @return true if this item is two handed.
      */
     public boolean isTwoHanded() {
-        return Misc.getIs2H()[itemId];
+        return ItemTable.getTable().isTwoHanded(itemId);
     }
 }
\ No newline at end of file
@@ -0,0 +1,142 @@
+package server.world.item;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import server.util.DefinitionPack;
+
+/**
+ * Encodes and decodes the {@link ItemDefinition}s stored in a binary
+ * {@link DefinitionPack}. Every field is stored as its own column so the
+ * primitive fields can be read in bulk straight out of the mapped pack.
+ * 
+ * @author lare96
+ */
+public final class ItemDefinitionPack {
+
+    /** The format version, this should be bumped whenever the layout changes. */
+    public static final int VERSION = 1;
+
+    /** The amount of bonuses every item has. */
+    private static final int BONUS_COUNT = 12;
+
+    /** The flag for a definition existing. */
+    private static final int PRESENT = 1;
+
+    /** The flag for a noted item. */
+    private static final int NOTED = 1 << 1;
+
+    /** The flag for a noteable item. */
+    private static final int NOTEABLE = 1 << 2;
+
+    /** The flag for a stackable item. */
+    private static final int STACKABLE = 1 << 3;
+
+    /** The flag for a members item. */
+    private static final int MEMBERS = 1 << 4;
+
+    /** So this class cannot be instantiated. */
+    private ItemDefinitionPack() {
+    }
+
+    /**
+     * Encodes definitions into the body of a pack.
+     * 
+     * @param definitions
+     *        the definitions to encode, which may contain <code>null</code>.
+     * @return the encoded body.
+     * @throws IOException
+     *         if any errors occur while encoding.
+     */
+    public static byte[] encode(ItemDefinition[] definitions) throws IOException {
+        int count = definitions.length;
+        byte[] flags = new byte[count];
+        String[] names = new String[count];
+        String[] descriptions = new String[count];
+        int[] equipmentSlots = new int[count];
+        int[] unNotedIds = new int[count];
+        int[] notedIds = new int[count];
+        int[] specialStorePrices = new int[count];
+        int[] generalStorePrices = new int[count];
+        int[] highAlchValues = new int[count];
+        int[] lowAlchValues = new int[count];
+        double[] weights = new double[count];
+        int[] bonuses = new int[count * BONUS_COUNT];
+
+        for (int i = 0; i < count; i++) {
+            ItemDefinition def = definitions[i];
+
+            if (def == null) {
+                continue;
+            }
+
+            flags[i] = (byte) (PRESENT | (def.isNoted() ? NOTED : 0) | (def.isNoteable() ? NOTEABLE : 0) | (def.isStackable() ? STACKABLE : 0) | (def.isMembersItem() ? MEMBERS : 0));
+            names[i] = def.getItemName();
+            descriptions[i] = def.getItemDescription();
+            equipmentSlots[i] = def.getEquipmentSlot();
+            unNotedIds[i] = def.getUnNotedId();
+            notedIds[i] = def.getNotedId();
+            specialStorePrices[i] = def.getSpecialStorePrice();
+            generalStorePrices[i] = def.getGeneralStorePrice();
+            highAlchValues[i] = def.getHighAlchValue();
+            lowAlchValues[i] = def.getLowAlchValue();
+            weights[i] = def.getWeight();
+            System.arraycopy(def.getBonus(), 0, bonuses, i * BONUS_COUNT, Math.min(def.getBonus().length, BONUS_COUNT));
+        }
+
+        return DefinitionPack.newBody().putInt(count).putBytes(flags).putStrings(names).putStrings(descriptions).putInts(equipmentSlots).putInts(unNotedIds).putInts(notedIds).putInts(specialStorePrices).putInts(generalStorePrices).putInts(highAlchValues).putInts(lowAlchValues).putDoubles(weights).putInts(bonuses).toByteArray();
+    }
+
+    /**
+     * Decodes definitions from the body of a pack.
+     * 
+     * @param buffer
+     *        the body of the pack.
+     * @return the decoded definitions.
+     */
+    public static ItemDefinition[] decode(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        byte[] flags = DefinitionPack.getBytes(buffer, count);
+        String[] names = DefinitionPack.getStrings(buffer, count);
+        String[] descriptions = DefinitionPack.getStrings(buffer, count);
+        int[] equipmentSlots = DefinitionPack.getInts(buffer, count);
+        int[] unNotedIds = DefinitionPack.getInts(buffer, count);
+        int[] notedIds = DefinitionPack.getInts(buffer, count);
+        int[] specialStorePrices = DefinitionPack.getInts(buffer, count);
+        int[] generalStorePrices = DefinitionPack.getInts(buffer, count);
+        int[] highAlchValues = DefinitionPack.getInts(buffer, count);
+        int[] lowAlchValues = DefinitionPack.getInts(buffer, count);
+        double[] weights = DefinitionPack.getDoubles(buffer, count);
+        int[] bonuses = DefinitionPack.getInts(buffer, count * BONUS_COUNT);
+        ItemDefinition[] definitions = new ItemDefinition[count];
+
+        for (int i = 0; i < count; i++) {
+            if ((flags[i] & PRESENT) == 0) {
+                continue;
+            }
+
+            ItemDefinition def = new ItemDefinition();
+            def.setItemId(i);
+            def.setItemName(names[i]);
+            def.setItemDescription(descriptions[i]);
+            def.setEquipmentSlot(equipmentSlots[i]);
+            def.setNoted((flags[i] & NOTED) != 0);
+            def.setNoteable((flags[i] & NOTEABLE) != 0);
+            def.setStackable((flags[i] & STACKABLE) != 0);
+            def.setUnNotedId(unNotedIds[i]);
+            def.setNotedId(notedIds[i]);
+            def.setMembersItem((flags[i] & MEMBERS) != 0);
+            def.setSpecialStorePrice(specialStorePrices[i]);
+            def.setGeneralStorePrice(generalStorePrices[i]);
+            def.setHighAlchValue(highAlchValues[i]);
+            def.setLowAlchValue(lowAlchValues[i]);
+            def.setWeight(weights[i]);
+
+            int[] bonus = new int[BONUS_COUNT];
+            System.arraycopy(bonuses, i * BONUS_COUNT, bonus, 0, BONUS_COUNT);
+            def.setBonus(bonus);
+            definitions[i] = def;
+        }
+        return definitions;
+    }
+}
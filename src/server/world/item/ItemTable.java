@@ -0,0 +1,432 @@
+package server.world.item;
+
+import java.io.File;
+import java.util.Scanner;
+
+import server.world.entity.player.content.AssignWeaponAnimation;
+import server.world.entity.player.content.AssignWeaponAnimation.WeaponAnimationIndex;
+import server.world.entity.player.content.AssignWeaponInterface;
+import server.world.entity.player.content.AssignWeaponInterface.WeaponInterface;
+
+/**
+ * An immutable table of the item data that is looked up on hot paths such as
+ * appearance updating, bonus calculation and shop pricing. Instead of chasing
+ * references through {@link ItemDefinition}s and several other per-item
+ * tables, all of the data is packed into flat primitive arrays indexed by the
+ * item id.
+ * 
+ * @author lare96
+ */
+public final class ItemTable {
+
+    /** The flag for noted items. */
+    private static final int NOTED = 1;
+
+    /** The flag for noteable items. */
+    private static final int NOTEABLE = 1 << 1;
+
+    /** The flag for stackable items. */
+    private static final int STACKABLE = 1 << 2;
+
+    /** The flag for members items. */
+    private static final int MEMBERS = 1 << 3;
+
+    /** The flag for platebodies. */
+    private static final int PLATEBODY = 1 << 4;
+
+    /** The flag for full helms. */
+    private static final int FULL_HELM = 1 << 5;
+
+    /** The flag for two handed weapons. */
+    private static final int TWO_HANDED = 1 << 6;
+
+    /** The flag for weapons that change the appearance animations. */
+    private static final int ANIMATED = 1 << 7;
+
+    /** The amount of bonuses each item has. */
+    public static final int BONUS_COUNT = 12;
+
+    /** The amount of prices each item has. */
+    private static final int PRICE_COUNT = 4;
+
+    /** The offset of the special store price. */
+    private static final int SPECIAL_STORE_PRICE = 0;
+
+    /** The offset of the general store price. */
+    private static final int GENERAL_STORE_PRICE = 1;
+
+    /** The offset of the high alch value. */
+    private static final int HIGH_ALCH_VALUE = 2;
+
+    /** The offset of the low alch value. */
+    private static final int LOW_ALCH_VALUE = 3;
+
+    /** The amount of appearance animations each item has. */
+    private static final int ANIMATION_COUNT = 3;
+
+    /** The table used by the server. */
+    private static ItemTable table;
+
+    /** The weapon interfaces, cached so they aren't copied on every lookup. */
+    private static final WeaponInterface[] WEAPON_INTERFACES = WeaponInterface.values();
+
+    /** The flags of every item. */
+    private final int[] flags;
+
+    /** The equipment slot of every item. */
+    private final byte[] equipmentSlots;
+
+    /** The bonuses of every item, {@link #BONUS_COUNT} per item. */
+    private final int[] bonuses;
+
+    /** The prices of every item, {@link #PRICE_COUNT} per item. */
+    private final int[] prices;
+
+    /**
+     * The weapon interface of every item, stored as the ordinal plus one so
+     * that zero means the item has no weapon interface.
+     */
+    private final byte[] weaponInterfaces;
+
+    /** The appearance animations of every item, {@link #ANIMATION_COUNT} per item. */
+    private final int[] animations;
+
+    /**
+     * Create a new {@link ItemTable}.
+     * 
+     * @param size
+     *        the amount of items in this table.
+     */
+    private ItemTable(int size) {
+        this.flags = new int[size];
+        this.equipmentSlots = new byte[size];
+        this.bonuses = new int[size * BONUS_COUNT];
+        this.prices = new int[size * PRICE_COUNT];
+        this.weaponInterfaces = new byte[size];
+        this.animations = new int[size * ANIMATION_COUNT];
+    }
+
+    /**
+     * Builds the item table from the loaded item definitions and the equipment
+     * coder. This must be called after the item definitions have been loaded.
+     * 
+     * @throws Exception
+     *         if any errors occur while reading the equipment coder.
+     */
+    public static void load() throws Exception {
+        ItemDefinition[] definitions = ItemDefinition.getDefinitions();
+        ItemTable loaded = new ItemTable(definitions.length);
+
+        for (ItemDefinition def : definitions) {
+            if (def != null) {
+                loaded.put(def);
+            }
+        }
+
+        Scanner scanner = new Scanner(new File("./data/equipment_coder.txt"));
+
+        try {
+            while (scanner.hasNextLine()) {
+                String keyword = scanner.next();
+                int value = scanner.nextInt();
+
+                if (keyword.equals("#2h")) {
+                    loaded.flags[value] |= TWO_HANDED;
+                } else if (keyword.equals("#full_helm")) {
+                    loaded.flags[value] |= FULL_HELM;
+                } else if (keyword.equals("#platebody")) {
+                    loaded.flags[value] |= PLATEBODY;
+                }
+            }
+        } finally {
+            scanner.close();
+        }
+
+        table = loaded;
+    }
+
+    /**
+     * Packs the data of a single definition into this table.
+     * 
+     * @param def
+     *        the definition to pack.
+     */
+    private void put(ItemDefinition def) {
+        int id = def.getItemId();
+        int flag = 0;
+
+        if (def.isNoted()) {
+            flag |= NOTED;
+        }
+        if (def.isNoteable()) {
+            flag |= NOTEABLE;
+        }
+        if (def.isStackable()) {
+            flag |= STACKABLE;
+        }
+        if (def.isMembersItem()) {
+            flag |= MEMBERS;
+        }
+
+        equipmentSlots[id] = (byte) def.getEquipmentSlot();
+        System.arraycopy(def.getBonus(), 0, bonuses, id * BONUS_COUNT, Math.min(def.getBonus().length, BONUS_COUNT));
+        prices[id * PRICE_COUNT + SPECIAL_STORE_PRICE] = def.getSpecialStorePrice();
+        prices[id * PRICE_COUNT + GENERAL_STORE_PRICE] = def.getGeneralStorePrice();
+        prices[id * PRICE_COUNT + HIGH_ALCH_VALUE] = def.getHighAlchValue();
+        prices[id * PRICE_COUNT + LOW_ALCH_VALUE] = def.getLowAlchValue();
+
+        WeaponInterface weapon = AssignWeaponInterface.forDefinition(def);
+
+        if (weapon != null) {
+            weaponInterfaces[id] = (byte) (weapon.ordinal() + 1);
+        }
+
+        WeaponAnimationIndex animation = AssignWeaponAnimation.forDefinition(def);
+
+        if (animation != null) {
+            flag |= ANIMATED;
+            animations[id * ANIMATION_COUNT] = animation.getStandingAnimation();
+            animations[id * ANIMATION_COUNT + 1] = animation.getWalkingAnimation();
+            animations[id * ANIMATION_COUNT + 2] = animation.getRunningAnimation();
+        }
+
+        flags[id] = flag;
+    }
+
+    /**
+     * Gets the table used by the server.
+     * 
+     * @return the item table.
+     */
+    public static ItemTable getTable() {
+        return table;
+    }
+
+    /**
+     * Gets if the item is noted.
+     * 
+     * @param id
+     *        the item id.
+     * @return true if the item is noted.
+     */
+    public boolean isNoted(int id) {
+        return (flags[id] & NOTED) != 0;
+    }
+
+    /**
+     * Gets if the item is noteable.
+     * 
+     * @param id
+     *        the item id.
+     * @return true if the item is noteable.
+     */
+    public boolean isNoteable(int id) {
+        return (flags[id] & NOTEABLE) != 0;
+    }
+
+    /**
+     * Gets if the item is stackable.
+     * 
+     * @param id
+     *        the item id.
+     * @return true if the item is stackable.
+     */
+    public boolean isStackable(int id) {
+        return (flags[id] & STACKABLE) != 0;
+    }
+
+    /**
+     * Gets if the item is members only.
+     * 
+     * @param id
+     *        the item id.
+     * @return true if the item is members only.
+     */
+    public boolean isMembersItem(int id) {
+        return (flags[id] & MEMBERS) != 0;
+    }
+
+    /**
+     * Gets if the item is a platebody.
+     * 
+     * @param id
+     *        the item id.
+     * @return true if the item is a platebody.
+     */
+    public boolean isPlatebody(int id) {
+        return (flags[id] & PLATEBODY) != 0;
+    }
+
+    /**
+     * Gets if the item is a full helm.
+     * 
+     * @param id
+     *        the item id.
+     * @return true if the item is a full helm.
+     */
+    public boolean isFullHelm(int id) {
+        return (flags[id] & FULL_HELM) != 0;
+    }
+
+    /**
+     * Gets if the item is two handed.
+     * 
+     * @param id
+     *        the item id.
+     * @return true if the item is two handed.
+     */
+    public boolean isTwoHanded(int id) {
+        return (flags[id] & TWO_HANDED) != 0;
+    }
+
+    /**
+     * Gets the equipment slot of the item.
+     * 
+     * @param id
+     *        the item id.
+     * @return the equipment slot.
+     */
+    public int getEquipmentSlot(int id) {
+        return equipmentSlots[id];
+    }
+
+    /**
+     * Gets a single bonus of the item.
+     * 
+     * @param id
+     *        the item id.
+     * @param bonus
+     *        the index of the bonus.
+     * @return the value of the bonus.
+     */
+    public int getBonus(int id, int bonus) {
+        return bonuses[id * BONUS_COUNT + bonus];
+    }
+
+    /**
+     * Adds every bonus of the item onto a running total without allocating
+     * anything.
+     * 
+     * @param id
+     *        the item id.
+     * @param total
+     *        the array of {@link #BONUS_COUNT} totals to add the bonuses to.
+     */
+    public void addBonuses(int id, int[] total) {
+        int offset = id * BONUS_COUNT;
+
+        for (int i = 0; i < BONUS_COUNT; i++) {
+            total[i] += bonuses[offset + i];
+        }
+    }
+
+    /**
+     * Gets the special store price of the item.
+     * 
+     * @param id
+     *        the item id.
+     * @return the special store price.
+     */
+    public int getSpecialStorePrice(int id) {
+        return prices[id * PRICE_COUNT + SPECIAL_STORE_PRICE];
+    }
+
+    /**
+     * Gets the general store price of the item.
+     * 
+     * @param id
+     *        the item id.
+     * @return the general store price.
+     */
+    public int getGeneralStorePrice(int id) {
+        return prices[id * PRICE_COUNT + GENERAL_STORE_PRICE];
+    }
+
+    /**
+     * Gets the high alch value of the item.
+     * 
+     * @param id
+     *        the item id.
+     * @return the high alch value.
+     */
+    public int getHighAlchValue(int id) {
+        return prices[id * PRICE_COUNT + HIGH_ALCH_VALUE];
+    }
+
+    /**
+     * Gets the low alch value of the item.
+     * 
+     * @param id
+     *        the item id.
+     * @return the low alch value.
+     */
+    public int getLowAlchValue(int id) {
+        return prices[id * PRICE_COUNT + LOW_ALCH_VALUE];
+    }
+
+    /**
+     * Gets the interface displayed when the item is wielded.
+     * 
+     * @param id
+     *        the item id.
+     * @return the weapon interface, or <code>null</code> if the item isn't a
+     *         weapon.
+     */
+    public WeaponInterface getWeaponInterface(int id) {
+        int weapon = weaponInterfaces[id];
+        return weapon == 0 ? null : WEAPON_INTERFACES[weapon - 1];
+    }
+
+    /**
+     * Gets if the item changes the appearance animations when wielded.
+     * 
+     * @param id
+     *        the item id.
+     * @return true if the item has appearance animations.
+     */
+    public boolean hasAnimations(int id) {
+        return (flags[id] & ANIMATED) != 0;
+    }
+
+    /**
+     * Gets the standing animation of the item.
+     * 
+     * @param id
+     *        the item id.
+     * @return the standing animation.
+     */
+    public int getStandingAnimation(int id) {
+        return animations[id * ANIMATION_COUNT];
+    }
+
+    /**
+     * Gets the walking animation of the item.
+     * 
+     * @param id
+     *        the item id.
+     * @return the walking animation.
+     */
+    public int getWalkingAnimation(int id) {
+        return animations[id * ANIMATION_COUNT + 1];
+    }
+
+    /**
+     * Gets the running animation of the item.
+     * 
+     * @param id
+     *        the item id.
+     * @return the running animation.
+     */
+    public int getRunningAnimation(int id) {
+        return animations[id * ANIMATION_COUNT + 2];
+    }
+
+    /**
+     * Gets the amount of items in this table.
+     * 
+     * @return the amount of items.
+     */
+    public int getSize() {
+        return flags.length;
+    }
+}
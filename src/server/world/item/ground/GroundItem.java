@@ -1,8 +1,5 @@
 package server.world.item.ground;
 
-import server.core.worker.TaskFactory;
-import server.core.worker.WorkRate;
-import server.core.worker.Worker;
 import server.world.World;
 import server.world.entity.player.Player;
 import server.world.item.Item;
@@ -32,8 +29,8 @@ public class GroundItem {
     /** The current state of this item. */
     private ItemState state;
 
-    /** The {@link Worker} assigned to fire events for this item. */
-    private Worker processor;
+    /** The tick this item is due to be processed on, or 0 if it isn't. */
+    private long expiry;
 
     /** Flag that determines whether this item has been picked up or not. */
     private boolean itemPicked;
@@ -70,7 +67,6 @@ public class GroundItem {
         this.position = position.clone();
         this.player = player;
         this.state = ItemState.SEEN_BY_OWNER;
-        this.processor = new GroundItemWorker(this);
     }
 
     /**
@@ -79,43 +75,27 @@ public class GroundItem {
     protected void fireOnRegister() {
 
         /** Send the ground item image. */
-        player.getPacketBuilder().sendGroundItem(this);
+        World.getGroundItems().show(this);
 
-        /** Start processing for this item. */
-        TaskFactory.getFactory().submit(processor);
+        /** Schedule processing for this item. */
+        World.getGroundItems().schedule(this);
     }
 
     /**
      * An asynchronous event fired upon the unregistration of this item.
      */
-    @SuppressWarnings("incomplete-switch")
     protected void fireOnUnregister() {
 
         /** Cancels the processing for this item. */
-        processor.cancel();
+        World.getGroundItems().cancel(this);
 
-        /** Removes the ground item image depending on the state of the item. */
-        switch (state) {
-            case SEEN_BY_NO_ONE:
-                for (Player p : World.getPlayers()) {
-                    if (p == null) {
-                        continue;
-                    }
-
-                    if (p.getPosition().withinDistance(getPosition(), 60)) {
-                        p.getPacketBuilder().removeGroundItem(this);
-                    }
-                }
-                break;
-            case SEEN_BY_OWNER:
-                World.getPlayer(player.getUsernameHash()).getPacketBuilder().removeGroundItem(this);
-                break;
-        }
+        /** Removes the ground item image for everyone that can see it. */
+        World.getGroundItems().hide(this);
     }
 
     /**
-     * An asynchronous event fired by the assigned {@link Worker} at 1-minute
-     * intervals.
+     * An asynchronous event fired by the shared ground item processor at
+     * 1-minute intervals.
      */
     @SuppressWarnings("fallthrough")
     protected void fireOnProcess() {
@@ -131,18 +111,10 @@ public class GroundItem {
                     break;
                 }
 
-                for (Player p : World.getPlayers()) {
-                    if (p == null || p.getUsername().equals(player.getUsername())) {
-                        continue;
-                    }
-
-                    if (p.getPosition().withinDistance(getPosition(), 60)) {
-                        p.getPacketBuilder().sendGroundItem(new GroundItem(item, position, player));
-                    }
-                }
-
                 player = null;
                 state = ItemState.SEEN_BY_NO_ONE;
+                World.getGroundItems().show(this);
+                World.getGroundItems().schedule(this);
                 break;
 
             /** Show the item for no one. */
@@ -229,22 +201,22 @@ public class GroundItem {
     }
 
     /**
-     * Gets the {@link Worker} performing processing on this item.
+     * Gets the tick this item is due to be processed on.
      * 
-     * @return the processor.
+     * @return the tick, or 0 if this item isn't scheduled.
      */
-    public Worker getProcessor() {
-        return processor;
+    protected long getExpiry() {
+        return expiry;
     }
 
     /**
-     * Sets the {@link Worker} performing processing on this item.
+     * Sets the tick this item is due to be processed on.
      * 
-     * @param processor
-     *        the new processor to set.
+     * @param expiry
+     *        the tick, or 0 if this item isn't scheduled.
      */
-    protected void setProcessor(Worker processor) {
-        this.processor = processor;
+    protected void setExpiry(long expiry) {
+        this.expiry = expiry;
     }
 
     /**
@@ -265,38 +237,4 @@ public class GroundItem {
     protected void setItemPicked(boolean itemPicked) {
         this.itemPicked = itemPicked;
     }
-
-    /**
-     * A {@link Worker} implementation that fires processing events for its
-     * designated {@link GroundItem} at 1-minute intervals. This takes away the
-     * need for iterating through a database of items every tick.
-     * 
-     * @author lare96
-     */
-    protected static class GroundItemWorker extends Worker {
-
-        /**
-         * The {@link GroundItem} this worker has been assigned to fire events
-         * for.
-         */
-        private GroundItem item;
-
-        /**
-         * Create a new {@link GroundItemWorker}.
-         * 
-         * @param item
-         *        the item this worker has been assigned to fire events for.
-         */
-        public GroundItemWorker(GroundItem item) {
-            super(1, false, WorkRate.EXACT_MINUTE);
-            this.item = item;
-        }
-
-        @Override
-        public void fire() {
-
-            /** Fire the processing event for this item. */
-            item.fireOnProcess();
-        }
-    }
 }
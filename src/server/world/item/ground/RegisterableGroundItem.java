@@ -1,23 +1,83 @@
 package server.world.item.ground;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Queue;
+import java.util.Set;
 
+import server.core.worker.TaskFactory;
+import server.core.worker.WorkRate;
+import server.core.worker.Worker;
+import server.util.LongMap;
+import server.world.World;
 import server.world.entity.player.Player;
 import server.world.item.ground.GroundItem.ItemState;
 import server.world.map.Position;
 
 /**
- * Manages every single {@link GroundItem} registered to the
- * <code>itemList</code> database.
+ * Manages every single registered {@link GroundItem}. Items are bucketed by
+ * the 8x8 chunk of the map they're on, so looking up the items on a tile or
+ * in the area around a player only has to look at the buckets covering it
+ * instead of every item in the world.
+ * 
+ * <p>
+ * Every player remembers which items have been sent to them, so loading a new
+ * region only sends the items that came into view and removes the ones that
+ * went out of view. Items are processed by a single shared {@link Worker}
+ * instead of one worker per item.
+ * </p>
  * 
  * @author lare96
  */
 public class RegisterableGroundItem {
 
-    /** A database that holds every single registered {@link GroundItem}. */
-    private static List<GroundItem> itemList = new ArrayList<GroundItem>();
+    /** The amount of ticks between processing events for an item. */
+    public static final int PROCESS_DELAY = WorkRate.EXACT_MINUTE.getTickRate();
+
+    /** The size of the map area loaded by the client, in tiles. */
+    private static final int MAP_SIZE = 104;
+
+    /** The amount of bits to shift a coordinate by to get its bucket. */
+    private static final int BUCKET_SHIFT = 3;
+
+    /** The registered items, mapped to their packed bucket keys. */
+    private final LongMap<List<GroundItem>> buckets = new LongMap<List<GroundItem>>(1024);
+
+    /**
+     * The items waiting to be processed, in the order they're due. Every item
+     * is scheduled the same amount of ticks ahead so new items always go at
+     * the back.
+     */
+    private final Queue<Expiry> expiries = new ArrayDeque<Expiry>();
+
+    /** The amount of registered items. */
+    private int size;
+
+    /**
+     * Starts processing the items that are due every tick.
+     */
+    public void start() {
+        TaskFactory.getFactory().submit(new Worker(1, false) {
+            @Override
+            public void fire() {
+                long tick = TaskFactory.getFactory().getTick();
+
+                while (!expiries.isEmpty() && expiries.peek().due <= tick) {
+                    Expiry expiry = expiries.poll();
+
+                    /** Skip items that were cancelled or rescheduled. */
+                    if (expiry.item.getExpiry() != expiry.due) {
+                        continue;
+                    }
+
+                    expiry.item.setExpiry(0);
+                    expiry.item.fireOnProcess();
+                }
+            }
+        });
+    }
 
     /**
      * Fires the pickup event for a {@link GroundItem}.
@@ -42,12 +102,13 @@ public class RegisterableGroundItem {
      *        the position of the item to search for.
      */
     public GroundItem searchDatabase(int itemId, Position position) {
-        for (GroundItem item : itemList) {
-            if (item == null) {
-                continue;
+        List<GroundItem> bucket = buckets.get(key(position));
 
-            }
+        if (bucket == null) {
+            return null;
+        }
 
+        for (GroundItem item : bucket) {
             if (item.getItem().getId() == itemId && item.getPosition().equals(position)) {
                 return item;
             }
@@ -67,7 +128,7 @@ public class RegisterableGroundItem {
         registerable.fireOnRegister();
 
         /** Add the item in the database. */
-        itemList.add(registerable);
+        add(registerable);
     }
 
     /**
@@ -78,19 +139,27 @@ public class RegisterableGroundItem {
      *        the ground item to register and stack if applicable.
      */
     public void registerAndStack(GroundItem registerable) {
+        List<GroundItem> bucket = buckets.get(key(registerable.getPosition()));
         int itemCount = 0;
 
-        for (Iterator<GroundItem> iterator = itemList.iterator(); iterator.hasNext();) {
-            GroundItem item = iterator.next();
+        if (bucket != null) {
+            for (Iterator<GroundItem> iterator = bucket.iterator(); iterator.hasNext();) {
+                GroundItem item = iterator.next();
 
-            if (item == null) {
-                continue;
+                if (item.getPlayer() == null || item.getItem().getId() != registerable.getItem().getId() || !item.getPosition().equals(registerable.getPosition())) {
+                    continue;
+                }
+
+                if (item.getPlayer().getUsername().equals(registerable.getPlayer().getUsername())) {
+                    itemCount += item.getItem().getAmount();
+                    item.fireOnUnregister();
+                    iterator.remove();
+                    size--;
+                }
             }
 
-            if (item.getItem().getId() == registerable.getItem().getId() && item.getPosition().equals(registerable.getPosition()) && item.getPlayer().getUsername().equals(registerable.getPlayer().getUsername())) {
-                itemCount += item.getItem().getAmount();
-                item.fireOnUnregister();
-                iterator.remove();
+            if (bucket.isEmpty()) {
+                buckets.remove(key(registerable.getPosition()));
             }
         }
 
@@ -100,7 +169,7 @@ public class RegisterableGroundItem {
         registerable.fireOnRegister();
 
         /** Add the item in the database. */
-        itemList.add(registerable);
+        add(registerable);
     }
 
     /**
@@ -115,48 +184,291 @@ public class RegisterableGroundItem {
         registerable.fireOnUnregister();
 
         /** Remove the item from the database. */
-        itemList.remove(registerable);
+        remove(registerable);
     }
 
     /**
-     * Fired when the player loads a new region.
+     * Fired when the player loads a new region. Only the differences between
+     * what the player could see before and what they can see now are sent.
      * 
      * @param player
      *        the player loading a new region.
      */
     public void loadNewRegion(Player player) {
+        Set<GroundItem> known = player.getGroundItems();
 
-        /**
-         * Iterate through all of the registered ground items and update the
-         * region with items in the same region as the player.
-         */
-        for (final GroundItem databaseItem : itemList) {
-            if (databaseItem == null) {
+        /** Remove the items the player can no longer see. */
+        for (Iterator<GroundItem> iterator = known.iterator(); iterator.hasNext();) {
+            GroundItem item = iterator.next();
+
+            /**
+             * The client already forgets items that are outside of the new map
+             * area, so there's no need to tell it to remove them.
+             */
+            if (!inMapArea(player, item.getPosition())) {
+                iterator.remove();
                 continue;
             }
 
-            player.getPacketBuilder().removeGroundItem(databaseItem);
-
-            if (databaseItem.getState() == ItemState.SEEN_BY_NO_ONE || databaseItem.getState() == null && databaseItem.getPosition().withinDistance(player.getPosition(), 60)) {
-                player.getPacketBuilder().sendGroundItem(databaseItem);
-                continue;
+            if (!canSee(player, item)) {
+                player.getPacketBuilder().removeGroundItem(item);
+                iterator.remove();
             }
+        }
+
+        /** Send the items in the new map area the player hasn't seen yet. */
+        int chunkX = player.getCurrentRegion().getRegionX();
+        int chunkY = player.getCurrentRegion().getRegionY();
+        int chunks = MAP_SIZE >> BUCKET_SHIFT;
+
+        for (int x = chunkX; x < chunkX + chunks; x++) {
+            for (int y = chunkY; y < chunkY + chunks; y++) {
+                List<GroundItem> bucket = buckets.get(key(x, y, player.getPosition().getZ()));
 
-            if (databaseItem.getPlayer() != null) {
-                if (databaseItem.getPlayer().getUsername().equals(player.getUsername()) && databaseItem.getPosition().withinDistance(player.getPosition(), 60)) {
-                    player.getPacketBuilder().sendGroundItem(databaseItem);
+                if (bucket == null) {
                     continue;
                 }
+
+                for (GroundItem item : bucket) {
+                    show(player, item);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends the image of an item to every player that can see it and hasn't
+     * been sent it yet.
+     * 
+     * @param item
+     *        the item to send.
+     */
+    protected void show(GroundItem item) {
+        if (item.getState() == ItemState.SEEN_BY_OWNER) {
+            Player owner = World.getPlayer(item.getPlayer().getUsernameHash());
+
+            if (owner != null) {
+                show(owner, item);
+            }
+            return;
+        }
+
+        for (Player player : World.getPlayers()) {
+            if (player == null) {
+                continue;
+            }
+
+            show(player, item);
+        }
+    }
+
+    /**
+     * Removes the image of an item for every player that has been sent it.
+     * 
+     * @param item
+     *        the item to remove.
+     */
+    protected void hide(GroundItem item) {
+        if (item.getState() == ItemState.SEEN_BY_OWNER) {
+            Player owner = World.getPlayer(item.getPlayer().getUsernameHash());
+
+            if (owner != null && owner.getGroundItems().remove(item)) {
+                owner.getPacketBuilder().removeGroundItem(item);
+            }
+            return;
+        }
+
+        for (Player player : World.getPlayers()) {
+            if (player == null) {
+                continue;
+            }
+
+            if (player.getGroundItems().remove(item)) {
+                player.getPacketBuilder().removeGroundItem(item);
             }
         }
     }
 
     /**
-     * Gets the database of registered items.
+     * Schedules an item to be processed after {@link #PROCESS_DELAY} ticks,
+     * replacing any processing it was already scheduled for.
      * 
-     * @return the database of items.
+     * @param item
+     *        the item to schedule.
+     */
+    protected void schedule(GroundItem item) {
+        long due = TaskFactory.getFactory().getTick() + PROCESS_DELAY;
+        item.setExpiry(due);
+        expiries.add(new Expiry(item, due));
+    }
+
+    /**
+     * Cancels the processing an item was scheduled for.
+     * 
+     * @param item
+     *        the item to cancel processing for.
      */
-    protected List<GroundItem> getItemList() {
-        return itemList;
+    protected void cancel(GroundItem item) {
+        item.setExpiry(0);
+    }
+
+    /**
+     * Adds an item to the database without firing any events.
+     * 
+     * @param item
+     *        the item to add.
+     */
+    protected void add(GroundItem item) {
+        long key = key(item.getPosition());
+        List<GroundItem> bucket = buckets.get(key);
+
+        if (bucket == null) {
+            bucket = new ArrayList<GroundItem>(4);
+            buckets.put(key, bucket);
+        }
+
+        bucket.add(item);
+        size++;
+    }
+
+    /**
+     * Removes an item from the database without firing any events.
+     * 
+     * @param item
+     *        the item to remove.
+     */
+    protected void remove(GroundItem item) {
+        long key = key(item.getPosition());
+        List<GroundItem> bucket = buckets.get(key);
+
+        if (bucket == null) {
+            return;
+        }
+
+        /** Items are compared by identity, stacks can be equal to each other. */
+        for (Iterator<GroundItem> iterator = bucket.iterator(); iterator.hasNext();) {
+            if (iterator.next() == item) {
+                iterator.remove();
+                size--;
+                break;
+            }
+        }
+
+        if (bucket.isEmpty()) {
+            buckets.remove(key);
+        }
+    }
+
+    /**
+     * Gets the amount of registered items.
+     * 
+     * @return the amount of registered items.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Sends the image of an item to a player if they can see it and haven't
+     * been sent it yet.
+     * 
+     * @param player
+     *        the player to send the item to.
+     * @param item
+     *        the item to send.
+     */
+    private static void show(Player player, GroundItem item) {
+        if (canSee(player, item) && player.getGroundItems().add(item)) {
+            player.getPacketBuilder().sendGroundItem(item);
+        }
+    }
+
+    /**
+     * Determines if a player can see an item.
+     * 
+     * @param player
+     *        the player to check for.
+     * @param item
+     *        the item to check.
+     * @return true if the player can see the item.
+     */
+    private static boolean canSee(Player player, GroundItem item) {
+        if (item.getPosition().getZ() != player.getPosition().getZ() || !inMapArea(player, item.getPosition())) {
+            return false;
+        }
+
+        if (item.getState() == ItemState.SEEN_BY_OWNER) {
+            return item.getPlayer() != null && item.getPlayer().getUsername().equals(player.getUsername());
+        }
+        return true;
+    }
+
+    /**
+     * Determines if a position is in the map area the player currently has
+     * loaded.
+     * 
+     * @param player
+     *        the player to check for.
+     * @param position
+     *        the position to check.
+     * @return true if the position is in the loaded map area.
+     */
+    private static boolean inMapArea(Player player, Position position) {
+        int x = position.getLocalX(player.getCurrentRegion());
+        int y = position.getLocalY(player.getCurrentRegion());
+        return x >= 0 && y >= 0 && x < MAP_SIZE && y < MAP_SIZE;
+    }
+
+    /**
+     * Packs the bucket coordinates of a position into a single key.
+     * 
+     * @param position
+     *        the position to get the key for.
+     * @return the packed key.
+     */
+    private static long key(Position position) {
+        return key(position.getX() >> BUCKET_SHIFT, position.getY() >> BUCKET_SHIFT, position.getZ());
+    }
+
+    /**
+     * Packs bucket coordinates into a single key.
+     * 
+     * @param bucketX
+     *        the bucket X coordinate.
+     * @param bucketY
+     *        the bucket Y coordinate.
+     * @param z
+     *        the height level.
+     * @return the packed key.
+     */
+    private static long key(int bucketX, int bucketY, int z) {
+        return Position.pack(bucketX, bucketY, z);
+    }
+
+    /**
+     * An item waiting to be processed.
+     * 
+     * @author lare96
+     */
+    private static class Expiry {
+
+        /** The item to process. */
+        private final GroundItem item;
+
+        /** The tick the item is due to be processed on. */
+        private final long due;
+
+        /**
+         * Create a new {@link Expiry}.
+         * 
+         * @param item
+         *        the item to process.
+         * @param due
+         *        the tick the item is due to be processed on.
+         */
+        public Expiry(GroundItem item, long due) {
+            this.item = item;
+            this.due = due;
+        }
     }
 }
@@ -1,7 +1,6 @@
 package server.world.item.ground;
 
-import server.core.worker.TaskFactory;
-import server.core.worker.Worker;
+import server.core.TickProfiler;
 import server.world.World;
 import server.world.entity.player.Player;
 import server.world.item.Item;
@@ -16,8 +15,8 @@ import server.world.map.Position;
 public class StaticGroundItem extends GroundItem {
 
     /**
-     * If this item should be removed like a normal {@link GroundItem} (by the
-     * assigned {@link Worker} after a certain amount of time has elapsed).
+     * If this item should be removed like a normal {@link GroundItem} (after a
+     * certain amount of time has elapsed).
      */
     private boolean removeOnProcess;
 
@@ -61,38 +60,22 @@ public class StaticGroundItem extends GroundItem {
     protected void fireOnRegister() {
 
         /** Send the item image for everyone. */
-        for (Player p : World.getPlayers()) {
-            if (p == null) {
-                continue;
-            }
+        World.getGroundItems().show(this);
 
-            if (p.getPosition().withinDistance(getPosition(), 60)) {
-                p.getPacketBuilder().sendGroundItem(this);
-            }
-        }
-
-        /** Start the <code>processor</code> if needed. */
+        /** Schedule processing for this item if needed. */
         if (removeOnProcess) {
-            TaskFactory.getFactory().submit(getProcessor());
+            World.getGroundItems().schedule(this);
         }
     }
 
     @Override
     protected void fireOnUnregister() {
 
-        /** Cancel the processor. */
-        getProcessor().cancel();
+        /** Cancel the processing. */
+        World.getGroundItems().cancel(this);
 
         /** Remove the item image for everyone. */
-        for (Player p : World.getPlayers()) {
-            if (p == null) {
-                continue;
-            }
-
-            if (p.getPosition().withinDistance(getPosition(), 60)) {
-                p.getPacketBuilder().removeGroundItem(this);
-            }
-        }
+        World.getGroundItems().hide(this);
     }
 
     @Override
@@ -105,23 +88,19 @@ public class StaticGroundItem extends GroundItem {
         }
 
         /**
-         * If this item needs respawning do that now.
+         * If this item needs respawning do that now, unless the server is
+         * struggling to keep up in which case it's tried again next time.
          */
         if (isItemPicked() && respawnOnPickup && needsRespawn) {
-            for (Player p : World.getPlayers()) {
-                if (p == null) {
-                    continue;
-                }
-
-                if (p.getPosition().withinDistance(getPosition(), 60)) {
-                    p.getPacketBuilder().sendGroundItem(this);
-                }
+            if (TickProfiler.getProfiler().isShedding()) {
+                World.getGroundItems().schedule(this);
+                return;
             }
 
-            World.getGroundItems().getItemList().add(this);
             needsRespawn = false;
             setItemPicked(false);
-            getProcessor().cancel();
+            World.getGroundItems().add(this);
+            World.getGroundItems().show(this);
         }
     }
 
@@ -131,34 +110,25 @@ public class StaticGroundItem extends GroundItem {
             setItemPicked(true);
 
             /** Remove the item image for everyone. */
-            for (Player p : World.getPlayers()) {
-                if (p == null) {
-                    continue;
-                }
-
-                if (p.getPosition().withinDistance(getPosition(), 60)) {
-                    p.getPacketBuilder().removeGroundItem(this);
-                }
-            }
+            World.getGroundItems().hide(this);
 
             /** Remove the item from the database. */
-            World.getGroundItems().getItemList().remove(this);
+            World.getGroundItems().remove(this);
 
             /** Add the item in the player's inventory. */
             player.getInventory().addItem(getItem());
 
             /**
-             * Cancel the worker - we don't need it anymore because the item was
-             * picked up.
+             * Cancel the processing - we don't need it anymore because the item
+             * was picked up.
              */
             if (removeOnProcess) {
-                getProcessor().cancel();
+                World.getGroundItems().cancel(this);
             }
 
-            /** Submit a new worker to respawn the item if needed. */
+            /** Schedule the item to be respawned if needed. */
             if (respawnOnPickup) {
-                setProcessor(new GroundItemWorker(this));
-                TaskFactory.getFactory().submit(getProcessor());
+                World.getGroundItems().schedule(this);
                 needsRespawn = true;
             }
         }
@@ -0,0 +1,450 @@
+package server.world.map;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.logging.Logger;
+
+import server.core.worker.TaskFactory;
+import server.core.worker.WorkRate;
+import server.core.worker.Worker;
+import server.util.LongMap;
+import server.world.World;
+import server.world.entity.player.Player;
+
+/**
+ * Holds the collision flags of the map and decides which tiles can be walked
+ * to and seen through. Regions are read from the clipping file the first time
+ * they're needed, and are dropped again once they haven't been used for a
+ * while so only the parts of the map that are actually being played on are
+ * kept in memory.
+ * 
+ * <p>
+ * The clipping file starts with the amount of regions in it, followed by the
+ * id, offset and length of every region sorted by id. The data of a region is
+ * a list of flagged tiles, each a <code>short</code> holding the height level,
+ * local X and local Y coordinate as <code>z &lt;&lt; 12 | x &lt;&lt; 6 | y</code>
+ * followed by the <code>int</code> flags of that tile. If there is no
+ * clipping file every tile can be walked to and seen through.
+ * </p>
+ * 
+ * @author lare96
+ */
+public final class CollisionMap {
+
+    /** A wall on the north west corner of the tile. */
+    public static final int WALL_NORTHWEST = 0x1;
+
+    /** A wall on the north side of the tile. */
+    public static final int WALL_NORTH = 0x2;
+
+    /** A wall on the north east corner of the tile. */
+    public static final int WALL_NORTHEAST = 0x4;
+
+    /** A wall on the east side of the tile. */
+    public static final int WALL_EAST = 0x8;
+
+    /** A wall on the south east corner of the tile. */
+    public static final int WALL_SOUTHEAST = 0x10;
+
+    /** A wall on the south side of the tile. */
+    public static final int WALL_SOUTH = 0x20;
+
+    /** A wall on the south west corner of the tile. */
+    public static final int WALL_SOUTHWEST = 0x40;
+
+    /** A wall on the west side of the tile. */
+    public static final int WALL_WEST = 0x80;
+
+    /** A solid object on the tile. */
+    public static final int OBJECT = 0x100;
+
+    /**
+     * The amount of bits the flags above are shifted by for the versions that
+     * block projectiles.
+     */
+    public static final int PROJECTILE_SHIFT = 9;
+
+    /** Terrain on the tile that can't be walked on, such as water. */
+    public static final int BLOCKED = 0x200000;
+
+    /** The path of the clipping file. */
+    public static final Path FILE = Paths.get("data", "clipping.dat");
+
+    /** The amount of ticks a region is kept after its last use. */
+    public static final int IDLE_TICKS = WorkRate.EXACT_MINUTE.getTickRate() * 5;
+
+    /** A {@link Logger} for printing debugging info. */
+    private static Logger logger = Logger.getLogger(CollisionMap.class.getSimpleName());
+
+    /** The singleton instance. */
+    private static CollisionMap singleton = new CollisionMap();
+
+    /** The loaded regions, mapped to their ids. */
+    private final LongMap<CollisionRegion> regions = new LongMap<CollisionRegion>(256);
+
+    /** The loaded regions, for looking for idle ones. */
+    private final List<CollisionRegion> loaded = new ArrayList<CollisionRegion>();
+
+    /** The ids of the regions in the clipping file, sorted. */
+    private int[] regionIds = new int[0];
+
+    /** The offset of every region in the clipping file. */
+    private int[] offsets = new int[0];
+
+    /** The length of every region in the clipping file. */
+    private int[] lengths = new int[0];
+
+    /** The channel used to read regions from the clipping file. */
+    private FileChannel channel;
+
+    /** So this class cannot be instantiated. */
+    private CollisionMap() {
+
+    }
+
+    /**
+     * Opens the clipping file and reads which regions it contains.
+     * 
+     * @throws IOException
+     *         if the clipping file could not be read.
+     */
+    public void load() throws IOException {
+        if (!Files.exists(FILE)) {
+            logger.warning("No clipping file found at " + FILE + ", every tile will be walkable.");
+            return;
+        }
+
+        channel = FileChannel.open(FILE, StandardOpenOption.READ);
+        ByteBuffer header = read(0, 4);
+        int count = header.getInt();
+        ByteBuffer table = read(4, count * 12);
+
+        regionIds = new int[count];
+        offsets = new int[count];
+        lengths = new int[count];
+
+        for (int i = 0; i < count; i++) {
+            regionIds[i] = table.getInt();
+            offsets[i] = table.getInt();
+            lengths[i] = table.getInt();
+        }
+
+        logger.info("Found clipping for " + count + " regions.");
+    }
+
+    /**
+     * Starts dropping regions that have been idle for longer than
+     * {@link #IDLE_TICKS} once every minute.
+     */
+    public void start() {
+        TaskFactory.getFactory().submit(new Worker(1, false, WorkRate.EXACT_MINUTE) {
+            @Override
+            public void fire() {
+                unloadIdle();
+            }
+        });
+    }
+
+    /**
+     * Determines if an entity can take a single step in a direction.
+     * 
+     * @param x
+     *        the X coordinate the step is taken from.
+     * @param y
+     *        the Y coordinate the step is taken from.
+     * @param z
+     *        the height level.
+     * @param deltaX
+     *        the X direction of the step, between -1 and 1.
+     * @param deltaY
+     *        the Y direction of the step, between -1 and 1.
+     * @return true if the step can be taken.
+     */
+    public boolean canMove(int x, int y, int z, int deltaX, int deltaY) {
+        return canStep(x, y, z, deltaX, deltaY, 0, true);
+    }
+
+    /**
+     * Determines if a projectile can travel a single tile in a direction.
+     * 
+     * @param x
+     *        the X coordinate the projectile travels from.
+     * @param y
+     *        the Y coordinate the projectile travels from.
+     * @param z
+     *        the height level.
+     * @param deltaX
+     *        the X direction of travel, between -1 and 1.
+     * @param deltaY
+     *        the Y direction of travel, between -1 and 1.
+     * @return true if the projectile can travel in that direction.
+     */
+    public boolean canProjectileMove(int x, int y, int z, int deltaX, int deltaY) {
+        return canStep(x, y, z, deltaX, deltaY, PROJECTILE_SHIFT, true);
+    }
+
+    /**
+     * Determines if there's a clear line of sight between two positions. The
+     * tile being looked at is allowed to hold a solid object, so objects can be
+     * seen as long as nothing is in the way.
+     * 
+     * @param from
+     *        the position being looked from.
+     * @param to
+     *        the position being looked at.
+     * @return true if nothing blocks the line of sight.
+     */
+    public boolean hasLineOfSight(Position from, Position to) {
+        if (from.getZ() != to.getZ()) {
+            return false;
+        }
+
+        int x = from.getX();
+        int y = from.getY();
+        int distanceX = Math.abs(to.getX() - x);
+        int distanceY = Math.abs(to.getY() - y);
+        int directionX = Integer.signum(to.getX() - x);
+        int directionY = Integer.signum(to.getY() - y);
+        int error = distanceX - distanceY;
+
+        /** Walk the line a tile at a time, like a projectile would. */
+        while (x != to.getX() || y != to.getY()) {
+            int doubled = error * 2;
+            int stepX = 0;
+            int stepY = 0;
+
+            if (doubled > -distanceY) {
+                error -= distanceY;
+                stepX = directionX;
+            }
+            if (doubled < distanceX) {
+                error += distanceX;
+                stepY = directionY;
+            }
+
+            boolean last = x + stepX == to.getX() && y + stepY == to.getY();
+
+            if (!canStep(x, y, from.getZ(), stepX, stepY, PROJECTILE_SHIFT, !last)) {
+                return false;
+            }
+
+            x += stepX;
+            y += stepY;
+        }
+        return true;
+    }
+
+    /**
+     * Determines if a position can't be stood on.
+     * 
+     * @param position
+     *        the position to check.
+     * @return true if the position is blocked.
+     */
+    public boolean isBlocked(Position position) {
+        return (getFlags(position.getX(), position.getY(), position.getZ()) & (OBJECT | BLOCKED)) != 0;
+    }
+
+    /**
+     * Gets the collision flags of a tile.
+     * 
+     * @param x
+     *        the X coordinate of the tile.
+     * @param y
+     *        the Y coordinate of the tile.
+     * @param z
+     *        the height level of the tile.
+     * @return the flags of the tile.
+     */
+    public int getFlags(int x, int y, int z) {
+        if (regionIds.length == 0) {
+            return 0;
+        }
+        return region(x, y).getFlags(x & (CollisionRegion.SIZE - 1), y & (CollisionRegion.SIZE - 1), z);
+    }
+
+    /**
+     * Gets the amount of regions currently loaded.
+     * 
+     * @return the amount of loaded regions.
+     */
+    public int getLoadedCount() {
+        return loaded.size();
+    }
+
+    /**
+     * Determines if a single step can be taken, checking the flags either for
+     * walking or for projectiles.
+     * 
+     * @param x
+     *        the X coordinate the step is taken from.
+     * @param y
+     *        the Y coordinate the step is taken from.
+     * @param z
+     *        the height level.
+     * @param deltaX
+     *        the X direction of the step.
+     * @param deltaY
+     *        the Y direction of the step.
+     * @param shift
+     *        the amount to shift the flags by.
+     * @param solidTarget
+     *        if a solid object on the tile stepped to blocks the step.
+     * @return true if the step can be taken.
+     */
+    private boolean canStep(int x, int y, int z, int deltaX, int deltaY, int shift, boolean solidTarget) {
+        if (deltaX == 0 && deltaY == 0) {
+            return true;
+        }
+
+        int solid = (OBJECT << shift) | (shift == 0 ? BLOCKED : 0);
+        int wallX = (deltaX > 0 ? WALL_WEST : WALL_EAST) << shift;
+        int wallY = (deltaY > 0 ? WALL_SOUTH : WALL_NORTH) << shift;
+        int mask;
+
+        if (deltaX != 0 && deltaY != 0) {
+
+            /** Both of the tiles beside a diagonal step have to be free. */
+            if ((getFlags(x + deltaX, y, z) & (wallX | solid)) != 0 || (getFlags(x, y + deltaY, z) & (wallY | solid)) != 0) {
+                return false;
+            }
+
+            int corner = deltaX > 0 ? (deltaY > 0 ? WALL_SOUTHWEST : WALL_NORTHWEST) : (deltaY > 0 ? WALL_SOUTHEAST : WALL_NORTHEAST);
+            mask = wallX | wallY | (corner << shift);
+        } else {
+            mask = deltaX != 0 ? wallX : wallY;
+        }
+
+        if (solidTarget) {
+            mask |= solid;
+        }
+        return (getFlags(x + deltaX, y + deltaY, z) & mask) == 0;
+    }
+
+    /**
+     * Gets the region containing a tile, reading it from the clipping file if
+     * it isn't loaded yet.
+     * 
+     * @param x
+     *        the X coordinate of the tile.
+     * @param y
+     *        the Y coordinate of the tile.
+     * @return the region containing the tile.
+     */
+    private CollisionRegion region(int x, int y) {
+        int id = ((x >> 6) << 8) + (y >> 6);
+        CollisionRegion region = regions.get(id);
+
+        if (region == null) {
+            region = new CollisionRegion(id);
+
+            try {
+                decode(region);
+            } catch (IOException e) {
+                logger.warning("Unable to read clipping for region " + id + ": " + e.getMessage());
+            }
+
+            regions.put(id, region);
+            loaded.add(region);
+        }
+
+        region.setLastUsed(TaskFactory.getFactory().getTick());
+        return region;
+    }
+
+    /**
+     * Reads the flags of a region from the clipping file.
+     * 
+     * @param region
+     *        the region to read the flags for.
+     * @throws IOException
+     *         if the region could not be read.
+     */
+    private void decode(CollisionRegion region) throws IOException {
+        int index = Arrays.binarySearch(regionIds, region.getId());
+
+        if (index < 0) {
+            return;
+        }
+
+        ByteBuffer data = read(offsets[index], lengths[index]);
+
+        while (data.remaining() >= 6) {
+            int tile = data.getShort() & 0xffff;
+            region.addFlags((tile >> 6) & 0x3f, tile & 0x3f, tile >> 12, data.getInt());
+        }
+    }
+
+    /**
+     * Drops every region that hasn't been used for longer than
+     * {@link #IDLE_TICKS}. Regions that players are standing in are kept even
+     * if nobody has moved in them. A region dropped while something still
+     * needs it is simply read again the next time it's used.
+     */
+    private void unloadIdle() {
+        long tick = TaskFactory.getFactory().getTick();
+
+        for (Player player : World.getPlayers()) {
+            if (player == null) {
+                continue;
+            }
+
+            CollisionRegion region = regions.get(player.getPosition().getRegionId());
+
+            if (region != null) {
+                region.setLastUsed(tick);
+            }
+        }
+
+        for (Iterator<CollisionRegion> it = loaded.iterator(); it.hasNext();) {
+            CollisionRegion region = it.next();
+
+            if (tick - region.getLastUsed() > IDLE_TICKS) {
+                regions.remove(region.getId());
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Reads a block of bytes from the clipping file.
+     * 
+     * @param offset
+     *        the offset of the block.
+     * @param length
+     *        the length of the block.
+     * @return the block of bytes.
+     * @throws IOException
+     *         if the block could not be read.
+     */
+    private ByteBuffer read(long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of " + FILE);
+            }
+        }
+
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Gets the singleton instance.
+     * 
+     * @return the singleton instance.
+     */
+    public static CollisionMap getMap() {
+        return singleton;
+    }
+}
@@ -0,0 +1,101 @@
+package server.world.map;
+
+/**
+ * The collision flags of every tile in a single 64x64 region of the map. The
+ * flags for a height level are only allocated once a tile on that height
+ * level has been flagged, so regions without any collision data take up
+ * next to no memory.
+ * 
+ * @author lare96
+ */
+public class CollisionRegion {
+
+    /** The size of a region in tiles. */
+    public static final int SIZE = 64;
+
+    /** The id of this region. */
+    private final int id;
+
+    /** The flags of every tile, indexed by height level and then tile. */
+    private final int[][] planes = new int[4][];
+
+    /** The tick this region was last used on. */
+    private long lastUsed;
+
+    /**
+     * Create a new {@link CollisionRegion}.
+     * 
+     * @param id
+     *        the id of this region.
+     */
+    public CollisionRegion(int id) {
+        this.id = id;
+    }
+
+    /**
+     * Gets the flags of a tile in this region.
+     * 
+     * @param localX
+     *        the X coordinate of the tile within this region.
+     * @param localY
+     *        the Y coordinate of the tile within this region.
+     * @param z
+     *        the height level of the tile.
+     * @return the flags of the tile.
+     */
+    public int getFlags(int localX, int localY, int z) {
+        int[] plane = planes[z & 0x3];
+        return plane == null ? 0 : plane[localX * SIZE + localY];
+    }
+
+    /**
+     * Adds flags to a tile in this region.
+     * 
+     * @param localX
+     *        the X coordinate of the tile within this region.
+     * @param localY
+     *        the Y coordinate of the tile within this region.
+     * @param z
+     *        the height level of the tile.
+     * @param flags
+     *        the flags to add.
+     */
+    public void addFlags(int localX, int localY, int z, int flags) {
+        int[] plane = planes[z & 0x3];
+
+        if (plane == null) {
+            plane = new int[SIZE * SIZE];
+            planes[z & 0x3] = plane;
+        }
+
+        plane[localX * SIZE + localY] |= flags;
+    }
+
+    /**
+     * Gets the id of this region.
+     * 
+     * @return the id of this region.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Gets the tick this region was last used on.
+     * 
+     * @return the tick this region was last used on.
+     */
+    public long getLastUsed() {
+        return lastUsed;
+    }
+
+    /**
+     * Sets the tick this region was last used on.
+     * 
+     * @param lastUsed
+     *        the tick this region was last used on.
+     */
+    public void setLastUsed(long lastUsed) {
+        this.lastUsed = lastUsed;
+    }
+}
@@ -99,7 +99,7 @@ public class Location {
      * @return true if the entity is in the wilderness.
      */
     public static boolean inWilderness(Entity entity) {
-        return WILDERNESS.inLocation(new Position(entity.getPosition().getX(), entity.getPosition().getY()));
+        return WILDERNESS.inLocation(entity.getPosition());
     }
 
     /**
@@ -0,0 +1,257 @@
+package server.world.map;
+
+import java.util.Arrays;
+
+import server.util.Misc;
+import server.world.entity.Entity;
+import server.world.entity.MovementQueue;
+
+/**
+ * Finds the shortest path around the {@link CollisionMap} between two
+ * positions with a breadth first search. The search never leaves the
+ * 104x104 scene centered on where the path starts, so the amount of work done
+ * for a single path is always bounded. The arrays used for searching are
+ * reused between searches instead of being created for every path.
+ * 
+ * @author lare96
+ */
+public final class PathFinder {
+
+    /** The size of the scene searched for a path, in tiles. */
+    public static final int SCENE_SIZE = 104;
+
+    /**
+     * How far away from an unreachable target a tile is looked for to walk to
+     * instead.
+     */
+    public static final int NEAR_RADIUS = 10;
+
+    /** The singleton instance. */
+    private static PathFinder singleton = new PathFinder();
+
+    /** The search arrays, one set for every thread that finds paths. */
+    private final ThreadLocal<Search> searches = new ThreadLocal<Search>() {
+        @Override
+        protected Search initialValue() {
+            return new Search();
+        }
+    };
+
+    /** So this class cannot be instantiated. */
+    private PathFinder() {
+
+    }
+
+    /**
+     * Finds a path from an entity to a target and queues it in the entity's
+     * {@link MovementQueue}.
+     * 
+     * @param entity
+     *        the entity to find the path for.
+     * @param target
+     *        the position to find the path to.
+     * @param moveNear
+     *        if the entity should walk as close as it can when the target
+     *        can't be reached.
+     * @return true if a path was queued, false if no path could be found.
+     */
+    public boolean findRoute(Entity entity, Position target, boolean moveNear) {
+        Search search = searches.get();
+        int length = search.find(entity.getPosition(), target, moveNear);
+
+        if (length < 0) {
+            return false;
+        }
+
+        MovementQueue queue = entity.getMovementQueue();
+        queue.reset();
+
+        /** The path is stored from the end back to the start. */
+        for (int i = length - 1; i >= 0; i--) {
+            queue.addToPath(Position.unpackX(search.path[i]), Position.unpackY(search.path[i]));
+        }
+
+        queue.finish();
+        return true;
+    }
+
+    /**
+     * Gets the singleton instance.
+     * 
+     * @return the singleton instance.
+     */
+    public static PathFinder getPathFinder() {
+        return singleton;
+    }
+
+    /**
+     * The arrays used to carry out a single search, indexed by the local
+     * coordinates of a tile in the scene.
+     * 
+     * @author lare96
+     */
+    private static class Search {
+
+        /**
+         * The search that each tile was last visited in, so the arrays don't
+         * have to be cleared between searches.
+         */
+        private final int[] visited = new int[SCENE_SIZE * SCENE_SIZE];
+
+        /** The direction each tile was stepped onto from. */
+        private final int[] via = new int[SCENE_SIZE * SCENE_SIZE];
+
+        /** The amount of steps it takes to get to each tile. */
+        private final int[] cost = new int[SCENE_SIZE * SCENE_SIZE];
+
+        /** The tiles waiting to be searched. */
+        private final int[] queue = new int[SCENE_SIZE * SCENE_SIZE];
+
+        /** The packed positions of the last path found, end first. */
+        private final int[] path = new int[SCENE_SIZE * SCENE_SIZE];
+
+        /** The id of the current search. */
+        private int searchId;
+
+        /**
+         * Searches for a path and stores it in {@link #path}.
+         * 
+         * @param start
+         *        the position the path starts from.
+         * @param target
+         *        the position the path leads to.
+         * @param moveNear
+         *        if the closest reachable tile should be used when the target
+         *        can't be reached.
+         * @return the length of the path, or -1 if none could be found.
+         */
+        public int find(Position start, Position target, boolean moveNear) {
+            if (start.getZ() != target.getZ()) {
+                return -1;
+            }
+
+            if (++searchId == 0) {
+                Arrays.fill(visited, 0);
+                searchId = 1;
+            }
+
+            int z = start.getZ();
+            int baseX = start.getX() - SCENE_SIZE / 2;
+            int baseY = start.getY() - SCENE_SIZE / 2;
+            int targetX = target.getX() - baseX;
+            int targetY = target.getY() - baseY;
+            int startTile = index(SCENE_SIZE / 2, SCENE_SIZE / 2);
+            int head = 0;
+            int tail = 0;
+            boolean found = false;
+
+            visited[startTile] = searchId;
+            cost[startTile] = 0;
+            queue[tail++] = startTile;
+
+            while (head < tail) {
+                int tile = queue[head++];
+                int x = tile / SCENE_SIZE;
+                int y = tile % SCENE_SIZE;
+
+                if (x == targetX && y == targetY) {
+                    found = true;
+                    break;
+                }
+
+                for (int direction = 0; direction < Misc.DIRECTION_DELTA_X.length; direction++) {
+                    int nextX = x + Misc.DIRECTION_DELTA_X[direction];
+                    int nextY = y + Misc.DIRECTION_DELTA_Y[direction];
+
+                    if (nextX < 0 || nextY < 0 || nextX >= SCENE_SIZE || nextY >= SCENE_SIZE) {
+                        continue;
+                    }
+
+                    int next = index(nextX, nextY);
+
+                    if (visited[next] == searchId || !CollisionMap.getMap().canMove(baseX + x, baseY + y, z, Misc.DIRECTION_DELTA_X[direction], Misc.DIRECTION_DELTA_Y[direction])) {
+                        continue;
+                    }
+
+                    visited[next] = searchId;
+                    via[next] = direction;
+                    cost[next] = cost[tile] + 1;
+                    queue[tail++] = next;
+                }
+            }
+
+            int end;
+
+            if (found) {
+                end = index(targetX, targetY);
+            } else if (moveNear) {
+                end = closest(targetX, targetY);
+
+                if (end == -1) {
+                    return -1;
+                }
+            } else {
+                return -1;
+            }
+
+            /** Walk back from the end of the path to the start. */
+            int length = 0;
+
+            for (int tile = end; tile != startTile; length++) {
+                int x = tile / SCENE_SIZE;
+                int y = tile % SCENE_SIZE;
+                path[length] = Position.pack(baseX + x, baseY + y, z);
+                tile = index(x - Misc.DIRECTION_DELTA_X[via[tile]], y - Misc.DIRECTION_DELTA_Y[via[tile]]);
+            }
+            return length;
+        }
+
+        /**
+         * Finds the reached tile closest to an unreachable target, preferring
+         * the tile that takes the least steps to get to when two are as close.
+         * 
+         * @param targetX
+         *        the local X coordinate of the target.
+         * @param targetY
+         *        the local Y coordinate of the target.
+         * @return the closest tile, or -1 if none were reached.
+         */
+        private int closest(int targetX, int targetY) {
+            int closest = -1;
+            int closestDistance = Integer.MAX_VALUE;
+            int closestCost = Integer.MAX_VALUE;
+
+            for (int x = Math.max(targetX - NEAR_RADIUS, 0); x <= Math.min(targetX + NEAR_RADIUS, SCENE_SIZE - 1); x++) {
+                for (int y = Math.max(targetY - NEAR_RADIUS, 0); y <= Math.min(targetY + NEAR_RADIUS, SCENE_SIZE - 1); y++) {
+                    int tile = index(x, y);
+
+                    if (visited[tile] != searchId) {
+                        continue;
+                    }
+
+                    int distance = (x - targetX) * (x - targetX) + (y - targetY) * (y - targetY);
+
+                    if (distance < closestDistance || distance == closestDistance && cost[tile] < closestCost) {
+                        closest = tile;
+                        closestDistance = distance;
+                        closestCost = cost[tile];
+                    }
+                }
+            }
+            return closest;
+        }
+
+        /**
+         * Gets the index of a tile in the search arrays.
+         * 
+         * @param x
+         *        the local X coordinate of the tile.
+         * @param y
+         *        the local Y coordinate of the tile.
+         * @return the index of the tile.
+         */
+        private static int index(int x, int y) {
+            return x * SCENE_SIZE + y;
+        }
+    }
+}
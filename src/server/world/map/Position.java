@@ -1,7 +1,5 @@
 package server.world.map;
 
-import server.util.Misc;
-
 /**
  * A position point on the map.
  * 
@@ -297,8 +295,9 @@ public class Position {
         if (this.getZ() != other.getZ())
             return false;
 
-        Position p = Misc.delta(this, other);
-        return p.x <= 14 && p.x >= -15 && p.y <= 14 && p.y >= -15;
+        int deltaX = getDeltaX(other);
+        int deltaY = getDeltaY(other);
+        return deltaX <= 14 && deltaX >= -15 && deltaY <= 14 && deltaY >= -15;
     }
 
     /**
@@ -316,4 +315,103 @@ public class Position {
 
         return Math.abs(position.getX() - this.getX()) <= distance && Math.abs(position.getY() - this.getY()) <= distance;
     }
+
+    /**
+     * Gets the X coordinate of the other position relative to this position.
+     * 
+     * @param other
+     *        the other position.
+     * @return the delta X coordinate.
+     */
+    public int getDeltaX(Position other) {
+        return other.x - x;
+    }
+
+    /**
+     * Gets the Y coordinate of the other position relative to this position.
+     * 
+     * @param other
+     *        the other position.
+     * @return the delta Y coordinate.
+     */
+    public int getDeltaY(Position other) {
+        return other.y - y;
+    }
+
+    /**
+     * Checks if this position is on the specified coordinates. This should be
+     * used instead of comparing against a newly created or cloned position.
+     * 
+     * @param x
+     *        the X coordinate.
+     * @param y
+     *        the Y coordinate.
+     * @param z
+     *        the Z coordinate.
+     * @return true if this position is on the coordinates.
+     */
+    public boolean equals(int x, int y, int z) {
+        return this.x == x && this.y == y && this.z == z;
+    }
+
+    /**
+     * Packs this position into a single <code>int</code>.
+     * 
+     * @return the packed coordinates.
+     * @see #pack(int, int, int)
+     */
+    public int pack() {
+        return pack(x, y, z);
+    }
+
+    /**
+     * Packs coordinates into a single <code>int</code>, with 14 bits for the X
+     * and Y coordinates and 2 bits for the Z coordinate. This is enough for
+     * every position on the map, and can be used as a key without creating a
+     * new {@link Position}.
+     * 
+     * @param x
+     *        the X coordinate.
+     * @param y
+     *        the Y coordinate.
+     * @param z
+     *        the Z coordinate.
+     * @return the packed coordinates.
+     */
+    public static int pack(int x, int y, int z) {
+        return ((z & 0x3) << 28) | ((x & 0x3fff) << 14) | (y & 0x3fff);
+    }
+
+    /**
+     * Gets the X coordinate from packed coordinates.
+     * 
+     * @param packed
+     *        the packed coordinates.
+     * @return the X coordinate.
+     */
+    public static int unpackX(int packed) {
+        return (packed >> 14) & 0x3fff;
+    }
+
+    /**
+     * Gets the Y coordinate from packed coordinates.
+     * 
+     * @param packed
+     *        the packed coordinates.
+     * @return the Y coordinate.
+     */
+    public static int unpackY(int packed) {
+        return packed & 0x3fff;
+    }
+
+    /**
+     * Gets the Z coordinate from packed coordinates.
+     * 
+     * @param packed
+     *        the packed coordinates.
+     * @return the Z coordinate.
+     */
+    public static int unpackZ(int packed) {
+        return (packed >> 28) & 0x3;
+    }
 }
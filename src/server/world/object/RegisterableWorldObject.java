@@ -1,26 +1,43 @@
 package server.world.object;
 
-import java.util.HashSet;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 
+import server.util.LongMap;
 import server.world.World;
 import server.world.entity.player.Player;
 import server.world.map.Position;
 
 /**
- * Manages every single {@link WorldObject} registered to the
- * <code>objectSet</code> database.
+ * Manages every single registered {@link WorldObject}. Objects are mapped to
+ * their packed position so registering, unregistering and looking up an
+ * object never has to look through the other objects, and are also bucketed
+ * by the 8x8 chunk of the map they're on so loading a region only has to look
+ * at the buckets covering it.
+ * 
+ * <p>
+ * Every player remembers which objects have been sent to them, so loading a
+ * new region only sends the objects that came into view, and changes to an
+ * object are only sent to the players that have it in their loaded map area.
+ * </p>
  * 
  * @author lare96
  */
 public class RegisterableWorldObject {
 
-    /**
-     * A {@link HashSet} to keep track of all of the {@link WorldObject}s in the
-     * game.
-     */
-    private static Set<WorldObject> objectSet = new HashSet<WorldObject>();
+    /** The size of the map area loaded by the client, in tiles. */
+    private static final int MAP_SIZE = 104;
+
+    /** The amount of bits to shift a coordinate by to get its bucket. */
+    private static final int BUCKET_SHIFT = 3;
+
+    /** The registered objects, mapped to their packed positions. */
+    private final LongMap<WorldObject> objects = new LongMap<WorldObject>(4096);
+
+    /** The registered objects, mapped to their packed bucket keys. */
+    private final LongMap<List<WorldObject>> buckets = new LongMap<List<WorldObject>>(1024);
 
     /**
      * Registers a new object to the database.
@@ -31,29 +48,22 @@ public class RegisterableWorldObject {
     public void register(WorldObject registerable) {
 
         /**
-         * Check if an object is already on this position and if so it removes
-         * the object from the database before spawning the new one over it.
+         * If an object is already on this position it's removed from the
+         * database before spawning the new one over it.
          */
-        for (Iterator<WorldObject> iter = objectSet.iterator(); iter.hasNext();) {
-            WorldObject object = iter.next();
-
-            if (object.getPosition().equals(registerable.getPosition())) {
-                iter.remove();
-            }
-        }
-
-        /** Register object for future players. */
-        objectSet.add(registerable);
+        WorldObject replaced = add(registerable);
 
-        /** Add object for existing players in the region. */
+        /** Add object for existing players that have the region loaded. */
         for (Player player : World.getPlayers()) {
             if (player == null) {
                 continue;
             }
 
-            if (player.getPosition().withinDistance(registerable.getPosition(), 60)) {
-                player.getPacketBuilder().sendObject(registerable);
+            if (replaced != null) {
+                player.getObjects().remove(replaced);
             }
+
+            show(player, registerable);
         }
     }
 
@@ -64,31 +74,57 @@ public class RegisterableWorldObject {
      *        the existing object from the database.
      */
     public void unregister(WorldObject registerable) {
+        WorldObject object = objects.get(key(registerable.getPosition()));
 
         /** Can't remove an object that isn't there. */
-        if (!objectSet.contains(registerable)) {
+        if (object == null || !object.equals(registerable)) {
             return;
         }
 
         /** Unregister object for future players. */
-        for (Iterator<WorldObject> iter = objectSet.iterator(); iter.hasNext();) {
-            WorldObject object = iter.next();
+        objects.remove(key(object.getPosition()));
+        removeFromBucket(object);
 
-            if (object.equals(registerable)) {
-                iter.remove();
-            }
-        }
-
-        /** Remove object for all existing players. */
+        /** Remove object for the players that have been sent it. */
         for (Player player : World.getPlayers()) {
             if (player == null) {
                 continue;
             }
 
-            player.getPacketBuilder().removeObject(registerable);
+            if (player.getObjects().remove(object)) {
+                player.getPacketBuilder().removeObject(object);
+            }
         }
     }
 
+    /**
+     * Adds an object to the database without sending it to anyone, replacing
+     * any object already on its position.
+     * 
+     * @param object
+     *        the object to add.
+     * @return the object that was replaced, or <code>null</code> if there
+     *         wasn't one.
+     */
+    public WorldObject add(WorldObject object) {
+        WorldObject replaced = objects.put(key(object.getPosition()), object);
+
+        if (replaced != null) {
+            removeFromBucket(replaced);
+        }
+
+        long key = bucketKey(object.getPosition());
+        List<WorldObject> bucket = buckets.get(key);
+
+        if (bucket == null) {
+            bucket = new ArrayList<WorldObject>(4);
+            buckets.put(key, bucket);
+        }
+
+        bucket.add(object);
+        return replaced;
+    }
+
     /**
      * Gets the object on the speicified position.
      * 
@@ -97,42 +133,150 @@ public class RegisterableWorldObject {
      * @return the object on the position.
      */
     public WorldObject getObjectOnPosition(Position position) {
-        for (WorldObject object : objectSet) {
-            if (position.equals(object.getPosition())) {
-                return object;
-            }
-        }
-        return null;
+        return objects.get(key(position));
     }
 
     /**
-     * Fired when the player loads a new region.
+     * Fired when the player loads a new region. Only the objects that the
+     * player hasn't been sent yet are sent.
      * 
      * @param player
      *        the player loading a new region.
      */
     public void loadNewRegion(Player player) {
+        Set<WorldObject> known = player.getObjects();
 
-        /** Update existing objects for player in region. */
-        for (WorldObject object : objectSet) {
-            if (object == null) {
-                continue;
+        /**
+         * The client already forgets objects that are outside of the new map
+         * area, so there's no need to tell it to remove them.
+         */
+        for (Iterator<WorldObject> iterator = known.iterator(); iterator.hasNext();) {
+            if (!inMapArea(player, iterator.next().getPosition())) {
+                iterator.remove();
             }
+        }
+
+        /** Send the objects in the new map area the player hasn't seen yet. */
+        int chunkX = player.getCurrentRegion().getRegionX();
+        int chunkY = player.getCurrentRegion().getRegionY();
+        int chunks = MAP_SIZE >> BUCKET_SHIFT;
+
+        for (int x = chunkX; x < chunkX + chunks; x++) {
+            for (int y = chunkY; y < chunkY + chunks; y++) {
+                List<WorldObject> bucket = buckets.get(bucketKey(x, y, player.getPosition().getZ()));
+
+                if (bucket == null) {
+                    continue;
+                }
+
+                for (WorldObject object : bucket) {
+                    show(player, object);
+                }
+            }
+        }
+    }
 
-            player.getPacketBuilder().removeObject(object);
+    /**
+     * Gets the amount of registered objects.
+     * 
+     * @return the amount of registered objects.
+     */
+    public int getSize() {
+        return objects.size();
+    }
+
+    /**
+     * Removes an object from the bucket it's in.
+     * 
+     * @param object
+     *        the object to remove.
+     */
+    private void removeFromBucket(WorldObject object) {
+        long key = bucketKey(object.getPosition());
+        List<WorldObject> bucket = buckets.get(key);
+
+        if (bucket == null) {
+            return;
+        }
 
-            if (object.getPosition().withinDistance(player.getPosition(), 60)) {
-                player.getPacketBuilder().sendObject(object);
+        /** Objects are compared by identity, equal objects may be different. */
+        for (Iterator<WorldObject> iterator = bucket.iterator(); iterator.hasNext();) {
+            if (iterator.next() == object) {
+                iterator.remove();
+                break;
             }
         }
+
+        if (bucket.isEmpty()) {
+            buckets.remove(key);
+        }
+    }
+
+    /**
+     * Sends the image of an object to a player if it's in their loaded map
+     * area and they haven't been sent it yet.
+     * 
+     * @param player
+     *        the player to send the object to.
+     * @param object
+     *        the object to send.
+     */
+    private static void show(Player player, WorldObject object) {
+        if (object.getPosition().getZ() == player.getPosition().getZ() && inMapArea(player, object.getPosition()) && player.getObjects().add(object)) {
+            player.getPacketBuilder().sendObject(object);
+        }
+    }
+
+    /**
+     * Determines if a position is in the map area the player currently has
+     * loaded.
+     * 
+     * @param player
+     *        the player to check for.
+     * @param position
+     *        the position to check.
+     * @return true if the position is in the loaded map area.
+     */
+    private static boolean inMapArea(Player player, Position position) {
+        int x = position.getLocalX(player.getCurrentRegion());
+        int y = position.getLocalY(player.getCurrentRegion());
+        return x >= 0 && y >= 0 && x < MAP_SIZE && y < MAP_SIZE;
+    }
+
+    /**
+     * Packs a position into a single key.
+     * 
+     * @param position
+     *        the position to get the key for.
+     * @return the packed key.
+     */
+    private static long key(Position position) {
+        return position.pack();
+    }
+
+    /**
+     * Packs the bucket coordinates of a position into a single key.
+     * 
+     * @param position
+     *        the position to get the key for.
+     * @return the packed key.
+     */
+    private static long bucketKey(Position position) {
+        return bucketKey(position.getX() >> BUCKET_SHIFT, position.getY() >> BUCKET_SHIFT, position.getZ());
     }
 
     /**
-     * Gets the set of {@link WorldObject}s.
+     * Packs bucket coordinates into a single key.
      * 
-     * @return the set of objects.
+     * @param bucketX
+     *        the bucket X coordinate.
+     * @param bucketY
+     *        the bucket Y coordinate.
+     * @param z
+     *        the height level.
+     * @return the packed key.
      */
-    public Set<WorldObject> getObjectSet() {
-        return objectSet;
+    private static long bucketKey(int bucketX, int bucketY, int z) {
+        return Position.pack(bucketX, bucketY, z);
     }
 }
@@ -10,6 +10,7 @@ import server.util.Misc;
 import server.world.World;
 import server.world.entity.player.Player;
 import server.world.item.Item;
+import server.world.item.ItemTable;
 import server.world.item.ItemContainer;
 import server.world.item.ItemContainer.ContainerPolicy;
 
@@ -156,12 +157,12 @@ public class Shop {
          * buy this item.
          */
         if (currency == Currency.COINS) {
-            if (!(currency.getCurrency().getCurrencyAmount(player) >= (item.getDefinition().getGeneralStorePrice() * item.getAmount()))) {
+            if (!(currency.getCurrency().getCurrencyAmount(player) >= (ItemTable.getTable().getGeneralStorePrice(item.getId()) * item.getAmount()))) {
                 player.getPacketBuilder().sendMessage("You do not have enough coins to buy this item.");
                 return;
             }
         } else {
-            if (!(currency.getCurrency().getCurrencyAmount(player) >= (item.getDefinition().getSpecialStorePrice() * item.getAmount()))) {
+            if (!(currency.getCurrency().getCurrencyAmount(player) >= (ItemTable.getTable().getSpecialStorePrice(item.getId()) * item.getAmount()))) {
                 player.getPacketBuilder().sendMessage("You do not have enough " + currency.name().toLowerCase().replaceAll("_", " ") + " to buy this item.");
                 return;
             }
@@ -198,9 +199,9 @@ public class Shop {
             }
 
             if (currency == Currency.COINS) {
-                currency.getCurrency().giveCurrency(player, item.getAmount() * item.getDefinition().getGeneralStorePrice());
+                currency.getCurrency().giveCurrency(player, item.getAmount() * ItemTable.getTable().getGeneralStorePrice(item.getId()));
             } else {
-                currency.getCurrency().giveCurrency(player, item.getAmount() * item.getDefinition().getSpecialStorePrice());
+                currency.getCurrency().giveCurrency(player, item.getAmount() * ItemTable.getTable().getSpecialStorePrice(item.getId()));
             }
 
             player.getInventory().addItem(item);
@@ -387,7 +388,7 @@ public class Shop {
      * @return the selling price of this item.
      */
     private int calculateSellingPrice(Item item) {
-        return (int) (currency == Currency.COINS ? Math.floor((item.getDefinition().getGeneralStorePrice() / 2)) : Math.floor((item.getDefinition().getSpecialStorePrice() / 2)));
+        return (int) (currency == Currency.COINS ? Math.floor((ItemTable.getTable().getGeneralStorePrice(item.getId()) / 2)) : Math.floor((ItemTable.getTable().getSpecialStorePrice(item.getId()) / 2)));
     }
 
     /**